@@ -0,0 +1,76 @@
+package libj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.math.Matrix;
+import libj.math.MatrixBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the scalar and vector kernel backends on the operations they
+ * cover. The vector runs need the jdk.incubator.vector module, which the jmh
+ * task adds to the forked JVMs.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackendBenchmark {
+    
+    @Param({"SCALAR", "VECTOR"})
+    public MatrixBackend backend;
+    
+    @Param({"4", "16", "128", "1024"})
+    public int size;
+    
+    private Matrix a;
+    
+    private Matrix b;
+    
+    private Matrix target;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        MatrixBackend.set(backend);
+        Random random = new Random(42);
+        a = Matrices.random(size, size, random);
+        b = Matrices.random(size, size, random);
+        target = Matrices.random(size, size, random);
+    }
+    
+    @Benchmark
+    public Matrix mul() {
+        return Matrix.mul(a, b);
+    }
+    
+    @Benchmark
+    public Matrix add() {
+        target.add(a);
+        return target;
+    }
+    
+    @Benchmark
+    public Matrix mulScalar() {
+        target.mul(1.0000001);
+        return target;
+    }
+    
+    @Benchmark
+    public double sumRow() {
+        return a.sumRow(size / 2 + 1);
+    }
+}
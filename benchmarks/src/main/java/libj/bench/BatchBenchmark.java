@@ -0,0 +1,110 @@
+package libj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.math.Matrix;
+import libj.math.MatrixBatch;
+import libj.math.SqMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for batches of small matrices against the same matrices as
+ * separate objects.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+    
+    @Param({"3", "4"})
+    public int dim;
+    
+    @Param({"10000"})
+    public int count;
+    
+    private SqMatrix[] matrices;
+    
+    private SqMatrix[] others;
+    
+    private MatrixBatch batch;
+    
+    private MatrixBatch otherBatch;
+    
+    private MatrixBatch result;
+    
+    private double[] dets;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        matrices = new SqMatrix[count];
+        others = new SqMatrix[count];
+        for (int i = 0; i < count; i++) {
+            matrices[i] = Matrices.randomSquare(dim, random);
+            others[i] = Matrices.randomSquare(dim, random);
+        }
+        batch = MatrixBatch.of(matrices);
+        otherBatch = MatrixBatch.of(others);
+        result = new MatrixBatch(dim, count);
+        dets = new double[count];
+    }
+    
+    @Benchmark
+    public double[] detSeparate() {
+        for (int i = 0; i < count; i++) {
+            dets[i] = matrices[i].det();
+        }
+        return dets;
+    }
+    
+    @Benchmark
+    public double[] detBatch() {
+        batch.detInto(dets);
+        return dets;
+    }
+    
+    @Benchmark
+    public Matrix invSeparate() {
+        Matrix last = null;
+        for (int i = 0; i < count; i++) {
+            last = matrices[i].inv();
+        }
+        return last;
+    }
+    
+    @Benchmark
+    public MatrixBatch invBatch() {
+        batch.invInto(result);
+        return result;
+    }
+    
+    @Benchmark
+    public Matrix mulSeparate() {
+        Matrix last = null;
+        for (int i = 0; i < count; i++) {
+            last = Matrix.mul(matrices[i], others[i]);
+        }
+        return last;
+    }
+    
+    @Benchmark
+    public MatrixBatch mulBatch() {
+        MatrixBatch.mulInto(batch, otherBatch, result);
+        return result;
+    }
+}
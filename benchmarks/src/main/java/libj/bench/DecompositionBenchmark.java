@@ -0,0 +1,129 @@
+package libj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.math.CholeskyDecomposition;
+import libj.math.EigenDecomposition;
+import libj.math.LinearOperator;
+import libj.math.LUDecomposition;
+import libj.math.Matrix;
+import libj.math.QRDecomposition;
+import libj.math.SingularValueDecomposition;
+import libj.math.SqMatrix;
+import libj.math.UpdatableInverse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the LU, Cholesky and QR decompositions of a symmetric
+ * positive definite matrix, and for the QR decomposition of a tall matrix.
+ * Also compares recalculating the inverse after changing one row with
+ * updating it, and full eigenvalue and singular value decompositions with
+ * finding only the 8 largest.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecompositionBenchmark {
+    
+    @Param({"64", "512"})
+    public int size;
+    
+    private SqMatrix spd;
+    
+    private Matrix tall;
+    
+    private SqMatrix inverse;
+    
+    private UpdatableInverse updatable;
+    
+    private double[][] rows;
+    
+    private int next;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        Matrix g = Matrices.random(size, size, random);
+        spd = new SqMatrix(size);
+        Matrix.mulInto(g, g.transpose(), spd);
+        for (int i = 1; i <= size; i++) {
+            spd.setElem(i, i, spd.getElem(i, i) + size);
+        }
+        tall = Matrices.random(4 * size, size / 4, random);
+        inverse = new SqMatrix(size);
+        updatable = spd.updatableInverse();
+        rows = new double[2][size];
+        for (int j = 0; j < size; j++) {
+            rows[0][j] = spd.getElem(1, j + 1);
+            rows[1][j] = rows[0][j] + random.nextDouble();
+        }
+    }
+    
+    @Benchmark
+    public LUDecomposition lu() {
+        return spd.lu();
+    }
+    
+    @Benchmark
+    public CholeskyDecomposition cholesky() {
+        return spd.cholesky();
+    }
+    
+    @Benchmark
+    public QRDecomposition qr() {
+        return spd.qr();
+    }
+    
+    @Benchmark
+    public QRDecomposition qrTall() {
+        return tall.qr();
+    }
+    
+    @Benchmark
+    public Matrix invInto() {
+        spd.invInto(inverse);
+        return inverse;
+    }
+    
+    @Benchmark
+    public double updateRow() {
+        next ^= 1;
+        updatable.setRow(1, rows[next]);
+        return updatable.det();
+    }
+    
+    @Benchmark
+    public EigenDecomposition eig() {
+        return spd.eig();
+    }
+    
+    @Benchmark
+    public EigenDecomposition lanczos() {
+        return EigenDecomposition.lanczos(LinearOperator.of(spd), 8);
+    }
+    
+    @Benchmark
+    public SingularValueDecomposition svd() {
+        return spd.svd();
+    }
+    
+    @Benchmark
+    public SingularValueDecomposition randomizedSvd() {
+        return SingularValueDecomposition.randomized(spd, 8);
+    }
+}
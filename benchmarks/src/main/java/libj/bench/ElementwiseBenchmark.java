@@ -0,0 +1,83 @@
+package libj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.math.Matrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for element-wise traversal, mapping and row reductions, on a
+ * matrix and on a view of it.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementwiseBenchmark {
+
+    @Param({"256", "2048"})
+    public int size;
+
+    private Matrix m;
+
+    private Matrix view;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        m = Matrices.random(size, size, new Random(42));
+        view = m.transposeView();
+    }
+
+    @Benchmark
+    public double forEach() {
+        double[] sum = new double[1];
+        m.forEach((r, c, e) -> sum[0] += e);
+        return sum[0];
+    }
+
+    @Benchmark
+    public double streamSum() {
+        return m.stream().sum();
+    }
+
+    @Benchmark
+    public double parallelStreamSum() {
+        return m.stream().parallel().sum();
+    }
+
+    @Benchmark
+    public Matrix mapInPlace() {
+        m.mapInPlace(e -> -e);
+        return m;
+    }
+
+    @Benchmark
+    public Matrix replaceAllView() {
+        view.replaceAll((r, c, e) -> -e);
+        return view;
+    }
+
+    @Benchmark
+    public double[] sumRows() {
+        return m.sumRows();
+    }
+
+    @Benchmark
+    public double[] reduceRowsView() {
+        return view.reduceRows(Double.NEGATIVE_INFINITY, Math::max);
+    }
+}
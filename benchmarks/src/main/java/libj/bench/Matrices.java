@@ -0,0 +1,52 @@
+package libj.bench;
+
+import java.util.Random;
+import libj.math.Matrix;
+import libj.math.SqMatrix;
+
+/**
+ * Helpers for creating benchmark input.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+final class Matrices {
+    
+    private Matrices() {
+    }
+    
+    /**
+     * Creates a matrix with normally distributed elements.
+     * @param rows
+     * @param cols
+     * @param random
+     * @return 
+     */
+    static Matrix random(int rows, int cols, Random random) {
+        Matrix m = new Matrix(rows, cols);
+        fill(m, random);
+        return m;
+    }
+    
+    /**
+     * Creates a square matrix with normally distributed elements. The
+     * diagonal is shifted so the matrix is well-conditioned.
+     * @param dim
+     * @param random
+     * @return 
+     */
+    static SqMatrix randomSquare(int dim, Random random) {
+        SqMatrix m = new SqMatrix(dim);
+        fill(m, random);
+        for (int i = 1; i <= dim; i++) {
+            m.setElem(i, i, m.getElem(i, i) + dim);
+        }
+        return m;
+    }
+    
+    private static void fill(Matrix m, Random random) {
+        double[] elems = new double[m.rows() * m.cols()];
+        for (int i = 0; i < elems.length; i++) {
+            elems[i] = random.nextGaussian();
+        }
+        m.setAll(elems);
+    }
+}
@@ -0,0 +1,135 @@
+package libj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.math.FloatMatrix;
+import libj.math.Matrix;
+import libj.math.MatrixExecutor;
+import libj.math.MatrixExpr;
+import libj.math.SqMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the general operations in Matrix.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBenchmark {
+    
+    @Param({"4", "16", "128", "1024"})
+    public int size;
+    
+    private Matrix a;
+    
+    private Matrix b;
+    
+    private Matrix target;
+    
+    private Matrix identity;
+    
+    private Matrix product;
+    
+    private FloatMatrix floatA;
+    
+    private FloatMatrix floatB;
+    
+    private MatrixExecutor strassen;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        a = Matrices.random(size, size, random);
+        b = Matrices.random(size, size, random);
+        target = Matrices.random(size, size, random);
+        identity = SqMatrix.identity(size);
+        product = new Matrix(size, size);
+        floatA = FloatMatrix.fromMatrix(a);
+        floatB = FloatMatrix.fromMatrix(b);
+        strassen = MatrixExecutor.serial().withStrassen(MatrixExecutor.DEFAULT_STRASSEN_CUTOFF);
+    }
+    
+    @Benchmark
+    public Matrix mul() {
+        return Matrix.mul(a, b);
+    }
+    
+    @Benchmark
+    public Matrix mulStrassen() {
+        return strassen.mul(a, b);
+    }
+    
+    @Benchmark
+    public FloatMatrix mulFloat() {
+        return FloatMatrix.mul(floatA, floatB);
+    }
+    
+    @Benchmark
+    public Matrix mulInto() {
+        Matrix.mulInto(a, b, product);
+        return product;
+    }
+    
+    @Benchmark
+    public Matrix mulInPlace() {
+        target.mul(identity);
+        return target;
+    }
+    
+    @Benchmark
+    public Matrix mulScalar() {
+        target.mul(1.0000001);
+        return target;
+    }
+    
+    @Benchmark
+    public Matrix transpose() {
+        return a.transpose();
+    }
+    
+    @Benchmark
+    public Matrix add() {
+        target.add(a);
+        return target;
+    }
+    
+    @Benchmark
+    public Matrix sub() {
+        target.sub(a);
+        return target;
+    }
+    
+    @Benchmark
+    public Matrix combineEager() {
+        Matrix res = a.copy();
+        res.mul(0.5);
+        res.add(b);
+        res.sub(target);
+        return res;
+    }
+    
+    @Benchmark
+    public Matrix combineFused() {
+        return MatrixExpr.of(a).mul(0.5).add(b).sub(target).eval();
+    }
+    
+    @Benchmark
+    public Matrix subMat() {
+        return a.subMat(size / 2 + 1, size / 2 + 1);
+    }
+}
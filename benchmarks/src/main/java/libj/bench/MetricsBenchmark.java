@@ -0,0 +1,67 @@
+package libj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.math.Matrix;
+import libj.math.MatrixMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of MatrixMetrics on an allocation-free product, with the
+ * instrumentation turned off and on. Small sizes show the fixed cost per
+ * call, which is what matters for code doing many small operations.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    
+    @Param({"4", "64"})
+    public int size;
+    
+    @Param({"false", "true"})
+    public boolean enabled;
+    
+    private Matrix a;
+    
+    private Matrix b;
+    
+    private Matrix dest;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Random rnd = new Random(42);
+        a = Matrices.random(size, size, rnd);
+        b = Matrices.random(size, size, rnd);
+        dest = new Matrix(size, size);
+        MatrixMetrics.setEnabled(enabled);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MatrixMetrics.setEnabled(false);
+        MatrixMetrics.reset();
+    }
+    
+    @Benchmark
+    public Matrix mulInto() {
+        Matrix.mulInto(a, b, dest);
+        return dest;
+    }
+}
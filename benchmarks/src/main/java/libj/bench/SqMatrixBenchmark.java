@@ -0,0 +1,56 @@
+package libj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.math.Matrix;
+import libj.math.SqMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the square matrix operations in SqMatrix.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqMatrixBenchmark {
+    
+    @Param({"4", "16", "128", "1024"})
+    public int size;
+    
+    private SqMatrix m;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        m = Matrices.randomSquare(size, new Random(42));
+    }
+    
+    @Benchmark
+    public double det() {
+        return m.det();
+    }
+    
+    @Benchmark
+    public Matrix inv() {
+        return m.inv();
+    }
+    
+    @Benchmark
+    public Matrix subMat() {
+        return m.subMat(1, 1);
+    }
+}
@@ -0,0 +1,92 @@
+package libj.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.math.BandMatrix;
+import libj.math.Matrix;
+import libj.math.SqMatrix;
+import libj.math.SymmetricMatrix;
+import libj.math.TriangularMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the structured matrix types against the same matrices
+ * stored in full.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructuredBenchmark {
+    
+    @Param({"128", "1024"})
+    public int size;
+    
+    private SqMatrix dense;
+    
+    private BandMatrix band;
+    
+    private SqMatrix bandDense;
+    
+    private SymmetricMatrix symmetric;
+    
+    private TriangularMatrix triangular;
+    
+    private Matrix rhs;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        dense = Matrices.randomSquare(size, random);
+        band = BandMatrix.fromMatrix(dense, 2, 2);
+        bandDense = new SqMatrix(size);
+        band.copyInto(bandDense);
+        symmetric = SymmetricMatrix.fromMatrix(dense);
+        triangular = TriangularMatrix.fromMatrix(dense, false);
+        rhs = Matrices.random(size, 4, random);
+    }
+    
+    @Benchmark
+    public Matrix bandSolve() {
+        return band.solve(rhs);
+    }
+    
+    @Benchmark
+    public Matrix bandSolveDense() {
+        return bandDense.solve(rhs);
+    }
+    
+    @Benchmark
+    public Matrix bandMul() {
+        return Matrix.mul(band, rhs);
+    }
+    
+    @Benchmark
+    public Matrix bandMulDense() {
+        return Matrix.mul(bandDense, rhs);
+    }
+    
+    @Benchmark
+    public Matrix symmetricSolve() {
+        return symmetric.solve(rhs);
+    }
+    
+    @Benchmark
+    public double triangularDet() {
+        return triangular.det();
+    }
+}
@@ -0,0 +1,151 @@
+package libj.bench;
+
+import java.util.concurrent.TimeUnit;
+import libj.math.Matrix;
+import libj.math.SqMatrix;
+import libj.math.transform.d2.RotationMatrix;
+import libj.math.transform.d3.Matrix4;
+import libj.math.transform.d3.Quaternion;
+import libj.math.transform.d3.RotationXMatrix;
+import libj.math.transform.d3.RotationYMatrix;
+import libj.math.transform.d3.RotationZMatrix;
+import libj.math.transform.d3.TranslationMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for constructing and composing the transformation matrices.
+ * These are fixed-size, so they are not parameterized over matrix sizes.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+    
+    private double angle = 37.5;
+    
+    private SqMatrix rotX;
+    
+    private SqMatrix rotY;
+    
+    private SqMatrix translation;
+    
+    private Matrix point;
+    
+    private Matrix4 composed;
+    
+    private double[] points;
+    
+    private Quaternion quat;
+    
+    private Quaternion target;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        rotX = new RotationXMatrix(angle);
+        rotY = new RotationYMatrix(angle);
+        translation = new TranslationMatrix(1, 2, 3);
+        point = new Matrix(new double[][]{{1}, {2}, {3}, {1}});
+        composed = new Matrix4();
+        quat = new Quaternion();
+        target = new Quaternion().setEuler(10, 20, 30);
+        points = new double[3 * 1024];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = i % 17;
+        }
+    }
+    
+    @Benchmark
+    public Matrix rotation2d() {
+        return new RotationMatrix(angle);
+    }
+    
+    @Benchmark
+    public Matrix rotationX() {
+        return new RotationXMatrix(angle);
+    }
+    
+    @Benchmark
+    public Matrix rotationY() {
+        return new RotationYMatrix(angle);
+    }
+    
+    @Benchmark
+    public Matrix rotationZ() {
+        return new RotationZMatrix(angle);
+    }
+    
+    @Benchmark
+    public Matrix translation() {
+        return new TranslationMatrix(1, 2, 3);
+    }
+    
+    @Benchmark
+    public Matrix compose() {
+        return Matrix.mul(Matrix.mul(translation, rotY), rotX);
+    }
+    
+    @Benchmark
+    public Matrix composeInPlace() {
+        Matrix m = SqMatrix.identity(4);
+        m.mul(translation);
+        m.mul(rotY);
+        m.mul(rotX);
+        return m;
+    }
+    
+    @Benchmark
+    public Matrix transformPoint() {
+        return Matrix.mul(rotX, point);
+    }
+    
+    @Benchmark
+    public Matrix4 composeMatrix4() {
+        return composed.loadIdentity().translate(1, 2, 3).rotateY(angle).rotateX(angle);
+    }
+    
+    @Benchmark
+    public double[] transformPoints() {
+        composed.transformPoints(points);
+        return points;
+    }
+    
+    @Benchmark
+    public Quaternion composeQuaternion() {
+        return quat.loadIdentity().rotateY(angle).rotateX(angle);
+    }
+    
+    @Benchmark
+    public Quaternion eulerQuaternion() {
+        return quat.setEuler(angle, angle, angle);
+    }
+    
+    @Benchmark
+    public Quaternion slerp() {
+        return quat.loadIdentity().slerp(target, 0.3);
+    }
+    
+    @Benchmark
+    public Matrix4 quaternionToMatrix4() {
+        return target.toMatrix4(composed);
+    }
+    
+    @Benchmark
+    public double[] rotateVectors() {
+        target.rotateVectors(points);
+        return points;
+    }
+}
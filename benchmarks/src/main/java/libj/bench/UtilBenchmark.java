@@ -0,0 +1,51 @@
+package libj.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import libj.Util;
+import libj.math.Matrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the helpers in Util.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+    
+    @Param({"4", "16", "128", "1024"})
+    public int size;
+    
+    private Matrix m;
+    
+    private PrintStream out;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        m = Matrices.random(size, size, new Random(42));
+        out = new PrintStream(OutputStream.nullOutputStream());
+    }
+    
+    @Benchmark
+    public void printMatrix() {
+        Util.printMatrix(m, out);
+    }
+}
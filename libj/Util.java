@@ -1,6 +1,7 @@
 package libj;
 
 import java.io.PrintStream;
+import libj.math.FloatMatrix;
 import libj.math.Matrix;
 
 /**
@@ -25,41 +26,74 @@ public class Util {
      * @see #printMatrix(libj.math.Matrix) 
      */
     public static void printMatrix(Matrix m, PrintStream out) {
+        printMatrix(m.rows(), m.cols(), m::getElem, out);
+    }
+    
+    /**
+     * Pretty-prints a single-precision matrix to System.out.
+     * @param m 
+     * @see #printMatrix(libj.math.FloatMatrix, java.io.PrintStream) 
+     */
+    public static void printMatrix(FloatMatrix m) {
+        printMatrix(m, System.out);
+    }
+    
+    /**
+     * Pretty-prints a single-precision matrix to the given PrintStream.
+     * @param m
+     * @param out 
+     * @see #printMatrix(libj.math.FloatMatrix) 
+     */
+    public static void printMatrix(FloatMatrix m, PrintStream out) {
+        printMatrix(m.rows(), m.cols(), m::getElem, out);
+    }
+    
+    /**
+     * Reads the element in the given row and column of a matrix, counting
+     * from one.
+     */
+    private interface ElementReader {
+        double get(int row, int col);
+    }
+    
+    private static void printMatrix(int rows, int cols, ElementReader m, PrintStream out) {
         int cellWidth = 0;
-        for (double e : m.getElements()) {
-            int len = Double.toString(round3dec(e)).length();
-            if (len > cellWidth) {
-                cellWidth = len;
+        for (int r = 1; r <= rows; r++) {
+            for (int c = 1; c <= cols; c++) {
+                int len = Double.toString(round3dec(m.get(r, c))).length();
+                if (len > cellWidth) {
+                    cellWidth = len;
+                }
             }
         }
         
         cellWidth += 2;
         
-        for (int r = 1; r <= m.rows(); r++) {
+        for (int r = 1; r <= rows; r++) {
             out.print("| ");
             
-            if (m.cols() == 1) {
-                out.print(padCenter(Double.toString(round3dec(m.getElem(r, 1))), cellWidth, ' '));
+            if (cols == 1) {
+                out.print(padCenter(Double.toString(round3dec(m.get(r, 1))), cellWidth, ' '));
             }
             
             else {
-                for (int c = 1; c <= m.cols(); c++) {
+                for (int c = 1; c <= cols; c++) {
                     if (c == 1) {
-                        out.print(padRight(Double.toString(round3dec(m.getElem(r, c))), cellWidth, ' '));
+                        out.print(padRight(Double.toString(round3dec(m.get(r, c))), cellWidth, ' '));
                     }
-                    else if (c == m.cols()) {
-                        out.print(padLeft(Double.toString(round3dec(m.getElem(r, c))), cellWidth, ' '));
+                    else if (c == cols) {
+                        out.print(padLeft(Double.toString(round3dec(m.get(r, c))), cellWidth, ' '));
                     }
                     else {
-                        out.print(padCenter(Double.toString(round3dec(m.getElem(r, c))), cellWidth, ' '));
+                        out.print(padCenter(Double.toString(round3dec(m.get(r, c))), cellWidth, ' '));
                     }
                 }
             }
             
             out.print(" |\n");
             
-            if (r != m.rows()) {
-                out.print("|" + padCenter("", cellWidth * m.cols() + 2, ' ') + "|\n");
+            if (r != rows) {
+                out.print("|" + padCenter("", cellWidth * cols + 2, ' ') + "|\n");
             }
         }
     }
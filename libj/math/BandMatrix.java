@@ -0,0 +1,390 @@
+package libj.math;
+
+import java.util.Arrays;
+
+/**
+ * A n x n banded matrix, where element (r, c) can only be non-zero when
+ * -lower &lt;= c - r &lt;= upper. Each row stores lower + upper + 1 elements,
+ * so memory use and the cost of multiplication grow with n times the
+ * bandwidth instead of n^2.
+ * <br>
+ * Systems are solved with an LU decomposition with partial pivoting which
+ * stays within the band, widened by lower columns to make room for row
+ * interchanges, in O(n x lower x (lower + upper)) plus O(n x (2 x lower +
+ * upper)) per right-hand side. Temporary storage is taken from the
+ * {@link MatrixWorkspace} of the calling thread.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see StructuredMatrix
+ */
+public class BandMatrix extends StructuredMatrix {
+
+    /**
+     * Number of diagonals below the main diagonal.
+     */
+    private final int lower;
+
+    /**
+     * Number of diagonals above the main diagonal.
+     */
+    private final int upper;
+
+    /**
+     * Creates a new banded matrix with the given dimension and bandwidths.
+     * All elements are set to zero.
+     * @param dim
+     * @param lower Number of diagonals below the main diagonal.
+     * @param upper Number of diagonals above the main diagonal.
+     */
+    public BandMatrix(int dim, int lower, int upper) {
+        super(dim, bandSize(dim, lower, upper));
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    private static int bandSize(int dim, int lower, int upper) {
+        if (lower < 0 || upper < 0 || lower >= dim || upper >= dim) {
+            throw new IllegalArgumentException("Bandwidth must be within the matrix");
+        }
+        long size = (long) dim * (lower + upper + 1);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Dimension is too large");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Creates a banded matrix from the elements of a square matrix within
+     * the given band, ignoring all other elements.
+     * @param m
+     * @param lower
+     * @param upper
+     * @return
+     */
+    public static BandMatrix fromMatrix(Matrix m, int lower, int upper) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        BandMatrix res = new BandMatrix(m.rows, lower, upper);
+        for (int r = 0; r < res.rows; r++) {
+            int off = res.rowOffset(r);
+            for (int c = res.rowFrom(r); c < res.rowTo(r); c++) {
+                res.values[off + c] = m.get0(r, c);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of diagonals below the main diagonal.
+     * @return
+     */
+    public int lowerBandwidth() {
+        return lower;
+    }
+
+    /**
+     * Returns the number of diagonals above the main diagonal.
+     * @return
+     */
+    public int upperBandwidth() {
+        return upper;
+    }
+
+    @Override
+    int rowFrom(int r) {
+        return Math.max(0, r - lower);
+    }
+
+    @Override
+    int rowTo(int r) {
+        return Math.min(rows, r + upper + 1);
+    }
+
+    @Override
+    int rowOffset(int r) {
+        return r * (lower + upper + 1) + lower - r;
+    }
+
+    @Override
+    boolean sameStructure(StructuredMatrix other) {
+        if (!super.sameStructure(other)) {
+            return false;
+        }
+        BandMatrix b = (BandMatrix) other;
+        return b.lower == lower && b.upper == upper;
+    }
+
+    @Override
+    long workPerRow() {
+        return lower + upper + 1;
+    }
+
+    /**
+     * Returns the number of elements per row in the factored band, which has
+     * room for lower extra diagonals above the band.
+     */
+    private int luWidth() {
+        return 2 * lower + upper + 1;
+    }
+
+    /**
+     * Copies the band into lu, laid out with luWidth() elements per row and
+     * element (r, c) at r * luWidth() + c - r + lower.
+     */
+    private void unpack(double[] lu) {
+        int w = lower + upper + 1;
+        int lw = luWidth();
+        Arrays.fill(lu, 0, rows * lw, 0);
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(values, r * w, lu, r * lw, w);
+        }
+    }
+
+    /**
+     * Factors the band in lu, laid out as by unpack, in place. Row
+     * interchanges only move elements right of the current column, so the
+     * multipliers stay where they were computed, and are applied to a
+     * right-hand side together with the interchanges in the same order.
+     * @return The sign of the permutation.
+     */
+    private static int factor(double[] lu, int n, int kl, int ku, int[] piv) {
+        int lw = 2 * kl + ku + 1;
+        int sign = 1;
+        for (int k = 0; k < n; k++) {
+            int iEnd = Math.min(n, k + kl + 1);
+            int cEnd = Math.min(n, k + kl + ku + 1);
+            int p = k;
+            double max = Math.abs(lu[k * lw + kl]);
+            for (int i = k + 1; i < iEnd; i++) {
+                double v = Math.abs(lu[i * lw + k - i + kl]);
+                if (v > max) {
+                    max = v;
+                    p = i;
+                }
+            }
+            piv[k] = p;
+            if (p != k) {
+                for (int c = k; c < cEnd; c++) {
+                    int a = k * lw + c - k + kl;
+                    int b = p * lw + c - p + kl;
+                    double t = lu[a];
+                    lu[a] = lu[b];
+                    lu[b] = t;
+                }
+                sign = -sign;
+            }
+
+            double d = lu[k * lw + kl];
+            if (d == 0) {
+                continue;
+            }
+            for (int i = k + 1; i < iEnd; i++) {
+                int ik = i * lw + k - i + kl;
+                double f = lu[ik] / d;
+                lu[ik] = f;
+                if (f == 0) {
+                    continue;
+                }
+                for (int c = k + 1; c < cEnd; c++) {
+                    lu[ik + c - k] -= f * lu[k * lw + c - k + kl];
+                }
+            }
+        }
+        return sign;
+    }
+
+    private static boolean isSingular(double[] lu, int n, int kl, int ku) {
+        int lw = 2 * kl + ku + 1;
+        for (int k = 0; k < n; k++) {
+            if (lu[k * lw + kl] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the n x m right-hand side x with the solution, using the
+     * factors from factor.
+     */
+    private static void solveInPlace(double[] lu, int n, int kl, int ku, int[] piv, double[] x, int m) {
+        int lw = 2 * kl + ku + 1;
+        for (int k = 0; k < n; k++) {
+            int km = k * m;
+            int p = piv[k];
+            if (p != k) {
+                int pm = p * m;
+                for (int j = 0; j < m; j++) {
+                    double t = x[km + j];
+                    x[km + j] = x[pm + j];
+                    x[pm + j] = t;
+                }
+            }
+            int iEnd = Math.min(n, k + kl + 1);
+            for (int i = k + 1; i < iEnd; i++) {
+                double f = lu[i * lw + k - i + kl];
+                if (f == 0) {
+                    continue;
+                }
+                int im = i * m;
+                for (int j = 0; j < m; j++) {
+                    x[im + j] -= f * x[km + j];
+                }
+            }
+        }
+
+        for (int i = n - 1; i >= 0; i--) {
+            int im = i * m;
+            int cEnd = Math.min(n, i + kl + ku + 1);
+            for (int c = i + 1; c < cEnd; c++) {
+                double f = lu[i * lw + c - i + kl];
+                if (f == 0) {
+                    continue;
+                }
+                int cm = c * m;
+                for (int j = 0; j < m; j++) {
+                    x[im + j] -= f * x[cm + j];
+                }
+            }
+            double d = lu[i * lw + kl];
+            for (int j = 0; j < m; j++) {
+                x[im + j] /= d;
+            }
+        }
+    }
+
+    /**
+     * Calculates the determinant of this matrix from its banded LU
+     * decomposition.
+     * @return
+     */
+    @Override
+    public double det() {
+        int n = rows;
+        int lw = luWidth();
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * lw);
+        int[] piv = ws.acquireInts(n);
+        unpack(lu);
+        double det = factor(lu, n, lower, upper, piv);
+        for (int k = 0; k < n; k++) {
+            det *= lu[k * lw + lower];
+        }
+        ws.release(lu);
+        ws.releaseInts(piv);
+        return det;
+    }
+
+    /**
+     * Generates the inverse of this matrix. The inverse of a banded matrix is
+     * in general full, so it is returned as a full matrix.
+     * @return the inverse, or null if this matrix is singular.
+     */
+    @Override
+    public SqMatrix inv() {
+        SqMatrix res = new SqMatrix(rows);
+        return invInto(res) ? res : null;
+    }
+
+    /**
+     * Stores the inverse of this matrix in dest, which must have the same
+     * dimensions and be able to hold a full matrix.
+     * @param dest
+     * @return false if this matrix is singular, in which case dest is left
+     * unchanged.
+     */
+    @Override
+    public boolean invInto(Matrix dest) {
+        if (dest.rows != rows || dest.cols != cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+
+        int n = rows;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * luWidth());
+        int[] piv = ws.acquireInts(n);
+        try {
+            unpack(lu);
+            factor(lu, n, lower, upper, piv);
+            if (isSingular(lu, n, lower, upper)) {
+                return false;
+            }
+
+            double[] x = dest.isContiguous() ? dest.elem : ws.acquire(n * n);
+            Arrays.fill(x, 0, n * n, 0);
+            for (int i = 0; i < n * n; i += n + 1) {
+                x[i] = 1;
+            }
+            solveInPlace(lu, n, lower, upper, piv, x, n);
+            if (x != dest.elem) {
+                dest.setAll(x);
+                ws.release(x);
+            }
+            return true;
+        }
+        finally {
+            ws.release(lu);
+            ws.releaseInts(piv);
+        }
+    }
+
+    /**
+     * Solves [this] x [X] = [b] for X. Each column of b is a separate
+     * right-hand side.
+     * @param b
+     * @return X, or null if this matrix is singular.
+     */
+    @Override
+    public Matrix solve(Matrix b) {
+        checkRhs(b);
+
+        int n = rows;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * luWidth());
+        int[] piv = ws.acquireInts(n);
+        try {
+            unpack(lu);
+            factor(lu, n, lower, upper, piv);
+            if (isSingular(lu, n, lower, upper)) {
+                return null;
+            }
+            Matrix res = new Matrix(n, b.cols);
+            b.copyTo(res.elem);
+            solveInPlace(lu, n, lower, upper, piv, res.elem, b.cols);
+            return res;
+        }
+        finally {
+            ws.release(lu);
+            ws.releaseInts(piv);
+        }
+    }
+
+    /**
+     * Returns the transpose of this matrix, which has the lower and upper
+     * bandwidths swapped.
+     * @return
+     */
+    @Override
+    public BandMatrix transpose() {
+        BandMatrix res = new BandMatrix(rows, upper, lower);
+        for (int r = 0; r < rows; r++) {
+            int off = rowOffset(r);
+            for (int c = rowFrom(r); c < rowTo(r); c++) {
+                res.values[res.rowOffset(c) + r] = values[off + c];
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public BandMatrix structuredCopy() {
+        BandMatrix res = new BandMatrix(rows, lower, upper);
+        System.arraycopy(values, 0, res.values, 0, values.length);
+        return res;
+    }
+
+    @Override
+    String describe() {
+        return "lower=" + lower + ", upper=" + upper;
+    }
+}
@@ -0,0 +1,342 @@
+package libj.math;
+
+import java.util.Arrays;
+
+/**
+ * Kernels for {@link MatrixBatch}, working on batches of n x n matrices
+ * stored as structure of arrays: element (r, c) of matrix i is at
+ * d[(r * n + c) * size + i]. Each kernel handles matrices from (inclusive)
+ * to (exclusive), with a loop over the matrices innermost, so consecutive
+ * iterations read consecutive elements and the JIT can vectorize the loop.
+ * <br>
+ * Determinants and inverses of 1 x 1 to 4 x 4 matrices use closed forms,
+ * without pivoting. Larger matrices are copied out one at a time and
+ * factored with {@link LUDecomposition}. All indices used here are
+ * zero-based.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see MatrixBatch
+ */
+final class BatchKernel {
+
+    private BatchKernel() {
+    }
+
+    /**
+     * Stores the determinant of matrix i of the batch in det[i].
+     * @param d
+     * @param n
+     * @param size
+     * @param det
+     * @param from
+     * @param to
+     */
+    static void det(double[] d, int n, int size, double[] det, int from, int to) {
+        switch (n) {
+            case 1:
+                System.arraycopy(d, from, det, from, to - from);
+                break;
+            case 2:
+                det2(d, size, det, from, to);
+                break;
+            case 3:
+                det3(d, size, det, from, to);
+                break;
+            case 4:
+                det4(d, size, det, from, to);
+                break;
+            default:
+                detLU(d, n, size, det, from, to);
+        }
+    }
+
+    /**
+     * Stores the inverse of matrix i of the batch d in matrix i of res, which
+     * may be d itself. The inverses of singular matrices are filled with NaN.
+     * @param d
+     * @param n
+     * @param size
+     * @param res
+     * @param from
+     * @param to
+     * @return The number of singular matrices.
+     */
+    static int inv(double[] d, int n, int size, double[] res, int from, int to) {
+        switch (n) {
+            case 1:
+                return inv1(d, res, from, to);
+            case 2:
+                return inv2(d, size, res, from, to);
+            case 3:
+                return inv3(d, size, res, from, to);
+            case 4:
+                return inv4(d, size, res, from, to);
+            default:
+                return invLU(d, n, size, res, from, to);
+        }
+    }
+
+    /**
+     * Stores the product of matrix i of a and matrix i of b in matrix i of
+     * res, which must not be a or b.
+     * @param a
+     * @param b
+     * @param res
+     * @param n
+     * @param size
+     * @param from
+     * @param to
+     */
+    static void mul(double[] a, double[] b, double[] res, int n, int size, int from, int to) {
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                int o = (r * n + c) * size;
+                int ak = r * n * size;
+                int bk = c * size;
+                for (int i = from; i < to; i++) {
+                    res[o + i] = a[ak + i] * b[bk + i];
+                }
+                for (int k = 1; k < n; k++) {
+                    ak += size;
+                    bk += n * size;
+                    for (int i = from; i < to; i++) {
+                        res[o + i] += a[ak + i] * b[bk + i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the transpose of matrix i of d in matrix i of res, which may be
+     * d itself.
+     * @param d
+     * @param res
+     * @param n
+     * @param size
+     * @param from
+     * @param to
+     */
+    static void transpose(double[] d, double[] res, int n, int size, int from, int to) {
+        int len = to - from;
+        for (int r = 0; r < n; r++) {
+            int diag = (r * n + r) * size;
+            if (d != res) {
+                System.arraycopy(d, diag + from, res, diag + from, len);
+            }
+            for (int c = r + 1; c < n; c++) {
+                int rc = (r * n + c) * size;
+                int cr = (c * n + r) * size;
+                for (int i = from; i < to; i++) {
+                    double t = d[rc + i];
+                    res[rc + i] = d[cr + i];
+                    res[cr + i] = t;
+                }
+            }
+        }
+    }
+
+    private static void det2(double[] d, int size, double[] det, int from, int to) {
+        int o01 = size, o10 = 2 * size, o11 = 3 * size;
+        for (int i = from; i < to; i++) {
+            det[i] = d[i] * d[o11 + i] - d[o01 + i] * d[o10 + i];
+        }
+    }
+
+    private static void det3(double[] d, int size, double[] det, int from, int to) {
+        int s = size;
+        for (int i = from; i < to; i++) {
+            double a00 = d[i], a01 = d[s + i], a02 = d[2 * s + i];
+            double a10 = d[3 * s + i], a11 = d[4 * s + i], a12 = d[5 * s + i];
+            double a20 = d[6 * s + i], a21 = d[7 * s + i], a22 = d[8 * s + i];
+            det[i] = a00 * (a11 * a22 - a12 * a21)
+                   + a01 * (a12 * a20 - a10 * a22)
+                   + a02 * (a10 * a21 - a11 * a20);
+        }
+    }
+
+    private static void det4(double[] d, int size, double[] det, int from, int to) {
+        int s = size;
+        for (int i = from; i < to; i++) {
+            double a00 = d[i], a01 = d[s + i], a02 = d[2 * s + i], a03 = d[3 * s + i];
+            double a10 = d[4 * s + i], a11 = d[5 * s + i], a12 = d[6 * s + i], a13 = d[7 * s + i];
+            double a20 = d[8 * s + i], a21 = d[9 * s + i], a22 = d[10 * s + i], a23 = d[11 * s + i];
+            double a30 = d[12 * s + i], a31 = d[13 * s + i], a32 = d[14 * s + i], a33 = d[15 * s + i];
+            double s0 = a00 * a11 - a10 * a01;
+            double s1 = a00 * a12 - a10 * a02;
+            double s2 = a00 * a13 - a10 * a03;
+            double s3 = a01 * a12 - a11 * a02;
+            double s4 = a01 * a13 - a11 * a03;
+            double s5 = a02 * a13 - a12 * a03;
+            double c5 = a22 * a33 - a32 * a23;
+            double c4 = a21 * a33 - a31 * a23;
+            double c3 = a21 * a32 - a31 * a22;
+            double c2 = a20 * a33 - a30 * a23;
+            double c1 = a20 * a32 - a30 * a22;
+            double c0 = a20 * a31 - a30 * a21;
+            det[i] = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        }
+    }
+
+    private static int inv1(double[] d, double[] res, int from, int to) {
+        int singular = 0;
+        for (int i = from; i < to; i++) {
+            double a = d[i];
+            singular += a == 0 ? 1 : 0;
+            res[i] = a == 0 ? Double.NaN : 1 / a;
+        }
+        return singular;
+    }
+
+    private static int inv2(double[] d, int size, double[] res, int from, int to) {
+        int o01 = size, o10 = 2 * size, o11 = 3 * size;
+        int singular = 0;
+        for (int i = from; i < to; i++) {
+            double a00 = d[i], a01 = d[o01 + i], a10 = d[o10 + i], a11 = d[o11 + i];
+            double det = a00 * a11 - a01 * a10;
+            singular += det == 0 ? 1 : 0;
+            double id = det == 0 ? Double.NaN : 1 / det;
+            res[i] = a11 * id;
+            res[o01 + i] = -a01 * id;
+            res[o10 + i] = -a10 * id;
+            res[o11 + i] = a00 * id;
+        }
+        return singular;
+    }
+
+    private static int inv3(double[] d, int size, double[] res, int from, int to) {
+        int s = size;
+        int singular = 0;
+        for (int i = from; i < to; i++) {
+            double a00 = d[i], a01 = d[s + i], a02 = d[2 * s + i];
+            double a10 = d[3 * s + i], a11 = d[4 * s + i], a12 = d[5 * s + i];
+            double a20 = d[6 * s + i], a21 = d[7 * s + i], a22 = d[8 * s + i];
+            double c00 = a11 * a22 - a12 * a21;
+            double c01 = a12 * a20 - a10 * a22;
+            double c02 = a10 * a21 - a11 * a20;
+            double det = a00 * c00 + a01 * c01 + a02 * c02;
+            singular += det == 0 ? 1 : 0;
+            double id = det == 0 ? Double.NaN : 1 / det;
+            res[i] = c00 * id;
+            res[s + i] = (a02 * a21 - a01 * a22) * id;
+            res[2 * s + i] = (a01 * a12 - a02 * a11) * id;
+            res[3 * s + i] = c01 * id;
+            res[4 * s + i] = (a00 * a22 - a02 * a20) * id;
+            res[5 * s + i] = (a02 * a10 - a00 * a12) * id;
+            res[6 * s + i] = c02 * id;
+            res[7 * s + i] = (a01 * a20 - a00 * a21) * id;
+            res[8 * s + i] = (a00 * a11 - a01 * a10) * id;
+        }
+        return singular;
+    }
+
+    /**
+     * Inverts 4 x 4 matrices by expanding along 2 x 2 minors of the first
+     * two and last two rows, which shares most of the work between the
+     * determinant and the adjugate.
+     */
+    private static int inv4(double[] d, int size, double[] res, int from, int to) {
+        int s = size;
+        int singular = 0;
+        for (int i = from; i < to; i++) {
+            double a00 = d[i], a01 = d[s + i], a02 = d[2 * s + i], a03 = d[3 * s + i];
+            double a10 = d[4 * s + i], a11 = d[5 * s + i], a12 = d[6 * s + i], a13 = d[7 * s + i];
+            double a20 = d[8 * s + i], a21 = d[9 * s + i], a22 = d[10 * s + i], a23 = d[11 * s + i];
+            double a30 = d[12 * s + i], a31 = d[13 * s + i], a32 = d[14 * s + i], a33 = d[15 * s + i];
+            double s0 = a00 * a11 - a10 * a01;
+            double s1 = a00 * a12 - a10 * a02;
+            double s2 = a00 * a13 - a10 * a03;
+            double s3 = a01 * a12 - a11 * a02;
+            double s4 = a01 * a13 - a11 * a03;
+            double s5 = a02 * a13 - a12 * a03;
+            double c5 = a22 * a33 - a32 * a23;
+            double c4 = a21 * a33 - a31 * a23;
+            double c3 = a21 * a32 - a31 * a22;
+            double c2 = a20 * a33 - a30 * a23;
+            double c1 = a20 * a32 - a30 * a22;
+            double c0 = a20 * a31 - a30 * a21;
+            double det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+            singular += det == 0 ? 1 : 0;
+            double id = det == 0 ? Double.NaN : 1 / det;
+            res[i] = (a11 * c5 - a12 * c4 + a13 * c3) * id;
+            res[s + i] = (-a01 * c5 + a02 * c4 - a03 * c3) * id;
+            res[2 * s + i] = (a31 * s5 - a32 * s4 + a33 * s3) * id;
+            res[3 * s + i] = (-a21 * s5 + a22 * s4 - a23 * s3) * id;
+            res[4 * s + i] = (-a10 * c5 + a12 * c2 - a13 * c1) * id;
+            res[5 * s + i] = (a00 * c5 - a02 * c2 + a03 * c1) * id;
+            res[6 * s + i] = (-a30 * s5 + a32 * s2 - a33 * s1) * id;
+            res[7 * s + i] = (a20 * s5 - a22 * s2 + a23 * s1) * id;
+            res[8 * s + i] = (a10 * c4 - a11 * c2 + a13 * c0) * id;
+            res[9 * s + i] = (-a00 * c4 + a01 * c2 - a03 * c0) * id;
+            res[10 * s + i] = (a30 * s4 - a31 * s2 + a33 * s0) * id;
+            res[11 * s + i] = (-a20 * s4 + a21 * s2 - a23 * s0) * id;
+            res[12 * s + i] = (-a10 * c3 + a11 * c1 - a12 * c0) * id;
+            res[13 * s + i] = (a00 * c3 - a01 * c1 + a02 * c0) * id;
+            res[14 * s + i] = (-a30 * s3 + a31 * s1 - a32 * s0) * id;
+            res[15 * s + i] = (a20 * s3 - a21 * s1 + a22 * s0) * id;
+        }
+        return singular;
+    }
+
+    private static void detLU(double[] d, int n, int size, double[] det, int from, int to) {
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        for (int i = from; i < to; i++) {
+            gather(d, n * n, size, i, lu);
+            double scale = LUDecomposition.maxAbs(lu, n * n);
+            double res = LUDecomposition.factor(lu, n, piv);
+            if (LUDecomposition.isSingular(lu, n, scale)) {
+                det[i] = 0;
+                continue;
+            }
+            for (int k = 0; k < n * n; k += n + 1) {
+                res *= lu[k];
+            }
+            det[i] = res;
+        }
+        ws.release(lu);
+        ws.releaseInts(piv);
+    }
+
+    private static int invLU(double[] d, int n, int size, double[] res, int from, int to) {
+        int nn = n * n;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(nn);
+        double[] x = ws.acquire(nn);
+        int[] piv = ws.acquireInts(n);
+        int singular = 0;
+        for (int i = from; i < to; i++) {
+            gather(d, nn, size, i, lu);
+            double scale = LUDecomposition.maxAbs(lu, nn);
+            LUDecomposition.factor(lu, n, piv);
+            if (LUDecomposition.isSingular(lu, n, scale)) {
+                singular++;
+                for (int e = 0; e < nn; e++) {
+                    res[e * size + i] = Double.NaN;
+                }
+                continue;
+            }
+            Arrays.fill(x, 0);
+            for (int k = 0; k < n; k++) {
+                x[k * n + piv[k]] = 1;
+            }
+            LUDecomposition.solveInPlace(lu, n, x, n);
+            for (int e = 0; e < nn; e++) {
+                res[e * size + i] = x[e];
+            }
+        }
+        ws.release(lu);
+        ws.release(x);
+        ws.releaseInts(piv);
+        return singular;
+    }
+
+    /**
+     * Copies the len elements of matrix i into dest, row-first.
+     */
+    private static void gather(double[] d, int len, int size, int i, double[] dest) {
+        for (int e = 0; e < len; e++) {
+            dest[e] = d[e * size + i];
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package libj.math;
+
+/**
+ * A view of a rectangular block of a matrix. Element (r, c) of the view is
+ * element (row + r, col + c) of the parent, where row and col are the
+ * position of the block.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix#blockView(int, int, int, int)
+ */
+public class BlockView extends MatrixView {
+    
+    /**
+     * Zero-based row in the parent of the block's first row.
+     */
+    private final int row;
+    
+    /**
+     * Zero-based column in the parent of the block's first column.
+     */
+    private final int col;
+    
+    BlockView(Matrix parent, int row, int col, int rows, int cols) {
+        super(parent, rows, cols);
+        this.row = row;
+        this.col = col;
+    }
+    
+    @Override
+    double get0(int r, int c) {
+        return parent.get0(row + r, col + c);
+    }
+    
+    @Override
+    void set0(int r, int c, double value) {
+        parent.set0(row + r, col + c, value);
+    }
+    
+    @Override
+    boolean isStrided() {
+        return parent.isStrided();
+    }
+    
+    @Override
+    double[] data() {
+        return parent.data();
+    }
+    
+    @Override
+    int offset() {
+        return parent.offset() + row * parent.rowStride() + col * parent.colStride();
+    }
+    
+    @Override
+    int rowStride() {
+        return parent.rowStride();
+    }
+    
+    @Override
+    int colStride() {
+        return parent.colStride();
+    }
+}
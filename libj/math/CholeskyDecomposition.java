@@ -0,0 +1,298 @@
+package libj.math;
+
+/**
+ * Cholesky decomposition of a symmetric positive definite matrix, so that
+ * A = L x L^T, where L is lower triangular with a positive diagonal. It takes
+ * half the work of an LU decomposition, needs no pivoting, and doubles as a
+ * test for positive definiteness. Once created, the decomposition can solve
+ * any number of linear systems, each in O(n^2), without forming the inverse.
+ * <br>
+ * The factorization works on blocks of {@link #BLOCK_SIZE} columns. Each
+ * block is factored on its own, and its columns are then subtracted from the
+ * rest of the matrix in one pass, row by row, which keeps the elements being
+ * updated in cache and is split across threads by the default
+ * {@link MatrixExecutor}. Every element is updated in the same order either
+ * way, so the result does not depend on the executor.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see SqMatrix#cholesky()
+ */
+public class CholeskyDecomposition {
+
+    /**
+     * Number of columns factored together before updating the rest of the
+     * matrix.
+     */
+    public static final int BLOCK_SIZE = 64;
+
+    /**
+     * L in the lower triangle of a row-major array. The elements above the
+     * diagonal are undefined.
+     */
+    private final double[] l;
+
+    /**
+     * Dimension of the decomposed matrix.
+     */
+    private final int n;
+
+    /**
+     * Whether the decomposed matrix is positive definite.
+     */
+    private final boolean spd;
+
+    /**
+     * Creates the Cholesky decomposition of the given square matrix, which
+     * may also be a view or structured matrix. Only the elements on and
+     * below the diagonal are read, and the matrix is assumed to be
+     * symmetric. The matrix itself is not changed.
+     * @param m
+     */
+    public CholeskyDecomposition(Matrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+
+        n = m.rows;
+        l = new double[n * n];
+        m.copyTo(l);
+        spd = factor(l, n);
+    }
+
+    /**
+     * Factors the n x n matrix whose lower triangle is in a in place,
+     * leaving L in the lower triangle. The elements above the diagonal are
+     * not read, and are left unchanged.
+     * @param a
+     * @param n
+     * @return false if the matrix is not positive definite, in which case
+     * the contents of a are undefined.
+     */
+    static boolean factor(double[] a, int n) {
+        MatrixExecutor exec = MatrixExecutor.getDefault();
+        for (int kk = 0; kk < n; kk += BLOCK_SIZE) {
+            int kEnd = Math.min(kk + BLOCK_SIZE, n);
+
+            for (int j = kk; j < kEnd; j++) {
+                int jn = j * n;
+                double d = a[jn + j];
+                for (int k = kk; k < j; k++) {
+                    d -= a[jn + k] * a[jn + k];
+                }
+                if (!(d > 0)) {
+                    return false;
+                }
+                d = Math.sqrt(d);
+                a[jn + j] = d;
+                for (int i = j + 1; i < kEnd; i++) {
+                    int in = i * n;
+                    double s = a[in + j];
+                    for (int k = kk; k < j; k++) {
+                        s -= a[in + k] * a[jn + k];
+                    }
+                    a[in + j] = s / d;
+                }
+            }
+
+            if (kEnd == n) {
+                break;
+            }
+
+            int k0 = kk;
+            int k1 = kEnd;
+            int width = k1 - k0;
+            exec.forRange(n - k1, (long) width * width, (r0, r1) ->
+                solvePanel(a, n, k0, k1, k1 + r0, k1 + r1));
+            exec.forRange(n - k1, (long) width * (n - k1) / 2, (r0, r1) ->
+                updateTrailing(a, n, k0, k1, k1 + r0, k1 + r1));
+        }
+        return true;
+    }
+
+    /**
+     * Computes columns kk to kEnd of L in rows rowFrom to rowTo, below the
+     * block just factored.
+     */
+    private static void solvePanel(double[] a, int n, int kk, int kEnd, int rowFrom, int rowTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            int in = i * n;
+            for (int j = kk; j < kEnd; j++) {
+                int jn = j * n;
+                double s = a[in + j];
+                for (int k = kk; k < j; k++) {
+                    s -= a[in + k] * a[jn + k];
+                }
+                a[in + j] = s / a[jn + j];
+            }
+        }
+    }
+
+    /**
+     * Subtracts the contribution of columns kk to kEnd from the lower
+     * triangle of rows rowFrom to rowTo, right of the block.
+     */
+    private static void updateTrailing(double[] a, int n, int kk, int kEnd, int rowFrom, int rowTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            int in = i * n;
+            for (int j = kEnd; j <= i; j++) {
+                int jn = j * n;
+                double s = 0;
+                for (int k = kk; k < kEnd; k++) {
+                    s += a[in + k] * a[jn + k];
+                }
+                a[in + j] -= s;
+            }
+        }
+    }
+
+    /**
+     * Returns the dimension of the decomposed matrix.
+     * @return
+     */
+    public int dim() {
+        return n;
+    }
+
+    /**
+     * Checks if the decomposed matrix is positive definite. If not, the
+     * decomposition can't be used to solve systems.
+     * @return
+     */
+    public boolean isPositiveDefinite() {
+        return spd;
+    }
+
+    /**
+     * Calculates the determinant of the decomposed matrix, which is the
+     * square of the product of the diagonal elements of L.
+     * @return The determinant, or NaN if the matrix is not positive definite.
+     */
+    public double det() {
+        if (!spd) {
+            return Double.NaN;
+        }
+        double det = 1;
+        for (int i = 0; i < n * n; i += n + 1) {
+            det *= l[i];
+        }
+        return det * det;
+    }
+
+    /**
+     * Returns the lower triangular factor L.
+     * @return L, or null if the matrix is not positive definite.
+     */
+    public TriangularMatrix getL() {
+        if (!spd) {
+            return null;
+        }
+        TriangularMatrix res = new TriangularMatrix(n, false);
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(l, r * n, res.values, res.rowOffset(r), r + 1);
+        }
+        return res;
+    }
+
+    /**
+     * Solves A x X = B for X, where A is the decomposed matrix. Each column
+     * of B is a separate right-hand side.
+     * @param b
+     * @return X, or null if the decomposed matrix is not positive definite.
+     */
+    public Matrix solve(Matrix b) {
+        if (b.rows != n) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        if (!spd) {
+            return null;
+        }
+
+        Matrix res = new Matrix(n, b.cols);
+        b.copyTo(res.elem);
+        solveInPlace(l, n, res.elem, b.cols);
+        return res;
+    }
+
+    /**
+     * Solves A x X = B for X, where A is the decomposed matrix, storing X in
+     * dest, which must have the same dimensions as b. Dest may be b itself,
+     * in which case the system is solved in place. Temporary storage, only
+     * needed when dest is a view, is taken from the {@link MatrixWorkspace}
+     * of the calling thread.
+     * @param b
+     * @param dest
+     * @return false if the decomposed matrix is not positive definite, in
+     * which case dest is left unchanged.
+     */
+    public boolean solveInto(Matrix b, Matrix dest) {
+        if (b.rows != n) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        if (dest.rows != b.rows || dest.cols != b.cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (!spd) {
+            return false;
+        }
+
+        int m = b.cols;
+        if (dest.isContiguous()) {
+            if (dest != b) {
+                b.copyTo(dest.elem);
+            }
+            solveInPlace(l, n, dest.elem, m);
+            return true;
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] x = ws.acquire(n * m);
+        b.copyTo(x);
+        solveInPlace(l, n, x, m);
+        dest.setAll(x);
+        ws.release(x);
+        return true;
+    }
+
+    /**
+     * Runs forward substitution with L and back substitution with L^T on the
+     * n x m right-hand side x, replacing it with the solution.
+     */
+    static void solveInPlace(double[] l, int n, double[] x, int m) {
+        for (int i = 0; i < n; i++) {
+            int in = i * n;
+            int im = i * m;
+            for (int k = 0; k < i; k++) {
+                double f = l[in + k];
+                if (f == 0) {
+                    continue;
+                }
+                int km = k * m;
+                for (int j = 0; j < m; j++) {
+                    x[im + j] -= f * x[km + j];
+                }
+            }
+            double d = l[in + i];
+            for (int j = 0; j < m; j++) {
+                x[im + j] /= d;
+            }
+        }
+
+        for (int k = n - 1; k >= 0; k--) {
+            int kn = k * n;
+            int km = k * m;
+            double d = l[kn + k];
+            for (int j = 0; j < m; j++) {
+                x[km + j] /= d;
+            }
+            for (int i = 0; i < k; i++) {
+                double f = l[kn + i];
+                if (f == 0) {
+                    continue;
+                }
+                int im = i * m;
+                for (int j = 0; j < m; j++) {
+                    x[im + j] -= f * x[km + j];
+                }
+            }
+        }
+    }
+}
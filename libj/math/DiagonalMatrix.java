@@ -0,0 +1,190 @@
+package libj.math;
+
+import java.util.Arrays;
+
+/**
+ * A n x n diagonal matrix, storing only its n diagonal elements. The
+ * determinant is found in O(n), and products and solutions scale rows or
+ * columns instead of multiplying full matrices.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see StructuredMatrix
+ */
+public class DiagonalMatrix extends StructuredMatrix {
+
+    /**
+     * Creates a new diagonal matrix with the given dimension. All elements
+     * are set to zero.
+     * @param dim
+     */
+    public DiagonalMatrix(int dim) {
+        super(dim, dim);
+    }
+
+    /**
+     * Creates a new diagonal matrix with the given diagonal elements.
+     * @param diagonal
+     */
+    public DiagonalMatrix(double[] diagonal) {
+        super(diagonal.length, diagonal.length);
+        System.arraycopy(diagonal, 0, values, 0, diagonal.length);
+    }
+
+    /**
+     * Creates a diagonal matrix from the diagonal of a square matrix,
+     * ignoring all other elements.
+     * @param m
+     * @return
+     */
+    public static DiagonalMatrix fromMatrix(Matrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        DiagonalMatrix res = new DiagonalMatrix(m.rows);
+        for (int i = 0; i < m.rows; i++) {
+            res.values[i] = m.get0(i, i);
+        }
+        return res;
+    }
+
+    /**
+     * Returns a copy of the diagonal elements.
+     * @return
+     */
+    public double[] getDiagonal() {
+        return Arrays.copyOf(values, rows);
+    }
+
+    @Override
+    int rowFrom(int r) {
+        return r;
+    }
+
+    @Override
+    int rowTo(int r) {
+        return r + 1;
+    }
+
+    @Override
+    int rowOffset(int r) {
+        return 0;
+    }
+
+    @Override
+    long workPerRow() {
+        return 1;
+    }
+
+    @Override
+    public double det() {
+        double det = 1;
+        for (int i = 0; i < rows; i++) {
+            det *= values[i];
+        }
+        return det;
+    }
+
+    private boolean isSingular() {
+        for (int i = 0; i < rows; i++) {
+            if (values[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates the inverse of this matrix, which is also diagonal.
+     * @return the inverse, or null if this matrix is singular.
+     */
+    @Override
+    public DiagonalMatrix inv() {
+        if (isSingular()) {
+            return null;
+        }
+        DiagonalMatrix res = new DiagonalMatrix(rows);
+        for (int i = 0; i < rows; i++) {
+            res.values[i] = 1 / values[i];
+        }
+        return res;
+    }
+
+    /**
+     * Stores the inverse of this matrix in dest, which must have the same
+     * dimensions. Dest may be this matrix itself, any other diagonal matrix
+     * or a full matrix.
+     * @param dest
+     * @return false if this matrix is singular, in which case dest is left
+     * unchanged.
+     */
+    @Override
+    public boolean invInto(Matrix dest) {
+        if (dest.rows != rows || dest.cols != cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (isSingular()) {
+            return false;
+        }
+
+        if (dest instanceof StructuredMatrix) {
+            StructuredMatrix s = (StructuredMatrix) dest;
+            if (s != this) {
+                Arrays.fill(s.values, 0);
+            }
+            for (int i = 0; i < rows; i++) {
+                s.set0(i, i, 1 / values[i]);
+            }
+            return true;
+        }
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                dest.set0(r, c, r == c ? 1 / values[r] : 0);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves [this] x [X] = [b] for X by dividing each row of b by the
+     * corresponding diagonal element, in O(n x m).
+     * @param b
+     * @return X, or null if this matrix is singular.
+     */
+    @Override
+    public Matrix solve(Matrix b) {
+        checkRhs(b);
+        if (isSingular()) {
+            return null;
+        }
+
+        int m = b.cols;
+        Matrix res = new Matrix(rows, m);
+        b.copyTo(res.elem);
+        for (int i = 0; i < rows; i++) {
+            double d = values[i];
+            for (int j = i * m; j < (i + 1) * m; j++) {
+                res.elem[j] /= d;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns a copy of this matrix, which is its own transpose.
+     * @return
+     */
+    @Override
+    public DiagonalMatrix transpose() {
+        return structuredCopy();
+    }
+
+    @Override
+    public DiagonalMatrix structuredCopy() {
+        return new DiagonalMatrix(values);
+    }
+
+    @Override
+    String describe() {
+        return null;
+    }
+}
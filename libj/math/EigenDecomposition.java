@@ -0,0 +1,428 @@
+package libj.math;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Eigenvalue decomposition of a real square matrix, so that
+ * A x V = V x D. For a symmetric matrix, D is diagonal, holding the
+ * eigenvalues in ascending order, and V is orthogonal. The matrix is reduced
+ * to tridiagonal form with Householder reflections, whose eigenvalues are
+ * then found with the implicit QL method.
+ * <br>
+ * A general matrix is reduced to upper Hessenberg form, whose eigenvalues
+ * are found with the shifted double QR method. They are not sorted, and may
+ * be complex, in which case they come in conjugate pairs. D is then block
+ * diagonal, with the real eigenvalues on the diagonal and a 2 x 2 block
+ * [re, im; -im, re] for each pair, and the two columns of V for a pair
+ * hold the real and imaginary parts of the eigenvector of re + i im. V may
+ * then be badly conditioned, or even singular.
+ * <br>
+ * For large symmetric matrices, {@link #lanczos(LinearOperator, int)} finds
+ * only the largest eigenvalues and their eigenvectors, without forming the
+ * whole decomposition. Every eigenvector has unit length, and each pair of
+ * columns for a complex eigenvector has unit length together.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see SqMatrix#eig()
+ */
+public class EigenDecomposition {
+
+    /**
+     * Relative residual at which {@link #lanczos(LinearOperator, int)}
+     * considers an eigenvalue converged.
+     */
+    public static final double LANCZOS_TOLERANCE = 1e-10;
+
+    /**
+     * Real parts of the eigenvalues.
+     */
+    private final double[] d;
+
+    /**
+     * Imaginary parts of the eigenvalues.
+     */
+    private final double[] e;
+
+    /**
+     * Eigenvectors in the columns of a row-major n x k array.
+     */
+    private final double[] v;
+
+    /**
+     * Dimension of the decomposed matrix.
+     */
+    private final int n;
+
+    /**
+     * Number of eigenvalues.
+     */
+    private final int k;
+
+    /**
+     * Whether the decomposed matrix is symmetric.
+     */
+    private final boolean symmetric;
+
+    /**
+     * Creates the eigenvalue decomposition of the given square matrix, which
+     * may also be a view or structured matrix. The matrix is checked for
+     * symmetry, which must be exact for the symmetric method to be used. The
+     * matrix itself is not changed.
+     * @param m
+     */
+    public EigenDecomposition(Matrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+
+        n = m.rows;
+        k = n;
+        d = new double[n];
+        e = new double[n];
+        symmetric = m instanceof SymmetricMatrix || isSymmetric(m);
+        double[] a = new double[n * n];
+        m.copyTo(a);
+
+        if (symmetric) {
+            EigenKernel.tridiagonalize(a, n, d, e);
+            EigenKernel.tridiagonalQL(d, e, a, n);
+            v = new double[n * n];
+            transpose(a, v, n, n);
+            return;
+        }
+
+        v = new double[n * n];
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] ort = ws.acquire(n);
+        EigenKernel.hessenberg(a, v, n, ort);
+        EigenKernel.hessenbergQR(a, v, n, d, e);
+        ws.release(ort);
+        normalize();
+    }
+
+    /**
+     * Creates a partial decomposition from eigenvalues and the n x k array of
+     * their eigenvectors.
+     */
+    private EigenDecomposition(double[] d, double[] v, int n) {
+        this.d = d;
+        this.e = new double[d.length];
+        this.v = v;
+        this.n = n;
+        this.k = d.length;
+        this.symmetric = true;
+    }
+
+    private static boolean isSymmetric(Matrix m) {
+        for (int r = 0; r < m.rows; r++) {
+            for (int c = 0; c < r; c++) {
+                if (m.get0(r, c) != m.get0(c, r)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scales the eigenvectors of a general matrix to unit length.
+     */
+    private void normalize() {
+        for (int j = 0; j < k; j++) {
+            boolean pair = e[j] > 0 && j + 1 < k;
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                double x = v[i * k + j];
+                double y = pair ? v[i * k + j + 1] : 0;
+                sum += x * x + y * y;
+            }
+            if (sum > 0) {
+                double s = 1 / Math.sqrt(sum);
+                for (int i = 0; i < n; i++) {
+                    v[i * k + j] *= s;
+                    if (pair) {
+                        v[i * k + j + 1] *= s;
+                    }
+                }
+            }
+            if (pair) {
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Finds the k largest eigenvalues of a symmetric operator and their
+     * eigenvectors with the Lanczos method, which only needs the product of
+     * the operator with a vector. Each step extends an orthonormal basis of
+     * the Krylov subspace by one vector, which is orthogonalized against all
+     * earlier ones to keep the basis accurate, and the eigenvalues of the
+     * operator restricted to the subspace converge to the largest and
+     * smallest eigenvalues of the operator first. The basis grows until the
+     * k largest have converged to {@link #LANCZOS_TOLERANCE} relative to the
+     * largest eigenvalue in magnitude, which typically takes a few times k
+     * steps, but more when the eigenvalues are clustered. It never grows
+     * beyond the dimension, where the decomposition is exact.
+     * <br>
+     * The operator is not checked for symmetry. The starting vector is
+     * random, but drawn from a fixed seed, so the result is the same every
+     * time. A repeated eigenvalue may be found only once, if the basis
+     * spans an invariant subspace before its other copies are found. To
+     * find the smallest eigenvalues, pass the negated operator.
+     * @param a
+     * @param k
+     * @return a decomposition holding the k largest eigenvalues in ascending
+     * order, and their eigenvectors in the columns of the n x k V.
+     */
+    public static EigenDecomposition lanczos(LinearOperator a, int k) {
+        int n = a.dim();
+        if (k <= 0 || k > n) {
+            throw new IllegalArgumentException("Number of eigenvalues must be between 1 and the dimension");
+        }
+
+        Random random = new Random(n);
+        int cap = Math.min(n, Math.max(2 * k, k + 20));
+        double[] q = new double[cap * n];
+        double[] alpha = new double[cap];
+        double[] beta = new double[cap];
+        double[] x = new double[n];
+        double[] w = new double[n];
+        double[] coef = new double[cap];
+        int step = Math.max(8, k);
+        double anorm = 0;
+
+        randomUnit(q, 0, n, random);
+        int m = 0;
+        while (true) {
+            int qj = m * n;
+            System.arraycopy(q, qj, x, 0, n);
+            a.apply(x, w);
+            double aj = 0;
+            for (int i = 0; i < n; i++) {
+                aj += q[qj + i] * w[i];
+            }
+            alpha[m] = aj;
+            m++;
+
+            // Full reorthogonalization, repeated once for accuracy
+            orthogonalize(q, m, n, w, coef);
+            orthogonalize(q, m, n, w, coef);
+            double b = norm(w);
+            anorm = Math.max(anorm, Math.abs(aj) + b + (m > 1 ? beta[m - 2] : 0));
+
+            boolean invariant = b <= LANCZOS_TOLERANCE * anorm;
+            if (m == n || (m >= Math.min(n, 2 * k) && (m % step == 0 || invariant))) {
+                EigenDecomposition res = ritz(q, alpha, beta, m, n, k, m == n || invariant ? 0 : b);
+                if (res != null) {
+                    return res;
+                }
+            }
+
+            if (m == cap) {
+                cap = Math.min(n, 2 * cap);
+                q = Arrays.copyOf(q, cap * n);
+                alpha = Arrays.copyOf(alpha, cap);
+                beta = Arrays.copyOf(beta, cap);
+                coef = new double[cap];
+            }
+
+            int next = m * n;
+            if (invariant) {
+                // The basis spans an invariant subspace, so restart with a
+                // new random vector orthogonal to it
+                beta[m - 1] = 0;
+                randomUnit(q, next, n, random);
+                orthogonalize(q, m, n, q, next, coef);
+                orthogonalize(q, m, n, q, next, coef);
+                double s = 1 / normAt(q, next, n);
+                for (int i = 0; i < n; i++) {
+                    q[next + i] *= s;
+                }
+            }
+            else {
+                beta[m - 1] = b;
+                double s = 1 / b;
+                for (int i = 0; i < n; i++) {
+                    q[next + i] = w[i] * s;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the Ritz pairs of the m step Lanczos basis in q, returning the k
+     * largest if all of them have converged, or null otherwise. B is the
+     * length of the last residual vector.
+     */
+    private static EigenDecomposition ritz(double[] q, double[] alpha, double[] beta, int m,
+            int n, int k, double b) {
+        double[] d = Arrays.copyOf(alpha, m);
+        double[] e = new double[m];
+        System.arraycopy(beta, 0, e, 1, m - 1);
+        double[] st = new double[m * m];
+        for (int i = 0; i < m; i++) {
+            st[i * m + i] = 1;
+        }
+        EigenKernel.tridiagonalQL(d, e, st, m);
+
+        double scale = Math.max(Math.abs(d[0]), Math.abs(d[m - 1]));
+        for (int j = m - k; j < m; j++) {
+            if (b * Math.abs(st[j * m + m - 1]) > LANCZOS_TOLERANCE * scale) {
+                return null;
+            }
+        }
+
+        double[] values = Arrays.copyOfRange(d, m - k, m);
+        double[] v = new double[n * k];
+        for (int j = 0; j < m; j++) {
+            int qj = j * n;
+            for (int c = 0; c < k; c++) {
+                double f = st[(m - k + c) * m + j];
+                if (f == 0) {
+                    continue;
+                }
+                for (int i = 0; i < n; i++) {
+                    v[i * k + c] += f * q[qj + i];
+                }
+            }
+        }
+        return new EigenDecomposition(values, v, n);
+    }
+
+    /**
+     * Subtracts from w its projection onto the first m rows of q.
+     */
+    private static void orthogonalize(double[] q, int m, int n, double[] w, double[] coef) {
+        orthogonalize(q, m, n, w, 0, coef);
+    }
+
+    /**
+     * Subtracts from the vector at offset off of w its projection onto the
+     * first m rows of q.
+     */
+    private static void orthogonalize(double[] q, int m, int n, double[] w, int off, double[] coef) {
+        for (int j = 0; j < m; j++) {
+            int qj = j * n;
+            double dot = 0;
+            for (int i = 0; i < n; i++) {
+                dot += q[qj + i] * w[off + i];
+            }
+            coef[j] = dot;
+        }
+        for (int j = 0; j < m; j++) {
+            int qj = j * n;
+            double c = coef[j];
+            for (int i = 0; i < n; i++) {
+                w[off + i] -= c * q[qj + i];
+            }
+        }
+    }
+
+    /**
+     * Fills the vector at offset off of x with random values, normalized to
+     * unit length.
+     */
+    private static void randomUnit(double[] x, int off, int n, Random random) {
+        for (int i = 0; i < n; i++) {
+            x[off + i] = random.nextGaussian();
+        }
+        double s = 1 / normAt(x, off, n);
+        for (int i = 0; i < n; i++) {
+            x[off + i] *= s;
+        }
+    }
+
+    private static double norm(double[] x) {
+        return normAt(x, 0, x.length);
+    }
+
+    private static double normAt(double[] x, int off, int n) {
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += x[off + i] * x[off + i];
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static void transpose(double[] src, double[] dest, int rows, int cols) {
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                dest[c * rows + r] = src[r * cols + c];
+            }
+        }
+    }
+
+    /**
+     * Returns the dimension of the decomposed matrix.
+     * @return
+     */
+    public int dim() {
+        return n;
+    }
+
+    /**
+     * Checks if the decomposed matrix is symmetric, in which case all
+     * eigenvalues are real and the eigenvectors are orthonormal.
+     * @return
+     */
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    /**
+     * Returns a copy of the real parts of the eigenvalues.
+     * @return
+     */
+    public double[] getRealEigenvalues() {
+        return d.clone();
+    }
+
+    /**
+     * Returns a copy of the imaginary parts of the eigenvalues, which are all
+     * zero for a symmetric matrix.
+     * @return
+     */
+    public double[] getImagEigenvalues() {
+        return e.clone();
+    }
+
+    /**
+     * Returns the eigenvectors in the columns of a matrix, which is n x n for
+     * a full decomposition and n x k for a partial one.
+     * @return
+     */
+    public Matrix getV() {
+        Matrix res = k == n ? new SqMatrix(n) : new Matrix(n, k);
+        System.arraycopy(v, 0, res.elem, 0, n * k);
+        return res;
+    }
+
+    /**
+     * Returns the block diagonal matrix of eigenvalues.
+     * @return
+     */
+    public SqMatrix getD() {
+        SqMatrix res = new SqMatrix(k);
+        for (int i = 0; i < k; i++) {
+            res.elem[i * k + i] = d[i];
+            if (e[i] > 0 && i + 1 < k) {
+                res.elem[i * k + i + 1] = e[i];
+            }
+            else if (e[i] < 0 && i > 0) {
+                res.elem[i * k + i - 1] = e[i];
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("EigenDecomposition[").append(n).append("x").append(n);
+        if (k != n) {
+            sb.append(", k=").append(k);
+        }
+        sb.append("]@").append(Integer.toHexString(hashCode()));
+        return sb.toString();
+    }
+}
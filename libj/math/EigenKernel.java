@@ -0,0 +1,805 @@
+package libj.math;
+
+/**
+ * Kernels for eigenvalue and singular value decompositions, working on
+ * row-major arrays. The symmetric and general eigenvalue routines follow the
+ * EISPACK procedures tred2, tql2, orthes and hqr2, as adapted in the public
+ * domain JAMA package. All indices used here are zero-based.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see EigenDecomposition
+ * @see SingularValueDecomposition
+ */
+final class EigenKernel {
+
+    private static final double EPS = Math.ulp(1.0);
+
+    /**
+     * Number of QR or Jacobi iterations after which a decomposition gives up
+     * converging any further, which only happens for input holding NaN or
+     * infinite values.
+     */
+    private static final int MAX_ITERATIONS = 100;
+
+    private EigenKernel() {
+    }
+
+    /**
+     * Reduces the symmetric n x n matrix in v to tridiagonal form with
+     * Householder reflections. Only the upper triangle of v is read. On
+     * return, d holds the diagonal, e holds the subdiagonal in e[1..n-1],
+     * and v holds the transpose of the orthogonal transformation, ready for
+     * {@link #tridiagonalQL(double[], double[], double[], int)}. This is
+     * tred2 applied to the transpose, so that the inner loops run along
+     * rows.
+     */
+    static void tridiagonalize(double[] v, int n, double[] d, double[] e) {
+        for (int j = 0; j < n; j++) {
+            d[j] = v[j * n + n - 1];
+        }
+
+        for (int i = n - 1; i > 0; i--) {
+            double scale = 0;
+            double h = 0;
+            for (int k = 0; k < i; k++) {
+                scale += Math.abs(d[k]);
+            }
+            if (scale == 0) {
+                e[i] = d[i - 1];
+                for (int j = 0; j < i; j++) {
+                    d[j] = v[j * n + i - 1];
+                    v[j * n + i] = 0;
+                    v[i * n + j] = 0;
+                }
+            }
+            else {
+                for (int k = 0; k < i; k++) {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                }
+                double f = d[i - 1];
+                double g = Math.sqrt(h);
+                if (f > 0) {
+                    g = -g;
+                }
+                e[i] = scale * g;
+                h -= f * g;
+                d[i - 1] = f - g;
+                for (int j = 0; j < i; j++) {
+                    e[j] = 0;
+                }
+
+                for (int j = 0; j < i; j++) {
+                    f = d[j];
+                    v[i * n + j] = f;
+                    g = e[j] + v[j * n + j] * f;
+                    for (int k = j + 1; k <= i - 1; k++) {
+                        g += v[j * n + k] * d[k];
+                        e[k] += v[j * n + k] * f;
+                    }
+                    e[j] = g;
+                }
+                f = 0;
+                for (int j = 0; j < i; j++) {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                }
+                double hh = f / (h + h);
+                for (int j = 0; j < i; j++) {
+                    e[j] -= hh * d[j];
+                }
+                for (int j = 0; j < i; j++) {
+                    f = d[j];
+                    g = e[j];
+                    for (int k = j; k <= i - 1; k++) {
+                        v[j * n + k] -= f * e[k] + g * d[k];
+                    }
+                    d[j] = v[j * n + i - 1];
+                    v[j * n + i] = 0;
+                }
+            }
+            d[i] = h;
+        }
+
+        for (int i = 0; i < n - 1; i++) {
+            v[i * n + n - 1] = v[i * n + i];
+            v[i * n + i] = 1;
+            double h = d[i + 1];
+            if (h != 0) {
+                for (int k = 0; k <= i; k++) {
+                    d[k] = v[(i + 1) * n + k] / h;
+                }
+                for (int j = 0; j <= i; j++) {
+                    double g = 0;
+                    for (int k = 0; k <= i; k++) {
+                        g += v[(i + 1) * n + k] * v[j * n + k];
+                    }
+                    for (int k = 0; k <= i; k++) {
+                        v[j * n + k] -= g * d[k];
+                    }
+                }
+            }
+            for (int k = 0; k <= i; k++) {
+                v[(i + 1) * n + k] = 0;
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            d[j] = v[j * n + n - 1];
+            v[j * n + n - 1] = 0;
+        }
+        v[(n - 1) * n + n - 1] = 1;
+        e[0] = 0;
+    }
+
+    /**
+     * Finds the eigenvalues and eigenvectors of a symmetric tridiagonal
+     * matrix with the implicit QL method. On entry, d holds the diagonal, e
+     * holds the subdiagonal in e[1..n-1], and each row of vt holds a vector
+     * to be transformed, normally the rows of the identity or the
+     * transformation from
+     * {@link #tridiagonalize(double[], int, double[], double[])}. On return,
+     * d holds the eigenvalues in ascending order, and row i of vt holds the
+     * eigenvector of d[i]. E is destroyed.
+     */
+    static void tridiagonalQL(double[] d, double[] e, double[] vt, int n) {
+        for (int i = 1; i < n; i++) {
+            e[i - 1] = e[i];
+        }
+        e[n - 1] = 0;
+
+        double f = 0;
+        double tst1 = 0;
+        for (int l = 0; l < n; l++) {
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while (m < n) {
+                if (Math.abs(e[m]) <= EPS * tst1) {
+                    break;
+                }
+                m++;
+            }
+
+            if (m > l) {
+                int iter = 0;
+                do {
+                    iter++;
+                    double g = d[l];
+                    double p = (d[l + 1] - g) / (2 * e[l]);
+                    double r = Math.hypot(p, 1);
+                    if (p < 0) {
+                        r = -r;
+                    }
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    double dl1 = d[l + 1];
+                    double h = g - d[l];
+                    for (int i = l + 2; i < n; i++) {
+                        d[i] -= h;
+                    }
+                    f += h;
+
+                    p = d[m];
+                    double c = 1;
+                    double c2 = c;
+                    double c3 = c;
+                    double el1 = e[l + 1];
+                    double s = 0;
+                    double s2 = 0;
+                    for (int i = m - 1; i >= l; i--) {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = Math.hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+
+                        int a = i * n;
+                        int b = a + n;
+                        for (int k = 0; k < n; k++) {
+                            h = vt[b + k];
+                            vt[b + k] = s * vt[a + k] + c * h;
+                            vt[a + k] = c * vt[a + k] - s * h;
+                        }
+                    }
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                } while (Math.abs(e[l]) > EPS * tst1 && iter < MAX_ITERATIONS);
+            }
+            d[l] += f;
+            e[l] = 0;
+        }
+
+        for (int i = 0; i < n - 1; i++) {
+            int k = i;
+            double p = d[i];
+            for (int j = i + 1; j < n; j++) {
+                if (d[j] < p) {
+                    k = j;
+                    p = d[j];
+                }
+            }
+            if (k != i) {
+                d[k] = d[i];
+                d[i] = p;
+                swapRows(vt, n, i, k);
+            }
+        }
+    }
+
+    /**
+     * Reduces the n x n matrix in h to upper Hessenberg form with Householder
+     * reflections, storing the orthogonal transformation in v.
+     * @param ort Scratch array of at least n elements.
+     */
+    static void hessenberg(double[] h, double[] v, int n, double[] ort) {
+        int high = n - 1;
+        for (int m = 1; m <= high - 1; m++) {
+            double scale = 0;
+            for (int i = m; i <= high; i++) {
+                scale += Math.abs(h[i * n + m - 1]);
+            }
+            if (scale == 0) {
+                continue;
+            }
+
+            double hh = 0;
+            for (int i = high; i >= m; i--) {
+                ort[i] = h[i * n + m - 1] / scale;
+                hh += ort[i] * ort[i];
+            }
+            double g = Math.sqrt(hh);
+            if (ort[m] > 0) {
+                g = -g;
+            }
+            hh -= ort[m] * g;
+            ort[m] -= g;
+
+            for (int j = m; j < n; j++) {
+                double f = 0;
+                for (int i = high; i >= m; i--) {
+                    f += ort[i] * h[i * n + j];
+                }
+                f /= hh;
+                for (int i = m; i <= high; i++) {
+                    h[i * n + j] -= f * ort[i];
+                }
+            }
+            for (int i = 0; i <= high; i++) {
+                double f = 0;
+                for (int j = high; j >= m; j--) {
+                    f += ort[j] * h[i * n + j];
+                }
+                f /= hh;
+                for (int j = m; j <= high; j++) {
+                    h[i * n + j] -= f * ort[j];
+                }
+            }
+            ort[m] = scale * ort[m];
+            h[m * n + m - 1] = scale * g;
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                v[i * n + j] = i == j ? 1 : 0;
+            }
+        }
+        for (int m = high - 1; m >= 1; m--) {
+            if (h[m * n + m - 1] == 0) {
+                continue;
+            }
+            for (int i = m + 1; i <= high; i++) {
+                ort[i] = h[i * n + m - 1];
+            }
+            for (int j = m; j <= high; j++) {
+                double g = 0;
+                for (int i = m; i <= high; i++) {
+                    g += ort[i] * v[i * n + j];
+                }
+                // Double division avoids possible underflow
+                g = (g / ort[m]) / h[m * n + m - 1];
+                for (int i = m; i <= high; i++) {
+                    v[i * n + j] += g * ort[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the eigenvalues and eigenvectors of the upper Hessenberg n x n
+     * matrix in h with the shifted double QR method, where v holds the
+     * transformation from {@link #hessenberg(double[], double[], int, double[])}.
+     * On return, d and e hold the real and imaginary parts of the
+     * eigenvalues, with complex conjugate pairs next to each other, the
+     * positive imaginary part first. Column i of v holds the eigenvector of a
+     * real eigenvalue i, and for a pair at i and i + 1, columns i and i + 1
+     * hold the real and imaginary parts of the eigenvector of eigenvalue i.
+     * H is destroyed.
+     */
+    static void hessenbergQR(double[] h, double[] v, int dim, double[] d, double[] e) {
+        int low = 0;
+        int high = dim - 1;
+        double exshift = 0;
+        double p = 0;
+        double q = 0;
+        double r = 0;
+        double s = 0;
+        double z = 0;
+        double t;
+        double w;
+        double x;
+        double y;
+        double[] cdiv = new double[2];
+
+        double norm = 0;
+        for (int i = 0; i < dim; i++) {
+            for (int j = Math.max(i - 1, 0); j < dim; j++) {
+                norm += Math.abs(h[i * dim + j]);
+            }
+        }
+
+        int n = dim - 1;
+        int iter = 0;
+        while (n >= low) {
+            // Look for a single small subdiagonal element
+            int l = n;
+            while (l > low) {
+                s = Math.abs(h[(l - 1) * dim + l - 1]) + Math.abs(h[l * dim + l]);
+                if (s == 0) {
+                    s = norm;
+                }
+                if (Math.abs(h[l * dim + l - 1]) < EPS * s) {
+                    break;
+                }
+                l--;
+            }
+
+            if (l == n) {
+                // One root found
+                h[n * dim + n] += exshift;
+                d[n] = h[n * dim + n];
+                e[n] = 0;
+                n--;
+                iter = 0;
+            }
+            else if (l == n - 1) {
+                // Two roots found
+                w = h[n * dim + n - 1] * h[(n - 1) * dim + n];
+                p = (h[(n - 1) * dim + n - 1] - h[n * dim + n]) / 2;
+                q = p * p + w;
+                z = Math.sqrt(Math.abs(q));
+                h[n * dim + n] += exshift;
+                h[(n - 1) * dim + n - 1] += exshift;
+                x = h[n * dim + n];
+
+                if (q >= 0) {
+                    // Real pair
+                    z = p >= 0 ? p + z : p - z;
+                    d[n - 1] = x + z;
+                    d[n] = d[n - 1];
+                    if (z != 0) {
+                        d[n] = x - w / z;
+                    }
+                    e[n - 1] = 0;
+                    e[n] = 0;
+                    x = h[n * dim + n - 1];
+                    s = Math.abs(x) + Math.abs(z);
+                    p = x / s;
+                    q = z / s;
+                    r = Math.sqrt(p * p + q * q);
+                    p /= r;
+                    q /= r;
+
+                    for (int j = n - 1; j < dim; j++) {
+                        z = h[(n - 1) * dim + j];
+                        h[(n - 1) * dim + j] = q * z + p * h[n * dim + j];
+                        h[n * dim + j] = q * h[n * dim + j] - p * z;
+                    }
+                    for (int i = 0; i <= n; i++) {
+                        z = h[i * dim + n - 1];
+                        h[i * dim + n - 1] = q * z + p * h[i * dim + n];
+                        h[i * dim + n] = q * h[i * dim + n] - p * z;
+                    }
+                    for (int i = low; i <= high; i++) {
+                        z = v[i * dim + n - 1];
+                        v[i * dim + n - 1] = q * z + p * v[i * dim + n];
+                        v[i * dim + n] = q * v[i * dim + n] - p * z;
+                    }
+                }
+                else {
+                    // Complex pair
+                    d[n - 1] = x + p;
+                    d[n] = x + p;
+                    e[n - 1] = z;
+                    e[n] = -z;
+                }
+                n -= 2;
+                iter = 0;
+            }
+            else {
+                // No convergence yet, so form a shift
+                x = h[n * dim + n];
+                y = 0;
+                w = 0;
+                if (l < n) {
+                    y = h[(n - 1) * dim + n - 1];
+                    w = h[n * dim + n - 1] * h[(n - 1) * dim + n];
+                }
+
+                // Wilkinson's original ad hoc shift
+                if (iter == 10) {
+                    exshift += x;
+                    for (int i = low; i <= n; i++) {
+                        h[i * dim + i] -= x;
+                    }
+                    s = Math.abs(h[n * dim + n - 1]) + Math.abs(h[(n - 1) * dim + n - 2]);
+                    x = 0.75 * s;
+                    y = x;
+                    w = -0.4375 * s * s;
+                }
+
+                // MATLAB's new ad hoc shift
+                if (iter == 30) {
+                    s = (y - x) / 2;
+                    s = s * s + w;
+                    if (s > 0) {
+                        s = Math.sqrt(s);
+                        if (y < x) {
+                            s = -s;
+                        }
+                        s = x - w / ((y - x) / 2 + s);
+                        for (int i = low; i <= n; i++) {
+                            h[i * dim + i] -= s;
+                        }
+                        exshift += s;
+                        x = 0.964;
+                        y = x;
+                        w = x;
+                    }
+                }
+
+                iter++;
+                if (iter > MAX_ITERATIONS) {
+                    // Give up on the remaining eigenvalues
+                    for (int i = 0; i <= n; i++) {
+                        d[i] = Double.NaN;
+                        e[i] = 0;
+                    }
+                    n = low - 1;
+                    break;
+                }
+
+                // Look for two consecutive small subdiagonal elements
+                int m = n - 2;
+                while (m >= l) {
+                    z = h[m * dim + m];
+                    r = x - z;
+                    s = y - z;
+                    p = (r * s - w) / h[(m + 1) * dim + m] + h[m * dim + m + 1];
+                    q = h[(m + 1) * dim + m + 1] - z - r - s;
+                    r = h[(m + 2) * dim + m + 1];
+                    s = Math.abs(p) + Math.abs(q) + Math.abs(r);
+                    p /= s;
+                    q /= s;
+                    r /= s;
+                    if (m == l) {
+                        break;
+                    }
+                    if (Math.abs(h[m * dim + m - 1]) * (Math.abs(q) + Math.abs(r))
+                            < EPS * (Math.abs(p) * (Math.abs(h[(m - 1) * dim + m - 1]) + Math.abs(z)
+                            + Math.abs(h[(m + 1) * dim + m + 1])))) {
+                        break;
+                    }
+                    m--;
+                }
+
+                for (int i = m + 2; i <= n; i++) {
+                    h[i * dim + i - 2] = 0;
+                    if (i > m + 2) {
+                        h[i * dim + i - 3] = 0;
+                    }
+                }
+
+                // Double QR step involving rows l to n and columns m to n
+                for (int k = m; k <= n - 1; k++) {
+                    boolean notlast = k != n - 1;
+                    if (k != m) {
+                        p = h[k * dim + k - 1];
+                        q = h[(k + 1) * dim + k - 1];
+                        r = notlast ? h[(k + 2) * dim + k - 1] : 0;
+                        x = Math.abs(p) + Math.abs(q) + Math.abs(r);
+                        if (x == 0) {
+                            continue;
+                        }
+                        p /= x;
+                        q /= x;
+                        r /= x;
+                    }
+
+                    s = Math.sqrt(p * p + q * q + r * r);
+                    if (p < 0) {
+                        s = -s;
+                    }
+                    if (s == 0) {
+                        continue;
+                    }
+                    if (k != m) {
+                        h[k * dim + k - 1] = -s * x;
+                    }
+                    else if (l != m) {
+                        h[k * dim + k - 1] = -h[k * dim + k - 1];
+                    }
+                    p += s;
+                    x = p / s;
+                    y = q / s;
+                    z = r / s;
+                    q /= p;
+                    r /= p;
+
+                    for (int j = k; j < dim; j++) {
+                        p = h[k * dim + j] + q * h[(k + 1) * dim + j];
+                        if (notlast) {
+                            p += r * h[(k + 2) * dim + j];
+                            h[(k + 2) * dim + j] -= p * z;
+                        }
+                        h[k * dim + j] -= p * x;
+                        h[(k + 1) * dim + j] -= p * y;
+                    }
+                    for (int i = 0; i <= Math.min(n, k + 3); i++) {
+                        p = x * h[i * dim + k] + y * h[i * dim + k + 1];
+                        if (notlast) {
+                            p += z * h[i * dim + k + 2];
+                            h[i * dim + k + 2] -= p * r;
+                        }
+                        h[i * dim + k] -= p;
+                        h[i * dim + k + 1] -= p * q;
+                    }
+                    for (int i = low; i <= high; i++) {
+                        p = x * v[i * dim + k] + y * v[i * dim + k + 1];
+                        if (notlast) {
+                            p += z * v[i * dim + k + 2];
+                            v[i * dim + k + 2] -= p * r;
+                        }
+                        v[i * dim + k] -= p;
+                        v[i * dim + k + 1] -= p * q;
+                    }
+                }
+            }
+        }
+
+        if (norm == 0) {
+            return;
+        }
+
+        // Back substitute to find the vectors of the upper triangular form
+        for (n = dim - 1; n >= 0; n--) {
+            p = d[n];
+            q = e[n];
+
+            if (q == 0) {
+                // Real vector
+                int l = n;
+                h[n * dim + n] = 1;
+                for (int i = n - 1; i >= 0; i--) {
+                    w = h[i * dim + i] - p;
+                    r = 0;
+                    for (int j = l; j <= n; j++) {
+                        r += h[i * dim + j] * h[j * dim + n];
+                    }
+                    if (e[i] < 0) {
+                        z = w;
+                        s = r;
+                        continue;
+                    }
+
+                    l = i;
+                    if (e[i] == 0) {
+                        h[i * dim + n] = w != 0 ? -r / w : -r / (EPS * norm);
+                    }
+                    else {
+                        x = h[i * dim + i + 1];
+                        y = h[(i + 1) * dim + i];
+                        q = (d[i] - p) * (d[i] - p) + e[i] * e[i];
+                        t = (x * s - z * r) / q;
+                        h[i * dim + n] = t;
+                        h[(i + 1) * dim + n] = Math.abs(x) > Math.abs(z)
+                            ? (-r - w * t) / x
+                            : (-s - y * t) / z;
+                    }
+
+                    // Overflow control
+                    t = Math.abs(h[i * dim + n]);
+                    if ((EPS * t) * t > 1) {
+                        for (int j = i; j <= n; j++) {
+                            h[j * dim + n] /= t;
+                        }
+                    }
+                }
+            }
+            else if (q < 0) {
+                // Complex vector, whose last component is imaginary, so
+                // the matrix is triangular
+                int l = n - 1;
+                if (Math.abs(h[n * dim + n - 1]) > Math.abs(h[(n - 1) * dim + n])) {
+                    h[(n - 1) * dim + n - 1] = q / h[n * dim + n - 1];
+                    h[(n - 1) * dim + n] = -(h[n * dim + n] - p) / h[n * dim + n - 1];
+                }
+                else {
+                    cdiv(0, -h[(n - 1) * dim + n], h[(n - 1) * dim + n - 1] - p, q, cdiv);
+                    h[(n - 1) * dim + n - 1] = cdiv[0];
+                    h[(n - 1) * dim + n] = cdiv[1];
+                }
+                h[n * dim + n - 1] = 0;
+                h[n * dim + n] = 1;
+
+                for (int i = n - 2; i >= 0; i--) {
+                    double ra = 0;
+                    double sa = 0;
+                    for (int j = l; j <= n; j++) {
+                        ra += h[i * dim + j] * h[j * dim + n - 1];
+                        sa += h[i * dim + j] * h[j * dim + n];
+                    }
+                    w = h[i * dim + i] - p;
+
+                    if (e[i] < 0) {
+                        z = w;
+                        r = ra;
+                        s = sa;
+                        continue;
+                    }
+
+                    l = i;
+                    if (e[i] == 0) {
+                        cdiv(-ra, -sa, w, q, cdiv);
+                        h[i * dim + n - 1] = cdiv[0];
+                        h[i * dim + n] = cdiv[1];
+                    }
+                    else {
+                        x = h[i * dim + i + 1];
+                        y = h[(i + 1) * dim + i];
+                        double vr = (d[i] - p) * (d[i] - p) + e[i] * e[i] - q * q;
+                        double vi = (d[i] - p) * 2 * q;
+                        if (vr == 0 && vi == 0) {
+                            vr = EPS * norm * (Math.abs(w) + Math.abs(q) + Math.abs(x)
+                                + Math.abs(y) + Math.abs(z));
+                        }
+                        cdiv(x * r - z * ra + q * sa, x * s - z * sa - q * ra, vr, vi, cdiv);
+                        h[i * dim + n - 1] = cdiv[0];
+                        h[i * dim + n] = cdiv[1];
+                        if (Math.abs(x) > Math.abs(z) + Math.abs(q)) {
+                            h[(i + 1) * dim + n - 1] = (-ra - w * h[i * dim + n - 1] + q * h[i * dim + n]) / x;
+                            h[(i + 1) * dim + n] = (-sa - w * h[i * dim + n] - q * h[i * dim + n - 1]) / x;
+                        }
+                        else {
+                            cdiv(-r - y * h[i * dim + n - 1], -s - y * h[i * dim + n], z, q, cdiv);
+                            h[(i + 1) * dim + n - 1] = cdiv[0];
+                            h[(i + 1) * dim + n] = cdiv[1];
+                        }
+                    }
+
+                    // Overflow control
+                    t = Math.max(Math.abs(h[i * dim + n - 1]), Math.abs(h[i * dim + n]));
+                    if ((EPS * t) * t > 1) {
+                        for (int j = i; j <= n; j++) {
+                            h[j * dim + n - 1] /= t;
+                            h[j * dim + n] /= t;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Back transform to get the eigenvectors of the original matrix
+        for (int j = dim - 1; j >= low; j--) {
+            for (int i = low; i <= high; i++) {
+                z = 0;
+                for (int k = low; k <= Math.min(j, high); k++) {
+                    z += v[i * dim + k] * h[k * dim + j];
+                }
+                v[i * dim + j] = z;
+            }
+        }
+    }
+
+    /**
+     * Stores the complex division (xr + i xi) / (yr + i yi) in res.
+     */
+    private static void cdiv(double xr, double xi, double yr, double yi, double[] res) {
+        if (Math.abs(yr) > Math.abs(yi)) {
+            double r = yi / yr;
+            double d = yr + r * yi;
+            res[0] = (xr + r * xi) / d;
+            res[1] = (xi - r * xr) / d;
+        }
+        else {
+            double r = yr / yi;
+            double d = yi + r * yr;
+            res[0] = (r * xr + xi) / d;
+            res[1] = (r * xi - xr) / d;
+        }
+    }
+
+    /**
+     * Computes the singular value decomposition of the matrix whose columns
+     * are the n rows of length m in w, with m &gt;= n, using one-sided Jacobi
+     * rotations. On return, the rows of w hold the left singular vectors
+     * scaled by the singular values, and the rows of vt, which must hold the
+     * n x n identity on entry, hold the right singular vectors. The
+     * singular values are the lengths of the rows of w, and are not sorted.
+     */
+    static void jacobiSVD(double[] w, double[] vt, int n, int m) {
+        // Squared row lengths, updated with each rotation and recalculated
+        // at the start of each sweep
+        double[] norms = new double[n];
+        for (int sweep = 0; sweep < MAX_ITERATIONS; sweep++) {
+            for (int p = 0; p < n; p++) {
+                double sum = 0;
+                for (int i = 0; i < m; i++) {
+                    sum += w[p * m + i] * w[p * m + i];
+                }
+                norms[p] = sum;
+            }
+
+            boolean rotated = false;
+            for (int p = 0; p < n - 1; p++) {
+                int po = p * m;
+                for (int q = p + 1; q < n; q++) {
+                    int qo = q * m;
+                    double alpha = norms[p];
+                    double beta = norms[q];
+                    double gamma = 0;
+                    for (int i = 0; i < m; i++) {
+                        gamma += w[po + i] * w[qo + i];
+                    }
+                    if (gamma == 0 || Math.abs(gamma) <= EPS * Math.sqrt(alpha * beta)) {
+                        continue;
+                    }
+
+                    rotated = true;
+                    double zeta = (beta - alpha) / (2 * gamma);
+                    double t = zeta == 0 ? 1
+                        : Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+                    double c = 1 / Math.sqrt(1 + t * t);
+                    double s = c * t;
+                    rotate(w, po, qo, m, c, s);
+                    rotate(vt, p * n, q * n, n, c, s);
+                    norms[p] = alpha - t * gamma;
+                    norms[q] = beta + t * gamma;
+                }
+            }
+            if (!rotated) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rotates the rows of length len at offsets p and q of x by the Jacobi
+     * rotation with cosine c and sine s.
+     */
+    private static void rotate(double[] x, int p, int q, int len, double c, double s) {
+        for (int i = 0; i < len; i++) {
+            double a = x[p + i];
+            double b = x[q + i];
+            x[p + i] = c * a - s * b;
+            x[q + i] = s * a + c * b;
+        }
+    }
+
+    /**
+     * Swaps rows i and k of the row-major matrix x with rows of length n.
+     */
+    static void swapRows(double[] x, int n, int i, int k) {
+        int a = i * n;
+        int b = k * n;
+        for (int j = 0; j < n; j++) {
+            double t = x[a + j];
+            x[a + j] = x[b + j];
+            x[b + j] = t;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package libj.math;
+
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A spliterator over the elements of a matrix, row-first, without boxing.
+ * It splits at row boundaries while more than one row remains, so a parallel
+ * {@link java.util.stream.DoubleStream} from {@link Matrix#stream()} spreads
+ * whole rows across threads. Besides the values, the row and column of each
+ * element can be had through the methods taking an
+ * {@link Matrix.EachElementAction}.
+ * <br>
+ * The spliterator reads the matrix as it goes, so changes made to the
+ * matrix while traversing it may or may not be seen. Any matrix can be
+ * traversed, including views and off-heap matrices, whose rows are read a
+ * row at a time through a buffer.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix#spliterator()
+ * @see Matrix#stream()
+ */
+public final class ElementSpliterator implements Spliterator.OfDouble {
+
+    private final Matrix m;
+
+    /**
+     * Row-first index of the next element.
+     */
+    private long index;
+
+    /**
+     * Row-first index after the last element.
+     */
+    private final long end;
+
+    ElementSpliterator(Matrix m, long index, long end) {
+        this.m = m;
+        this.index = index;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(DoubleConsumer action) {
+        if (index >= end) {
+            return false;
+        }
+        int r = (int) (index / m.cols);
+        int c = (int) (index % m.cols);
+        index++;
+        action.accept(m.get0(r, c));
+        return true;
+    }
+
+    /**
+     * Performs the given action for the next element, if any, supplying its
+     * row number, column number and value.
+     * @param action
+     * @return false if no elements remained.
+     */
+    public boolean tryAdvance(Matrix.EachElementAction action) {
+        if (index >= end) {
+            return false;
+        }
+        int r = (int) (index / m.cols);
+        int c = (int) (index % m.cols);
+        index++;
+        action.perform(r + 1, c + 1, m.get0(r, c));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(DoubleConsumer action) {
+        forEachRemaining((r, c, e) -> action.accept(e));
+    }
+
+    /**
+     * Performs the given action for each remaining element, supplying its
+     * row number, column number and value.
+     * @param action
+     */
+    public void forEachRemaining(Matrix.EachElementAction action) {
+        int n = m.cols;
+        double[] e = m.isContiguous() ? m.elem : null;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] buf = e == null ? ws.acquire(n) : null;
+
+        while (index < end) {
+            int r = (int) (index / n);
+            int c = (int) (index % n);
+            int len = (int) Math.min(n - c, end - index);
+            if (e != null) {
+                int ri = r * n;
+                for (int j = c; j < c + len; j++) {
+                    action.perform(r + 1, j + 1, e[ri + j]);
+                }
+            }
+            else {
+                m.getRow(r, c, len, buf, 0);
+                for (int j = 0; j < len; j++) {
+                    action.perform(r + 1, c + j + 1, buf[j]);
+                }
+            }
+            index += len;
+        }
+
+        if (buf != null) {
+            ws.release(buf);
+        }
+    }
+
+    @Override
+    public ElementSpliterator trySplit() {
+        long remaining = end - index;
+        if (remaining < 2) {
+            return null;
+        }
+
+        long mid = index + remaining / 2;
+        long n = m.cols;
+        if (remaining > 2 * n) {
+            mid -= mid % n;
+        }
+        ElementSpliterator prefix = new ElementSpliterator(m, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+}
@@ -0,0 +1,184 @@
+package libj.math;
+
+/**
+ * Single-precision versions of the kernels in {@link MatrixKernel}, working
+ * on the row-major element arrays of float matrices. Tiling and loop order
+ * are the same as for doubles, and every element is accumulated in
+ * increasing k order.
+ * <br>
+ * Loops which can use the Vector API delegate to VectorKernel when the
+ * current {@link MatrixBackend} is VECTOR, which processes twice as many
+ * floats as doubles per vector.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see FloatMatrix
+ */
+final class FloatKernel {
+
+    private FloatKernel() {
+    }
+
+    /**
+     * Computes rows rowFrom (inclusive) to rowTo (exclusive) of the product
+     * of the n x m matrix a and the m x p matrix b, storing them in res.
+     * @param a
+     * @param b
+     * @param res
+     * @param n
+     * @param m
+     * @param p
+     * @param rowFrom
+     * @param rowTo
+     * @param block Tile edge, see {@link MatrixKernel#blockSize(int, int, int)}.
+     */
+    static void mulRows(float[] a, float[] b, float[] res, int n, int m, int p,
+            int rowFrom, int rowTo, int block) {
+        mulBlock(a, rowFrom * m, b, res, rowFrom * p, rowTo - rowFrom, m, p, block);
+    }
+
+    /**
+     * Multiplies the n x m matrix a by the m x m matrix b, storing the result
+     * back into a, one band of rows at a time.
+     * @param a
+     * @param b
+     * @param n
+     * @param m
+     * @param buf Scratch array of at least
+     * {@link MatrixKernel#mulInPlaceBufferSize(int, int)} elements.
+     */
+    static void mulInPlace(float[] a, float[] b, int n, int m, float[] buf) {
+        int block = MatrixKernel.blockSize(n, m, m);
+        for (int ii = 0; ii < n; ii += block) {
+            int bandRows = Math.min(block, n - ii);
+            System.arraycopy(a, ii * m, buf, 0, bandRows * m);
+            mulBlock(buf, 0, b, a, ii * m, bandRows, m, m, block);
+        }
+    }
+
+    private static void mulBlock(float[] a, int aOff, float[] b, float[] res, int resOff,
+            int rows, int m, int p, int block) {
+        boolean vector = MatrixBackend.get() == MatrixBackend.VECTOR;
+        for (int i = resOff; i < resOff + rows * p; i++) {
+            res[i] = 0;
+        }
+
+        for (int ii = 0; ii < rows; ii += block) {
+            int iEnd = Math.min(ii + block, rows);
+            for (int kk = 0; kk < m; kk += block) {
+                int kEnd = Math.min(kk + block, m);
+                for (int jj = 0; jj < p; jj += block) {
+                    int jEnd = Math.min(jj + block, p);
+                    for (int i = ii; i < iEnd; i++) {
+                        int ai = aOff + i * m;
+                        int ri = resOff + i * p;
+                        for (int k = kk; k < kEnd; k++) {
+                            float aik = a[ai + k];
+                            int bk = k * p;
+                            if (vector) {
+                                VectorKernel.axpy(aik, b, bk + jj, res, ri + jj, jEnd - jj);
+                                continue;
+                            }
+                            for (int j = jj; j < jEnd; j++) {
+                                res[ri + j] += aik * b[bk + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies elements from (inclusive) to (exclusive) of a by c.
+     * @param a
+     * @param c
+     * @param from
+     * @param to
+     */
+    static void scale(float[] a, float c, int from, int to) {
+        if (MatrixBackend.get() == MatrixBackend.VECTOR) {
+            VectorKernel.scale(a, c, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            a[i] *= c;
+        }
+    }
+
+    /**
+     * Adds elements from (inclusive) to (exclusive) of b to a.
+     * @param a
+     * @param b
+     * @param from
+     * @param to
+     */
+    static void add(float[] a, float[] b, int from, int to) {
+        if (MatrixBackend.get() == MatrixBackend.VECTOR) {
+            VectorKernel.add(a, b, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            a[i] += b[i];
+        }
+    }
+
+    /**
+     * Subtracts elements from (inclusive) to (exclusive) of b from a.
+     * @param a
+     * @param b
+     * @param from
+     * @param to
+     */
+    static void sub(float[] a, float[] b, int from, int to) {
+        if (MatrixBackend.get() == MatrixBackend.VECTOR) {
+            VectorKernel.sub(a, b, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            a[i] -= b[i];
+        }
+    }
+
+    /**
+     * Sums elements from (inclusive) to (exclusive) of a.
+     * @param a
+     * @param from
+     * @param to
+     * @return
+     */
+    static float sum(float[] a, int from, int to) {
+        if (MatrixBackend.get() == MatrixBackend.VECTOR) {
+            return VectorKernel.sum(a, from, to);
+        }
+        float sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Transposes rows rowFrom (inclusive) to rowTo (exclusive) of the
+     * rows x cols matrix src into dst, in tiles.
+     * @param src
+     * @param dst
+     * @param rows
+     * @param cols
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void transposeRows(float[] src, float[] dst, int rows, int cols, int rowFrom, int rowTo) {
+        int block = MatrixKernel.MAX_BLOCK_SIZE / 2;
+        for (int ii = rowFrom; ii < rowTo; ii += block) {
+            int iEnd = Math.min(ii + block, rowTo);
+            for (int jj = 0; jj < cols; jj += block) {
+                int jEnd = Math.min(jj + block, cols);
+                for (int i = ii; i < iEnd; i++) {
+                    int si = i * cols;
+                    for (int j = jj; j < jEnd; j++) {
+                        dst[j * rows + i] = src[si + j];
+                    }
+                }
+            }
+        }
+    }
+}
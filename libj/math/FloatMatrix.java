@@ -0,0 +1,523 @@
+package libj.math;
+
+import java.util.Arrays;
+
+
+/**
+ * A generalized n x m-matrix holding single-precision real numbers. Offers
+ * the same operations as {@link Matrix} using half the memory, and twice as
+ * many elements per vector when the Vector API backend is used.
+ * <br>
+ * Conversion to and from double precision is always explicit, see
+ * {@link #fromMatrix(libj.math.Matrix)} and {@link #toMatrix()}.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see FloatSqMatrix
+ * @see Matrix
+ */
+public class FloatMatrix {
+
+    /**
+     * Array holding the elements in this matrix.
+     */
+    protected float[] elem;
+
+    /**
+     * Number of rows in this matrix.
+     */
+    protected int rows;
+
+    /**
+     * Number of columns in this matrix.
+     */
+    protected int cols;
+
+    /**
+     * Creates a new FloatMatrix with the specified number of rows and columns.
+     * All elements are set to zero.
+     * @param rows
+     * @param cols
+     */
+    public FloatMatrix(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Rows or cols can't be zero or negative");
+        }
+
+        this.rows = rows;
+        this.cols = cols;
+        elem = new float[rows * cols];
+    }
+
+    /**
+     * Creates a new FloatMatrix and sets elements according to the given
+     * two-dimensional array of values. The number of rows are set to the size
+     * of the suppplied array, and the number of columns are set to the row in
+     * the suppplied array with the largest number of elements. Elements in
+     * positions which are not supplied in the array are set to zero.
+     * @param elements
+     */
+    public FloatMatrix(float[][] elements) {
+        int c = 0;
+        for (float[] row : elements) {
+            c = Math.max(c, row.length);
+        }
+
+        rows = elements.length;
+        cols = c;
+        elem = new float[rows * cols];
+
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(elements[r], 0, elem, r * cols, elements[r].length);
+        }
+    }
+
+    /**
+     * Creates a single-precision copy of a matrix, rounding each element to
+     * the nearest float. The result is a FloatSqMatrix if the matrix is
+     * square.
+     * @param m
+     * @return
+     */
+    public static FloatMatrix fromMatrix(Matrix m) {
+        FloatMatrix res = m.rows == m.cols ? new FloatSqMatrix(m.rows) : new FloatMatrix(m.rows, m.cols);
+        int i = 0;
+        for (int r = 0; r < m.rows; r++) {
+            for (int c = 0; c < m.cols; c++) {
+                res.elem[i++] = (float) m.get0(r, c);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns a double-precision copy of this matrix. The result is a
+     * SqMatrix if this matrix is square.
+     * @return
+     */
+    public Matrix toMatrix() {
+        Matrix res = rows == cols ? new SqMatrix(rows) : new Matrix(rows, cols);
+        for (int i = 0; i < elem.length; i++) {
+            res.elem[i] = elem[i];
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of rows in this matrix.
+     * @return
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns in this matrix.
+     * @return
+     */
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * Returns an array containing a copy of this matrix's elements.
+     * @return
+     */
+    public float[] getElements() {
+        return Arrays.copyOf(elem, rows * cols);
+    }
+
+    /**
+     * Copies this matrix's elements, row-first, into the start of an array
+     * with room for at least rows x cols elements.
+     * @param dest
+     */
+    public void getElementsInto(float[] dest) {
+        if (dest.length < rows * cols) {
+            throw new IllegalArgumentException("Destination array is too small");
+        }
+        System.arraycopy(elem, 0, dest, 0, rows * cols);
+    }
+
+    /**
+     * Lambda function interface for iterating though each element of the
+     * matrix.
+     * @see FloatMatrix#forEach(libj.math.FloatMatrix.EachElementAction)
+     */
+    @FunctionalInterface
+    public interface EachElementAction {
+        /**
+         * Performs an action for an element in the matrix.
+         * @param r
+         * @param c
+         * @param e
+         */
+        public void perform(int r, int c, float e);
+    }
+
+    /**
+     * Iterates through every element in this matrix, supplying row number,
+     * column number and value for each element. Note that the action performed
+     * for each element cannot change the element's value.
+     * @param action
+     */
+    public void forEach(EachElementAction action) {
+        for (int r = 1; r <= rows; r++) {
+            for (int c = 1; c <= cols; c++) {
+                action.perform(r, c, elem[(r - 1) * cols + c - 1]);
+            }
+        }
+    }
+
+    /**
+     * Checks if an element in the given row and column exists in this matrix.
+     * @param row
+     * @param col
+     * @return
+     */
+    public boolean isWithin(int row, int col) {
+        return row > 0 && row <= rows
+            && col > 0 && col <= cols;
+    }
+
+    /**
+     * Returns the value of the element in the given row and column.
+     * @param row
+     * @param col
+     * @return
+     */
+    public float getElem(int row, int col) {
+        if (!isWithin(row, col)) {
+            return 0;
+        }
+
+        return elem[(row - 1) * cols + col - 1];
+    }
+
+    /**
+     * Sets the value of the element in the given row and column.
+     * @param row
+     * @param col
+     * @param value
+     */
+    public void setElem(int row, int col, float value) {
+        if (!isWithin(row, col)) {
+            return;
+        }
+
+        elem[(row - 1) * cols + col - 1] = value;
+    }
+
+    /**
+     * Sets all elements to the values in the given array by deep-copying.
+     * The elements must be ordered row-first.
+     * @param elems
+     */
+    public void setAll(float[] elems) {
+        if (elems.length < rows * cols) {
+            return;
+        }
+
+        System.arraycopy(elems, 0, elem, 0, rows * cols);
+    }
+
+    /**
+     * Multiplies this matrix by a scalar, changing this matrix's elements.
+     * @param c
+     */
+    public void mul(float c) {
+        float[] a = elem;
+        MatrixExecutor.getDefault().forRange(a.length, 1, (from, to) -> FloatKernel.scale(a, c, from, to));
+    }
+
+    /**
+     * Adds another matrix to this matrix, changing this matrix's elements.
+     * @param other
+     */
+    public void add(FloatMatrix other) {
+        checkSameDimensions(other);
+        float[] a = elem;
+        float[] b = other.elem;
+        MatrixExecutor.getDefault().forRange(a.length, 1, (from, to) -> FloatKernel.add(a, b, from, to));
+    }
+
+    /**
+     * Subtracts this matrix by another matrix, changing this matrix's elements.
+     * Subtraction order is: [this] = [this] - [other]
+     * @param other
+     */
+    public void sub(FloatMatrix other) {
+        checkSameDimensions(other);
+        float[] a = elem;
+        float[] b = other.elem;
+        MatrixExecutor.getDefault().forRange(a.length, 1, (from, to) -> FloatKernel.sub(a, b, from, to));
+    }
+
+    private void checkSameDimensions(FloatMatrix other) {
+        if (other.rows != rows || other.cols != cols) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+    }
+
+    /**
+     * Multiplies this matrix by another matrix, changing this matrix's
+     * elements.
+     * Multiplication order is: [this] = [this] x [other]
+     * @param other
+     */
+    public void mul(FloatMatrix other) {
+        if (cols != other.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        MatrixExecutor exec = MatrixExecutor.getDefault();
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        if (other.cols == cols && other != this && !exec.isParallel()) {
+            float[] buf = ws.acquireFloats(MatrixKernel.mulInPlaceBufferSize(rows, cols));
+            FloatKernel.mulInPlace(elem, other.elem, rows, cols, buf);
+            ws.releaseFloats(buf);
+        }
+        else if (other.cols == cols) {
+            float[] res = ws.acquireFloats(rows * cols);
+            mul(elem, other.elem, res, rows, cols, cols);
+            System.arraycopy(res, 0, elem, 0, rows * cols);
+            ws.releaseFloats(res);
+        }
+        else {
+            float[] res = new float[rows * other.cols];
+            mul(elem, other.elem, res, rows, cols, other.cols);
+            cols = other.cols;
+            elem = res;
+        }
+    }
+
+    /**
+     * Multiplies two matrices and returns the resulting matrix. Multiplication
+     * order is: [first] x [second]
+     * @param first
+     * @param second
+     * @return
+     */
+    public static FloatMatrix mul(FloatMatrix first, FloatMatrix second) {
+        if (first.cols != second.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        FloatMatrix res = new FloatMatrix(first.rows, second.cols);
+        mul(first.elem, second.elem, res.elem, first.rows, first.cols, second.cols);
+        return res;
+    }
+
+    /**
+     * Multiplies two matrices, storing the result in dest instead of
+     * allocating a new matrix. Multiplication order is:
+     * [dest] = [first] x [second] <br>
+     * Dest must not be either operand.
+     * @param first
+     * @param second
+     * @param dest
+     */
+    public static void mulInto(FloatMatrix first, FloatMatrix second, FloatMatrix dest) {
+        if (first.cols != second.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        if (dest.rows != first.rows || dest.cols != second.cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (dest == first || dest == second) {
+            throw new IllegalArgumentException("Destination can't be an operand");
+        }
+
+        mul(first.elem, second.elem, dest.elem, first.rows, first.cols, second.cols);
+    }
+
+    private static void mul(float[] a, float[] b, float[] res, int n, int m, int p) {
+        int block = MatrixKernel.blockSize(n, m, p);
+        MatrixExecutor.getDefault().forRange(n, (long) m * p, (from, to) ->
+            FloatKernel.mulRows(a, b, res, n, m, p, from, to, block));
+    }
+
+    /**
+     * Returns a transposed version of this matrix.
+     * @return
+     */
+    public FloatMatrix transpose() {
+        FloatMatrix res = rows == cols ? new FloatSqMatrix(rows) : new FloatMatrix(cols, rows);
+        transposeInto(res);
+        return res;
+    }
+
+    /**
+     * Stores the transpose of this matrix in dest, which must have as many
+     * rows as this matrix has columns and vice versa, and must not be this
+     * matrix.
+     * @param dest
+     */
+    public void transposeInto(FloatMatrix dest) {
+        if (dest.rows != cols || dest.cols != rows) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (dest == this) {
+            throw new IllegalArgumentException("Destination can't be the transposed matrix");
+        }
+
+        float[] src = elem;
+        float[] dst = dest.elem;
+        int r = rows;
+        int c = cols;
+        MatrixExecutor.getDefault().forRange(rows, cols, (from, to) ->
+            FloatKernel.transposeRows(src, dst, r, c, from, to));
+    }
+
+    /**
+     * Returns a sub-matrix of this matrix, removing one row and one column.
+     * @param row The row to remove.
+     * @param col The column to remove.
+     * @return the sub-matrix, or null if the sub-matrix is empty.
+     */
+    public FloatMatrix subMat(int row, int col) {
+        if (!isWithin(row, col)) {
+            throw new IllegalArgumentException("Row or column is not within matrix");
+        }
+
+        if (rows - 1 <= 0 || cols - 1 <= 0) {
+            return null;
+        }
+
+        FloatMatrix res = rows == cols ? new FloatSqMatrix(rows - 1) : new FloatMatrix(rows - 1, cols - 1);
+        subMatInto(row, col, res);
+        return res;
+    }
+
+    /**
+     * Stores the sub-matrix of this matrix with one row and one column removed
+     * in dest, which must have one row and one column less than this matrix.
+     * @param row The row to remove.
+     * @param col The column to remove.
+     * @param dest
+     */
+    public void subMatInto(int row, int col, FloatMatrix dest) {
+        if (!isWithin(row, col)) {
+            throw new IllegalArgumentException("Row or column is not within matrix");
+        }
+        if (dest.rows != rows - 1 || dest.cols != cols - 1) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+
+        int d = 0;
+        for (int r = 0; r < rows; r++) {
+            if (r == row - 1) {
+                continue;
+            }
+            int s = r * cols;
+            System.arraycopy(elem, s, dest.elem, d, col - 1);
+            System.arraycopy(elem, s + col, dest.elem, d + col - 1, cols - col);
+            d += dest.cols;
+        }
+    }
+
+    /**
+     * Sums all elements in a row.
+     * @param row The number of the row to sum.
+     * @return
+     */
+    public float sumRow(int row) {
+        if (!isWithin(row, 1)) {
+            throw new IllegalArgumentException("Row is not within matrix");
+        }
+
+        return FloatKernel.sum(elem, (row - 1) * cols, row * cols);
+    }
+
+    /**
+     * Sums all elements in a column.
+     * @param col The number of the column to sum.
+     * @return
+     */
+    public float sumCol(int col) {
+        if (!isWithin(1, col)) {
+            throw new IllegalArgumentException("Column is not within matrix");
+        }
+
+        float sum = 0;
+        for (int i = col - 1; i < elem.length; i += cols) {
+            sum += elem[i];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Returns a copy of this matrix.
+     * @return
+     */
+    public FloatMatrix copy() {
+        FloatMatrix ret = new FloatMatrix(rows, cols);
+        System.arraycopy(elem, 0, ret.elem, 0, rows * cols);
+        return ret;
+    }
+
+    /**
+     * Copies this matrix's elements into dest, which must have the same
+     * dimensions.
+     * @param dest
+     */
+    public void copyInto(FloatMatrix dest) {
+        checkSameDimensions(dest);
+        System.arraycopy(elem, 0, dest.elem, 0, rows * cols);
+    }
+
+    /**
+     * Checks if this matrix is equal to another matrix. They are equal if and
+     * only if their row and column count match, and each elements in this
+     * matrix matches exactly the element in the same position in the other
+     * matrix.
+     * @param other
+     * @return
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof FloatMatrix)) {
+            return false;
+        }
+
+        if (this == other) {
+            return true;
+        }
+
+        FloatMatrix mat = (FloatMatrix) other;
+
+        if (mat.cols != cols || mat.rows != rows) {
+            return false;
+        }
+
+        return Arrays.equals(elem, mat.elem);
+    }
+
+    /**
+     * Generates a hash code for this matrix object.
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 37 * hash + Arrays.hashCode(elem);
+        hash = 37 * hash + rows;
+        hash = 37 * hash + cols;
+        return hash;
+    }
+
+    /**
+     * Returns this matrix object as a string, including row- and column count
+     * and hash code. <br>
+     * Note: Does not include element values. To pretty-print a FloatMatrix,
+     * see libj.Util.printMatrix(FloatMatrix m).
+     * @return
+     * @see libj.Util#printMatrix(libj.math.FloatMatrix)
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("FloatMatrix[").append(rows).append("x").append(cols);
+        sb.append("]@").append(Integer.toHexString(hashCode()));
+        return sb.toString();
+    }
+}
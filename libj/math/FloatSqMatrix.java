@@ -0,0 +1,205 @@
+package libj.math;
+
+import java.util.Arrays;
+
+/**
+ * A n x n square matrix holding single-precision real values. Extends
+ * FloatMatrix with methods only applicable to square matrices.
+ * <br>
+ * Determinants, inverses and solutions are computed in double precision and
+ * rounded to float at the end, using arrays from the calling thread's
+ * {@link MatrixWorkspace}.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see FloatMatrix
+ * @see SqMatrix
+ */
+public class FloatSqMatrix extends FloatMatrix {
+
+    /**
+     * Creates a new matrix with the given dimension, that is, the number of
+     * rows and columns.
+     * @param dim
+     */
+    public FloatSqMatrix(int dim) {
+        super(dim, dim);
+    }
+
+    /**
+     * Returns a double-precision copy of this matrix.
+     * @return
+     */
+    public SqMatrix toSqMatrix() {
+        return (SqMatrix) toMatrix();
+    }
+
+    /**
+     * Calculates the coefficient for the element in the given position.
+     * @param r
+     * @param c
+     * @return
+     */
+    public double cof(int r, int c) {
+        if (rows == 1) {
+            return 1;
+        }
+        return ((c + r) % 2 == 0 ? 1 : -1) * ((FloatSqMatrix) subMat(r, c)).det();
+    }
+
+    /**
+     * Calculates the determinant of this matrix.
+     * @return the determinant, which is zero if the matrix is singular.
+     */
+    public double det() {
+        int n = rows;
+        if (n == 1) {
+            return elem[0];
+        }
+
+        else if (n == 2) {
+            return (double) elem[0] * elem[3] - (double) elem[2] * elem[1];
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        widen(elem, lu, n * n);
+        double scale = LUDecomposition.maxAbs(lu, n * n);
+        double det = LUDecomposition.factor(lu, n, piv);
+        if (LUDecomposition.isSingular(lu, n, scale)) {
+            det = 0;
+        }
+        else {
+            for (int i = 0; i < n * n; i += n + 1) {
+                det *= lu[i];
+            }
+        }
+        ws.release(lu);
+        ws.releaseInts(piv);
+        return det;
+    }
+
+    /**
+     * Generates an inverse matrix of this matrix.
+     * @return the inverse, or null if this matrix is singular.
+     */
+    public FloatSqMatrix inv() {
+        FloatSqMatrix res = new FloatSqMatrix(rows);
+        return invInto(res) ? res : null;
+    }
+
+    /**
+     * Stores the inverse of this matrix in dest, which must have the same
+     * dimensions, and may be this matrix itself.
+     * @param dest
+     * @return false if this matrix is singular, in which case dest is left
+     * unchanged.
+     */
+    public boolean invInto(FloatMatrix dest) {
+        if (dest.rows != rows || dest.cols != cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+
+        int n = rows;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        try {
+            widen(elem, lu, n * n);
+            double scale = LUDecomposition.maxAbs(lu, n * n);
+            LUDecomposition.factor(lu, n, piv);
+            if (LUDecomposition.isSingular(lu, n, scale)) {
+                return false;
+            }
+
+            double[] x = ws.acquire(n * n);
+            Arrays.fill(x, 0);
+            for (int i = 0; i < n; i++) {
+                x[i * n + piv[i]] = 1;
+            }
+            LUDecomposition.solveInPlace(lu, n, x, n);
+            narrow(x, dest.elem, n * n);
+            ws.release(x);
+            return true;
+        }
+        finally {
+            ws.release(lu);
+            ws.releaseInts(piv);
+        }
+    }
+
+    /**
+     * Solves [this] x [X] = [b] for X. Each column of b is a separate
+     * right-hand side.
+     * @param b
+     * @return X, or null if this matrix is singular.
+     */
+    public FloatMatrix solve(FloatMatrix b) {
+        if (b.rows != rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        int n = rows;
+        int m = b.cols;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        try {
+            widen(elem, lu, n * n);
+            double scale = LUDecomposition.maxAbs(lu, n * n);
+            LUDecomposition.factor(lu, n, piv);
+            if (LUDecomposition.isSingular(lu, n, scale)) {
+                return null;
+            }
+
+            double[] x = ws.acquire(n * m);
+            for (int i = 0; i < n; i++) {
+                int src = piv[i] * m;
+                for (int j = 0; j < m; j++) {
+                    x[i * m + j] = b.elem[src + j];
+                }
+            }
+            LUDecomposition.solveInPlace(lu, n, x, m);
+            FloatMatrix res = new FloatMatrix(n, m);
+            narrow(x, res.elem, n * m);
+            ws.release(x);
+            return res;
+        }
+        finally {
+            ws.release(lu);
+            ws.releaseInts(piv);
+        }
+    }
+
+    private static void widen(float[] src, double[] dst, int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = src[i];
+        }
+    }
+
+    private static void narrow(double[] src, float[] dst, int n) {
+        for (int i = 0; i < n; i++) {
+            dst[i] = (float) src[i];
+        }
+    }
+
+    /**
+     * Sets this matrix to the identity matrix of the same dimension.
+     */
+    public void loadIdentity() {
+        Arrays.fill(elem, 0);
+        for (int i = 0; i < rows * rows; i += rows + 1) {
+            elem[i] = 1;
+        }
+    }
+
+    /**
+     * Creates and returns a new identity matrix of the given dimension.
+     * @param dim
+     * @return
+     */
+    public static FloatSqMatrix identity(int dim) {
+        FloatSqMatrix res = new FloatSqMatrix(dim);
+        res.loadIdentity();
+        return res;
+    }
+}
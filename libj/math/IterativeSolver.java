@@ -0,0 +1,621 @@
+package libj.math;
+
+import java.util.Arrays;
+
+/**
+ * Solves [A] x [x] = [b] iteratively, using only products of A with vectors,
+ * so A can be dense, a view, structured, sparse, or any other
+ * {@link LinearOperator}. Each iteration costs one or two such products, so
+ * for large sparse systems a solution is found long before a direct method
+ * would have finished.
+ * <br>
+ * Three methods are available: conjugate gradients, for symmetric positive
+ * definite matrices, and BiCGSTAB and restarted GMRES, for general ones.
+ * Solvers are immutable, and configured by the with methods, each of which
+ * returns a new solver:
+ * <pre>
+ * IterativeSolver.cg()
+ *         .withTolerance(1e-8)
+ *         .withPreconditioner(Preconditioner.ilu(a))
+ *         .solve(a, b, x);
+ * </pre>
+ * The vector x passed to solve holds the starting guess, which is usually
+ * zero, and is overwritten with the solution. Passing the solution of a
+ * similar system instead starts the iteration closer to the answer.
+ * Iteration stops when the norm of the residual b - A x, relative to the
+ * norm of b, is at most the tolerance. Temporary vectors are taken from the
+ * {@link MatrixWorkspace} of the calling thread.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see LinearOperator
+ * @see Preconditioner
+ */
+public final class IterativeSolver {
+
+    /**
+     * The available iterative methods.
+     */
+    public enum Method {
+        /**
+         * Conjugate gradients, for symmetric positive definite matrices.
+         */
+        CG,
+        /**
+         * Stabilized biconjugate gradients, for general matrices.
+         */
+        BICGSTAB,
+        /**
+         * Generalized minimal residual, restarted after a fixed number of
+         * iterations, for general matrices.
+         */
+        GMRES
+    }
+
+    /**
+     * Default relative residual at which iteration stops.
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-10;
+
+    /**
+     * Default number of iterations between restarts of GMRES.
+     */
+    public static final int DEFAULT_RESTART = 30;
+
+    /**
+     * Lambda function interface for following the progress of a solver.
+     * @see IterativeSolver#withListener(libj.math.IterativeSolver.IterationListener)
+     */
+    @FunctionalInterface
+    public interface IterationListener {
+        /**
+         * Called after each iteration.
+         * @param iteration The number of iterations done, counting from one.
+         * @param residual The relative residual after this iteration.
+         * @return false to stop iterating.
+         */
+        public boolean iteration(int iteration, double residual);
+    }
+
+    /**
+     * The outcome of a call to solve.
+     */
+    public static final class Result {
+
+        private final boolean converged;
+
+        private final int iterations;
+
+        private final double residual;
+
+        Result(boolean converged, int iterations, double residual) {
+            this.converged = converged;
+            this.iterations = iterations;
+            this.residual = residual;
+        }
+
+        /**
+         * Checks if the relative residual reached the tolerance.
+         * @return
+         */
+        public boolean isConverged() {
+            return converged;
+        }
+
+        /**
+         * Returns the number of iterations done.
+         * @return
+         */
+        public int iterations() {
+            return iterations;
+        }
+
+        /**
+         * Returns the relative residual of the returned solution.
+         * @return
+         */
+        public double residual() {
+            return residual;
+        }
+
+        @Override
+        public String toString() {
+            return "Result[" + (converged ? "converged" : "not converged")
+                    + ", iterations=" + iterations + ", residual=" + residual + "]";
+        }
+    }
+
+    private final Method method;
+
+    private final double tolerance;
+
+    private final int maxIterations;
+
+    private final int restart;
+
+    private final Preconditioner preconditioner;
+
+    private final IterationListener listener;
+
+    private IterativeSolver(Method method, double tolerance, int maxIterations, int restart,
+            Preconditioner preconditioner, IterationListener listener) {
+        this.method = method;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        this.restart = restart;
+        this.preconditioner = preconditioner;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns a conjugate gradient solver, for symmetric positive definite
+     * matrices. The preconditioner, if any, must be symmetric positive
+     * definite as well.
+     * @return
+     */
+    public static IterativeSolver cg() {
+        return new IterativeSolver(Method.CG, DEFAULT_TOLERANCE, 0, 0, null, null);
+    }
+
+    /**
+     * Returns a BiCGSTAB solver, for general matrices. Each iteration costs
+     * two products with the matrix, and memory use does not grow with the
+     * number of iterations.
+     * @return
+     */
+    public static IterativeSolver bicgstab() {
+        return new IterativeSolver(Method.BICGSTAB, DEFAULT_TOLERANCE, 0, 0, null, null);
+    }
+
+    /**
+     * Returns a GMRES solver, for general matrices, which restarts every
+     * {@link #DEFAULT_RESTART} iterations.
+     * @return
+     */
+    public static IterativeSolver gmres() {
+        return gmres(DEFAULT_RESTART);
+    }
+
+    /**
+     * Returns a GMRES solver, for general matrices, which restarts after the
+     * given number of iterations. It keeps restart + 1 vectors, and each
+     * iteration costs one product with the matrix plus work proportional to
+     * the iterations since the last restart. More iterations between
+     * restarts converge more reliably, at the cost of memory and time.
+     * @param restart
+     * @return
+     */
+    public static IterativeSolver gmres(int restart) {
+        if (restart <= 0) {
+            throw new IllegalArgumentException("Restart can't be zero or negative");
+        }
+        return new IterativeSolver(Method.GMRES, DEFAULT_TOLERANCE, 0, restart, null, null);
+    }
+
+    /**
+     * Returns a copy of this solver which stops at the given relative
+     * residual.
+     * @param tolerance
+     * @return
+     */
+    public IterativeSolver withTolerance(double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        return new IterativeSolver(method, tolerance, maxIterations, restart, preconditioner, listener);
+    }
+
+    /**
+     * Returns a copy of this solver which stops after at most the given
+     * number of iterations. By default, this is ten times the dimension of
+     * the system, but at least 100.
+     * @param maxIterations
+     * @return
+     */
+    public IterativeSolver withMaxIterations(int maxIterations) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("Max iterations can't be zero or negative");
+        }
+        return new IterativeSolver(method, tolerance, maxIterations, restart, preconditioner, listener);
+    }
+
+    /**
+     * Returns a copy of this solver using the given preconditioner, or none
+     * if null.
+     * @param preconditioner
+     * @return
+     */
+    public IterativeSolver withPreconditioner(Preconditioner preconditioner) {
+        return new IterativeSolver(method, tolerance, maxIterations, restart, preconditioner, listener);
+    }
+
+    /**
+     * Returns a copy of this solver which calls the given listener after
+     * every iteration, or none if null.
+     * @param listener
+     * @return
+     */
+    public IterativeSolver withListener(IterationListener listener) {
+        return new IterativeSolver(method, tolerance, maxIterations, restart, preconditioner, listener);
+    }
+
+    /**
+     * Returns the method used by this solver.
+     * @return
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the relative residual at which this solver stops.
+     * @return
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Solves [a] x [x] = [b], where a is a square matrix, which may be a
+     * view or structured matrix.
+     * @param a
+     * @param b
+     * @param x The starting guess, overwritten with the solution.
+     * @return
+     */
+    public Result solve(Matrix a, double[] b, double[] x) {
+        return solve(LinearOperator.of(a), b, x);
+    }
+
+    /**
+     * Solves [a] x [x] = [b], where a is a square sparse matrix.
+     * @param a
+     * @param b
+     * @param x The starting guess, overwritten with the solution.
+     * @return
+     */
+    public Result solve(SparseMatrix a, double[] b, double[] x) {
+        return solve(LinearOperator.of(a), b, x);
+    }
+
+    /**
+     * Solves [a] x [x] = [b].
+     * @param a
+     * @param b
+     * @param x The starting guess, overwritten with the solution.
+     * @return
+     */
+    public Result solve(LinearOperator a, double[] b, double[] x) {
+        int n = a.dim();
+        if (b.length != n || x.length != n) {
+            throw new IllegalArgumentException("Incompatible vector lengths");
+        }
+
+        double bnorm = norm(b, n);
+        if (bnorm == 0) {
+            Arrays.fill(x, 0);
+            return new Result(true, 0, 0);
+        }
+
+        int max = maxIterations > 0 ? maxIterations : Math.max(100, (int) Math.min(Integer.MAX_VALUE, 10L * n));
+        switch (method) {
+            case CG:
+                return cg(a, b, x, n, bnorm, max);
+            case BICGSTAB:
+                return bicgstab(a, b, x, n, bnorm, max);
+            default:
+                return gmres(a, b, x, n, bnorm, max);
+        }
+    }
+
+    private Result cg(LinearOperator a, double[] b, double[] x, int n, double bnorm, int max) {
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] r = ws.acquire(n);
+        double[] z = ws.acquire(n);
+        double[] p = ws.acquire(n);
+        double[] q = ws.acquire(n);
+        try {
+            residual(a, b, x, r, n);
+            double res = norm(r, n) / bnorm;
+            if (res <= tolerance) {
+                return new Result(true, 0, res);
+            }
+            precondition(r, z, n);
+            System.arraycopy(z, 0, p, 0, n);
+            double rz = dot(r, z, n);
+
+            for (int it = 1; it <= max; it++) {
+                a.apply(p, q);
+                double pq = dot(p, q, n);
+                if (!(pq > 0)) {
+                    return new Result(false, it - 1, res);
+                }
+                double alpha = rz / pq;
+                axpy(alpha, p, x, n);
+                axpy(-alpha, q, r, n);
+                res = norm(r, n) / bnorm;
+                if (res <= tolerance) {
+                    notify(it, res);
+                    return new Result(true, it, res);
+                }
+                if (!notify(it, res)) {
+                    return new Result(false, it, res);
+                }
+
+                precondition(r, z, n);
+                double rzNew = dot(r, z, n);
+                double beta = rzNew / rz;
+                rz = rzNew;
+                for (int i = 0; i < n; i++) {
+                    p[i] = z[i] + beta * p[i];
+                }
+            }
+            return new Result(false, max, res);
+        }
+        finally {
+            ws.release(r);
+            ws.release(z);
+            ws.release(p);
+            ws.release(q);
+        }
+    }
+
+    private Result bicgstab(LinearOperator a, double[] b, double[] x, int n, double bnorm, int max) {
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] r = ws.acquire(n);
+        double[] r0 = ws.acquire(n);
+        double[] p = ws.acquire(n);
+        double[] v = ws.acquire(n);
+        double[] ph = ws.acquire(n);
+        double[] sh = ws.acquire(n);
+        double[] t = ws.acquire(n);
+        try {
+            residual(a, b, x, r, n);
+            double res = norm(r, n) / bnorm;
+            if (res <= tolerance) {
+                return new Result(true, 0, res);
+            }
+            System.arraycopy(r, 0, r0, 0, n);
+            Arrays.fill(p, 0, n, 0);
+            Arrays.fill(v, 0, n, 0);
+            double rho = 1;
+            double alpha = 1;
+            double omega = 1;
+
+            for (int it = 1; it <= max; it++) {
+                double rhoNew = dot(r0, r, n);
+                if (rhoNew == 0 || omega == 0) {
+                    return new Result(false, it - 1, res);
+                }
+                double beta = (rhoNew / rho) * (alpha / omega);
+                rho = rhoNew;
+                for (int i = 0; i < n; i++) {
+                    p[i] = r[i] + beta * (p[i] - omega * v[i]);
+                }
+                precondition(p, ph, n);
+                a.apply(ph, v);
+                alpha = rho / dot(r0, v, n);
+
+                // r now holds s = r - alpha v
+                axpy(-alpha, v, r, n);
+                axpy(alpha, ph, x, n);
+                double snorm = norm(r, n) / bnorm;
+                if (snorm <= tolerance) {
+                    notify(it, snorm);
+                    return new Result(true, it, snorm);
+                }
+
+                precondition(r, sh, n);
+                a.apply(sh, t);
+                double tt = dot(t, t, n);
+                omega = tt == 0 ? 0 : dot(t, r, n) / tt;
+                axpy(omega, sh, x, n);
+                axpy(-omega, t, r, n);
+                res = norm(r, n) / bnorm;
+                if (res <= tolerance) {
+                    notify(it, res);
+                    return new Result(true, it, res);
+                }
+                if (!notify(it, res)) {
+                    return new Result(false, it, res);
+                }
+            }
+            return new Result(false, max, res);
+        }
+        finally {
+            ws.release(r);
+            ws.release(r0);
+            ws.release(p);
+            ws.release(v);
+            ws.release(ph);
+            ws.release(sh);
+            ws.release(t);
+        }
+    }
+
+    /**
+     * Restarted GMRES with right preconditioning. The Hessenberg matrix is
+     * reduced to triangular form with Givens rotations as it is built, so
+     * the residual norm of each iteration is known without forming x.
+     */
+    private Result gmres(LinearOperator a, double[] b, double[] x, int n, double bnorm, int max) {
+        int m = Math.min(restart, n);
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] v = ws.acquire((m + 1) * n);
+        double[] h = ws.acquire((m + 1) * m);
+        double[] g = ws.acquire(m + 1);
+        double[] cs = ws.acquire(m);
+        double[] sn = ws.acquire(m);
+        double[] w = ws.acquire(n);
+        double[] z = ws.acquire(n);
+        try {
+            double res = 0;
+            int it = 0;
+            while (true) {
+                residual(a, b, x, w, n);
+                double beta = norm(w, n);
+                res = beta / bnorm;
+                if (res <= tolerance) {
+                    return new Result(true, it, res);
+                }
+                if (it >= max) {
+                    return new Result(false, it, res);
+                }
+                for (int i = 0; i < n; i++) {
+                    v[i] = w[i] / beta;
+                }
+                Arrays.fill(g, 0, m + 1, 0);
+                g[0] = beta;
+
+                int k = 0;
+                boolean stop = false;
+                while (k < m && it < max) {
+                    precondition(v, k * n, z, n);
+                    a.apply(z, w);
+                    for (int i = 0; i <= k; i++) {
+                        double hik = 0;
+                        for (int j = 0; j < n; j++) {
+                            hik += w[j] * v[i * n + j];
+                        }
+                        h[i * m + k] = hik;
+                        for (int j = 0; j < n; j++) {
+                            w[j] -= hik * v[i * n + j];
+                        }
+                    }
+                    double hk1 = norm(w, n);
+                    h[(k + 1) * m + k] = hk1;
+                    if (hk1 != 0) {
+                        int vk1 = (k + 1) * n;
+                        for (int j = 0; j < n; j++) {
+                            v[vk1 + j] = w[j] / hk1;
+                        }
+                    }
+
+                    for (int i = 0; i < k; i++) {
+                        double h0 = h[i * m + k];
+                        double h1 = h[(i + 1) * m + k];
+                        h[i * m + k] = cs[i] * h0 + sn[i] * h1;
+                        h[(i + 1) * m + k] = -sn[i] * h0 + cs[i] * h1;
+                    }
+                    double hkk = h[k * m + k];
+                    double d = Math.hypot(hkk, hk1);
+                    cs[k] = d == 0 ? 1 : hkk / d;
+                    sn[k] = d == 0 ? 0 : hk1 / d;
+                    h[k * m + k] = d;
+                    h[(k + 1) * m + k] = 0;
+                    g[k + 1] = -sn[k] * g[k];
+                    g[k] = cs[k] * g[k];
+
+                    k++;
+                    it++;
+                    res = Math.abs(g[k]) / bnorm;
+                    if (res <= tolerance || hk1 == 0) {
+                        break;
+                    }
+                    if (!notify(it, res)) {
+                        stop = true;
+                        break;
+                    }
+                }
+
+                update(x, v, h, g, m, k, n, z, w);
+                if (res <= tolerance) {
+                    notify(it, res);
+                }
+                if (stop) {
+                    return new Result(false, it, res);
+                }
+            }
+        }
+        finally {
+            ws.release(v);
+            ws.release(h);
+            ws.release(g);
+            ws.release(cs);
+            ws.release(sn);
+            ws.release(w);
+            ws.release(z);
+        }
+    }
+
+    /**
+     * Solves the k x k triangular system in h for the coefficients of the
+     * first k basis vectors in v, and adds the preconditioned combination to
+     * x. The coefficients overwrite g.
+     */
+    private void update(double[] x, double[] v, double[] h, double[] g, int m, int k, int n,
+            double[] z, double[] w) {
+        for (int i = k - 1; i >= 0; i--) {
+            double s = g[i];
+            for (int j = i + 1; j < k; j++) {
+                s -= h[i * m + j] * g[j];
+            }
+            g[i] = s / h[i * m + i];
+        }
+        Arrays.fill(w, 0, n, 0);
+        for (int i = 0; i < k; i++) {
+            double y = g[i];
+            int vi = i * n;
+            for (int j = 0; j < n; j++) {
+                w[j] += y * v[vi + j];
+            }
+        }
+        precondition(w, z, n);
+        axpy(1, z, x, n);
+    }
+
+    private boolean notify(int iteration, double residual) {
+        return listener == null || listener.iteration(iteration, residual);
+    }
+
+    private void precondition(double[] r, double[] z, int n) {
+        if (preconditioner == null) {
+            System.arraycopy(r, 0, z, 0, n);
+        }
+        else {
+            preconditioner.apply(r, z);
+        }
+    }
+
+    /**
+     * Preconditions the vector at offset off in r, which holds several
+     * vectors one after the other.
+     */
+    private void precondition(double[] r, int off, double[] z, int n) {
+        if (off == 0 && r.length == n) {
+            precondition(r, z, n);
+            return;
+        }
+        if (preconditioner == null) {
+            System.arraycopy(r, off, z, 0, n);
+            return;
+        }
+        double[] tmp = MatrixWorkspace.current().acquire(n);
+        System.arraycopy(r, off, tmp, 0, n);
+        preconditioner.apply(tmp, z);
+        MatrixWorkspace.current().release(tmp);
+    }
+
+    private static void residual(LinearOperator a, double[] b, double[] x, double[] r, int n) {
+        a.apply(x, r);
+        for (int i = 0; i < n; i++) {
+            r[i] = b[i] - r[i];
+        }
+    }
+
+    private static double dot(double[] a, double[] b, int n) {
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static double norm(double[] a, int n) {
+        return Math.sqrt(dot(a, a, n));
+    }
+
+    private static void axpy(double c, double[] a, double[] y, int n) {
+        for (int i = 0; i < n; i++) {
+            y[i] += c * a[i];
+        }
+    }
+}
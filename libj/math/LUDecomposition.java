@@ -0,0 +1,310 @@
+package libj.math;
+
+/**
+ * LU decomposition of a square matrix with partial pivoting, so that
+ * P x A = L x U, where P is a row permutation, L is unit lower triangular and
+ * U is upper triangular. Once created, the decomposition can be used to
+ * calculate the determinant and inverse, and to solve any number of linear
+ * systems, each in O(n^2).
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see SqMatrix#lu()
+ */
+public class LUDecomposition {
+
+    /**
+     * L and U packed into one row-major array. The unit diagonal of L is
+     * not stored.
+     */
+    private final double[] lu;
+
+    /**
+     * Dimension of the decomposed matrix.
+     */
+    private final int n;
+
+    /**
+     * Row permutation. Row i of P x A is row piv[i] of A.
+     */
+    private final int[] piv;
+
+    /**
+     * Sign of the permutation, 1 or -1.
+     */
+    private final int pivSign;
+
+    /**
+     * Largest absolute element of the decomposed matrix, which pivots are
+     * compared with to tell if it is singular.
+     */
+    private final double scale;
+
+    /**
+     * Creates the LU decomposition of the given square matrix, which may also
+     * be a view. The matrix itself is not changed.
+     * @param m
+     */
+    public LUDecomposition(Matrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+
+        n = m.rows;
+        lu = new double[n * n];
+        m.copyTo(lu);
+        scale = maxAbs(lu, n * n);
+        piv = new int[n];
+        pivSign = factor(lu, n, piv);
+    }
+
+    /**
+     * Factors the n x n matrix in lu in place, leaving L below the diagonal
+     * and U on and above it, and the row permutation in piv.
+     * @param lu
+     * @param n
+     * @param piv
+     * @return The sign of the permutation.
+     */
+    static int factor(double[] lu, int n, int[] piv) {
+        for (int i = 0; i < n; i++) {
+            piv[i] = i;
+        }
+
+        int sign = 1;
+        for (int k = 0; k < n; k++) {
+            int p = k;
+            double max = Math.abs(lu[k * n + k]);
+            for (int i = k + 1; i < n; i++) {
+                double v = Math.abs(lu[i * n + k]);
+                if (v > max) {
+                    max = v;
+                    p = i;
+                }
+            }
+
+            if (p != k) {
+                int pk = p * n;
+                int kk = k * n;
+                for (int j = 0; j < n; j++) {
+                    double t = lu[pk + j];
+                    lu[pk + j] = lu[kk + j];
+                    lu[kk + j] = t;
+                }
+                int t = piv[p];
+                piv[p] = piv[k];
+                piv[k] = t;
+                sign = -sign;
+            }
+
+            double pivot = lu[k * n + k];
+            if (pivot == 0) {
+                continue;
+            }
+
+            int kk = k * n;
+            for (int i = k + 1; i < n; i++) {
+                int ik = i * n;
+                double f = lu[ik + k] / pivot;
+                lu[ik + k] = f;
+                if (f == 0) {
+                    continue;
+                }
+                for (int j = k + 1; j < n; j++) {
+                    lu[ik + j] -= f * lu[kk + j];
+                }
+            }
+        }
+        return sign;
+    }
+
+    /**
+     * Returns the dimension of the decomposed matrix.
+     * @return
+     */
+    public int dim() {
+        return n;
+    }
+
+    /**
+     * Checks if the decomposed matrix is singular, that is, if any of the
+     * diagonal elements of U is zero up to rounding. Like the elimination
+     * in {@link MatrixOperation}, a pivot counts as zero when it is no
+     * larger than n x the unit roundoff x the largest absolute element of
+     * the matrix, since a matrix which is singular in exact arithmetic
+     * usually leaves a pivot of about that size.
+     * @return
+     */
+    public boolean isSingular() {
+        return isSingular(lu, n, scale);
+    }
+
+    /**
+     * Checks if the factored n x n matrix in lu is singular, where scale is
+     * the largest absolute element of the matrix before it was factored.
+     * @param lu
+     * @param n
+     * @param scale
+     * @return
+     * @see #maxAbs(double[], int)
+     */
+    static boolean isSingular(double[] lu, int n, double scale) {
+        double tol = n * scale * Math.ulp(1.0);
+        for (int i = 0; i < n * n; i += n + 1) {
+            if (Math.abs(lu[i]) <= tol) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the largest absolute value among the first len elements of a.
+     * @param a
+     * @param len
+     * @return
+     */
+    static double maxAbs(double[] a, int len) {
+        double max = 0;
+        for (int i = 0; i < len; i++) {
+            max = Math.max(max, Math.abs(a[i]));
+        }
+        return max;
+    }
+
+    /**
+     * Calculates the determinant of the decomposed matrix.
+     * @return the determinant, which is zero if the matrix is singular.
+     */
+    public double det() {
+        if (isSingular()) {
+            return 0;
+        }
+        double det = pivSign;
+        for (int i = 0; i < n * n; i += n + 1) {
+            det *= lu[i];
+        }
+        return det;
+    }
+
+    /**
+     * Returns the unit lower triangular factor L.
+     * @return
+     */
+    public SqMatrix getL() {
+        SqMatrix res = new SqMatrix(n);
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(lu, r * n, res.elem, r * n, r);
+            res.elem[r * n + r] = 1;
+        }
+        return res;
+    }
+
+    /**
+     * Returns the upper triangular factor U.
+     * @return
+     */
+    public SqMatrix getU() {
+        SqMatrix res = new SqMatrix(n);
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(lu, r * n + r, res.elem, r * n + r, n - r);
+        }
+        return res;
+    }
+
+    /**
+     * Returns a copy of the row permutation. Row i of P x A is row
+     * pivot[i] + 1 of A, counting rows from one.
+     * @return
+     */
+    public int[] getPivot() {
+        int[] res = new int[n];
+        System.arraycopy(piv, 0, res, 0, n);
+        return res;
+    }
+
+    /**
+     * Solves A x X = B for X, where A is the decomposed matrix. Each column
+     * of B is a separate right-hand side.
+     * @param b
+     * @return X, or null if the decomposed matrix is singular.
+     */
+    public Matrix solve(Matrix b) {
+        if (b.rows != n) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        if (isSingular()) {
+            return null;
+        }
+
+        int m = b.cols;
+        Matrix res = new Matrix(n, m);
+        double[] x = res.elem;
+        for (int i = 0; i < n; i++) {
+            if (b.isContiguous()) {
+                System.arraycopy(b.elem, piv[i] * m, x, i * m, m);
+                continue;
+            }
+            for (int j = 0; j < m; j++) {
+                x[i * m + j] = b.get0(piv[i], j);
+            }
+        }
+        solveInPlace(lu, n, x, m);
+        return res;
+    }
+
+    /**
+     * Calculates the inverse of the decomposed matrix.
+     * @return The inverse, or null if the decomposed matrix is singular.
+     */
+    public SqMatrix inv() {
+        if (isSingular()) {
+            return null;
+        }
+
+        SqMatrix res = new SqMatrix(n);
+        for (int i = 0; i < n; i++) {
+            res.elem[i * n + piv[i]] = 1;
+        }
+        solveInPlace(lu, n, res.elem, n);
+        return res;
+    }
+
+    /**
+     * Runs forward and back substitution with the factors in lu on the
+     * already permuted n x m right-hand side x, replacing it with the
+     * solution.
+     */
+    static void solveInPlace(double[] lu, int n, double[] x, int m) {
+        for (int k = 0; k < n; k++) {
+            int km = k * m;
+            for (int i = k + 1; i < n; i++) {
+                double f = lu[i * n + k];
+                if (f == 0) {
+                    continue;
+                }
+                int im = i * m;
+                for (int j = 0; j < m; j++) {
+                    x[im + j] -= f * x[km + j];
+                }
+            }
+        }
+
+        for (int k = n - 1; k >= 0; k--) {
+            int km = k * m;
+            double d = lu[k * n + k];
+            for (int j = 0; j < m; j++) {
+                x[km + j] /= d;
+            }
+            for (int i = 0; i < k; i++) {
+                double f = lu[i * n + k];
+                if (f == 0) {
+                    continue;
+                }
+                int im = i * m;
+                for (int j = 0; j < m; j++) {
+                    x[im + j] -= f * x[km + j];
+                }
+            }
+        }
+    }
+}
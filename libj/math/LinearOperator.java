@@ -0,0 +1,119 @@
+package libj.math;
+
+/**
+ * A square linear map given only by its product with a vector, which is all
+ * an {@link IterativeSolver} needs. Dense matrices, views, structured and
+ * sparse matrices can be wrapped with the of methods, and other operators,
+ * such as a product that is never formed explicitly, can implement this
+ * interface directly.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see IterativeSolver
+ */
+public interface LinearOperator {
+
+    /**
+     * Returns the dimension of the vectors this operator maps between.
+     * @return
+     */
+    int dim();
+
+    /**
+     * Computes [y] = [A] x [x]. X and y are never the same array.
+     * @param x
+     * @param y
+     */
+    void apply(double[] x, double[] y);
+
+    /**
+     * Wraps a square matrix, which may be a view or structured matrix. The
+     * product runs through the default {@link MatrixExecutor}, split by
+     * rows.
+     * @param m
+     * @return
+     */
+    static LinearOperator of(Matrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        int n = m.rows;
+
+        if (m instanceof StructuredMatrix) {
+            StructuredMatrix s = (StructuredMatrix) m;
+            return new LinearOperator() {
+                @Override
+                public int dim() {
+                    return n;
+                }
+
+                @Override
+                public void apply(double[] x, double[] y) {
+                    MatrixExecutor.getDefault().forRange(n, s.workPerRow(), (from, to) ->
+                        s.mulRows(x, 0, 1, 1, 1, y, from, to));
+                }
+            };
+        }
+
+        return new LinearOperator() {
+            @Override
+            public int dim() {
+                return n;
+            }
+
+            @Override
+            public void apply(double[] x, double[] y) {
+                MatrixExecutor.getDefault().forRange(n, n, (from, to) -> mulRows(m, x, y, from, to));
+            }
+        };
+    }
+
+    /**
+     * Wraps a square sparse matrix.
+     * @param m
+     * @return
+     */
+    static LinearOperator of(SparseMatrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        int n = m.rows;
+        return new LinearOperator() {
+            @Override
+            public int dim() {
+                return n;
+            }
+
+            @Override
+            public void apply(double[] x, double[] y) {
+                m.mul(x, y);
+            }
+        };
+    }
+
+    /**
+     * Computes rows rowFrom (inclusive) to rowTo (exclusive) of [m] x [x].
+     */
+    private static void mulRows(Matrix m, double[] x, double[] y, int rowFrom, int rowTo) {
+        int n = m.cols;
+        if (m.isStrided()) {
+            double[] d = m.data();
+            int rs = m.rowStride();
+            int cs = m.colStride();
+            for (int r = rowFrom; r < rowTo; r++) {
+                int ri = m.offset() + r * rs;
+                double sum = 0;
+                for (int c = 0; c < n; c++) {
+                    sum += d[ri + c * cs] * x[c];
+                }
+                y[r] = sum;
+            }
+            return;
+        }
+        for (int r = rowFrom; r < rowTo; r++) {
+            double sum = 0;
+            for (int c = 0; c < n; c++) {
+                sum += m.get0(r, c) * x[c];
+            }
+            y[r] = sum;
+        }
+    }
+}
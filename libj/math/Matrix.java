@@ -1,6 +1,10 @@
 package libj.math;
 
 import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -73,6 +77,19 @@ public class Matrix {
         }
     }
     
+    /**
+     * Creates a matrix with the given dimensions around existing storage,
+     * without allocating any elements. Used by views, which pass null.
+     * @param rows
+     * @param cols
+     * @param elem 
+     */
+    Matrix(int rows, int cols, double[] elem) {
+        this.rows = rows;
+        this.cols = cols;
+        this.elem = elem;
+    }
+    
     /**
      * Returns the number of rows in this matrix.
      * @return 
@@ -95,10 +112,40 @@ public class Matrix {
      */
     public double[] getElements() {
         double[] elems = new double[rows * cols];
-        System.arraycopy(elem, 0, elems, 0, elem.length);
+        copyTo(elems);
         return elems;
     }
     
+    /**
+     * Copies this matrix's elements, row-first, into the start of an array
+     * with room for at least rows x cols elements.
+     * @param dest 
+     */
+    public void getElementsInto(double[] dest) {
+        if (dest.length < rows * cols) {
+            throw new IllegalArgumentException("Destination array is too small");
+        }
+        copyTo(dest);
+    }
+    
+    /**
+     * Copies this matrix's elements, row-first, into the start of an array.
+     * @param dest 
+     */
+    void copyTo(double[] dest) {
+        if (isContiguous()) {
+            System.arraycopy(elem, 0, dest, 0, rows * cols);
+            return;
+        }
+        
+        int i = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                dest[i++] = get0(r, c);
+            }
+        }
+    }
+    
     /**
      * Lambda function interface for iterating though each element of the
      * matrix.
@@ -119,17 +166,94 @@ public class Matrix {
     /**
      * Iterates through every element in this matrix, supplying row number,
      * column number and value for each element. Note that the action performed
-     * for each element cannot change the element's value.
+     * for each element cannot change the element's value; use replaceAll for
+     * that.
      * @param action 
      * @see EachElementAction
      * @see EachElementAction#perform(int, int, double) 
      */
     public void forEach(EachElementAction action) {
-        for (int r = 1; r <= rows; r++) {
-            for (int c = 1; c <= cols; c++) {
-                action.perform(r, c, getElem(r, c));
-            }
+        MatrixKernel.forEach(this, action, 0, rows);
+    }
+    
+    /**
+     * Iterates through every element in this matrix like forEach, but splits
+     * the rows across threads with the default {@link MatrixExecutor}. The
+     * action may be called for several elements at once, in no particular
+     * order, so it must be safe to call from several threads.
+     * @param action 
+     * @see #forEach(libj.math.Matrix.EachElementAction)
+     */
+    public void forEachParallel(EachElementAction action) {
+        MatrixExecutor.getDefault().forRange(rows, cols, (from, to) ->
+            MatrixKernel.forEach(this, action, from, to));
+    }
+    
+    /**
+     * Returns a spliterator over the elements of this matrix, row-first,
+     * which can also supply the row and column of each element.
+     * @return 
+     * @see ElementSpliterator
+     */
+    public ElementSpliterator spliterator() {
+        return new ElementSpliterator(this, 0, (long) rows * cols);
+    }
+    
+    /**
+     * Returns a sequential stream of the elements of this matrix, row-first.
+     * Call parallel() on it to split the rows across threads.
+     * @return 
+     */
+    public DoubleStream stream() {
+        return StreamSupport.doubleStream(spliterator(), false);
+    }
+    
+    /**
+     * Lambda function interface for computing a new value for each element
+     * of the matrix.
+     * @see Matrix#replaceAll(libj.math.Matrix.ElementOperator)
+     */
+    @FunctionalInterface
+    public interface ElementOperator {
+        /**
+         * Returns the new value of an element.
+         * @param r
+         * @param c
+         * @param e The current value of the element.
+         * @return 
+         */
+        public double apply(int r, int c, double e);
+    }
+    
+    /**
+     * Replaces every element in this matrix with the value returned by the
+     * operator, which is given the row number, column number and current
+     * value of each element. The rows are split across threads with the
+     * default {@link MatrixExecutor}, so the operator must be safe to call
+     * from several threads.
+     * @param op 
+     * @see #mapInPlace(java.util.function.DoubleUnaryOperator)
+     */
+    public void replaceAll(ElementOperator op) {
+        MatrixExecutor.getDefault().forRange(rows, cols, (from, to) ->
+            MatrixKernel.replace(this, op, from, to));
+    }
+    
+    /**
+     * Applies a function to every element in this matrix, in place. The
+     * elements are split across threads with the default
+     * {@link MatrixExecutor}, so the function must be safe to call from
+     * several threads.
+     * @param f 
+     * @see #replaceAll(libj.math.Matrix.ElementOperator)
+     */
+    public void mapInPlace(DoubleUnaryOperator f) {
+        MatrixExecutor exec = MatrixExecutor.getDefault();
+        if (isContiguous()) {
+            exec.forRange(rows * cols, 1, (from, to) -> MatrixKernel.map(elem, f, from, to));
+            return;
         }
+        exec.forRange(rows, cols, (from, to) -> MatrixKernel.map(this, f, from, to));
     }
     
     /**
@@ -154,7 +278,7 @@ public class Matrix {
             return 0;
         }
         
-        return elem[(row - 1) * cols + (col - 1)];
+        return get0(row - 1, col - 1);
     }
     
     /**
@@ -168,7 +292,7 @@ public class Matrix {
             return;
         }
         
-        elem[(row - 1) * cols + (col - 1)] = value;
+        set0(row - 1, col - 1, value);
     }
     
     /**
@@ -177,11 +301,145 @@ public class Matrix {
      * @param elems 
      */
     public void setAll(double[] elems) {
-        if (elems.length < elem.length) {
+        if (elems.length < rows * cols) {
             return;
         }
         
-        System.arraycopy(elems, 0, elem, 0, elem.length);
+        if (isContiguous()) {
+            System.arraycopy(elems, 0, elem, 0, rows * cols);
+            return;
+        }
+        
+        int i = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                set0(r, c, elems[i++]);
+            }
+        }
+    }
+    
+    /**
+     * Returns the value of the element in the given zero-based row and column,
+     * without checking that it is within the matrix.
+     * @param r
+     * @param c
+     * @return 
+     */
+    double get0(int r, int c) {
+        return elem[r * cols + c];
+    }
+    
+    /**
+     * Sets the value of the element in the given zero-based row and column,
+     * without checking that it is within the matrix.
+     * @param r
+     * @param c
+     * @param value 
+     */
+    void set0(int r, int c, double value) {
+        elem[r * cols + c] = value;
+    }
+    
+    /**
+     * Copies len elements of a row, starting at a zero-based column, into buf.
+     * @param r Zero-based row.
+     * @param c Zero-based column of the first element.
+     * @param len
+     * @param buf
+     * @param off Index in buf to write the first element to.
+     */
+    void getRow(int r, int c, int len, double[] buf, int off) {
+        if (isContiguous()) {
+            System.arraycopy(elem, r * cols + c, buf, off, len);
+            return;
+        }
+        for (int j = 0; j < len; j++) {
+            buf[off + j] = get0(r, c + j);
+        }
+    }
+    
+    /**
+     * Sets len elements of a row, starting at a zero-based column, to the
+     * values in buf.
+     * @param r Zero-based row.
+     * @param c Zero-based column of the first element.
+     * @param len
+     * @param buf
+     * @param off Index in buf of the first value.
+     */
+    void setRow(int r, int c, int len, double[] buf, int off) {
+        if (isContiguous()) {
+            System.arraycopy(buf, off, elem, r * cols + c, len);
+            return;
+        }
+        for (int j = 0; j < len; j++) {
+            set0(r, c + j, buf[off + j]);
+        }
+    }
+    
+    /**
+     * Checks if operations should stream this matrix's rows through small
+     * buffers instead of copying the whole matrix to the heap. This is true
+     * for matrices stored off the heap.
+     * @return 
+     */
+    boolean prefersStreaming() {
+        return false;
+    }
+    
+    /**
+     * Checks if elem holds exactly the elements of this matrix, row-first
+     * from index zero. This is true for every matrix except views.
+     * @return 
+     */
+    boolean isContiguous() {
+        return true;
+    }
+    
+    /**
+     * Checks if the elements of this matrix can be addressed in the array
+     * returned by data(), as
+     * data()[offset() + r * rowStride() + c * colStride()].
+     * @return 
+     */
+    boolean isStrided() {
+        return true;
+    }
+    
+    /**
+     * Returns the array holding this matrix's elements.
+     * @return 
+     * @see #isStrided()
+     */
+    double[] data() {
+        return elem;
+    }
+    
+    /**
+     * Returns the index in data() of the first element.
+     * @return 
+     * @see #isStrided()
+     */
+    int offset() {
+        return 0;
+    }
+    
+    /**
+     * Returns the distance in data() between two consecutive rows.
+     * @return 
+     * @see #isStrided()
+     */
+    int rowStride() {
+        return cols;
+    }
+    
+    /**
+     * Returns the distance in data() between two consecutive columns.
+     * @return 
+     * @see #isStrided()
+     */
+    int colStride() {
+        return 1;
     }
     
     /**
@@ -189,9 +447,7 @@ public class Matrix {
      * @param c 
      */
     public void mul(double c) {
-        for (int i = 0; i < elem.length; i++) {
-            elem[i] *= c;
-        }
+        MatrixExecutor.getDefault().mul(this, c);
     }
     
     /**
@@ -199,13 +455,7 @@ public class Matrix {
      * @param other 
      */
     public void add(Matrix other) {
-        if (other.rows != rows || other.cols != cols) {
-            return;
-        }
-        
-        for (int i = 0; i < elem.length; i++) {
-            elem[i] += other.elem[i];
-        }
+        MatrixExecutor.getDefault().add(this, other);
     }
     
     /**
@@ -214,26 +464,117 @@ public class Matrix {
      * @param other 
      */
     public void sub(Matrix other) {
-        if (other.rows != rows || other.cols != cols) {
-            return;
-        }
-        
-        for (int i = 0; i < elem.length; i++) {
-            elem[i] -= other.elem[i];
-        }
+        MatrixExecutor.getDefault().sub(this, other);
     }
     
     /**
      * Multiplies this matrix by another matrix, changing this matrix's
      * elements.
-     * Multiplication order is: [this] = [this] x [other]
+     * Multiplication order is: [this] = [this] x [other] <br>
+     * If this matrix is a view or an {@link OffHeapMatrix}, the other matrix
+     * must be square, since the dimensions of a view or of off-heap storage
+     * can't change. An OffHeapMatrix is multiplied band by band of rows
+     * through small heap buffers, so it never needs to fit on the heap.
      * @param other 
      */
     public void mul(Matrix other) {
-        Matrix res = mul(this, other);
-        rows = res.rows();
-        cols = res.cols();
-        elem = res.elem;
+        if (cols != other.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        int size = Math.max(rows, Math.max(cols, other.cols));
+        long flops = 2L * rows * cols * other.cols;
+        long bytes = prefersStreaming() || isContiguous() && other.isContiguous() && other.cols == cols
+                ? 0 : 8L * rows * other.cols;
+        MatrixExecutor exec = MatrixExecutor.getDefault();
+        if (prefersStreaming()) {
+            if (other.cols != cols) {
+                throw new UnsupportedOperationException("Can't change the dimensions of off-heap storage");
+            }
+            mulStreamingInPlace(other, exec);
+        }
+        else if (!isContiguous()) {
+            if (other.cols != cols) {
+                throw new UnsupportedOperationException("Can't change the dimensions of a view");
+            }
+            setAll(exec.mul(this, other).elem);
+        }
+        else if (!other.isContiguous()) {
+            Matrix res = exec.mul(this, other);
+            cols = res.cols;
+            elem = res.elem;
+        }
+        else if (exec.usesStrassen(this, other)) {
+            mulStrassenInPlace(other, exec);
+        }
+        else if (other.cols == cols && other != this && !exec.isParallel()) {
+            MatrixWorkspace ws = MatrixWorkspace.current();
+            double[] buf = ws.acquire(MatrixKernel.mulInPlaceBufferSize(rows, cols));
+            MatrixKernel.mulInPlace(elem, other.elem, rows, cols, buf);
+            ws.release(buf);
+        }
+        else if (other.cols == cols) {
+            MatrixWorkspace ws = MatrixWorkspace.current();
+            double[] res = ws.acquire(rows * cols);
+            exec.mul(elem, other.elem, res, rows, cols, cols);
+            System.arraycopy(res, 0, elem, 0, rows * cols);
+            ws.release(res);
+        }
+        else {
+            double[] res = new double[rows * other.cols];
+            exec.mul(elem, other.elem, res, rows, cols, other.cols);
+            cols = other.cols;
+            elem = res;
+        }
+        MatrixMetrics.end(ev, MatrixMetrics.Operation.MUL, size, flops, bytes);
+    }
+    
+    /**
+     * Multiplies this dense matrix in place with Strassen's algorithm, into
+     * a workspace matrix which is copied back when other is square, and
+     * otherwise into a new matrix whose elements are taken over.
+     * @param other
+     * @param exec 
+     */
+    private void mulStrassenInPlace(Matrix other, MatrixExecutor exec) {
+        if (other.cols == cols) {
+            MatrixWorkspace ws = MatrixWorkspace.current();
+            Matrix res = ws.acquire(rows, cols);
+            exec.mul(this, other, res);
+            System.arraycopy(res.elem, 0, elem, 0, rows * cols);
+            ws.release(res);
+        }
+        else {
+            Matrix res = new Matrix(rows, other.cols);
+            exec.mul(this, other, res);
+            cols = res.cols;
+            elem = res.elem;
+        }
+    }
+    
+    /**
+     * Multiplies this matrix in place by a square matrix, streaming each band
+     * of rows through small heap buffers. Each band is read in full before
+     * its product is written back, so only a product with itself, whose rows
+     * are still needed as the right operand, goes through a temporary
+     * off-heap matrix.
+     * @param other
+     * @param exec 
+     */
+    private void mulStreamingInPlace(Matrix other, MatrixExecutor exec) {
+        if (other == this) {
+            OffHeapMatrix tmp = OffHeapMatrix.allocate(rows, cols);
+            OffHeapMatrix.mul(this, this, tmp);
+            double[] buf = new double[cols];
+            for (int r = 0; r < rows; r++) {
+                tmp.getRow(r, 0, cols, buf, 0);
+                setRow(r, 0, cols, buf, 0);
+            }
+            return;
+        }
+        exec.forRange(rows, (long) cols * cols, (from, to) ->
+            MatrixKernel.mulStreaming(this, other, this, from, to));
     }
     
     /**
@@ -244,37 +585,60 @@ public class Matrix {
      * @return 
      */
     public static Matrix mul(Matrix first, Matrix second) {
-        if (first.cols != second.rows) {
-            throw new IllegalArgumentException("Incompatible matrix dimensions");
-        }
-        
-        Matrix res = new Matrix(first.rows, second.cols);
-        for (int r = 1; r <= res.rows; r++) {
-            for (int c = 1; c <= res.cols; c++) {
-                double e = 0;
-                for (int i = 1; i <= first.cols; i++) {
-                    e += first.getElem(r, i) * second.getElem(i, c);
-                }
-                res.setElem(r, c, e);
-            }
-        }
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        Matrix res = MatrixExecutor.getDefault().mul(first, second);
+        MatrixMetrics.end(ev, MatrixMetrics.Operation.MUL, mulSize(first, second),
+                2L * first.rows * first.cols * second.cols, 8L * res.rows * res.cols);
         return res;
     }
     
+    /**
+     * Multiplies two matrices, storing the result in dest instead of
+     * allocating a new matrix. Multiplication order is:
+     * [dest] = [first] x [second] <br>
+     * Dest may be a view, but must not share elements with either operand.
+     * @param first
+     * @param second
+     * @param dest 
+     */
+    public static void mulInto(Matrix first, Matrix second, Matrix dest) {
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        MatrixExecutor.getDefault().mul(first, second, dest);
+        MatrixMetrics.end(ev, MatrixMetrics.Operation.MUL, mulSize(first, second),
+                2L * first.rows * first.cols * second.cols, 0);
+    }
+    
+    /**
+     * Returns the largest dimension of the operands of a product, which is
+     * the size recorded by {@link MatrixMetrics}.
+     */
+    private static int mulSize(Matrix first, Matrix second) {
+        return Math.max(first.rows, Math.max(first.cols, second.cols));
+    }
+    
     /**
      * Returns a transposed version of this matrix.
      * @return 
      */
     public Matrix transpose() {
-        Matrix res = new Matrix(cols, rows);
-        for (int i = 1; i <= rows; i++) {
-            for (int j = 1; j <= cols; j++) {
-                res.setElem(j, i, getElem(i, j));
-            }
-        }
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        Matrix res = MatrixExecutor.getDefault().transpose(this);
+        MatrixMetrics.end(ev, MatrixMetrics.Operation.TRANSPOSE, Math.max(rows, cols), 0, 8L * rows * cols);
         return res;
     }
     
+    /**
+     * Stores the transpose of this matrix in dest, which must have as many
+     * rows as this matrix has columns and vice versa, and must not share
+     * elements with this matrix.
+     * @param dest 
+     */
+    public void transposeInto(Matrix dest) {
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        MatrixExecutor.getDefault().transpose(this, dest);
+        MatrixMetrics.end(ev, MatrixMetrics.Operation.TRANSPOSE, Math.max(rows, cols), 0, 0);
+    }
+    
     /**
      * Returns a sub-matrix of this matrix, removing one row and one column.
      * @param row The row to remove.
@@ -290,11 +654,8 @@ public class Matrix {
             return null;
         }
         
-        Matrix res = new Matrix(rows - 1, cols - 1);
-        if (res.rows == res.cols) {
-            res = new SqMatrix(res.rows);
-        }
-        
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        Matrix res = rows == cols ? new SqMatrix(rows - 1) : new Matrix(rows - 1, cols - 1);
         for (int r = 1; r < rows; r++) {
             for (int c = 1; c < cols; c++) {
                 int sr = r < row ? r : r + 1;
@@ -302,10 +663,114 @@ public class Matrix {
                 res.setElem(r, c, getElem(sr, sc));
             }
         }
+        MatrixMetrics.end(ev, MatrixMetrics.Operation.SUBMAT, Math.max(rows, cols), 0,
+                8L * res.rows * res.cols);
         
         return res;
     }
     
+    /**
+     * Stores the sub-matrix of this matrix with one row and one column removed
+     * in dest, which must have one row and one column less than this matrix
+     * and must not share elements with it.
+     * @param row The row to remove.
+     * @param col The column to remove.
+     * @param dest 
+     */
+    public void subMatInto(int row, int col, Matrix dest) {
+        if (!isWithin(row, col)) {
+            throw new IllegalArgumentException("Row or column is not within matrix");
+        }
+        if (dest.rows != rows - 1 || dest.cols != cols - 1) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        for (int r = 0; r < dest.rows; r++) {
+            int sr = r < row - 1 ? r : r + 1;
+            for (int c = 0; c < dest.cols; c++) {
+                dest.set0(r, c, get0(sr, c < col - 1 ? c : c + 1));
+            }
+        }
+        MatrixMetrics.end(ev, MatrixMetrics.Operation.SUBMAT, Math.max(rows, cols), 0, 0);
+    }
+    
+    /**
+     * Returns a transposed view of this matrix. Unlike transpose(), no
+     * elements are copied, and changes to the view write through to this
+     * matrix.
+     * @return 
+     * @see TransposedView
+     */
+    public Matrix transposeView() {
+        return new TransposedView(this);
+    }
+    
+    /**
+     * Returns a view of this matrix with one row and one column removed.
+     * Unlike subMat(int, int), no elements are copied, and changes to the
+     * view write through to this matrix.
+     * @param row The row to remove.
+     * @param col The column to remove.
+     * @return the view, or null if the sub-matrix is empty.
+     * @see MinorView
+     */
+    public Matrix subMatView(int row, int col) {
+        if (!isWithin(row, col)) {
+            throw new IllegalArgumentException("Row or column is not within matrix");
+        }
+        
+        if (rows - 1 <= 0 || cols - 1 <= 0) {
+            return null;
+        }
+        
+        return new MinorView(this, row, col);
+    }
+    
+    /**
+     * Returns a view of a rectangular block of this matrix. No elements are
+     * copied, and changes to the view write through to this matrix.
+     * @param row The first row of the block.
+     * @param col The first column of the block.
+     * @param rows Number of rows in the block.
+     * @param cols Number of columns in the block.
+     * @return 
+     * @see BlockView
+     */
+    public Matrix blockView(int row, int col, int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Rows or cols can't be zero or negative");
+        }
+        
+        if (!isWithin(row, col) || !isWithin(row + rows - 1, col + cols - 1)) {
+            throw new IllegalArgumentException("Block is not within matrix");
+        }
+        
+        return new BlockView(this, row - 1, col - 1, rows, cols);
+    }
+    
+    /**
+     * Creates the QR decomposition of this matrix, which must have at least
+     * as many rows as columns. The decomposition is a snapshot, and does not
+     * follow later changes to this matrix.
+     * @return 
+     * @see QRDecomposition#solve(libj.math.Matrix)
+     */
+    public QRDecomposition qr() {
+        return new QRDecomposition(this);
+    }
+    
+    /**
+     * Creates the thin singular value decomposition of this matrix. The
+     * decomposition is a snapshot, and does not follow later changes to this
+     * matrix.
+     * @return 
+     * @see SingularValueDecomposition#randomized(libj.math.Matrix, int)
+     */
+    public SingularValueDecomposition svd() {
+        return new SingularValueDecomposition(this);
+    }
+    
     /**
      * Sums all elements in a row.
      * @param row The number of the row to sum.
@@ -316,9 +781,13 @@ public class Matrix {
             throw new IllegalArgumentException("Row is not within matrix");
         }
         
+        if (isContiguous()) {
+            return MatrixKernel.sum(elem, (row - 1) * cols, row * cols);
+        }
+        
         double sum = 0;
-        for (int col = 1; col <= cols; col++) {
-            sum += getElem(row, col);
+        for (int c = 0; c < cols; c++) {
+            sum += get0(row - 1, c);
         }
         
         return sum;
@@ -342,16 +811,89 @@ public class Matrix {
         return sum;
     }
     
+    /**
+     * Sums all elements in each row, splitting the rows across threads with
+     * the default {@link MatrixExecutor}.
+     * @return an array holding the sum of row r at index r - 1.
+     */
+    public double[] sumRows() {
+        double[] res = new double[rows];
+        MatrixExecutor.getDefault().forRange(rows, cols, (from, to) ->
+            MatrixKernel.sumRows(this, res, from, to));
+        return res;
+    }
+    
+    /**
+     * Reduces each row to a single value, starting from identity and
+     * combining it with the elements of the row from left to right. The rows
+     * are split across threads with the default {@link MatrixExecutor}, and
+     * each row is reduced in the same order either way, so the result does
+     * not depend on the executor.
+     * @param identity
+     * @param op
+     * @return an array holding the result for row r at index r - 1.
+     */
+    public double[] reduceRows(double identity, DoubleBinaryOperator op) {
+        double[] res = new double[rows];
+        MatrixExecutor.getDefault().forRange(rows, cols, (from, to) ->
+            MatrixKernel.reduceRows(this, identity, op, res, from, to));
+        return res;
+    }
+    
+    /**
+     * Reduces all elements to a single value. Each row is reduced as by
+     * reduceRows, and the row results are then combined with op from the
+     * first row to the last, again starting from identity. Op must therefore
+     * be associative, with identity as its identity element, for the result
+     * to equal a plain left-to-right reduction, but it is always the same
+     * whatever the executor.
+     * @param identity
+     * @param op
+     * @return 
+     * @see #reduceRows(double, java.util.function.DoubleBinaryOperator)
+     */
+    public double reduce(double identity, DoubleBinaryOperator op) {
+        double acc = identity;
+        for (double r : reduceRows(identity, op)) {
+            acc = op.applyAsDouble(acc, r);
+        }
+        return acc;
+    }
+    
     /**
      * Returns a copy of this matrix.
      * @return 
      */
     public Matrix copy() {
         Matrix ret = new Matrix(rows, cols);
-        ret.setAll(elem);
+        copyTo(ret.elem);
         return ret;
     }
     
+    /**
+     * Copies this matrix's elements into dest, which must have the same
+     * dimensions. Dest may be a view.
+     * @param dest 
+     */
+    public void copyInto(Matrix dest) {
+        if (dest.rows != rows || dest.cols != cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (dest == this) {
+            return;
+        }
+        
+        if (dest.isContiguous()) {
+            copyTo(dest.elem);
+            return;
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                dest.set0(r, c, get0(r, c));
+            }
+        }
+    }
+    
     /**
      * Checks if this matrix is equal to another matrix. They are equal if and
      * only if their row and column count match, and each elements in this
@@ -376,10 +918,21 @@ public class Matrix {
             return false;
         }
         
-        int i = 0;
-        for (double e : elem) {
-            if (Double.doubleToLongBits(e) != Double.doubleToLongBits(mat.elem[i++])) {
-                return false;
+        if (isContiguous() && mat.isContiguous()) {
+            int i = 0;
+            for (double e : elem) {
+                if (Double.doubleToLongBits(e) != Double.doubleToLongBits(mat.elem[i++])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (Double.doubleToLongBits(get0(r, c)) != Double.doubleToLongBits(mat.get0(r, c))) {
+                    return false;
+                }
             }
         }
         
@@ -393,7 +946,7 @@ public class Matrix {
     @Override
     public int hashCode() {
         int hash = 5;
-        hash = 37 * hash + Arrays.hashCode(elem);
+        hash = 37 * hash + Arrays.hashCode(isContiguous() ? elem : getElements());
         hash = 37 * hash + rows;
         hash = 37 * hash + cols;
         return hash;
@@ -0,0 +1,80 @@
+package libj.math;
+
+/**
+ * The kind of kernels used for element-wise operations, sums and the inner
+ * loop of matrix multiplication.
+ * <br>
+ * The vector backend uses the JDK Vector API, and is only available when the
+ * JVM is started with {@code --add-modules jdk.incubator.vector}. When it is
+ * available it is used by default, unless the system property
+ * {@code libj.math.backend} is set to {@code scalar}.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see MatrixExecutor
+ */
+public enum MatrixBackend {
+    
+    /**
+     * Plain Java loops.
+     */
+    SCALAR,
+    
+    /**
+     * Loops using DoubleVector from the JDK Vector API.
+     */
+    VECTOR;
+    
+    private static final boolean vectorAvailable = detectVector();
+    
+    private static volatile MatrixBackend current = initial();
+    
+    /**
+     * Checks if the vector backend can be used in this JVM.
+     * @return 
+     */
+    public static boolean isVectorAvailable() {
+        return vectorAvailable;
+    }
+    
+    /**
+     * Returns the backend currently in use.
+     * @return 
+     */
+    public static MatrixBackend get() {
+        return current;
+    }
+    
+    /**
+     * Sets the backend to use from now on. Useful for comparing the results
+     * and speed of both backends.
+     * @param backend 
+     */
+    public static void set(MatrixBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("Backend can't be null");
+        }
+        if (backend == VECTOR && !vectorAvailable) {
+            throw new IllegalArgumentException("Vector backend is not available");
+        }
+        current = backend;
+    }
+    
+    private static boolean detectVector() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return false;
+        }
+        try {
+            return VectorKernel.isSupported();
+        }
+        catch (LinkageError e) {
+            return false;
+        }
+    }
+    
+    private static MatrixBackend initial() {
+        String prop = System.getProperty("libj.math.backend");
+        if ("scalar".equalsIgnoreCase(prop)) {
+            return SCALAR;
+        }
+        return vectorAvailable ? VECTOR : SCALAR;
+    }
+}
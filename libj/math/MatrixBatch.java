@@ -0,0 +1,304 @@
+package libj.math;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A batch of equally sized small square matrices, such as per-entity
+ * transforms or per-element Jacobians, stored together in one array. Element
+ * (r, c) of every matrix in the batch is stored next to the same element of
+ * the next matrix, so operations on the whole batch run one loop over the
+ * matrices per element, which the JIT can vectorize, instead of one small
+ * loop per matrix. There is also only one object, instead of a Matrix and an
+ * array per matrix.
+ * <br>
+ * Determinants and inverses of matrices up to 4 x 4 use closed forms, which
+ * are much faster than an LU decomposition but do not pivot, so they may be
+ * less accurate for badly conditioned matrices. Larger matrices are
+ * decomposed one by one. Operations on a whole batch are split across threads
+ * by the default {@link MatrixExecutor}, and give the same results either
+ * way.
+ * <br>
+ * Matrices in a batch are numbered from one, like rows and columns.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see SqMatrix
+ */
+public class MatrixBatch {
+
+    /**
+     * The elements of all matrices, where element (r, c) of matrix i is at
+     * data[(r * dim + c) * size + i], all zero-based.
+     */
+    final double[] data;
+
+    /**
+     * Dimension of each matrix.
+     */
+    private final int dim;
+
+    /**
+     * Number of matrices.
+     */
+    private final int size;
+
+    /**
+     * Creates a batch of the given number of dim x dim matrices, with all
+     * elements set to zero.
+     * @param dim
+     * @param size
+     */
+    public MatrixBatch(int dim, int size) {
+        if (dim <= 0 || size <= 0) {
+            throw new IllegalArgumentException("Dimension or size can't be zero or negative");
+        }
+        if ((long) dim * dim * size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Batch is too large");
+        }
+
+        this.dim = dim;
+        this.size = size;
+        data = new double[dim * dim * size];
+    }
+
+    /**
+     * Creates a batch holding copies of the given square matrices, which
+     * must all have the same dimension.
+     * @param matrices
+     * @return
+     */
+    public static MatrixBatch of(Matrix... matrices) {
+        if (matrices.length == 0) {
+            throw new IllegalArgumentException("Batch can't be empty");
+        }
+
+        MatrixBatch res = new MatrixBatch(matrices[0].rows, matrices.length);
+        for (int i = 0; i < matrices.length; i++) {
+            res.set(i + 1, matrices[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the dimension of each matrix in this batch.
+     * @return
+     */
+    public int dim() {
+        return dim;
+    }
+
+    /**
+     * Returns the number of matrices in this batch.
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of an element of one of the matrices.
+     * @param index The number of the matrix.
+     * @param row
+     * @param col
+     * @return
+     */
+    public double getElem(int index, int row, int col) {
+        return data[position(index, row, col)];
+    }
+
+    /**
+     * Sets the value of an element of one of the matrices.
+     * @param index The number of the matrix.
+     * @param row
+     * @param col
+     * @param value
+     */
+    public void setElem(int index, int row, int col, double value) {
+        data[position(index, row, col)] = value;
+    }
+
+    private int position(int index, int row, int col) {
+        if (index <= 0 || index > size) {
+            throw new IllegalArgumentException("Index is not within batch");
+        }
+        if (row <= 0 || row > dim || col <= 0 || col > dim) {
+            throw new IllegalArgumentException("Row or column is not within matrix");
+        }
+        return ((row - 1) * dim + col - 1) * size + index - 1;
+    }
+
+    /**
+     * Returns a copy of one of the matrices.
+     * @param index The number of the matrix.
+     * @return
+     */
+    public SqMatrix get(int index) {
+        checkIndex(index);
+        SqMatrix res = new SqMatrix(dim);
+        for (int e = 0; e < dim * dim; e++) {
+            res.elem[e] = data[e * size + index - 1];
+        }
+        return res;
+    }
+
+    /**
+     * Sets one of the matrices to a copy of the given matrix, which must have
+     * the same dimensions and may be a view.
+     * @param index The number of the matrix.
+     * @param m
+     */
+    public void set(int index, Matrix m) {
+        checkIndex(index);
+        if (m.rows != dim || m.cols != dim) {
+            throw new IllegalArgumentException("Matrix has wrong dimensions");
+        }
+        for (int r = 0; r < dim; r++) {
+            for (int c = 0; c < dim; c++) {
+                data[(r * dim + c) * size + index - 1] = m.get0(r, c);
+            }
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index <= 0 || index > size) {
+            throw new IllegalArgumentException("Index is not within batch");
+        }
+    }
+
+    /**
+     * Sets every matrix in this batch to the identity matrix.
+     */
+    public void loadIdentity() {
+        for (int r = 0; r < dim; r++) {
+            for (int c = 0; c < dim; c++) {
+                int o = (r * dim + c) * size;
+                Arrays.fill(data, o, o + size, r == c ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Calculates the determinant of every matrix in this batch.
+     * @return an array holding the determinant of matrix i at index i - 1.
+     */
+    public double[] det() {
+        double[] res = new double[size];
+        detInto(res);
+        return res;
+    }
+
+    /**
+     * Calculates the determinant of every matrix in this batch, storing the
+     * determinant of matrix i at index i - 1 of dest.
+     * @param dest
+     */
+    public void detInto(double[] dest) {
+        if (dest.length < size) {
+            throw new IllegalArgumentException("Destination array is too small");
+        }
+        MatrixExecutor.getDefault().forRange(size, work(), (from, to) ->
+            BatchKernel.det(data, dim, size, dest, from, to));
+    }
+
+    /**
+     * Generates a batch holding the inverse of every matrix in this batch.
+     * The inverses of singular matrices have all elements set to NaN.
+     * @return
+     */
+    public MatrixBatch inv() {
+        MatrixBatch res = new MatrixBatch(dim, size);
+        invInto(res);
+        return res;
+    }
+
+    /**
+     * Stores the inverse of every matrix in this batch in the same position
+     * of dest, which must have the same dimension and size, and may be this
+     * batch itself. The inverses of singular matrices have all elements set
+     * to NaN.
+     * @param dest
+     * @return the number of singular matrices.
+     */
+    public int invInto(MatrixBatch dest) {
+        checkSame(dest);
+        AtomicInteger singular = new AtomicInteger();
+        MatrixExecutor.getDefault().forRange(size, work(), (from, to) ->
+            singular.addAndGet(BatchKernel.inv(data, dim, size, dest.data, from, to)));
+        return singular.get();
+    }
+
+    /**
+     * Multiplies each matrix in one batch with the matrix in the same
+     * position in another, and returns the batch of products. Multiplication
+     * order is: [first] x [second]
+     * @param first
+     * @param second
+     * @return
+     */
+    public static MatrixBatch mul(MatrixBatch first, MatrixBatch second) {
+        MatrixBatch res = new MatrixBatch(first.dim, first.size);
+        mulInto(first, second, res);
+        return res;
+    }
+
+    /**
+     * Multiplies each matrix in one batch with the matrix in the same
+     * position in another, storing the products in dest, which must not be
+     * either operand. Multiplication order is: [dest] = [first] x [second]
+     * @param first
+     * @param second
+     * @param dest
+     */
+    public static void mulInto(MatrixBatch first, MatrixBatch second, MatrixBatch dest) {
+        first.checkSame(second);
+        first.checkSame(dest);
+        if (dest == first || dest == second) {
+            throw new IllegalArgumentException("Destination can't be an operand");
+        }
+        int n = first.dim;
+        MatrixExecutor.getDefault().forRange(first.size, (long) n * n * n, (from, to) ->
+            BatchKernel.mul(first.data, second.data, dest.data, n, first.size, from, to));
+    }
+
+    /**
+     * Returns a batch holding the transpose of every matrix in this batch.
+     * @return
+     */
+    public MatrixBatch transpose() {
+        MatrixBatch res = new MatrixBatch(dim, size);
+        transposeInto(res);
+        return res;
+    }
+
+    /**
+     * Stores the transpose of every matrix in this batch in the same
+     * position of dest, which must have the same dimension and size, and may
+     * be this batch itself.
+     * @param dest
+     */
+    public void transposeInto(MatrixBatch dest) {
+        checkSame(dest);
+        MatrixExecutor.getDefault().forRange(size, (long) dim * dim, (from, to) ->
+            BatchKernel.transpose(data, dest.data, dim, size, from, to));
+    }
+
+    private void checkSame(MatrixBatch other) {
+        if (other.dim != dim || other.size != size) {
+            throw new IllegalArgumentException("Batches have different dimensions or sizes");
+        }
+    }
+
+    /**
+     * Returns the approximate work per matrix of a determinant or inverse.
+     */
+    private long work() {
+        return (long) dim * dim * dim;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("MatrixBatch[").append(size).append(" x ").append(dim).append("x").append(dim);
+        sb.append("]@").append(Integer.toHexString(hashCode()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,532 @@
+package libj.math;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decides how matrix operations are executed, either serially on the calling
+ * thread or split into row bands on a ForkJoinPool. Work is only split once it
+ * crosses a size threshold, so small matrices never pay for task overhead.
+ * <br>
+ * The methods in Matrix use the default executor, which is serial unless
+ * changed with {@link #setDefault(libj.math.MatrixExecutor)}. Parallel
+ * execution gives exactly the same results as serial execution, since every
+ * element is computed by the same kernel in the same order.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix
+ */
+public class MatrixExecutor {
+
+    /**
+     * Default amount of work, in multiply-adds or element updates, below which
+     * an operation is not split.
+     */
+    public static final long DEFAULT_THRESHOLD = 1L << 16;
+
+    /**
+     * Suggested cutoff for {@link #withStrassen(int)}. Below about this size,
+     * the blocked kernel is faster than another level of recursion.
+     */
+    public static final int DEFAULT_STRASSEN_CUTOFF = 256;
+
+    private static final MatrixExecutor SERIAL = new MatrixExecutor(null, 1, Long.MAX_VALUE, 0);
+
+    private static volatile MatrixExecutor defaultExecutor = SERIAL;
+
+    private final ForkJoinPool pool;
+
+    private final int parallelism;
+
+    private final long threshold;
+
+    /**
+     * Smallest dimension above which products use Strassen's algorithm, or
+     * zero if they never do.
+     */
+    private final int strassenCutoff;
+
+    private MatrixExecutor(ForkJoinPool pool, int parallelism, long threshold, int strassenCutoff) {
+        this.pool = pool;
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+        this.strassenCutoff = strassenCutoff;
+    }
+
+    /**
+     * Returns an executor that runs every operation on the calling thread.
+     * @return
+     */
+    public static MatrixExecutor serial() {
+        return SERIAL;
+    }
+
+    /**
+     * Returns an executor that splits large operations across the common
+     * ForkJoinPool.
+     * @return
+     */
+    public static MatrixExecutor parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns an executor that splits large operations across the common
+     * ForkJoinPool, into at most the given number of concurrent tasks.
+     * @param parallelism
+     * @return
+     */
+    public static MatrixExecutor parallel(int parallelism) {
+        return parallel(ForkJoinPool.commonPool(), parallelism);
+    }
+
+    /**
+     * Returns an executor that splits large operations across the given pool.
+     * @param pool
+     * @return
+     */
+    public static MatrixExecutor parallel(ForkJoinPool pool) {
+        return parallel(pool, pool.getParallelism());
+    }
+
+    /**
+     * Returns an executor that splits large operations across the given pool,
+     * into at most the given number of concurrent tasks.
+     * @param pool
+     * @param parallelism
+     * @return
+     */
+    public static MatrixExecutor parallel(ForkJoinPool pool, int parallelism) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool can't be null");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism can't be zero or negative");
+        }
+
+        if (parallelism == 1) {
+            return SERIAL;
+        }
+        return new MatrixExecutor(pool, parallelism, DEFAULT_THRESHOLD, 0);
+    }
+
+    /**
+     * Returns a copy of this executor using a different splitting threshold.
+     * @param threshold Amount of work, in multiply-adds or element updates,
+     * below which an operation runs on the calling thread.
+     * @return
+     */
+    public MatrixExecutor withThreshold(long threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold can't be zero or negative");
+        }
+        if (pool == null) {
+            return this;
+        }
+        return new MatrixExecutor(pool, parallelism, threshold, strassenCutoff);
+    }
+
+    /**
+     * Returns a copy of this executor which multiplies large dense matrices
+     * with Winograd's variant of Strassen's algorithm. Products whose
+     * smallest dimension is above the cutoff are split recursively into
+     * 2 x 2 blocks, needing 7 block products instead of 8 per level, down to
+     * blocks whose smallest dimension is at most the cutoff, which use the
+     * classic blocked kernel. Operands are padded with zeros as needed. If
+     * this executor is parallel, the block products run as separate tasks on
+     * its pool.
+     * <br>
+     * The results differ from those of the classic algorithm. Its error is
+     * bounded in norm rather than element by element, and the bound grows
+     * by up to a factor 4.5 per level instead of 2, so elements much smaller
+     * than the rest of the product may lose much of their relative accuracy.
+     * Results are still the same with and without a pool. Products of
+     * structured or off-heap matrices are never affected.
+     * @param cutoff Smallest dimension at or below which products use the
+     * classic algorithm, such as {@link #DEFAULT_STRASSEN_CUTOFF}, or zero
+     * to never use Strassen's algorithm.
+     * @return
+     */
+    public MatrixExecutor withStrassen(int cutoff) {
+        if (cutoff < 0) {
+            throw new IllegalArgumentException("Cutoff can't be negative");
+        }
+        if (cutoff > 0 && cutoff < 16) {
+            throw new IllegalArgumentException("Cutoff must be at least 16");
+        }
+        return new MatrixExecutor(pool, parallelism, threshold, cutoff);
+    }
+
+    /**
+     * Returns the executor used by the operations in Matrix.
+     * @return
+     */
+    public static MatrixExecutor getDefault() {
+        return defaultExecutor;
+    }
+
+    /**
+     * Sets the executor used by the operations in Matrix.
+     * @param executor
+     */
+    public static void setDefault(MatrixExecutor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor can't be null");
+        }
+        defaultExecutor = executor;
+    }
+
+    /**
+     * Checks if this executor may split operations across threads.
+     * @return
+     */
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Returns the maximum number of tasks an operation is split into.
+     * @return
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the amount of work below which an operation is not split.
+     * @return
+     */
+    public long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns the smallest dimension above which products use Strassen's
+     * algorithm, or zero if they never do.
+     * @return
+     * @see #withStrassen(int)
+     */
+    public int getStrassenCutoff() {
+        return strassenCutoff;
+    }
+
+    /**
+     * Checks if the product of two dense matrices is large enough to use
+     * Strassen's algorithm with this executor.
+     */
+    boolean usesStrassen(Matrix first, Matrix second) {
+        return strassenCutoff > 0 && Math.min(first.rows, Math.min(first.cols, second.cols)) > strassenCutoff;
+    }
+
+    /**
+     * Multiplies two matrices and returns the resulting matrix. Multiplication
+     * order is: [first] x [second]
+     * @param first
+     * @param second
+     * @return
+     * @see Matrix#mul(libj.math.Matrix, libj.math.Matrix)
+     */
+    public Matrix mul(Matrix first, Matrix second) {
+        if (first.cols != second.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        Matrix res = new Matrix(first.rows, second.cols);
+        mul(first, second, res);
+        return res;
+    }
+
+    /**
+     * Multiplies two matrices, storing the result in dest, which may be a
+     * view but must not share elements with either operand. Multiplication
+     * order is: [dest] = [first] x [second] <br>
+     * Any temporary storage is taken from the {@link MatrixWorkspace} of the
+     * calling thread.
+     * @param first
+     * @param second
+     * @param dest
+     * @see Matrix#mulInto(libj.math.Matrix, libj.math.Matrix, libj.math.Matrix)
+     */
+    public void mul(Matrix first, Matrix second, Matrix dest) {
+        if (first.cols != second.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        if (dest.rows != first.rows || dest.cols != second.cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (dest == first || dest == second) {
+            throw new IllegalArgumentException("Destination can't be an operand");
+        }
+
+        if (first.prefersStreaming() || second.prefersStreaming() || dest.prefersStreaming()) {
+            forRange(first.rows, (long) first.cols * second.cols, (from, to) ->
+                MatrixKernel.mulStreaming(first, second, dest, from, to));
+            return;
+        }
+        if (first instanceof StructuredMatrix || second instanceof StructuredMatrix) {
+            mulStructured(first, second, dest);
+            return;
+        }
+        if (usesStrassen(first, second)) {
+            StrassenKernel.mul(first, second, dest, strassenCutoff, pool, parallelism);
+            return;
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        Matrix res = dest.isContiguous() ? dest : ws.acquire(dest.rows, dest.cols);
+        if (first.isContiguous() && second.isContiguous()) {
+            mul(first.elem, second.elem, res.elem, first.rows, first.cols, second.cols);
+        }
+        else {
+            Matrix a = first.isStrided() ? first : copy(first, ws);
+            Matrix b = second.isStrided() ? second : copy(second, ws);
+            double[] ad = a.data();
+            double[] bd = b.data();
+            int aOff = a.offset(), aRs = a.rowStride(), aCs = a.colStride();
+            int bOff = b.offset(), bRs = b.rowStride(), bCs = b.colStride();
+            int m = a.cols;
+            int p = b.cols;
+            forRange(a.rows, (long) m * p, (from, to) ->
+                MatrixKernel.mulStrided(ad, aOff, aRs, aCs, bd, bOff, bRs, bCs, res.elem, m, p, from, to));
+            if (a != first) {
+                ws.release(a);
+            }
+            if (b != second) {
+                ws.release(b);
+            }
+        }
+
+        if (res != dest) {
+            dest.setAll(res.elem);
+            ws.release(res);
+        }
+    }
+
+    /**
+     * Multiplies two matrices where at least one is structured, only visiting
+     * the elements its structure allows to be non-zero. When both are, the
+     * first one's structure is used.
+     */
+    private void mulStructured(Matrix first, Matrix second, Matrix dest) {
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        Matrix res = dest.isContiguous() ? dest : ws.acquire(dest.rows, dest.cols);
+        if (first instanceof StructuredMatrix) {
+            StructuredMatrix s = (StructuredMatrix) first;
+            Matrix b = second.isStrided() ? second : copy(second, ws);
+            double[] bd = b.data();
+            int bOff = b.offset(), bRs = b.rowStride(), bCs = b.colStride();
+            int p = b.cols;
+            forRange(s.rows, s.workPerRow() * p, (from, to) ->
+                s.mulRows(bd, bOff, bRs, bCs, p, res.elem, from, to));
+            if (b != second) {
+                ws.release(b);
+            }
+        }
+        else {
+            StructuredMatrix s = (StructuredMatrix) second;
+            Matrix a = first.isStrided() ? first : copy(first, ws);
+            double[] ad = a.data();
+            int aOff = a.offset(), aRs = a.rowStride(), aCs = a.colStride();
+            forRange(a.rows, s.workPerRow() * s.rows, (from, to) ->
+                s.mulRowsLeft(ad, aOff, aRs, aCs, res.elem, from, to));
+            if (a != first) {
+                ws.release(a);
+            }
+        }
+
+        if (res != dest) {
+            dest.setAll(res.elem);
+            ws.release(res);
+        }
+    }
+
+    /**
+     * Returns a contiguous copy of m with elements taken from the workspace.
+     */
+    private static Matrix copy(Matrix m, MatrixWorkspace ws) {
+        Matrix res = ws.acquire(m.rows, m.cols);
+        m.copyTo(res.elem);
+        return res;
+    }
+
+    /**
+     * Multiplies a matrix by a scalar, changing the matrix's elements.
+     * @param target
+     * @param c
+     * @see Matrix#mul(double)
+     */
+    public void mul(Matrix target, double c) {
+        if (target.isContiguous()) {
+            scale(target.elem, c);
+            return;
+        }
+        forRange(target.rows, target.cols, (from, to) -> MatrixKernel.scale(target, c, from, to));
+    }
+
+    /**
+     * Adds another matrix to a matrix, changing the target matrix's elements.
+     * @param target
+     * @param other
+     * @see Matrix#add(libj.math.Matrix)
+     */
+    public void add(Matrix target, Matrix other) {
+        if (other.rows != target.rows || other.cols != target.cols) {
+            return;
+        }
+        if (target.isContiguous() && other.isContiguous()) {
+            add(target.elem, other.elem);
+            return;
+        }
+        forRange(target.rows, target.cols, (from, to) -> MatrixKernel.add(target, other, from, to));
+    }
+
+    /**
+     * Subtracts another matrix from a matrix, changing the target matrix's
+     * elements.
+     * @param target
+     * @param other
+     * @see Matrix#sub(libj.math.Matrix)
+     */
+    public void sub(Matrix target, Matrix other) {
+        if (other.rows != target.rows || other.cols != target.cols) {
+            return;
+        }
+        if (target.isContiguous() && other.isContiguous()) {
+            sub(target.elem, other.elem);
+            return;
+        }
+        forRange(target.rows, target.cols, (from, to) -> MatrixKernel.sub(target, other, from, to));
+    }
+
+    /**
+     * Returns a transposed version of a matrix.
+     * @param m
+     * @return
+     * @see Matrix#transpose()
+     */
+    public Matrix transpose(Matrix m) {
+        Matrix res = new Matrix(m.cols, m.rows);
+        transpose(m, res);
+        return res;
+    }
+
+    /**
+     * Transposes a matrix, storing the result in dest, which may be a view
+     * but must not share elements with m.
+     * @param m
+     * @param dest
+     * @see Matrix#transposeInto(libj.math.Matrix)
+     */
+    public void transpose(Matrix m, Matrix dest) {
+        if (dest.rows != m.cols || dest.cols != m.rows) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (dest == m) {
+            throw new IllegalArgumentException("Destination can't be the transposed matrix");
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] res = dest.isContiguous() ? dest.elem : ws.acquire(dest.rows * dest.cols);
+        if (m.isContiguous()) {
+            transpose(m.elem, res, m.rows, m.cols);
+        }
+        else {
+            forRange(m.rows, m.cols, (from, to) -> MatrixKernel.transposeRows(m, res, from, to));
+        }
+        if (res != dest.elem) {
+            dest.setAll(res);
+            ws.release(res);
+        }
+    }
+
+    void mul(double[] a, double[] b, double[] res, int n, int m, int p) {
+        int block = MatrixKernel.blockSize(n, m, p);
+        forRange(n, (long) m * p, (from, to) -> MatrixKernel.mulRows(a, b, res, n, m, p, from, to, block));
+    }
+
+    void scale(double[] a, double c) {
+        forRange(a.length, 1, (from, to) -> MatrixKernel.scale(a, c, from, to));
+    }
+
+    void add(double[] a, double[] b) {
+        forRange(a.length, 1, (from, to) -> MatrixKernel.add(a, b, from, to));
+    }
+
+    void sub(double[] a, double[] b) {
+        forRange(a.length, 1, (from, to) -> MatrixKernel.sub(a, b, from, to));
+    }
+
+    void transpose(double[] src, double[] dst, int rows, int cols) {
+        forRange(rows, cols, (from, to) -> MatrixKernel.transposeRows(src, dst, rows, cols, from, to));
+    }
+
+    /**
+     * Lambda function interface for actions performed on a contiguous part of
+     * a range.
+     * @see MatrixExecutor#forRange(int, long, libj.math.MatrixExecutor.RangeAction)
+     */
+    @FunctionalInterface
+    public interface RangeAction {
+        /**
+         * Performs the action for indices from (inclusive) to (exclusive).
+         * @param from
+         * @param to
+         */
+        public void perform(int from, int to);
+    }
+
+    /**
+     * Runs an action over the range 0 to length, where each index represents
+     * the given amount of work. If this executor is parallel and the total
+     * work crosses the threshold, the range is split into at most parallelism
+     * parts, each of which may run on a different thread.
+     * @param length
+     * @param workPerIndex
+     * @param action
+     */
+    public void forRange(int length, long workPerIndex, RangeAction action) {
+        long work = length * workPerIndex;
+        if (pool == null || work < threshold || length < 2) {
+            action.perform(0, length);
+            return;
+        }
+
+        int byThreshold = (int) Math.min(length, (threshold + workPerIndex - 1) / workPerIndex);
+        int byParallelism = (length + parallelism - 1) / parallelism;
+        int grain = Math.max(1, Math.max(byThreshold, byParallelism));
+
+        pool.invoke(new RangeTask(action, 0, length, grain));
+    }
+
+    private static class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeAction action;
+
+        private final int from;
+
+        private final int to;
+
+        private final int grain;
+
+        RangeTask(RangeAction action, int from, int to, int grain) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                action.perform(from, to);
+                return;
+            }
+
+            int parts = (to - from + grain - 1) / grain;
+            int mid = from + (parts / 2) * grain;
+            invokeAll(new RangeTask(action, from, mid, grain),
+                      new RangeTask(action, mid, to, grain));
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package libj.math;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A lazily evaluated matrix expression. Building an expression with add, sub,
+ * mul and transpose only records the operations; nothing is computed until
+ * {@link #eval()} or {@link #into(libj.math.Matrix)} is called. For example:
+ * <pre>
+ * Matrix r = MatrixExpr.of(a).mul(b).add(MatrixExpr.of(c).mul(d)).sub(e).eval();
+ * </pre>
+ * On evaluation the expression is flattened into a sum of scaled terms, each
+ * of which is a single matrix or a chain of matrix products. Every product
+ * chain is multiplied in the cheapest order, and all terms are then combined
+ * into the result in a single pass, without temporaries for the intermediate
+ * sums. Scalar factors are moved out of products, transposes are pushed down
+ * to the operands as views, and repeated operands are combined. A product
+ * term's own result is reused as the result matrix when possible.
+ * <br>
+ * Because of this reordering, results may differ from eager evaluation in
+ * the last bits. Products are evaluated with the default
+ * {@link MatrixExecutor}.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix
+ */
+public abstract class MatrixExpr {
+
+    /**
+     * Number of rows in the result of this expression.
+     */
+    final int rows;
+
+    /**
+     * Number of columns in the result of this expression.
+     */
+    final int cols;
+
+    MatrixExpr(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Creates an expression consisting of only the given matrix. The matrix
+     * is read when the expression is evaluated, not when it is created.
+     * @param m
+     * @return
+     */
+    public static MatrixExpr of(Matrix m) {
+        return new Leaf(m);
+    }
+
+    /**
+     * Returns the number of rows in the result of this expression.
+     * @return
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns in the result of this expression.
+     * @return
+     */
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * Returns the expression [this] + [other].
+     * @param other
+     * @return
+     */
+    public MatrixExpr add(MatrixExpr other) {
+        checkSameDimensions(other);
+        return new Sum(this, other, 1);
+    }
+
+    /**
+     * Returns the expression [this] + [other].
+     * @param other
+     * @return
+     */
+    public MatrixExpr add(Matrix other) {
+        return add(of(other));
+    }
+
+    /**
+     * Returns the expression [this] - [other].
+     * @param other
+     * @return
+     */
+    public MatrixExpr sub(MatrixExpr other) {
+        checkSameDimensions(other);
+        return new Sum(this, other, -1);
+    }
+
+    /**
+     * Returns the expression [this] - [other].
+     * @param other
+     * @return
+     */
+    public MatrixExpr sub(Matrix other) {
+        return sub(of(other));
+    }
+
+    /**
+     * Returns the expression c x [this].
+     * @param c
+     * @return
+     */
+    public MatrixExpr mul(double c) {
+        return new Scaled(this, c);
+    }
+
+    /**
+     * Returns the expression [this] x [other].
+     * @param other
+     * @return
+     */
+    public MatrixExpr mul(MatrixExpr other) {
+        if (cols != other.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        return new Product(this, other);
+    }
+
+    /**
+     * Returns the expression [this] x [other].
+     * @param other
+     * @return
+     */
+    public MatrixExpr mul(Matrix other) {
+        return mul(of(other));
+    }
+
+    /**
+     * Returns the transpose of this expression.
+     * @return
+     */
+    public MatrixExpr transpose() {
+        return new Transposed(this);
+    }
+
+    /**
+     * Evaluates this expression into a new matrix.
+     * @return
+     */
+    public Matrix eval() {
+        return evaluate(terms(this), rows, cols, null);
+    }
+
+    /**
+     * Evaluates this expression, storing the result in dest. Dest may be one
+     * of the operands of the expression, and may be a view.
+     * @param dest
+     */
+    public void into(Matrix dest) {
+        if (dest.rows != rows || dest.cols != cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        evaluate(terms(this), rows, cols, dest);
+    }
+
+    private void checkSameDimensions(MatrixExpr other) {
+        if (rows != other.rows || cols != other.cols) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+    }
+
+    /**
+     * Adds the terms of c x [this] to out.
+     */
+    abstract void collect(double c, List<Term> out);
+
+    private static List<Term> terms(MatrixExpr e) {
+        List<Term> terms = new ArrayList<>();
+        e.collect(1, terms);
+        return terms;
+    }
+
+    /**
+     * Returns the expression as a single term, evaluating it into a new
+     * matrix if it is a sum of several terms.
+     */
+    private static Term single(MatrixExpr e) {
+        List<Term> terms = terms(e);
+        if (terms.size() == 1) {
+            return terms.get(0);
+        }
+        Matrix m = evaluate(terms, e.rows, e.cols, null);
+        return new Term(1, Collections.singletonList(m), true);
+    }
+
+    /**
+     * Evaluates the sum of the terms. If dest is null, the result is stored
+     * in a fresh product result if there is one, or a new matrix otherwise.
+     */
+    private static Matrix evaluate(List<Term> terms, int rows, int cols, Matrix dest) {
+        List<Matrix> src = new ArrayList<>();
+        List<Double> coef = new ArrayList<>();
+        int fresh = -1;
+        for (Term t : terms) {
+            Matrix m = t.factors.size() == 1 ? t.factors.get(0) : chain(t.factors);
+            int k = indexOf(src, m);
+            if (k >= 0) {
+                coef.set(k, coef.get(k) + t.coef);
+                continue;
+            }
+            src.add(m);
+            coef.add(t.coef);
+            if (fresh < 0 && (t.owned || t.factors.size() > 1)) {
+                fresh = src.size() - 1;
+            }
+        }
+
+        Matrix target;
+        if (dest == null) {
+            target = fresh >= 0 ? src.get(fresh) : new Matrix(rows, cols);
+        }
+        else {
+            for (Matrix m : src) {
+                if (m != dest && root(m) == root(dest)) {
+                    Matrix tmp = evaluate(terms(src, coef), rows, cols, null);
+                    combine(new Matrix[] {tmp}, new double[] {1}, dest);
+                    return dest;
+                }
+            }
+            target = dest;
+        }
+
+        int first = indexOf(src, target);
+        if (first > 0) {
+            src.add(0, src.remove(first));
+            coef.add(0, coef.remove(first));
+        }
+
+        Matrix[] s = src.toArray(new Matrix[0]);
+        double[] c = new double[s.length];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = coef.get(i);
+        }
+        if (s.length > 1 || s[0] != target || c[0] != 1) {
+            combine(s, c, target);
+        }
+        return target;
+    }
+
+    private static void combine(Matrix[] src, double[] coef, Matrix dest) {
+        MatrixExecutor.getDefault().forRange(dest.rows, (long) dest.cols * src.length,
+            (from, to) -> MatrixKernel.combine(src, coef, dest, from, to));
+    }
+
+    private static List<Term> terms(List<Matrix> src, List<Double> coef) {
+        List<Term> terms = new ArrayList<>();
+        for (int i = 0; i < src.size(); i++) {
+            terms.add(new Term(coef.get(i), Collections.singletonList(src.get(i)), false));
+        }
+        return terms;
+    }
+
+    private static int indexOf(List<Matrix> list, Matrix m) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == m) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the matrix owning the elements of m.
+     */
+    private static Matrix root(Matrix m) {
+        while (m instanceof MatrixView) {
+            m = ((MatrixView) m).parent;
+        }
+        return m;
+    }
+
+    /**
+     * Multiplies a chain of matrices in the order needing the fewest scalar
+     * multiplications, found by dynamic programming over all
+     * parenthesizations.
+     */
+    private static Matrix chain(List<Matrix> factors) {
+        int n = factors.size();
+        int[] dims = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            dims[i] = factors.get(i).rows;
+        }
+        dims[n] = factors.get(n - 1).cols;
+
+        long[][] cost = new long[n][n];
+        int[][] split = new int[n][n];
+        for (int len = 2; len <= n; len++) {
+            for (int i = 0; i + len <= n; i++) {
+                int j = i + len - 1;
+                cost[i][j] = Long.MAX_VALUE;
+                for (int k = i; k < j; k++) {
+                    long c = cost[i][k] + cost[k + 1][j] + (long) dims[i] * dims[k + 1] * dims[j + 1];
+                    if (c < cost[i][j]) {
+                        cost[i][j] = c;
+                        split[i][j] = k;
+                    }
+                }
+            }
+        }
+        return chain(factors, split, 0, n - 1);
+    }
+
+    private static Matrix chain(List<Matrix> factors, int[][] split, int i, int j) {
+        if (i == j) {
+            return factors.get(i);
+        }
+        int k = split[i][j];
+        return MatrixExecutor.getDefault().mul(chain(factors, split, i, k),
+                chain(factors, split, k + 1, j));
+    }
+
+    /**
+     * A scaled product of one or more matrices.
+     */
+    static final class Term {
+
+        final double coef;
+
+        final List<Matrix> factors;
+
+        /**
+         * True if the only factor is a matrix created during evaluation,
+         * which may be overwritten.
+         */
+        final boolean owned;
+
+        Term(double coef, List<Matrix> factors, boolean owned) {
+            this.coef = coef;
+            this.factors = factors;
+            this.owned = owned;
+        }
+    }
+
+    private static final class Leaf extends MatrixExpr {
+
+        private final Matrix m;
+
+        Leaf(Matrix m) {
+            super(m.rows, m.cols);
+            this.m = m;
+        }
+
+        @Override
+        void collect(double c, List<Term> out) {
+            out.add(new Term(c, Collections.singletonList(m), false));
+        }
+    }
+
+    private static final class Sum extends MatrixExpr {
+
+        private final MatrixExpr left;
+
+        private final MatrixExpr right;
+
+        /**
+         * 1 for addition, -1 for subtraction.
+         */
+        private final double sign;
+
+        Sum(MatrixExpr left, MatrixExpr right, double sign) {
+            super(left.rows, left.cols);
+            this.left = left;
+            this.right = right;
+            this.sign = sign;
+        }
+
+        @Override
+        void collect(double c, List<Term> out) {
+            left.collect(c, out);
+            right.collect(c * sign, out);
+        }
+    }
+
+    private static final class Scaled extends MatrixExpr {
+
+        private final MatrixExpr e;
+
+        private final double c;
+
+        Scaled(MatrixExpr e, double c) {
+            super(e.rows, e.cols);
+            this.e = e;
+            this.c = c;
+        }
+
+        @Override
+        void collect(double c, List<Term> out) {
+            e.collect(c * this.c, out);
+        }
+    }
+
+    private static final class Product extends MatrixExpr {
+
+        private final MatrixExpr left;
+
+        private final MatrixExpr right;
+
+        Product(MatrixExpr left, MatrixExpr right) {
+            super(left.rows, right.cols);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void collect(double c, List<Term> out) {
+            Term l = single(left);
+            Term r = single(right);
+            List<Matrix> factors = new ArrayList<>(l.factors);
+            factors.addAll(r.factors);
+            out.add(new Term(c * l.coef * r.coef, factors, false));
+        }
+    }
+
+    private static final class Transposed extends MatrixExpr {
+
+        private final MatrixExpr e;
+
+        Transposed(MatrixExpr e) {
+            super(e.cols, e.rows);
+            this.e = e;
+        }
+
+        @Override
+        void collect(double c, List<Term> out) {
+            for (Term t : terms(e)) {
+                List<Matrix> factors = new ArrayList<>(t.factors.size());
+                for (int i = t.factors.size() - 1; i >= 0; i--) {
+                    factors.add(t.factors.get(i).transposeView());
+                }
+                out.add(new Term(c * t.coef, factors, false));
+            }
+        }
+    }
+}
@@ -0,0 +1,986 @@
+package libj.math;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads and writes matrices in a compact binary format. A file consists of a
+ * 32 byte header followed by the elements as raw row-first doubles, or
+ * floats for a {@link FloatMatrix}.
+ * <br>
+ * The header is stored big-endian and holds, in order: the magic number
+ * 0x4C4A4D58 ("LJMX"), the format version as a short, the element type (1
+ * for doubles, 2 for floats) and the byte order of the elements as one byte
+ * each, a byte of flags, three reserved bytes, the number of rows and columns
+ * as ints, a CRC-32C checksum of the element bytes as an int, and eight
+ * reserved bytes. Elements are written in the platform's native byte order,
+ * which is recorded in the header, and read correctly on any platform.
+ * <br>
+ * All I/O goes through a FileChannel in blocks of {@link #BUFFER_SIZE} bytes.
+ * An {@link OffHeapMatrix} is written from and read into its own direct
+ * buffers without any copy on the Java side. Larger than memory matrices can
+ * be streamed block by block with {@link Writer} and {@link Reader}, or
+ * mapped directly with {@link #map(java.nio.file.Path)}.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see OffHeapMatrix
+ */
+public final class MatrixIO {
+
+    /**
+     * Current version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Size of the buffers used when copying elements to and from heap
+     * arrays, in bytes.
+     */
+    public static final int BUFFER_SIZE = 1 << 20;
+
+    static final int MAGIC = 0x4C4A4D58;
+
+    static final int HEADER_SIZE = 32;
+
+    static final byte TYPE_FLOAT64 = 1;
+
+    static final byte TYPE_FLOAT32 = 2;
+
+    static final byte ORDER_BIG_ENDIAN = 0;
+
+    static final byte ORDER_LITTLE_ENDIAN = 1;
+
+    static final byte FLAG_CHECKSUM = 1;
+
+    /**
+     * Byte offset of the checksum within the header.
+     */
+    private static final int CHECKSUM_OFFSET = 20;
+
+    private MatrixIO() {
+    }
+
+    /**
+     * Type of the elements stored in a matrix file.
+     */
+    public enum ElementType {
+        /**
+         * 64-bit doubles, as held by {@link Matrix}.
+         */
+        DOUBLE(TYPE_FLOAT64, Double.BYTES),
+        /**
+         * 32-bit floats, as held by {@link FloatMatrix}.
+         */
+        FLOAT(TYPE_FLOAT32, Float.BYTES);
+
+        final byte code;
+
+        final int size;
+
+        ElementType(byte code, int size) {
+            this.code = code;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Writes a matrix to a file with a checksum, replacing any existing
+     * file.
+     * @param m
+     * @param file
+     * @throws IOException
+     * @see #write(libj.math.Matrix, java.nio.file.Path, boolean)
+     */
+    public static void write(Matrix m, Path file) throws IOException {
+        write(m, file, true);
+    }
+
+    /**
+     * Writes a matrix to a file, replacing any existing file. Leaving out the
+     * checksum saves one pass over the data, but corruption will then go
+     * unnoticed when reading.
+     * @param m
+     * @param file
+     * @param checksum
+     * @throws IOException
+     */
+    public static void write(Matrix m, Path file, boolean checksum) throws IOException {
+        try (Writer w = new Writer(file, m.rows, m.cols, checksum)) {
+            w.writeRows(m, 1, m.rows);
+        }
+    }
+
+    /**
+     * Writes a matrix at the current position of the channel, leaving the
+     * position after the written matrix. The channel is not closed.
+     * @param m
+     * @param ch
+     * @param checksum
+     * @throws IOException
+     */
+    public static void write(Matrix m, FileChannel ch, boolean checksum) throws IOException {
+        try (Writer w = new Writer(ch, m.rows, m.cols, checksum)) {
+            w.writeRows(m, 1, m.rows);
+        }
+    }
+
+    /**
+     * Reads a matrix from a file onto the heap.
+     * @param file
+     * @return
+     * @throws IOException if the file is not a valid matrix file, or the
+     * checksum does not match.
+     */
+    public static Matrix read(Path file) throws IOException {
+        try (Reader r = new Reader(file)) {
+            return read(r, new Matrix(r.rows, r.cols));
+        }
+    }
+
+    /**
+     * Reads a matrix from the current position of the channel onto the heap,
+     * leaving the position after the matrix. The channel is not closed.
+     * @param ch
+     * @return
+     * @throws IOException if the channel does not hold a valid matrix, or the
+     * checksum does not match.
+     */
+    public static Matrix read(FileChannel ch) throws IOException {
+        try (Reader r = new Reader(ch)) {
+            return read(r, new Matrix(r.rows, r.cols));
+        }
+    }
+
+    /**
+     * Reads a matrix from a file into direct memory.
+     * @param file
+     * @return
+     * @throws IOException if the file is not a valid matrix file, or the
+     * checksum does not match.
+     */
+    public static OffHeapMatrix readOffHeap(Path file) throws IOException {
+        try (Reader r = new Reader(file)) {
+            return read(r, OffHeapMatrix.allocate(r.rows, r.cols));
+        }
+    }
+
+    private static <T extends Matrix> T read(Reader r, T dest) throws IOException {
+        r.checkType(ElementType.DOUBLE);
+        r.readRows(dest, 1, r.rows);
+        return dest;
+    }
+
+    /**
+     * Writes a single-precision matrix to a file with a checksum, replacing
+     * any existing file.
+     * @param m
+     * @param file
+     * @throws IOException
+     */
+    public static void write(FloatMatrix m, Path file) throws IOException {
+        write(m, file, true);
+    }
+
+    /**
+     * Writes a single-precision matrix to a file, replacing any existing
+     * file.
+     * @param m
+     * @param file
+     * @param checksum
+     * @throws IOException
+     */
+    public static void write(FloatMatrix m, Path file, boolean checksum) throws IOException {
+        try (Writer w = new Writer(file, m.rows, m.cols, ElementType.FLOAT, checksum)) {
+            w.writeRows(m, 1, m.rows);
+        }
+    }
+
+    /**
+     * Writes a single-precision matrix at the current position of the
+     * channel, leaving the position after the written matrix. The channel is
+     * not closed.
+     * @param m
+     * @param ch
+     * @param checksum
+     * @throws IOException
+     */
+    public static void write(FloatMatrix m, FileChannel ch, boolean checksum) throws IOException {
+        try (Writer w = new Writer(ch, m.rows, m.cols, ElementType.FLOAT, checksum)) {
+            w.writeRows(m, 1, m.rows);
+        }
+    }
+
+    /**
+     * Reads a single-precision matrix from a file.
+     * @param file
+     * @return
+     * @throws IOException if the file is not a valid file of floats, or the
+     * checksum does not match.
+     */
+    public static FloatMatrix readFloat(Path file) throws IOException {
+        try (Reader r = new Reader(file)) {
+            return readFloat(r);
+        }
+    }
+
+    /**
+     * Reads a single-precision matrix from the current position of the
+     * channel, leaving the position after the matrix. The channel is not
+     * closed.
+     * @param ch
+     * @return
+     * @throws IOException if the channel does not hold a valid matrix of
+     * floats, or the checksum does not match.
+     */
+    public static FloatMatrix readFloat(FileChannel ch) throws IOException {
+        try (Reader r = new Reader(ch)) {
+            return readFloat(r);
+        }
+    }
+
+    private static FloatMatrix readFloat(Reader r) throws IOException {
+        r.checkType(ElementType.FLOAT);
+        FloatMatrix res = new FloatMatrix(r.rows, r.cols);
+        r.readRows(res, 1, r.rows);
+        return res;
+    }
+
+    /**
+     * Maps the elements of a matrix file into memory without reading them.
+     * Changes to the returned matrix are written to the file, but the
+     * checksum is not verified when mapping nor updated on changes, so a
+     * file that has been changed through a mapping should be written anew
+     * to get a valid checksum.
+     * @param file
+     * @return
+     * @throws IOException if the file is not a valid matrix file, or is
+     * too short to hold all the elements.
+     */
+    public static OffHeapMatrix map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            Reader r = new Reader(ch);
+            r.checkType(ElementType.DOUBLE);
+            // Mapping past the end would silently extend the file.
+            if (ch.size() < r.start + HEADER_SIZE + (long) r.rows * r.cols * Double.BYTES) {
+                throw new EOFException("Matrix file is truncated");
+            }
+            return OffHeapMatrix.map(ch, r.start + HEADER_SIZE, r.rows, r.cols, r.order);
+        }
+    }
+
+    /**
+     * Reads through a matrix file and checks its checksum.
+     * @param file
+     * @return true if the checksum matches, or if the file was written
+     * without a checksum.
+     * @throws IOException if the file is not a valid matrix file.
+     */
+    public static boolean verify(Path file) throws IOException {
+        try (Reader r = new Reader(file)) {
+            int count = Math.max(1, BUFFER_SIZE / r.type.size / r.cols);
+            if (r.type == ElementType.FLOAT) {
+                float[] buf = new float[count * r.cols];
+                while (r.remaining() > 0) {
+                    r.readRows(buf, 0, count);
+                }
+            }
+            else {
+                double[] buf = new double[count * r.cols];
+                while (r.remaining() > 0) {
+                    r.readRows(buf, 0, count);
+                }
+            }
+        }
+        catch (ChecksumException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static byte orderByte(ByteOrder order) {
+        return order == ByteOrder.BIG_ENDIAN ? ORDER_BIG_ENDIAN : ORDER_LITTLE_ENDIAN;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            ch.write(b);
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            if (ch.read(b) < 0) {
+                throw new EOFException("Matrix file is truncated");
+            }
+        }
+    }
+
+    /**
+     * Calls action for each part of the element bytes of an off-heap matrix
+     * between the given zero-based element indices, one part per chunk.
+     */
+    private static void forEachSlice(OffHeapMatrix m, long from, long to, SliceAction action)
+            throws IOException {
+        long chunkSize = m.bytes[0].capacity();
+        for (int i = 0; i < m.bytes.length && from < to; i++) {
+            long chunkFrom = i * chunkSize / Double.BYTES;
+            long chunkTo = chunkFrom + m.bytes[i].capacity() / Double.BYTES;
+            if (from >= chunkTo) {
+                continue;
+            }
+            long end = Math.min(to, chunkTo);
+            ByteBuffer b = m.bytes[i].duplicate();
+            b.limit((int) ((end - chunkFrom) * Double.BYTES));
+            b.position((int) ((from - chunkFrom) * Double.BYTES));
+            action.perform(b);
+            from = end;
+        }
+    }
+
+    private interface SliceAction {
+        void perform(ByteBuffer b) throws IOException;
+    }
+
+    /**
+     * Thrown by a Reader when the checksum of the elements does not match
+     * the header.
+     */
+    public static class ChecksumException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        ChecksumException() {
+            super("Matrix file checksum mismatch");
+        }
+    }
+
+    /**
+     * Writes a matrix file row by row, so the whole matrix never needs to be
+     * in memory. Rows must be written in order, and exactly as many as given
+     * when the writer was created. The checksum is filled in when the writer
+     * is closed. A writer for doubles only accepts doubles, and a writer for
+     * floats only floats.
+     */
+    public static class Writer implements Closeable {
+
+        private final FileChannel ch;
+
+        /**
+         * True if ch was opened by this writer and should be closed by it.
+         */
+        private final boolean ownsChannel;
+
+        /**
+         * Position of the header in ch.
+         */
+        private final long start;
+
+        private final int rows;
+
+        private final int cols;
+
+        private final ElementType type;
+
+        private final CRC32C crc;
+
+        private final ByteBuffer buf;
+
+        private final DoubleBuffer dbuf;
+
+        private final FloatBuffer fbuf;
+
+        /**
+         * Row buffer for matrices which are neither contiguous nor off-heap.
+         */
+        private double[] row;
+
+        private int written;
+
+        private boolean closed;
+
+        /**
+         * Creates a writer for a new file with the given dimensions, replacing
+         * any existing file.
+         * @param file
+         * @param rows
+         * @param cols
+         * @param checksum
+         * @throws IOException
+         */
+        public Writer(Path file, int rows, int cols, boolean checksum) throws IOException {
+            this(file, rows, cols, ElementType.DOUBLE, checksum);
+        }
+
+        /**
+         * Creates a writer for a new file with the given dimensions and
+         * element type, replacing any existing file.
+         * @param file
+         * @param rows
+         * @param cols
+         * @param type
+         * @param checksum
+         * @throws IOException
+         */
+        public Writer(Path file, int rows, int cols, ElementType type, boolean checksum)
+                throws IOException {
+            this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING), true, rows, cols, type, checksum);
+        }
+
+        /**
+         * Creates a writer at the current position of a channel. The channel
+         * is not closed when the writer is closed.
+         * @param ch
+         * @param rows
+         * @param cols
+         * @param checksum
+         * @throws IOException
+         */
+        public Writer(FileChannel ch, int rows, int cols, boolean checksum) throws IOException {
+            this(ch, false, rows, cols, ElementType.DOUBLE, checksum);
+        }
+
+        /**
+         * Creates a writer for the given element type at the current position
+         * of a channel. The channel is not closed when the writer is closed.
+         * @param ch
+         * @param rows
+         * @param cols
+         * @param type
+         * @param checksum
+         * @throws IOException
+         */
+        public Writer(FileChannel ch, int rows, int cols, ElementType type, boolean checksum)
+                throws IOException {
+            this(ch, false, rows, cols, type, checksum);
+        }
+
+        private Writer(FileChannel ch, boolean ownsChannel, int rows, int cols, ElementType type,
+                boolean checksum) throws IOException {
+            if (rows <= 0 || cols <= 0) {
+                if (ownsChannel) {
+                    ch.close();
+                }
+                throw new IllegalArgumentException("Rows or cols can't be zero or negative");
+            }
+
+            this.ch = ch;
+            this.ownsChannel = ownsChannel;
+            this.rows = rows;
+            this.cols = cols;
+            this.type = type;
+            crc = checksum ? new CRC32C() : null;
+            buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+            dbuf = buf.asDoubleBuffer();
+            fbuf = buf.asFloatBuffer();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort((short) VERSION);
+            header.put(type.code);
+            header.put(orderByte(ByteOrder.nativeOrder()));
+            header.put(checksum ? FLAG_CHECKSUM : 0);
+            header.position(12);
+            header.putInt(rows);
+            header.putInt(cols);
+            header.clear();
+            start = ch.position();
+            writeFully(ch, header);
+        }
+
+        /**
+         * Returns the number of rows left to write.
+         * @return
+         */
+        public int remaining() {
+            return rows - written;
+        }
+
+        /**
+         * Writes count rows taken row-first from the array, starting at the
+         * given offset.
+         * @param src
+         * @param off
+         * @param count
+         * @throws IOException
+         */
+        public void writeRows(double[] src, int off, int count) throws IOException {
+            checkCount(count, ElementType.DOUBLE);
+            put(src, off, (long) count * cols);
+            written += count;
+        }
+
+        /**
+         * Writes count rows of a matrix with the same number of columns,
+         * starting at the given row, counting from one.
+         * @param m
+         * @param row
+         * @param count
+         * @throws IOException
+         */
+        public void writeRows(Matrix m, int row, int count) throws IOException {
+            if (m.cols != cols) {
+                throw new IllegalArgumentException("Incompatible matrix dimensions");
+            }
+            if (row <= 0 || row - 1 + count > m.rows) {
+                throw new IllegalArgumentException("Rows outside matrix");
+            }
+            checkCount(count, ElementType.DOUBLE);
+
+            int r = row - 1;
+            if (m.isContiguous()) {
+                put(m.elem, r * cols, (long) count * cols);
+            }
+            else if (m instanceof OffHeapMatrix && ((OffHeapMatrix) m).order() == buf.order()) {
+                forEachSlice((OffHeapMatrix) m, (long) r * cols, (long) (r + count) * cols, b -> {
+                    if (crc != null) {
+                        crc.update(b.duplicate());
+                    }
+                    writeFully(ch, b);
+                });
+            }
+            else {
+                if (this.row == null) {
+                    this.row = new double[cols];
+                }
+                for (int i = r; i < r + count; i++) {
+                    m.getRow(i, 0, cols, this.row, 0);
+                    put(this.row, 0, cols);
+                }
+            }
+            written += count;
+        }
+
+        /**
+         * Writes count rows taken row-first from the array, starting at the
+         * given offset.
+         * @param src
+         * @param off
+         * @param count
+         * @throws IOException
+         */
+        public void writeRows(float[] src, int off, int count) throws IOException {
+            checkCount(count, ElementType.FLOAT);
+            put(src, off, (long) count * cols);
+            written += count;
+        }
+
+        /**
+         * Writes count rows of a single-precision matrix with the same number
+         * of columns, starting at the given row, counting from one.
+         * @param m
+         * @param row
+         * @param count
+         * @throws IOException
+         */
+        public void writeRows(FloatMatrix m, int row, int count) throws IOException {
+            if (m.cols != cols) {
+                throw new IllegalArgumentException("Incompatible matrix dimensions");
+            }
+            if (row <= 0 || row - 1 + count > m.rows) {
+                throw new IllegalArgumentException("Rows outside matrix");
+            }
+            writeRows(m.elem, (row - 1) * cols, count);
+        }
+
+        private void checkCount(int count, ElementType expected) {
+            if (closed) {
+                throw new IllegalStateException("Writer is closed");
+            }
+            if (type != expected) {
+                throw new IllegalStateException("Writer is for " + type + " elements");
+            }
+            if (count < 0 || count > remaining()) {
+                throw new IllegalArgumentException("More rows than the matrix holds");
+            }
+        }
+
+        private void put(double[] src, int off, long n) throws IOException {
+            int max = BUFFER_SIZE / Double.BYTES;
+            while (n > 0) {
+                int k = (int) Math.min(n, max);
+                dbuf.put(0, src, off, k);
+                buf.limit(k * Double.BYTES).position(0);
+                if (crc != null) {
+                    crc.update(buf);
+                    buf.position(0);
+                }
+                writeFully(ch, buf);
+                off += k;
+                n -= k;
+            }
+        }
+
+        private void put(float[] src, int off, long n) throws IOException {
+            int max = BUFFER_SIZE / Float.BYTES;
+            while (n > 0) {
+                int k = (int) Math.min(n, max);
+                fbuf.put(0, src, off, k);
+                buf.limit(k * Float.BYTES).position(0);
+                if (crc != null) {
+                    crc.update(buf);
+                    buf.position(0);
+                }
+                writeFully(ch, buf);
+                off += k;
+                n -= k;
+            }
+        }
+
+        /**
+         * Fills in the checksum and closes the file.
+         * @throws IOException
+         * @throws IllegalStateException if not all rows have been written.
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (written != rows) {
+                    throw new IllegalStateException("Only " + written + " of " + rows + " rows written");
+                }
+                if (crc != null) {
+                    ByteBuffer b = ByteBuffer.allocate(Integer.BYTES);
+                    b.putInt(0, (int) crc.getValue());
+                    while (b.hasRemaining()) {
+                        ch.write(b, start + CHECKSUM_OFFSET + b.position());
+                    }
+                }
+            }
+            finally {
+                if (ownsChannel) {
+                    ch.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a matrix file row by row, so the whole matrix never needs to be
+     * in memory. The checksum is verified when the last row is read.
+     */
+    public static class Reader implements Closeable {
+
+        private final FileChannel ch;
+
+        private final boolean ownsChannel;
+
+        /**
+         * Position of the header in ch.
+         */
+        private final long start;
+
+        private final int rows;
+
+        private final int cols;
+
+        private final ByteOrder order;
+
+        private final ElementType type;
+
+        private final int checksum;
+
+        private final CRC32C crc;
+
+        private ByteBuffer buf;
+
+        private DoubleBuffer dbuf;
+
+        private FloatBuffer fbuf;
+
+        private double[] row;
+
+        private int read;
+
+        /**
+         * Opens a matrix file and reads its header.
+         * @param file
+         * @throws IOException if the file is not a valid matrix file.
+         */
+        public Reader(Path file) throws IOException {
+            this(FileChannel.open(file, StandardOpenOption.READ), true);
+        }
+
+        /**
+         * Reads the header of a matrix at the current position of a channel.
+         * The channel is not closed when the reader is closed.
+         * @param ch
+         * @throws IOException if the channel does not hold a valid matrix.
+         */
+        public Reader(FileChannel ch) throws IOException {
+            this(ch, false);
+        }
+
+        private Reader(FileChannel ch, boolean ownsChannel) throws IOException {
+            this.ch = ch;
+            this.ownsChannel = ownsChannel;
+            try {
+                start = ch.position();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(ch, header);
+                header.flip();
+
+                if (header.getInt() != MAGIC) {
+                    throw new IOException("Not a matrix file");
+                }
+                int version = header.getShort();
+                if (version < 1 || version > VERSION) {
+                    throw new IOException("Unsupported matrix file version " + version);
+                }
+                byte code = header.get();
+                if (code == TYPE_FLOAT64) {
+                    type = ElementType.DOUBLE;
+                }
+                else if (code == TYPE_FLOAT32) {
+                    type = ElementType.FLOAT;
+                }
+                else {
+                    throw new IOException("Unsupported matrix element type " + code);
+                }
+                order = header.get() == ORDER_BIG_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+                boolean hasChecksum = (header.get() & FLAG_CHECKSUM) != 0;
+                header.position(12);
+                rows = header.getInt();
+                cols = header.getInt();
+                checksum = header.getInt();
+                if (rows <= 0 || cols <= 0) {
+                    throw new IOException("Invalid matrix dimensions " + rows + "x" + cols);
+                }
+                crc = hasChecksum ? new CRC32C() : null;
+            }
+            catch (IOException | RuntimeException e) {
+                if (ownsChannel) {
+                    ch.close();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the type of the elements in the file.
+         * @return
+         */
+        public ElementType elementType() {
+            return type;
+        }
+
+        void checkType(ElementType expected) throws IOException {
+            if (type != expected) {
+                throw new IOException("Matrix file holds " + type + " elements, not " + expected);
+            }
+        }
+
+        /**
+         * Returns the number of rows in the matrix.
+         * @return
+         */
+        public int rows() {
+            return rows;
+        }
+
+        /**
+         * Returns the number of columns in the matrix.
+         * @return
+         */
+        public int cols() {
+            return cols;
+        }
+
+        /**
+         * Checks if the file was written with a checksum.
+         * @return
+         */
+        public boolean hasChecksum() {
+            return crc != null;
+        }
+
+        /**
+         * Returns the number of rows left to read.
+         * @return
+         */
+        public int remaining() {
+            return rows - read;
+        }
+
+        /**
+         * Reads up to count rows row-first into the array, starting at the
+         * given offset.
+         * @param dest
+         * @param off
+         * @param count
+         * @return The number of rows read, which is zero when all rows have
+         * been read.
+         * @throws IOException
+         */
+        public int readRows(double[] dest, int off, int count) throws IOException {
+            checkReadType(ElementType.DOUBLE);
+            count = Math.min(count, remaining());
+            get(dest, off, (long) count * cols);
+            return advance(count);
+        }
+
+        /**
+         * Reads up to count rows into a matrix with the same number of
+         * columns, starting at the given row, counting from one.
+         * @param m
+         * @param row
+         * @param count
+         * @return The number of rows read, which is zero when all rows have
+         * been read.
+         * @throws IOException
+         */
+        public int readRows(Matrix m, int row, int count) throws IOException {
+            checkReadType(ElementType.DOUBLE);
+            if (m.cols != cols) {
+                throw new IllegalArgumentException("Incompatible matrix dimensions");
+            }
+            count = Math.min(count, remaining());
+            if (row <= 0 || row - 1 + count > m.rows) {
+                throw new IllegalArgumentException("Rows outside matrix");
+            }
+
+            int r = row - 1;
+            if (m.isContiguous()) {
+                get(m.elem, r * cols, (long) count * cols);
+            }
+            else if (m instanceof OffHeapMatrix && ((OffHeapMatrix) m).order() == order) {
+                forEachSlice((OffHeapMatrix) m, (long) r * cols, (long) (r + count) * cols, b -> {
+                    readFully(ch, b.duplicate());
+                    if (crc != null) {
+                        crc.update(b);
+                    }
+                });
+            }
+            else {
+                if (this.row == null) {
+                    this.row = new double[cols];
+                }
+                for (int i = r; i < r + count; i++) {
+                    get(this.row, 0, cols);
+                    m.setRow(i, 0, cols, this.row, 0);
+                }
+            }
+            return advance(count);
+        }
+
+        /**
+         * Reads up to count rows of floats row-first into the array, starting
+         * at the given offset.
+         * @param dest
+         * @param off
+         * @param count
+         * @return The number of rows read, which is zero when all rows have
+         * been read.
+         * @throws IOException
+         */
+        public int readRows(float[] dest, int off, int count) throws IOException {
+            checkReadType(ElementType.FLOAT);
+            count = Math.min(count, remaining());
+            get(dest, off, (long) count * cols);
+            return advance(count);
+        }
+
+        /**
+         * Reads up to count rows into a single-precision matrix with the same
+         * number of columns, starting at the given row, counting from one.
+         * @param m
+         * @param row
+         * @param count
+         * @return The number of rows read, which is zero when all rows have
+         * been read.
+         * @throws IOException
+         */
+        public int readRows(FloatMatrix m, int row, int count) throws IOException {
+            if (m.cols != cols) {
+                throw new IllegalArgumentException("Incompatible matrix dimensions");
+            }
+            if (row <= 0 || row - 1 + Math.min(count, remaining()) > m.rows) {
+                throw new IllegalArgumentException("Rows outside matrix");
+            }
+            return readRows(m.elem, (row - 1) * cols, count);
+        }
+
+        private void checkReadType(ElementType expected) {
+            if (type != expected) {
+                throw new IllegalStateException("Matrix file holds " + type + " elements");
+            }
+        }
+
+        private int advance(int count) throws IOException {
+            read += count;
+            if (count > 0 && read == rows && crc != null && (int) crc.getValue() != checksum) {
+                throw new ChecksumException();
+            }
+            return count;
+        }
+
+        private void get(double[] dest, int off, long n) throws IOException {
+            allocateBuffer();
+            int max = BUFFER_SIZE / Double.BYTES;
+            while (n > 0) {
+                int k = (int) Math.min(n, max);
+                fill(k * Double.BYTES);
+                dbuf.get(0, dest, off, k);
+                off += k;
+                n -= k;
+            }
+        }
+
+        private void get(float[] dest, int off, long n) throws IOException {
+            allocateBuffer();
+            int max = BUFFER_SIZE / Float.BYTES;
+            while (n > 0) {
+                int k = (int) Math.min(n, max);
+                fill(k * Float.BYTES);
+                fbuf.get(0, dest, off, k);
+                off += k;
+                n -= k;
+            }
+        }
+
+        private void allocateBuffer() {
+            if (buf == null) {
+                buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(order);
+                dbuf = buf.asDoubleBuffer();
+                fbuf = buf.asFloatBuffer();
+            }
+        }
+
+        /**
+         * Reads the given number of bytes into the start of buf, updating the
+         * checksum.
+         */
+        private void fill(int bytes) throws IOException {
+            buf.limit(bytes).position(0);
+            readFully(ch, buf);
+            if (crc != null) {
+                buf.flip();
+                crc.update(buf);
+            }
+        }
+
+        /**
+         * Closes the file, without checking the checksum if not all rows have
+         * been read.
+         * @throws IOException
+         */
+        @Override
+        public void close() throws IOException {
+            if (ownsChannel) {
+                ch.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,681 @@
+package libj.math;
+
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Low-level kernels working directly on the row-major element arrays of
+ * matrices. All indices used here are zero-based, and no bounds checking is
+ * done, so callers are responsible for passing arrays of the right size.
+ * <br>
+ * Loops which can use the Vector API delegate to VectorKernel when the
+ * current {@link MatrixBackend} is VECTOR.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix
+ */
+final class MatrixKernel {
+
+    /**
+     * Largest tile edge used by the blocked multiplication. A 64 x 64 tile of
+     * doubles is 32 KiB, so a tile of each operand fits in a typical L2 cache.
+     */
+    static final int MAX_BLOCK_SIZE = 64;
+
+    /**
+     * Products with fewer multiply-adds than this skip tiling entirely, since
+     * all operands already fit in cache.
+     */
+    static final long BLOCKING_THRESHOLD = 32L * 32 * 32;
+
+    private MatrixKernel() {
+    }
+
+    /**
+     * Picks a tile edge for multiplying an n x m matrix by an m x p matrix.
+     * @param n
+     * @param m
+     * @param p
+     * @return
+     */
+    static int blockSize(int n, int m, int p) {
+        if ((long) n * m * p < BLOCKING_THRESHOLD) {
+            return Math.max(n, Math.max(m, p));
+        }
+        return Math.min(MAX_BLOCK_SIZE, Math.max(n, Math.max(m, p)));
+    }
+
+    /**
+     * Multiplies the n x m matrix a by the m x p matrix b, storing the n x p
+     * result in res. The result array is overwritten.
+     * @param a
+     * @param b
+     * @param res
+     * @param n
+     * @param m
+     * @param p
+     */
+    static void mul(double[] a, double[] b, double[] res, int n, int m, int p) {
+        mulRows(a, b, res, n, m, p, 0, n, blockSize(n, m, p));
+    }
+
+    /**
+     * Computes rows rowFrom (inclusive) to rowTo (exclusive) of the product
+     * of the n x m matrix a and the m x p matrix b, storing them in res.
+     * @param a
+     * @param b
+     * @param res
+     * @param n
+     * @param m
+     * @param p
+     * @param rowFrom
+     * @param rowTo
+     * @param block Tile edge, see {@link #blockSize(int, int, int)}.
+     */
+    static void mulRows(double[] a, double[] b, double[] res, int n, int m, int p,
+            int rowFrom, int rowTo, int block) {
+        mulBlock(a, rowFrom * m, b, res, rowFrom * p, rowTo - rowFrom, m, p, block);
+    }
+
+    /**
+     * Multiplies the n x m matrix a by the m x m matrix b, storing the result
+     * back into a. Rows are processed in bands, so only one band of a needs
+     * to be copied aside at a time.
+     * @param a
+     * @param b
+     * @param n
+     * @param m
+     * @param buf Scratch array of at least
+     * {@code min(n, blockSize(n, m, m)) * m} elements.
+     */
+    static void mulInPlace(double[] a, double[] b, int n, int m, double[] buf) {
+        int block = blockSize(n, m, m);
+        for (int ii = 0; ii < n; ii += block) {
+            int bandRows = Math.min(block, n - ii);
+            System.arraycopy(a, ii * m, buf, 0, bandRows * m);
+            mulBlock(buf, 0, b, a, ii * m, bandRows, m, m, block);
+        }
+    }
+
+    /**
+     * Scratch size needed by {@link #mulInPlace(double[], double[], int, int, double[])}.
+     * @param n
+     * @param m
+     * @return
+     */
+    static int mulInPlaceBufferSize(int n, int m) {
+        return Math.min(n, blockSize(n, m, m)) * m;
+    }
+
+    /**
+     * Multiplies the rows x m matrix stored in a from offset aOff by the
+     * m x p matrix b, storing the rows x p result in res from offset resOff.
+     */
+    private static void mulBlock(double[] a, int aOff, double[] b, double[] res, int resOff,
+            int rows, int m, int p, int block) {
+        mulBlock(a, aOff, m, b, 0, p, res, resOff, p, rows, m, p, block);
+    }
+
+    /**
+     * Multiplies the rows x m matrix stored in a from offset aOff, with lda
+     * elements between the starts of its rows, by the m x p matrix stored in
+     * b from offset bOff with row length ldb, storing the rows x p result in
+     * res from offset resOff with row length ldc. The loops are tiled and
+     * ordered i-k-j, so the innermost loop streams along a row of both b and
+     * res. Every element is still accumulated in increasing k order, so the
+     * result is identical to the naive triple loop.
+     */
+    static void mulBlock(double[] a, int aOff, int lda, double[] b, int bOff, int ldb,
+            double[] res, int resOff, int ldc, int rows, int m, int p, int block) {
+        boolean vector = MatrixBackend.get() == MatrixBackend.VECTOR;
+        for (int i = 0; i < rows; i++) {
+            Arrays.fill(res, resOff + i * ldc, resOff + i * ldc + p, 0);
+        }
+
+        for (int ii = 0; ii < rows; ii += block) {
+            int iEnd = Math.min(ii + block, rows);
+            for (int kk = 0; kk < m; kk += block) {
+                int kEnd = Math.min(kk + block, m);
+                for (int jj = 0; jj < p; jj += block) {
+                    int jEnd = Math.min(jj + block, p);
+                    for (int i = ii; i < iEnd; i++) {
+                        int ai = aOff + i * lda;
+                        int ri = resOff + i * ldc;
+                        for (int k = kk; k < kEnd; k++) {
+                            double aik = a[ai + k];
+                            int bk = bOff + k * ldb;
+                            if (vector) {
+                                VectorKernel.axpy(aik, b, bk + jj, res, ri + jj, jEnd - jj);
+                                continue;
+                            }
+                            for (int j = jj; j < jEnd; j++) {
+                                res[ri + j] += aik * b[bk + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies elements from (inclusive) to (exclusive) of a by c.
+     * @param a
+     * @param c
+     * @param from
+     * @param to
+     */
+    static void scale(double[] a, double c, int from, int to) {
+        if (MatrixBackend.get() == MatrixBackend.VECTOR) {
+            VectorKernel.scale(a, c, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            a[i] *= c;
+        }
+    }
+
+    /**
+     * Adds elements from (inclusive) to (exclusive) of b to a.
+     * @param a
+     * @param b
+     * @param from
+     * @param to
+     */
+    static void add(double[] a, double[] b, int from, int to) {
+        if (MatrixBackend.get() == MatrixBackend.VECTOR) {
+            VectorKernel.add(a, b, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            a[i] += b[i];
+        }
+    }
+
+    /**
+     * Subtracts elements from (inclusive) to (exclusive) of b from a.
+     * @param a
+     * @param b
+     * @param from
+     * @param to
+     */
+    static void sub(double[] a, double[] b, int from, int to) {
+        if (MatrixBackend.get() == MatrixBackend.VECTOR) {
+            VectorKernel.sub(a, b, from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            a[i] -= b[i];
+        }
+    }
+
+    /**
+     * Sums elements from (inclusive) to (exclusive) of a.
+     * @param a
+     * @param from
+     * @param to
+     * @return
+     */
+    static double sum(double[] a, int from, int to) {
+        if (MatrixBackend.get() == MatrixBackend.VECTOR) {
+            return VectorKernel.sum(a, from, to);
+        }
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Transposes rows rowFrom (inclusive) to rowTo (exclusive) of the
+     * rows x cols matrix src into the cols x rows matrix dst. The copy is done
+     * in square tiles so that neither array is walked with a large stride for
+     * long.
+     * @param src
+     * @param dst
+     * @param rows
+     * @param cols
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void transposeRows(double[] src, double[] dst, int rows, int cols, int rowFrom, int rowTo) {
+        int block = MAX_BLOCK_SIZE / 2;
+        for (int ii = rowFrom; ii < rowTo; ii += block) {
+            int iEnd = Math.min(ii + block, rowTo);
+            for (int jj = 0; jj < cols; jj += block) {
+                int jEnd = Math.min(jj + block, cols);
+                for (int i = ii; i < iEnd; i++) {
+                    int si = i * cols;
+                    for (int j = jj; j < jEnd; j++) {
+                        dst[j * rows + i] = src[si + j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes rows rowFrom (inclusive) to rowTo (exclusive) of the product
+     * of the n x m matrix a and the m x p matrix b, where both are strided,
+     * see {@link Matrix#isStrided()}. The result is stored contiguously in
+     * res. When b is stored column-first, as a transposed view is, the loops
+     * are ordered i-j-k so that both operands are read along their storage
+     * order. Every element is accumulated in increasing k order, so the
+     * result is identical to the contiguous kernel.
+     */
+    static void mulStrided(double[] a, int aOff, int aRs, int aCs,
+            double[] b, int bOff, int bRs, int bCs,
+            double[] res, int m, int p, int rowFrom, int rowTo) {
+        if (bCs == 1 || bRs != 1) {
+            for (int i = rowFrom; i < rowTo; i++) {
+                int ri = i * p;
+                for (int j = 0; j < p; j++) {
+                    res[ri + j] = 0;
+                }
+                int ai = aOff + i * aRs;
+                for (int k = 0; k < m; k++) {
+                    double aik = a[ai + k * aCs];
+                    int bk = bOff + k * bRs;
+                    for (int j = 0; j < p; j++) {
+                        res[ri + j] += aik * b[bk + j * bCs];
+                    }
+                }
+            }
+            return;
+        }
+
+        for (int i = rowFrom; i < rowTo; i++) {
+            int ri = i * p;
+            int ai = aOff + i * aRs;
+            for (int j = 0; j < p; j++) {
+                int bj = bOff + j * bCs;
+                double e = 0;
+                for (int k = 0; k < m; k++) {
+                    e += a[ai + k * aCs] * b[bj + k];
+                }
+                res[ri + j] = e;
+            }
+        }
+    }
+
+    /**
+     * Multiplies rows rowFrom (inclusive) to rowTo (exclusive) of a matrix
+     * by c, going through get0 and set0 so that any view can be used.
+     * @param a
+     * @param c
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void scale(Matrix a, double c, int rowFrom, int rowTo) {
+        for (int r = rowFrom; r < rowTo; r++) {
+            for (int j = 0; j < a.cols; j++) {
+                a.set0(r, j, a.get0(r, j) * c);
+            }
+        }
+    }
+
+    /**
+     * Adds rows rowFrom (inclusive) to rowTo (exclusive) of b to a, going
+     * through get0 and set0 so that any view can be used.
+     * @param a
+     * @param b
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void add(Matrix a, Matrix b, int rowFrom, int rowTo) {
+        for (int r = rowFrom; r < rowTo; r++) {
+            for (int j = 0; j < a.cols; j++) {
+                a.set0(r, j, a.get0(r, j) + b.get0(r, j));
+            }
+        }
+    }
+
+    /**
+     * Subtracts rows rowFrom (inclusive) to rowTo (exclusive) of b from a,
+     * going through get0 and set0 so that any view can be used.
+     * @param a
+     * @param b
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void sub(Matrix a, Matrix b, int rowFrom, int rowTo) {
+        for (int r = rowFrom; r < rowTo; r++) {
+            for (int j = 0; j < a.cols; j++) {
+                a.set0(r, j, a.get0(r, j) - b.get0(r, j));
+            }
+        }
+    }
+
+    /**
+     * Transposes rows rowFrom (inclusive) to rowTo (exclusive) of src into the
+     * contiguous array dst, going through get0 so that any view can be used.
+     * @param src
+     * @param dst
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void transposeRows(Matrix src, double[] dst, int rowFrom, int rowTo) {
+        int rows = src.rows;
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int j = 0; j < src.cols; j++) {
+                dst[j * rows + i] = src.get0(i, j);
+            }
+        }
+    }
+
+    /**
+     * Largest number of doubles in each buffer used by the streaming
+     * multiplication, 8 MiB.
+     */
+    static final int STREAM_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Computes rows rowFrom (inclusive) to rowTo (exclusive) of the product
+     * of a and b, storing them in res. Bands of rows of a, blocks of rows of b
+     * and bands of the result are copied through heap buffers with
+     * getRow/setRow, so none of the matrices needs to fit on the heap. Every
+     * element is accumulated in increasing k order, so the result is
+     * identical to the contiguous kernel.
+     * @param a
+     * @param b
+     * @param res
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void mulStreaming(Matrix a, Matrix b, Matrix res, int rowFrom, int rowTo) {
+        int m = a.cols;
+        int p = b.cols;
+        int band = Math.max(1, Math.min(MAX_BLOCK_SIZE, STREAM_BUFFER_SIZE / Math.max(m, p)));
+        int kBlock = Math.max(1, Math.min(m, STREAM_BUFFER_SIZE / p));
+        double[] aBuf = new double[Math.min(band, rowTo - rowFrom) * m];
+        double[] bBuf = new double[kBlock * p];
+        double[] rBuf = new double[Math.min(band, rowTo - rowFrom) * p];
+
+        for (int ii = rowFrom; ii < rowTo; ii += band) {
+            int n = Math.min(band, rowTo - ii);
+            for (int i = 0; i < n; i++) {
+                a.getRow(ii + i, 0, m, aBuf, i * m);
+            }
+            Arrays.fill(rBuf, 0);
+
+            for (int kk = 0; kk < m; kk += kBlock) {
+                int kn = Math.min(kBlock, m - kk);
+                for (int k = 0; k < kn; k++) {
+                    b.getRow(kk + k, 0, p, bBuf, k * p);
+                }
+                for (int i = 0; i < n; i++) {
+                    int ai = i * m + kk;
+                    int ri = i * p;
+                    for (int k = 0; k < kn; k++) {
+                        double aik = aBuf[ai + k];
+                        int bk = k * p;
+                        for (int j = 0; j < p; j++) {
+                            rBuf[ri + j] += aik * bBuf[bk + j];
+                        }
+                    }
+                }
+            }
+
+            for (int i = 0; i < n; i++) {
+                res.setRow(ii + i, 0, p, rBuf, i * p);
+            }
+        }
+    }
+
+    /**
+     * Computes rows rowFrom (inclusive) to rowTo (exclusive) of the linear
+     * combination coef[0] x src[0] + coef[1] x src[1] + ... in one pass,
+     * storing them in dest. Each row of the result is built in place before
+     * the next is started, so every source is read once. Dest may be src[0],
+     * but must not share elements with any other source.
+     * @param src
+     * @param coef
+     * @param dest
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void combine(Matrix[] src, double[] coef, Matrix dest, int rowFrom, int rowTo) {
+        int n = dest.cols;
+        boolean direct = dest.isContiguous();
+        double[] out = direct ? dest.elem : new double[n];
+        double[] buf = null;
+        boolean vector = MatrixBackend.get() == MatrixBackend.VECTOR;
+
+        for (int r = rowFrom; r < rowTo; r++) {
+            int o = direct ? r * n : 0;
+            for (int t = 0; t < src.length; t++) {
+                Matrix s = src[t];
+                double c = coef[t];
+                double[] in;
+                int i;
+                if (s.isContiguous()) {
+                    in = s.elem;
+                    i = r * n;
+                }
+                else if (t == 0 && s == dest) {
+                    if (!direct) {
+                        s.getRow(r, 0, n, out, 0);
+                    }
+                    in = out;
+                    i = o;
+                }
+                else {
+                    if (buf == null) {
+                        buf = new double[n];
+                    }
+                    s.getRow(r, 0, n, buf, 0);
+                    in = buf;
+                    i = 0;
+                }
+
+                if (t == 0) {
+                    if (c == 1) {
+                        if (in != out || i != o) {
+                            System.arraycopy(in, i, out, o, n);
+                        }
+                    }
+                    else {
+                        for (int j = 0; j < n; j++) {
+                            out[o + j] = c * in[i + j];
+                        }
+                    }
+                }
+                else if (c == 1) {
+                    for (int j = 0; j < n; j++) {
+                        out[o + j] += in[i + j];
+                    }
+                }
+                else if (c == -1) {
+                    for (int j = 0; j < n; j++) {
+                        out[o + j] -= in[i + j];
+                    }
+                }
+                else if (vector) {
+                    VectorKernel.axpy(c, in, i, out, o, n);
+                }
+                else {
+                    for (int j = 0; j < n; j++) {
+                        out[o + j] += c * in[i + j];
+                    }
+                }
+            }
+            if (!direct) {
+                dest.setRow(r, 0, n, out, 0);
+            }
+        }
+    }
+
+    /**
+     * Applies f to elements from (inclusive) to (exclusive) of a, in place.
+     * @param a
+     * @param f
+     * @param from
+     * @param to
+     */
+    static void map(double[] a, DoubleUnaryOperator f, int from, int to) {
+        for (int i = from; i < to; i++) {
+            a[i] = f.applyAsDouble(a[i]);
+        }
+    }
+
+    /**
+     * Applies f to every element in rows rowFrom (inclusive) to rowTo
+     * (exclusive) of a, in place. Rows of matrices which are not contiguous
+     * are copied through a buffer, so that off-heap matrices are read and
+     * written a row at a time.
+     * @param a
+     * @param f
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void map(Matrix a, DoubleUnaryOperator f, int rowFrom, int rowTo) {
+        int n = a.cols;
+        if (a.isContiguous()) {
+            map(a.elem, f, rowFrom * n, rowTo * n);
+            return;
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] buf = ws.acquire(n);
+        for (int r = rowFrom; r < rowTo; r++) {
+            a.getRow(r, 0, n, buf, 0);
+            for (int j = 0; j < n; j++) {
+                buf[j] = f.applyAsDouble(buf[j]);
+            }
+            a.setRow(r, 0, n, buf, 0);
+        }
+        ws.release(buf);
+    }
+
+    /**
+     * Replaces every element in rows rowFrom (inclusive) to rowTo
+     * (exclusive) of a with the value returned by op, which is given
+     * one-based row and column numbers.
+     * @param a
+     * @param op
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void replace(Matrix a, Matrix.ElementOperator op, int rowFrom, int rowTo) {
+        int n = a.cols;
+        if (a.isContiguous()) {
+            double[] e = a.elem;
+            for (int r = rowFrom; r < rowTo; r++) {
+                int ri = r * n;
+                for (int j = 0; j < n; j++) {
+                    e[ri + j] = op.apply(r + 1, j + 1, e[ri + j]);
+                }
+            }
+            return;
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] buf = ws.acquire(n);
+        for (int r = rowFrom; r < rowTo; r++) {
+            a.getRow(r, 0, n, buf, 0);
+            for (int j = 0; j < n; j++) {
+                buf[j] = op.apply(r + 1, j + 1, buf[j]);
+            }
+            a.setRow(r, 0, n, buf, 0);
+        }
+        ws.release(buf);
+    }
+
+    /**
+     * Performs action for every element in rows rowFrom (inclusive) to rowTo
+     * (exclusive) of a, giving one-based row and column numbers.
+     * @param a
+     * @param action
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void forEach(Matrix a, Matrix.EachElementAction action, int rowFrom, int rowTo) {
+        int n = a.cols;
+        if (a.isContiguous()) {
+            double[] e = a.elem;
+            for (int r = rowFrom; r < rowTo; r++) {
+                int ri = r * n;
+                for (int j = 0; j < n; j++) {
+                    action.perform(r + 1, j + 1, e[ri + j]);
+                }
+            }
+            return;
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] buf = ws.acquire(n);
+        for (int r = rowFrom; r < rowTo; r++) {
+            a.getRow(r, 0, n, buf, 0);
+            for (int j = 0; j < n; j++) {
+                action.perform(r + 1, j + 1, buf[j]);
+            }
+        }
+        ws.release(buf);
+    }
+
+    /**
+     * Reduces each of the rows rowFrom (inclusive) to rowTo (exclusive) of a
+     * with op, starting from identity and going left to right, and stores
+     * the result for row r in res[r].
+     * @param a
+     * @param identity
+     * @param op
+     * @param res
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void reduceRows(Matrix a, double identity, DoubleBinaryOperator op, double[] res,
+            int rowFrom, int rowTo) {
+        int n = a.cols;
+        if (a.isContiguous()) {
+            double[] e = a.elem;
+            for (int r = rowFrom; r < rowTo; r++) {
+                double acc = identity;
+                for (int i = r * n, end = i + n; i < end; i++) {
+                    acc = op.applyAsDouble(acc, e[i]);
+                }
+                res[r] = acc;
+            }
+            return;
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] buf = ws.acquire(n);
+        for (int r = rowFrom; r < rowTo; r++) {
+            a.getRow(r, 0, n, buf, 0);
+            double acc = identity;
+            for (int j = 0; j < n; j++) {
+                acc = op.applyAsDouble(acc, buf[j]);
+            }
+            res[r] = acc;
+        }
+        ws.release(buf);
+    }
+
+    /**
+     * Sums each of the rows rowFrom (inclusive) to rowTo (exclusive) of a,
+     * storing the sum of row r in res[r].
+     * @param a
+     * @param res
+     * @param rowFrom
+     * @param rowTo
+     */
+    static void sumRows(Matrix a, double[] res, int rowFrom, int rowTo) {
+        int n = a.cols;
+        if (a.isContiguous()) {
+            for (int r = rowFrom; r < rowTo; r++) {
+                res[r] = sum(a.elem, r * n, r * n + n);
+            }
+            return;
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] buf = ws.acquire(n);
+        for (int r = rowFrom; r < rowTo; r++) {
+            a.getRow(r, 0, n, buf, 0);
+            res[r] = sum(buf, 0, n);
+        }
+        ws.release(buf);
+    }
+}
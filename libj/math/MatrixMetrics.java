@@ -0,0 +1,561 @@
+package libj.math;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Optional instrumentation of the dense matrix operations. When enabled, each
+ * call to {@link Matrix#mul(libj.math.Matrix, libj.math.Matrix)},
+ * {@link Matrix#transpose()}, {@link Matrix#subMat(int, int)},
+ * {@link SqMatrix#det()}, {@link SqMatrix#inv()}, {@link SqMatrix#solve(Matrix)}
+ * and their in-place and *Into variants is counted, together with its
+ * floating point operations, the bytes it allocates and its latency. The
+ * counters are kept per {@link Operation} and per size bucket, where the size
+ * is the largest dimension of the operands, and are exposed through the
+ * static getters here, the {@link MatrixMetricsMXBean} registered by
+ * {@link #registerMBean()}, and any {@link MatrixMetricsListener}. Each
+ * operation is also emitted as a JFR event named
+ * {@code libj.math.MatrixOperation}, whenever a flight recording has the
+ * event enabled.
+ * <br>
+ * FLOPs and bytes are derived from the dimensions, not measured. The FLOPs
+ * are those of the classical algorithm, so 2 x m x k x n for a product and
+ * 2 x n^3 / 3 for a LU decomposition. The bytes are those of the returned
+ * matrix and of any decomposition created on the way, while temporaries
+ * taken from the {@link MatrixWorkspace} are not counted, so the *Into
+ * variants report no allocation.
+ * <br>
+ * Instrumentation is disabled by default, unless the system property
+ * {@code libj.math.metrics} is set to {@code true}. While disabled, each
+ * operation only reads a single flag.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see MatrixMetricsListener
+ */
+public final class MatrixMetrics {
+
+    /**
+     * The instrumented operations.
+     */
+    public enum Operation {
+
+        /**
+         * Matrix multiplication.
+         */
+        MUL,
+
+        /**
+         * Transposing a matrix into a new matrix.
+         */
+        TRANSPOSE,
+
+        /**
+         * Copying out a sub-matrix with one row and one column removed.
+         */
+        SUBMAT,
+
+        /**
+         * Determinant of a square matrix.
+         */
+        DET,
+
+        /**
+         * Inverse of a square matrix.
+         */
+        INV,
+
+        /**
+         * Solving a linear system with a square matrix.
+         */
+        SOLVE
+    }
+
+    /**
+     * Number of size buckets. Bucket 0 holds operations on 1 x 1 matrices,
+     * and bucket b &gt; 0 operations where the largest dimension is in
+     * (2^(b-1), 2^b]. The last bucket also holds all larger operations.
+     */
+    public static final int SIZE_BUCKETS = 16;
+
+    /**
+     * Number of latency buckets. Bucket 0 holds operations which took no
+     * measurable time, and bucket b &gt; 0 operations which took
+     * [2^(b-1), 2^b) nanoseconds. The last bucket also holds all slower
+     * operations.
+     */
+    public static final int LATENCY_BUCKETS = 40;
+
+    /**
+     * Name under which {@link #registerMBean()} registers the MXBean.
+     */
+    public static final String OBJECT_NAME = "libj.math:type=MatrixMetrics";
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    /**
+     * Read by every instrumented operation, and kept in a plain static field
+     * so that the check is a single load.
+     */
+    static volatile boolean enabled = Boolean.getBoolean("libj.math.metrics");
+
+    private static volatile MatrixMetricsListener[] listeners = new MatrixMetricsListener[0];
+
+    /**
+     * Counters per operation and size bucket, created on first use.
+     */
+    private static final AtomicReferenceArray<Counters> counters =
+            new AtomicReferenceArray<>(OPERATIONS.length * SIZE_BUCKETS);
+
+    private static ObjectName registered;
+
+    private MatrixMetrics() {
+    }
+
+    /**
+     * Counters of one operation in one size bucket. LongAdders keep the
+     * updates cheap when many threads record the same operation.
+     */
+    private static final class Counters {
+
+        final LongAdder calls = new LongAdder();
+
+        final LongAdder flops = new LongAdder();
+
+        final LongAdder bytes = new LongAdder();
+
+        final LongAdder nanos = new LongAdder();
+
+        final LongAdder[] latency = new LongAdder[LATENCY_BUCKETS];
+
+        Counters() {
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                latency[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Checks if operations are currently instrumented.
+     * @return
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns instrumentation on or off. Operations already running when the
+     * instrumentation is turned on are not recorded.
+     * @param on
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Adds a listener which is told about every instrumented operation, on
+     * the thread which ran it.
+     * @param listener
+     */
+    public static synchronized void addListener(MatrixMetricsListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener can't be null");
+        }
+        MatrixMetricsListener[] l = Arrays.copyOf(listeners, listeners.length + 1);
+        l[l.length - 1] = listener;
+        listeners = l;
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener(MatrixMetricsListener)}.
+     * @param listener
+     * @return false if the listener was not added.
+     */
+    public static synchronized boolean removeListener(MatrixMetricsListener listener) {
+        MatrixMetricsListener[] l = listeners;
+        for (int i = 0; i < l.length; i++) {
+            if (l[i] == listener) {
+                MatrixMetricsListener[] res = new MatrixMetricsListener[l.length - 1];
+                System.arraycopy(l, 0, res, 0, i);
+                System.arraycopy(l, i + 1, res, i, l.length - i - 1);
+                listeners = res;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers a {@link MatrixMetricsMXBean} with the platform MBean server
+     * under {@link #OBJECT_NAME}, unless it is already registered.
+     * @return the name of the MXBean.
+     */
+    public static synchronized ObjectName registerMBean() {
+        if (registered == null) {
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), name);
+                registered = name;
+            }
+            catch (JMException e) {
+                throw new IllegalStateException("Could not register MXBean", e);
+            }
+        }
+        return registered;
+    }
+
+    /**
+     * Removes the MXBean registered by {@link #registerMBean()}, if any.
+     */
+    public static synchronized void unregisterMBean() {
+        if (registered != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(registered)) {
+                    server.unregisterMBean(registered);
+                }
+            }
+            catch (JMException e) {
+                throw new IllegalStateException("Could not unregister MXBean", e);
+            }
+            registered = null;
+        }
+    }
+
+    /**
+     * Returns the size bucket of an operation whose largest dimension is n.
+     * @param n
+     * @return
+     * @see #SIZE_BUCKETS
+     */
+    public static int sizeBucket(int n) {
+        if (n <= 1) {
+            return 0;
+        }
+        return Math.min(SIZE_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(n - 1));
+    }
+
+    /**
+     * Returns the latency bucket of an operation which took the given number
+     * of nanoseconds.
+     * @param nanos
+     * @return
+     * @see #LATENCY_BUCKETS
+     */
+    public static int latencyBucket(long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * Returns the number of calls to an operation.
+     * @param op
+     * @return
+     */
+    public static long getCalls(Operation op) {
+        long sum = 0;
+        for (int b = 0; b < SIZE_BUCKETS; b++) {
+            sum += getCalls(op, b);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the number of calls to an operation in one size bucket.
+     * @param op
+     * @param sizeBucket
+     * @return
+     */
+    public static long getCalls(Operation op, int sizeBucket) {
+        Counters c = peek(op, sizeBucket);
+        return c == null ? 0 : c.calls.sum();
+    }
+
+    /**
+     * Returns the floating point operations done by an operation.
+     * @param op
+     * @return
+     */
+    public static long getFlops(Operation op) {
+        long sum = 0;
+        for (int b = 0; b < SIZE_BUCKETS; b++) {
+            sum += getFlops(op, b);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the floating point operations done by an operation in one size
+     * bucket.
+     * @param op
+     * @param sizeBucket
+     * @return
+     */
+    public static long getFlops(Operation op, int sizeBucket) {
+        Counters c = peek(op, sizeBucket);
+        return c == null ? 0 : c.flops.sum();
+    }
+
+    /**
+     * Returns the bytes allocated by an operation.
+     * @param op
+     * @return
+     */
+    public static long getBytesAllocated(Operation op) {
+        long sum = 0;
+        for (int b = 0; b < SIZE_BUCKETS; b++) {
+            sum += getBytesAllocated(op, b);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the bytes allocated by an operation in one size bucket.
+     * @param op
+     * @param sizeBucket
+     * @return
+     */
+    public static long getBytesAllocated(Operation op, int sizeBucket) {
+        Counters c = peek(op, sizeBucket);
+        return c == null ? 0 : c.bytes.sum();
+    }
+
+    /**
+     * Returns the total time spent in an operation, in nanoseconds.
+     * @param op
+     * @return
+     */
+    public static long getTotalNanos(Operation op) {
+        long sum = 0;
+        for (int b = 0; b < SIZE_BUCKETS; b++) {
+            sum += getTotalNanos(op, b);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the total time spent in an operation in one size bucket, in
+     * nanoseconds.
+     * @param op
+     * @param sizeBucket
+     * @return
+     */
+    public static long getTotalNanos(Operation op, int sizeBucket) {
+        Counters c = peek(op, sizeBucket);
+        return c == null ? 0 : c.nanos.sum();
+    }
+
+    /**
+     * Returns the number of calls to an operation in each latency bucket.
+     * @param op
+     * @return an array of {@link #LATENCY_BUCKETS} counts.
+     */
+    public static long[] getLatencyHistogram(Operation op) {
+        long[] res = new long[LATENCY_BUCKETS];
+        for (int b = 0; b < SIZE_BUCKETS; b++) {
+            addLatency(op, b, res);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of calls to an operation in one size bucket in each
+     * latency bucket.
+     * @param op
+     * @param sizeBucket
+     * @return an array of {@link #LATENCY_BUCKETS} counts.
+     */
+    public static long[] getLatencyHistogram(Operation op, int sizeBucket) {
+        long[] res = new long[LATENCY_BUCKETS];
+        addLatency(op, sizeBucket, res);
+        return res;
+    }
+
+    /**
+     * Sets all counters to zero. Operations recorded concurrently may be
+     * partly kept.
+     */
+    public static void reset() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, null);
+        }
+    }
+
+    private static void addLatency(Operation op, int sizeBucket, long[] res) {
+        Counters c = peek(op, sizeBucket);
+        if (c != null) {
+            for (int i = 0; i < LATENCY_BUCKETS; i++) {
+                res[i] += c.latency[i].sum();
+            }
+        }
+    }
+
+    private static Counters peek(Operation op, int sizeBucket) {
+        if (sizeBucket < 0 || sizeBucket >= SIZE_BUCKETS) {
+            throw new IllegalArgumentException("Size bucket must be between 0 and " + (SIZE_BUCKETS - 1));
+        }
+        return counters.get(op.ordinal() * SIZE_BUCKETS + sizeBucket);
+    }
+
+    /**
+     * Starts recording an operation, and is called first thing by every
+     * instrumented operation.
+     * @return the event to pass to
+     * {@link #end(MatrixOperationEvent, Operation, int, long, long)}, or null
+     * if instrumentation is disabled.
+     */
+    static MatrixOperationEvent begin() {
+        if (!enabled) {
+            return null;
+        }
+        MatrixOperationEvent ev = new MatrixOperationEvent();
+        ev.begin();
+        ev.startNanos = System.nanoTime();
+        return ev;
+    }
+
+    /**
+     * Finishes recording an operation started with {@link #begin()}. Does
+     * nothing if the event is null.
+     * @param ev
+     * @param op
+     * @param size The largest dimension of the operands.
+     * @param flops
+     * @param bytes
+     */
+    static void end(MatrixOperationEvent ev, Operation op, int size, long flops, long bytes) {
+        if (ev == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - ev.startNanos;
+        ev.end();
+
+        int i = op.ordinal() * SIZE_BUCKETS + sizeBucket(size);
+        Counters c = counters.get(i);
+        if (c == null) {
+            c = new Counters();
+            if (!counters.compareAndSet(i, null, c)) {
+                c = counters.get(i);
+            }
+        }
+        c.calls.increment();
+        c.flops.add(flops);
+        c.bytes.add(bytes);
+        c.nanos.add(nanos);
+        c.latency[latencyBucket(nanos)].increment();
+
+        for (MatrixMetricsListener l : listeners) {
+            l.operationCompleted(op, size, flops, bytes, nanos);
+        }
+
+        if (ev.shouldCommit()) {
+            ev.operation = op.name();
+            ev.size = size;
+            ev.flops = flops;
+            ev.bytesAllocated = bytes;
+            ev.commit();
+        }
+    }
+
+    /**
+     * FLOPs of a LU decomposition of a n x n matrix.
+     */
+    static long luFlops(int n) {
+        return 2L * n * n * n / 3;
+    }
+
+    /**
+     * FLOPs of solving for m right-hand sides with a n x n LU decomposition.
+     */
+    static long luSolveFlops(int n, int m) {
+        return 2L * n * n * m;
+    }
+
+    /**
+     * Bytes held by a LU decomposition of a n x n matrix.
+     */
+    static long luBytes(int n) {
+        return 8L * n * n + 4L * n;
+    }
+
+    /**
+     * The MXBean registered by {@link #registerMBean()}, which reads the
+     * static counters.
+     */
+    private static final class MBean implements MatrixMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return MatrixMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean on) {
+            MatrixMetrics.setEnabled(on);
+        }
+
+        @Override
+        public String[] getOperations() {
+            String[] res = new String[OPERATIONS.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = OPERATIONS[i].name();
+            }
+            return res;
+        }
+
+        @Override
+        public long getCalls(String op) {
+            return MatrixMetrics.getCalls(Operation.valueOf(op));
+        }
+
+        @Override
+        public long[] getCallsBySize(String op) {
+            Operation o = Operation.valueOf(op);
+            long[] res = new long[SIZE_BUCKETS];
+            for (int b = 0; b < SIZE_BUCKETS; b++) {
+                res[b] = MatrixMetrics.getCalls(o, b);
+            }
+            return res;
+        }
+
+        @Override
+        public long getFlops(String op) {
+            return MatrixMetrics.getFlops(Operation.valueOf(op));
+        }
+
+        @Override
+        public long[] getFlopsBySize(String op) {
+            Operation o = Operation.valueOf(op);
+            long[] res = new long[SIZE_BUCKETS];
+            for (int b = 0; b < SIZE_BUCKETS; b++) {
+                res[b] = MatrixMetrics.getFlops(o, b);
+            }
+            return res;
+        }
+
+        @Override
+        public long getBytesAllocated(String op) {
+            return MatrixMetrics.getBytesAllocated(Operation.valueOf(op));
+        }
+
+        @Override
+        public long getTotalNanos(String op) {
+            return MatrixMetrics.getTotalNanos(Operation.valueOf(op));
+        }
+
+        @Override
+        public long[] getLatencyHistogram(String op) {
+            return MatrixMetrics.getLatencyHistogram(Operation.valueOf(op));
+        }
+
+        @Override
+        public void reset() {
+            MatrixMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package libj.math;
+
+/**
+ * Receives every operation recorded by {@link MatrixMetrics}, for example to
+ * forward it to a metrics library. The listener is called on the thread which
+ * ran the operation, right after it completes, so it should be quick and must
+ * not throw.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see MatrixMetrics#addListener(libj.math.MatrixMetricsListener)
+ */
+@FunctionalInterface
+public interface MatrixMetricsListener {
+
+    /**
+     * Called when an instrumented operation has completed.
+     * @param op
+     * @param size The largest dimension of the operands.
+     * @param flops Floating point operations done.
+     * @param bytes Bytes allocated.
+     * @param nanos Time taken, in nanoseconds.
+     */
+    void operationCompleted(MatrixMetrics.Operation op, int size, long flops, long bytes, long nanos);
+}
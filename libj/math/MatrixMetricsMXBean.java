@@ -0,0 +1,86 @@
+package libj.math;
+
+/**
+ * Management interface of {@link MatrixMetrics}, registered with
+ * {@link MatrixMetrics#registerMBean()}. Operations are given by the names of
+ * the {@link MatrixMetrics.Operation} constants, such as {@code "MUL"}.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+public interface MatrixMetricsMXBean {
+
+    /**
+     * Checks if operations are currently instrumented.
+     * @return
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns instrumentation on or off.
+     * @param on
+     */
+    void setEnabled(boolean on);
+
+    /**
+     * Returns the names of the instrumented operations.
+     * @return
+     */
+    String[] getOperations();
+
+    /**
+     * Returns the number of calls to an operation.
+     * @param op
+     * @return
+     */
+    long getCalls(String op);
+
+    /**
+     * Returns the number of calls to an operation in each size bucket.
+     * @param op
+     * @return
+     * @see MatrixMetrics#SIZE_BUCKETS
+     */
+    long[] getCallsBySize(String op);
+
+    /**
+     * Returns the floating point operations done by an operation.
+     * @param op
+     * @return
+     */
+    long getFlops(String op);
+
+    /**
+     * Returns the floating point operations done by an operation in each
+     * size bucket.
+     * @param op
+     * @return
+     * @see MatrixMetrics#SIZE_BUCKETS
+     */
+    long[] getFlopsBySize(String op);
+
+    /**
+     * Returns the bytes allocated by an operation.
+     * @param op
+     * @return
+     */
+    long getBytesAllocated(String op);
+
+    /**
+     * Returns the total time spent in an operation, in nanoseconds.
+     * @param op
+     * @return
+     */
+    long getTotalNanos(String op);
+
+    /**
+     * Returns the number of calls to an operation in each latency bucket.
+     * @param op
+     * @return
+     * @see MatrixMetrics#LATENCY_BUCKETS
+     */
+    long[] getLatencyHistogram(String op);
+
+    /**
+     * Sets all counters to zero.
+     */
+    void reset();
+}
@@ -14,12 +14,172 @@ public class MatrixOperation {
         m = input;
     }    
     
+    /**
+     * Returns the row echelon form of the input matrix, calculated with
+     * Gaussian elimination. The input matrix is not changed.
+     * @return 
+     */
     public Matrix gauss() {
         Matrix ret = m.copy();
-        while (!isRowEchelon() && false) {
+        eliminate(ret, false);
+        return ret;
+    }
+    
+    /**
+     * Returns the reduced row echelon form of the input matrix, calculated
+     * with Gauss-Jordan elimination. The input matrix is not changed.
+     * @return 
+     */
+    public Matrix gaussJordan() {
+        Matrix ret = m.copy();
+        eliminate(ret, true);
+        return ret;
+    }
+    
+    /**
+     * Calculates the rank of the input matrix. The input matrix is not
+     * changed.
+     * @return 
+     */
+    public int rank() {
+        return eliminate(m.copy(), false);
+    }
+    
+    /**
+     * Transforms the input matrix itself into row echelon form.
+     * @return the rank of the matrix.
+     */
+    public int gaussInPlace() {
+        return eliminate(m, false);
+    }
+    
+    /**
+     * Transforms the input matrix itself into reduced row echelon form.
+     * @return the rank of the matrix.
+     */
+    public int gaussJordanInPlace() {
+        return eliminate(m, true);
+    }
+    
+    /**
+     * Runs Gaussian or Gauss-Jordan elimination with partial pivoting directly
+     * on the elements of the given matrix. Row swaps are only recorded in a
+     * permutation index during elimination, and the rows are moved into
+     * place once at the end. Elements smaller than a tolerance relative to
+     * the largest element are treated as zero.
+     * @param mat
+     * @param reduced Whether to produce the reduced row echelon form.
+     * @return the rank of the matrix.
+     */
+    static int eliminate(Matrix mat, boolean reduced) {
+        if (!mat.isContiguous()) {
+            Matrix dense = mat.copy();
+            int rank = eliminate(dense, reduced);
+            mat.setAll(dense.elem);
+            return rank;
+        }
+        
+        int rows = mat.rows;
+        int cols = mat.cols;
+        double[] a = mat.elem;
+        
+        int[] perm = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            perm[i] = i;
+        }
+        
+        double maxAbs = 0;
+        for (double e : a) {
+            maxAbs = Math.max(maxAbs, Math.abs(e));
+        }
+        double tol = Math.max(rows, cols) * maxAbs * Math.ulp(1.0);
+        
+        int r = 0;
+        for (int c = 0; c < cols && r < rows; c++) {
+            int p = -1;
+            double max = tol;
+            for (int i = r; i < rows; i++) {
+                double v = Math.abs(a[perm[i] * cols + c]);
+                if (v > max) {
+                    max = v;
+                    p = i;
+                }
+            }
             
+            if (p < 0) {
+                for (int i = r; i < rows; i++) {
+                    a[perm[i] * cols + c] = 0;
+                }
+                continue;
+            }
+            
+            int t = perm[r];
+            perm[r] = perm[p];
+            perm[p] = t;
+            
+            int pr = perm[r] * cols;
+            if (reduced) {
+                double inv = 1 / a[pr + c];
+                for (int j = c + 1; j < cols; j++) {
+                    a[pr + j] *= inv;
+                }
+                a[pr + c] = 1;
+            }
+            
+            for (int i = reduced ? 0 : r + 1; i < rows; i++) {
+                if (i == r) {
+                    continue;
+                }
+                int ir = perm[i] * cols;
+                double f = a[ir + c] / a[pr + c];
+                a[ir + c] = 0;
+                if (f == 0) {
+                    continue;
+                }
+                for (int j = c + 1; j < cols; j++) {
+                    a[ir + j] -= f * a[pr + j];
+                }
+            }
+            
+            r++;
+        }
+        
+        permuteRows(a, perm, rows, cols);
+        return r;
+    }
+    
+    /**
+     * Moves the rows of a so that row i becomes the row which was previously
+     * at perm[i], following each permutation cycle with a single row of
+     * scratch space. The permutation is reset to the identity.
+     * @param a
+     * @param perm
+     * @param rows
+     * @param cols 
+     */
+    private static void permuteRows(double[] a, int[] perm, int rows, int cols) {
+        double[] buf = null;
+        for (int i = 0; i < rows; i++) {
+            if (perm[i] == i) {
+                continue;
+            }
+            if (buf == null) {
+                buf = new double[cols];
+            }
+            
+            System.arraycopy(a, i * cols, buf, 0, cols);
+            int j = i;
+            while (true) {
+                int k = perm[j];
+                perm[j] = j;
+                if (k == i) {
+                    System.arraycopy(buf, 0, a, j * cols, cols);
+                    break;
+                }
+                System.arraycopy(a, k * cols, a, j * cols, cols);
+                j = k;
+            }
         }
-        return ret;
     }
     
     private boolean isRowEchelon() {
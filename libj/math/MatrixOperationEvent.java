@@ -0,0 +1,41 @@
+package libj.math;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for an operation recorded by {@link MatrixMetrics}. The event
+ * spans the operation, so it lines up with GC and other JVM events in a
+ * recording. Like any JFR event it is only written when enabled in the
+ * recording settings, and a threshold may be set to only keep slow
+ * operations.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+@Name("libj.math.MatrixOperation")
+@Label("Matrix Operation")
+@Category({"libj", "Math"})
+@Description("A dense matrix operation")
+final class MatrixOperationEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Size")
+    @Description("The largest dimension of the operands")
+    int size;
+
+    @Label("FLOPs")
+    long flops;
+
+    @Label("Bytes Allocated")
+    @DataAmount
+    long bytesAllocated;
+
+    /**
+     * Start time for the metrics, which is not written to the recording.
+     */
+    transient long startNanos;
+}
@@ -0,0 +1,46 @@
+package libj.math;
+
+/**
+ * Base class for views, which are matrices backed by the elements of another
+ * matrix instead of their own. A view can be used anywhere a Matrix can, and
+ * changes made through it write through to its parent.
+ * <br>
+ * Views stay valid as long as the dimensions of the parent don't change.
+ * Operations where a view and its parent, or two views of the same parent,
+ * are both read and written give undefined results.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see TransposedView
+ * @see MinorView
+ * @see BlockView
+ */
+public abstract class MatrixView extends Matrix {
+    
+    /**
+     * The matrix this view reads and writes elements in.
+     */
+    protected final Matrix parent;
+    
+    MatrixView(Matrix parent, int rows, int cols) {
+        super(rows, cols, null);
+        this.parent = parent;
+    }
+    
+    /**
+     * Returns the matrix this view reads and writes elements in.
+     * @return 
+     */
+    public Matrix getParent() {
+        return parent;
+    }
+    
+    @Override
+    abstract double get0(int r, int c);
+    
+    @Override
+    abstract void set0(int r, int c, double value);
+    
+    @Override
+    boolean isContiguous() {
+        return false;
+    }
+}
@@ -0,0 +1,290 @@
+package libj.math;
+
+/**
+ * A per-thread pool of scratch arrays, keyed by length. Operations that need
+ * temporary storage, such as in-place multiplication and the *Into methods in
+ * Matrix and SqMatrix, take their arrays from the current thread's workspace
+ * and give them back when done, so a loop repeating the same operations
+ * stops allocating element arrays once it has run once.
+ * <br>
+ * Arrays are pooled by exact length. At most {@link #MAX_SIZES} different
+ * lengths and {@link #MAX_PER_SIZE} arrays of each length are kept, holding
+ * at most {@link #MAX_POOLED_BYTES} bytes in all; arrays released beyond
+ * that are left to the garbage collector. The byte limit keeps the large
+ * temporaries of a single big operation from staying pinned in every thread
+ * which ran it. Acquired arrays have undefined contents.
+ * <br>
+ * A workspace is confined to its thread and must not be shared.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix#mulInto(libj.math.Matrix, libj.math.Matrix, libj.math.Matrix)
+ */
+public final class MatrixWorkspace {
+
+    /**
+     * Maximum number of different array lengths kept in a pool.
+     */
+    public static final int MAX_SIZES = 32;
+
+    /**
+     * Maximum number of arrays of the same length kept in a pool.
+     */
+    public static final int MAX_PER_SIZE = 4;
+
+    /**
+     * Maximum number of bytes held by the arrays in a workspace, 16 MiB
+     * unless the system property {@code libj.math.workspace.maxBytes} is set.
+     */
+    public static final long MAX_POOLED_BYTES = Long.getLong("libj.math.workspace.maxBytes", 16L << 20);
+
+    private static final ThreadLocal<MatrixWorkspace> CURRENT =
+            ThreadLocal.withInitial(MatrixWorkspace::new);
+
+    private final Pool doubles = new Pool();
+
+    private final Pool floats = new Pool();
+
+    private final Pool ints = new Pool();
+
+    private long pooledBytes;
+
+    private long hits;
+
+    private long misses;
+
+    private MatrixWorkspace() {
+    }
+
+    /**
+     * Returns the workspace of the calling thread.
+     * @return
+     */
+    public static MatrixWorkspace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns an array of the given length, from the pool if one is
+     * available. The contents of the array are undefined.
+     * @param length
+     * @return
+     */
+    public double[] acquire(int length) {
+        Object a = doubles.take(length);
+        if (a != null) {
+            pooledBytes -= (long) Double.BYTES * length;
+            hits++;
+            return (double[]) a;
+        }
+        misses++;
+        return new double[length];
+    }
+
+    /**
+     * Returns an array to the pool. The array must not be used afterwards.
+     * @param a
+     */
+    public void release(double[] a) {
+        put(doubles, a.length, a, Double.BYTES);
+    }
+
+    /**
+     * Returns a matrix with the given dimensions whose elements are taken
+     * from the pool. The elements are undefined.
+     * @param rows
+     * @param cols
+     * @return
+     */
+    public Matrix acquire(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Rows or cols can't be zero or negative");
+        }
+        return new Matrix(rows, cols, acquire(rows * cols));
+    }
+
+    /**
+     * Returns the elements of a matrix to the pool. The matrix must not be
+     * used afterwards. Views and other matrices without their own element
+     * array are ignored.
+     * @param m
+     */
+    public void release(Matrix m) {
+        if (m.isContiguous() && m.elem.length == m.rows * m.cols) {
+            release(m.elem);
+        }
+    }
+
+    /**
+     * Returns a float array of the given length, from the pool if one is
+     * available. The contents of the array are undefined.
+     * @param length
+     * @return
+     */
+    public float[] acquireFloats(int length) {
+        Object a = floats.take(length);
+        if (a != null) {
+            pooledBytes -= (long) Float.BYTES * length;
+            hits++;
+            return (float[]) a;
+        }
+        misses++;
+        return new float[length];
+    }
+
+    /**
+     * Returns a float array to the pool. The array must not be used
+     * afterwards.
+     * @param a
+     */
+    public void releaseFloats(float[] a) {
+        put(floats, a.length, a, Float.BYTES);
+    }
+
+    /**
+     * Returns an int array of the given length, from the pool if one is
+     * available. The contents of the array are undefined.
+     * @param length
+     * @return
+     */
+    public int[] acquireInts(int length) {
+        Object a = ints.take(length);
+        if (a != null) {
+            pooledBytes -= (long) Integer.BYTES * length;
+            hits++;
+            return (int[]) a;
+        }
+        misses++;
+        return new int[length];
+    }
+
+    /**
+     * Returns an int array to the pool. The array must not be used
+     * afterwards.
+     * @param a
+     */
+    public void releaseInts(int[] a) {
+        put(ints, a.length, a, Integer.BYTES);
+    }
+
+    /**
+     * Pools an array unless that would take the workspace above
+     * {@link #MAX_POOLED_BYTES}.
+     */
+    private void put(Pool pool, int length, Object a, int elemSize) {
+        long bytes = (long) length * elemSize;
+        if (pooledBytes + bytes <= MAX_POOLED_BYTES && pool.put(length, a)) {
+            pooledBytes += bytes;
+        }
+    }
+
+    /**
+     * Returns the number of bytes held by the arrays currently pooled.
+     * @return
+     */
+    public long pooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * Returns the number of acquisitions served from the pool since this
+     * workspace was created or its counters were reset.
+     * @return
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of acquisitions which had to allocate a new array
+     * since this workspace was created or its counters were reset.
+     * @return
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Resets the hit and miss counters to zero.
+     */
+    public void resetCounters() {
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Drops all pooled arrays.
+     */
+    public void clear() {
+        doubles.clear();
+        floats.clear();
+        ints.clear();
+        pooledBytes = 0;
+    }
+
+    /**
+     * Arrays grouped by length. The table is small enough that a linear scan
+     * is faster than hashing, and it never allocates after construction.
+     */
+    private static final class Pool {
+
+        /**
+         * Array length held in each slot, or 0 for an unused slot.
+         */
+        private final int[] lengths = new int[MAX_SIZES];
+
+        private final Object[][] arrays = new Object[MAX_SIZES][MAX_PER_SIZE];
+
+        private final int[] counts = new int[MAX_SIZES];
+
+        Object take(int length) {
+            for (int i = 0; i < MAX_SIZES; i++) {
+                if (lengths[i] == length && counts[i] > 0) {
+                    int n = --counts[i];
+                    Object a = arrays[i][n];
+                    arrays[i][n] = null;
+                    return a;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Adds an array to the pool.
+         * @return false if there was no room for it.
+         */
+        boolean put(int length, Object a) {
+            if (length == 0) {
+                return false;
+            }
+            int free = -1;
+            for (int i = 0; i < MAX_SIZES; i++) {
+                if (lengths[i] == length) {
+                    if (counts[i] < MAX_PER_SIZE) {
+                        arrays[i][counts[i]++] = a;
+                        return true;
+                    }
+                    return false;
+                }
+                if (free < 0 && counts[i] == 0) {
+                    free = i;
+                }
+            }
+            if (free >= 0) {
+                lengths[free] = length;
+                arrays[free][0] = a;
+                counts[free] = 1;
+                return true;
+            }
+            return false;
+        }
+
+        void clear() {
+            for (int i = 0; i < MAX_SIZES; i++) {
+                for (int j = 0; j < counts[i]; j++) {
+                    arrays[i][j] = null;
+                }
+                counts[i] = 0;
+                lengths[i] = 0;
+            }
+        }
+    }
+}
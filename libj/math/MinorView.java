@@ -0,0 +1,45 @@
+package libj.math;
+
+/**
+ * A view of a matrix with one row and one column removed, as used when
+ * calculating minors and cofactors.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix#subMatView(int, int)
+ */
+public class MinorView extends MatrixView {
+    
+    /**
+     * Zero-based index of the removed row in the parent.
+     */
+    private final int row;
+    
+    /**
+     * Zero-based index of the removed column in the parent.
+     */
+    private final int col;
+    
+    /**
+     * Creates a view of parent without the given row and column, counted from
+     * one.
+     */
+    MinorView(Matrix parent, int row, int col) {
+        super(parent, parent.rows - 1, parent.cols - 1);
+        this.row = row - 1;
+        this.col = col - 1;
+    }
+    
+    @Override
+    double get0(int r, int c) {
+        return parent.get0(r < row ? r : r + 1, c < col ? c : c + 1);
+    }
+    
+    @Override
+    void set0(int r, int c, double value) {
+        parent.set0(r < row ? r : r + 1, c < col ? c : c + 1, value);
+    }
+    
+    @Override
+    boolean isStrided() {
+        return false;
+    }
+}
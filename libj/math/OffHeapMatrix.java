@@ -0,0 +1,283 @@
+package libj.math;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A matrix whose elements are stored outside the Java heap, either in direct
+ * memory or in a memory-mapped file. The elements are split over several
+ * buffers of at most 2^27 doubles each, so the total number of elements may
+ * exceed 2^31, and the garbage collector never copies them.
+ * <br>
+ * An OffHeapMatrix can be used anywhere a Matrix can. Multiplications
+ * involving it stream rows through small heap buffers instead of copying the
+ * whole matrix onto the heap, so a file-mapped matrix larger than memory can
+ * be multiplied with {@link #mul(libj.math.Matrix, libj.math.Matrix, libj.math.OffHeapMatrix)}.
+ * Element-wise operations and sums work on it in place. Methods returning
+ * the elements as a heap array, such as getElements() and copy(), are limited
+ * to matrices which fit on the heap.
+ * <br>
+ * Elements are stored row-first, in the platform's native byte order unless
+ * the matrix is mapped from a file written by {@link MatrixIO} on a platform
+ * with a different byte order.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix
+ */
+public class OffHeapMatrix extends Matrix {
+
+    /**
+     * Number of doubles in each buffer is 2^CHUNK_SHIFT.
+     */
+    private static final int CHUNK_SHIFT = 27;
+
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Buffers holding the elements, each of CHUNK_SIZE doubles except
+     * possibly the last.
+     */
+    private final DoubleBuffer[] chunks;
+
+    /**
+     * The byte buffers behind chunks, in the same order.
+     */
+    final ByteBuffer[] bytes;
+
+    /**
+     * True if bytes are mapped from a file.
+     */
+    private final boolean mapped;
+
+    private OffHeapMatrix(int rows, int cols, ByteBuffer[] bytes, boolean mapped) {
+        super(rows, cols, null);
+        this.bytes = bytes;
+        this.mapped = mapped;
+        chunks = new DoubleBuffer[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chunks[i] = bytes[i].asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Creates a new matrix in direct memory with the specified number of rows
+     * and columns. All elements are set to zero.
+     * @param rows
+     * @param cols
+     * @return
+     */
+    public static OffHeapMatrix allocate(int rows, int cols) {
+        checkDimensions(rows, cols);
+
+        long size = (long) rows * cols;
+        ByteBuffer[] bytes = new ByteBuffer[chunkCount(size)];
+        for (int i = 0; i < bytes.length; i++) {
+            int len = (int) Math.min(CHUNK_SIZE, size - i * CHUNK_SIZE);
+            bytes[i] = ByteBuffer.allocateDirect(len * Double.BYTES).order(ByteOrder.nativeOrder());
+        }
+        return new OffHeapMatrix(rows, cols, bytes, false);
+    }
+
+    /**
+     * Maps a file as a matrix with the specified number of rows and columns.
+     * The file is created if it does not exist, and extended if it is too
+     * small, in which case the new elements are zero. Changes to the matrix
+     * are written to the file by the operating system, or immediately with
+     * {@link #force()}.
+     * @param file
+     * @param rows
+     * @param cols
+     * @return
+     * @throws IOException
+     */
+    public static OffHeapMatrix map(Path file, int rows, int cols) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return map(ch, 0, rows, cols, ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Maps the elements of a matrix starting at the given byte position in
+     * the channel, stored in the given byte order. The mapping stays valid
+     * after the channel is closed.
+     */
+    static OffHeapMatrix map(FileChannel ch, long position, int rows, int cols, ByteOrder order)
+            throws IOException {
+        checkDimensions(rows, cols);
+
+        long size = (long) rows * cols;
+        ByteBuffer[] bytes = new ByteBuffer[chunkCount(size)];
+        for (int i = 0; i < bytes.length; i++) {
+            long len = Math.min(CHUNK_SIZE, size - i * CHUNK_SIZE);
+            bytes[i] = ch.map(FileChannel.MapMode.READ_WRITE,
+                    position + i * CHUNK_SIZE * Double.BYTES, len * Double.BYTES).order(order);
+        }
+        return new OffHeapMatrix(rows, cols, bytes, true);
+    }
+
+    private static void checkDimensions(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Rows or cols can't be zero or negative");
+        }
+    }
+
+    private static int chunkCount(long size) {
+        return (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Checks if this matrix is backed by a memory-mapped file.
+     * @return
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * Writes any changes to a file-mapped matrix to the file. Does nothing for
+     * a matrix in direct memory.
+     */
+    public void force() {
+        if (!mapped) {
+            return;
+        }
+        for (ByteBuffer b : bytes) {
+            ((MappedByteBuffer) b).force();
+        }
+    }
+
+    /**
+     * Returns the total number of elements in this matrix.
+     * @return
+     */
+    public long size() {
+        return (long) rows * cols;
+    }
+
+    /**
+     * Returns the byte order the elements are stored in.
+     * @return
+     */
+    ByteOrder order() {
+        return bytes[0].order();
+    }
+
+    /**
+     * Returns the value of the element at the given zero-based row-first
+     * index.
+     * @param index
+     * @return
+     */
+    public double get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    /**
+     * Sets the value of the element at the given zero-based row-first index.
+     * @param index
+     * @param value
+     */
+    public void set(long index, double value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    @Override
+    double get0(int r, int c) {
+        return get((long) r * cols + c);
+    }
+
+    @Override
+    void set0(int r, int c, double value) {
+        set((long) r * cols + c, value);
+    }
+
+    @Override
+    void getRow(int r, int c, int len, double[] buf, int off) {
+        long index = (long) r * cols + c;
+        while (len > 0) {
+            int chunk = (int) (index >>> CHUNK_SHIFT);
+            int pos = (int) (index & CHUNK_MASK);
+            int n = (int) Math.min(len, CHUNK_SIZE - pos);
+            chunks[chunk].get(pos, buf, off, n);
+            index += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    void setRow(int r, int c, int len, double[] buf, int off) {
+        long index = (long) r * cols + c;
+        while (len > 0) {
+            int chunk = (int) (index >>> CHUNK_SHIFT);
+            int pos = (int) (index & CHUNK_MASK);
+            int n = (int) Math.min(len, CHUNK_SIZE - pos);
+            chunks[chunk].put(pos, buf, off, n);
+            index += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    boolean isContiguous() {
+        return false;
+    }
+
+    @Override
+    boolean isStrided() {
+        return false;
+    }
+
+    @Override
+    boolean prefersStreaming() {
+        return true;
+    }
+
+    /**
+     * Multiplies two matrices, storing the result in dest. Multiplication order
+     * is: [dest] = [first] x [second] <br>
+     * Rows are streamed through small heap buffers, so none of the matrices
+     * need to fit in memory. Dest must not be the same matrix as either
+     * operand.
+     * @param first
+     * @param second
+     * @param dest
+     */
+    public static void mul(Matrix first, Matrix second, OffHeapMatrix dest) {
+        if (first.cols != second.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        if (dest.rows != first.rows || dest.cols != second.cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (dest == first || dest == second) {
+            throw new IllegalArgumentException("Destination can't be an operand");
+        }
+
+        MatrixExecutor.getDefault().forRange(first.rows, (long) first.cols * second.cols,
+            (from, to) -> MatrixKernel.mulStreaming(first, second, dest, from, to));
+    }
+
+    /**
+     * Returns this matrix object as a string, including row- and column count
+     * and hash code.
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("OffHeapMatrix[").append(rows).append("x").append(cols);
+        sb.append(isMapped() ? ", mapped" : "").append("]@");
+        sb.append(Integer.toHexString(System.identityHashCode(this)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,161 @@
+package libj.math;
+
+import java.util.Arrays;
+
+/**
+ * An approximation M of a matrix A which is cheap to solve with, used by an
+ * {@link IterativeSolver} to cut down the number of iterations. The better
+ * M approximates A, the fewer iterations are needed, but the more each
+ * application costs.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see IterativeSolver#withPreconditioner(libj.math.Preconditioner)
+ */
+public interface Preconditioner {
+
+    /**
+     * Solves [M] x [z] = [r] for z. R and z are never the same array.
+     * @param r
+     * @param z
+     */
+    void apply(double[] r, double[] z);
+
+    /**
+     * Returns the Jacobi preconditioner of a square matrix, which is its
+     * diagonal. It costs O(n) per application, and works well for diagonally
+     * dominant matrices.
+     * @param m
+     * @return
+     */
+    static Preconditioner jacobi(Matrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        double[] d = new double[m.rows];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = m.get0(i, i);
+        }
+        return jacobi(d);
+    }
+
+    /**
+     * Returns the Jacobi preconditioner of a square sparse matrix, which is
+     * its diagonal.
+     * @param m
+     * @return
+     * @see #jacobi(libj.math.Matrix)
+     */
+    static Preconditioner jacobi(SparseMatrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        double[] d = new double[m.rows];
+        for (int r = 0; r < m.rows; r++) {
+            for (int k = m.rowPtr[r]; k < m.rowPtr[r + 1]; k++) {
+                if (m.colIdx[k] == r) {
+                    d[r] = m.values[k];
+                }
+            }
+        }
+        return jacobi(d);
+    }
+
+    private static Preconditioner jacobi(double[] d) {
+        for (int i = 0; i < d.length; i++) {
+            if (d[i] == 0) {
+                throw new IllegalArgumentException("Matrix has a zero on the diagonal");
+            }
+            d[i] = 1 / d[i];
+        }
+        return (r, z) -> {
+            for (int i = 0; i < d.length; i++) {
+                z[i] = r[i] * d[i];
+            }
+        };
+    }
+
+    /**
+     * Returns the incomplete LU preconditioner of a square sparse matrix,
+     * without fill-in, usually called ILU(0). L and U only have non-zeros
+     * where the matrix has, so they take the same memory, and an application
+     * costs about as much as a multiplication with the matrix.
+     * @param m
+     * @return
+     * @throws IllegalArgumentException if the matrix has a zero on the
+     * diagonal, or a zero pivot is found during factorization.
+     */
+    static Preconditioner ilu(SparseMatrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+
+        int n = m.rows;
+        int[] rowPtr = m.rowPtr;
+        int[] colIdx = m.colIdx;
+        double[] lu = m.values.clone();
+        int[] diag = new int[n];
+        for (int r = 0; r < n; r++) {
+            diag[r] = -1;
+            for (int k = rowPtr[r]; k < rowPtr[r + 1]; k++) {
+                if (colIdx[k] == r) {
+                    diag[r] = k;
+                }
+            }
+            if (diag[r] < 0) {
+                throw new IllegalArgumentException("Matrix has a zero on the diagonal");
+            }
+        }
+
+        int[] pos = new int[n];
+        Arrays.fill(pos, -1);
+        for (int i = 0; i < n; i++) {
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                pos[colIdx[k]] = k;
+            }
+            for (int kk = rowPtr[i]; kk < diag[i]; kk++) {
+                int k = colIdx[kk];
+                double f = lu[kk] / lu[diag[k]];
+                lu[kk] = f;
+                for (int kj = diag[k] + 1; kj < rowPtr[k + 1]; kj++) {
+                    int p = pos[colIdx[kj]];
+                    if (p >= 0) {
+                        lu[p] -= f * lu[kj];
+                    }
+                }
+            }
+            if (lu[diag[i]] == 0) {
+                throw new IllegalArgumentException("Zero pivot in incomplete factorization");
+            }
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; k++) {
+                pos[colIdx[k]] = -1;
+            }
+        }
+
+        return (r, z) -> {
+            for (int i = 0; i < n; i++) {
+                double s = r[i];
+                for (int k = rowPtr[i]; k < diag[i]; k++) {
+                    s -= lu[k] * z[colIdx[k]];
+                }
+                z[i] = s;
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                double s = z[i];
+                for (int k = diag[i] + 1; k < rowPtr[i + 1]; k++) {
+                    s -= lu[k] * z[colIdx[k]];
+                }
+                z[i] = s / lu[diag[i]];
+            }
+        };
+    }
+
+    /**
+     * Returns the ILU(0) preconditioner of a square matrix, taking the
+     * non-zero pattern from its non-zero elements.
+     * @param m
+     * @return
+     * @see #ilu(libj.math.SparseMatrix)
+     */
+    static Preconditioner ilu(Matrix m) {
+        return ilu(SparseMatrix.fromDense(m));
+    }
+}
@@ -0,0 +1,294 @@
+package libj.math;
+
+/**
+ * QR decomposition of a m x n matrix with m &gt;= n, using Householder
+ * reflections, so that A = Q x R, where Q is m x n with orthonormal columns
+ * and R is n x n upper triangular. Once created, the decomposition can
+ * solve any number of least squares problems, finding the X which minimizes
+ * the norm of A x X - B, each in O(m x n) per column of B. For a square
+ * matrix, this is the solution of A x X = B.
+ * <br>
+ * Each reflection is applied to the remaining columns in two passes over
+ * their rows, first collecting the dot products with the reflection vector,
+ * then updating the elements. Both passes are split across threads by
+ * columns by the default {@link MatrixExecutor}, which gives exactly the
+ * same results as running them serially.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix#qr()
+ */
+public class QRDecomposition {
+
+    /**
+     * Householder vectors in and below the diagonal, and R above it, in a
+     * row-major m x n array.
+     */
+    private final double[] qr;
+
+    /**
+     * The diagonal of R.
+     */
+    private final double[] rdiag;
+
+    /**
+     * Number of rows in the decomposed matrix.
+     */
+    private final int m;
+
+    /**
+     * Number of columns in the decomposed matrix.
+     */
+    private final int n;
+
+    /**
+     * Creates the QR decomposition of the given matrix, which must have at
+     * least as many rows as columns, and may also be a view. The matrix
+     * itself is not changed.
+     * @param a
+     */
+    public QRDecomposition(Matrix a) {
+        if (a.rows < a.cols) {
+            throw new IllegalArgumentException("Matrix must have at least as many rows as columns");
+        }
+
+        m = a.rows;
+        n = a.cols;
+        qr = new double[m * n];
+        a.copyTo(qr);
+        rdiag = new double[n];
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] w = ws.acquire(n);
+        factor(qr, m, n, rdiag, w);
+        ws.release(w);
+    }
+
+    /**
+     * Factors the m x n matrix in qr in place, leaving the Householder
+     * vectors in and below the diagonal, R above it, and the diagonal of R
+     * in rdiag.
+     * @param qr
+     * @param m
+     * @param n
+     * @param rdiag
+     * @param w Scratch array of at least n elements.
+     */
+    static void factor(double[] qr, int m, int n, double[] rdiag, double[] w) {
+        for (int k = 0; k < n; k++) {
+            double scale = 0;
+            for (int i = k; i < m; i++) {
+                scale = Math.max(scale, Math.abs(qr[i * n + k]));
+            }
+            double nrm = 0;
+            if (scale > 0) {
+                double sum = 0;
+                for (int i = k; i < m; i++) {
+                    double v = qr[i * n + k] / scale;
+                    sum += v * v;
+                }
+                nrm = scale * Math.sqrt(sum);
+            }
+
+            if (nrm != 0) {
+                if (qr[k * n + k] < 0) {
+                    nrm = -nrm;
+                }
+                for (int i = k; i < m; i++) {
+                    qr[i * n + k] /= nrm;
+                }
+                qr[k * n + k] += 1;
+                reflect(qr, m, n, k, qr, n, k + 1, n, w);
+            }
+            rdiag[k] = -nrm;
+        }
+    }
+
+    /**
+     * Applies the reflection stored in column k of qr to columns colFrom to
+     * colTo of the m x p array b.
+     */
+    private static void reflect(double[] qr, int m, int n, int k, double[] b, int p,
+            int colFrom, int colTo, double[] w) {
+        int cols = colTo - colFrom;
+        if (cols <= 0) {
+            return;
+        }
+        long work = m - k;
+        MatrixExecutor.getDefault().forRange(cols, work, (c0, c1) ->
+            reflectColumns(qr, m, n, k, b, p, colFrom + c0, colFrom + c1, w));
+    }
+
+    private static void reflectColumns(double[] qr, int m, int n, int k, double[] b, int p,
+            int colFrom, int colTo, double[] w) {
+        for (int j = colFrom; j < colTo; j++) {
+            w[j] = 0;
+        }
+        for (int i = k; i < m; i++) {
+            double v = qr[i * n + k];
+            int ip = i * p;
+            for (int j = colFrom; j < colTo; j++) {
+                w[j] += v * b[ip + j];
+            }
+        }
+        double d = qr[k * n + k];
+        for (int j = colFrom; j < colTo; j++) {
+            w[j] = -w[j] / d;
+        }
+        for (int i = k; i < m; i++) {
+            double v = qr[i * n + k];
+            int ip = i * p;
+            for (int j = colFrom; j < colTo; j++) {
+                b[ip + j] += w[j] * v;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows in the decomposed matrix.
+     * @return
+     */
+    public int rows() {
+        return m;
+    }
+
+    /**
+     * Returns the number of columns in the decomposed matrix.
+     * @return
+     */
+    public int cols() {
+        return n;
+    }
+
+    /**
+     * Checks if the columns of the decomposed matrix are linearly
+     * independent, that is, if none of the diagonal elements of R is zero.
+     * @return
+     */
+    public boolean isFullRank() {
+        for (int k = 0; k < n; k++) {
+            if (rdiag[k] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the upper triangular factor R.
+     * @return
+     */
+    public TriangularMatrix getR() {
+        TriangularMatrix res = new TriangularMatrix(n, true);
+        for (int r = 0; r < n; r++) {
+            int off = res.rowOffset(r);
+            res.values[off + r] = rdiag[r];
+            System.arraycopy(qr, r * n + r + 1, res.values, off + r + 1, n - r - 1);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the m x n factor Q, whose columns are orthonormal.
+     * @return
+     */
+    public Matrix getQ() {
+        Matrix res = new Matrix(m, n);
+        double[] q = res.elem;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] w = ws.acquire(n);
+        for (int k = n - 1; k >= 0; k--) {
+            q[k * n + k] = 1;
+            if (qr[k * n + k] != 0) {
+                reflect(qr, m, n, k, q, n, k, n, w);
+            }
+        }
+        ws.release(w);
+        return res;
+    }
+
+    /**
+     * Finds the X which minimizes the norm of A x X - B, where A is the
+     * decomposed matrix. Each column of B is a separate right-hand side.
+     * @param b
+     * @return X, or null if the decomposed matrix is not of full rank.
+     */
+    public Matrix solve(Matrix b) {
+        if (b.rows != m) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        if (!isFullRank()) {
+            return null;
+        }
+
+        Matrix res = new Matrix(n, b.cols);
+        solve(b, res.elem);
+        return res;
+    }
+
+    /**
+     * Finds the X which minimizes the norm of A x X - B, where A is the
+     * decomposed matrix, storing it in dest, which must have as many rows as
+     * A has columns and as many columns as b. Temporary storage is taken
+     * from the {@link MatrixWorkspace} of the calling thread.
+     * @param b
+     * @param dest
+     * @return false if the decomposed matrix is not of full rank, in which
+     * case dest is left unchanged.
+     */
+    public boolean solveInto(Matrix b, Matrix dest) {
+        if (b.rows != m) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+        if (dest.rows != n || dest.cols != b.cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (!isFullRank()) {
+            return false;
+        }
+
+        if (dest.isContiguous() && dest != b) {
+            solve(b, dest.elem);
+            return true;
+        }
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] x = ws.acquire(n * b.cols);
+        solve(b, x);
+        dest.setAll(x);
+        ws.release(x);
+        return true;
+    }
+
+    /**
+     * Applies Q^T to b in a workspace array, and solves with R for the first
+     * n rows, which are written to x.
+     */
+    private void solve(Matrix b, double[] x) {
+        int p = b.cols;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] y = ws.acquire(m * p);
+        double[] w = ws.acquire(p);
+        b.copyTo(y);
+        for (int k = 0; k < n; k++) {
+            reflect(qr, m, n, k, y, p, 0, p, w);
+        }
+
+        for (int k = n - 1; k >= 0; k--) {
+            int kp = k * p;
+            double d = rdiag[k];
+            for (int j = 0; j < p; j++) {
+                y[kp + j] /= d;
+            }
+            for (int i = 0; i < k; i++) {
+                double f = qr[i * n + k];
+                if (f == 0) {
+                    continue;
+                }
+                int ip = i * p;
+                for (int j = 0; j < p; j++) {
+                    y[ip + j] -= f * y[kp + j];
+                }
+            }
+        }
+        System.arraycopy(y, 0, x, 0, n * p);
+        ws.release(y);
+        ws.release(w);
+    }
+}
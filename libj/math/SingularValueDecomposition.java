@@ -0,0 +1,411 @@
+package libj.math;
+
+import java.util.Random;
+
+/**
+ * Thin singular value decomposition of a m x n matrix, so that
+ * A = U x S x V^T, where, with k = min(m, n), U is m x k and V is n x k,
+ * both with orthonormal columns, and S is the k x k diagonal matrix of
+ * singular values in descending order.
+ * <br>
+ * The decomposition uses one-sided Jacobi rotations, which orthogonalize the
+ * columns of the matrix pairwise until they are all orthogonal. This takes
+ * more work than bidiagonalization, but finds even the smallest singular
+ * values to high relative accuracy. The matrix is first reduced to its
+ * n x n triangular factor R with a {@link QRDecomposition}, and the
+ * rotations run on the columns of R^T, which typically converges in fewer
+ * sweeps than on the matrix itself (Drmac and Veselic, New Fast and
+ * Accurate Jacobi SVD Algorithm, 2008), and only runs over n x n elements
+ * for a tall matrix. Each sweep takes O(n^3) work, so for large matrices
+ * the decomposition is several times slower than an
+ * {@link EigenDecomposition} of the same size. A matrix with more columns
+ * than rows is decomposed through its transpose.
+ * <br>
+ * For large matrices, {@link #randomized(Matrix, int)} finds only the
+ * largest singular values and their vectors, from the decomposition of a
+ * small matrix which captures the range of A.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix#svd()
+ */
+public class SingularValueDecomposition {
+
+    /**
+     * Number of extra dimensions sampled by
+     * {@link #randomized(Matrix, int)}, beyond the number of singular values
+     * requested.
+     */
+    public static final int DEFAULT_OVERSAMPLING = 10;
+
+    /**
+     * Number of power iterations run by {@link #randomized(Matrix, int)}.
+     */
+    public static final int DEFAULT_POWER_ITERATIONS = 2;
+
+    /**
+     * Left singular vectors in the columns of a row-major m x k array.
+     */
+    private final double[] u;
+
+    /**
+     * Right singular vectors in the columns of a row-major n x k array.
+     */
+    private final double[] v;
+
+    /**
+     * Singular values in descending order.
+     */
+    private final double[] s;
+
+    /**
+     * Number of rows in the decomposed matrix.
+     */
+    private final int m;
+
+    /**
+     * Number of columns in the decomposed matrix.
+     */
+    private final int n;
+
+    /**
+     * Number of singular values.
+     */
+    private final int k;
+
+    /**
+     * Creates the singular value decomposition of the given matrix, which
+     * may also be a view or structured matrix. The matrix itself is not
+     * changed.
+     * @param a
+     */
+    public SingularValueDecomposition(Matrix a) {
+        this(a.rows >= a.cols ? a : a.transposeView(), a.rows < a.cols);
+    }
+
+    /**
+     * Decomposes a, which has at least as many rows as columns, swapping U
+     * and V if a is the transpose of the decomposed matrix.
+     */
+    private SingularValueDecomposition(Matrix a, boolean transposed) {
+        int rows = a.rows;
+        int cols = a.cols;
+        double[] left = new double[rows * cols];
+        double[] right = new double[cols * cols];
+        double[] values = new double[cols];
+        decompose(a, left, right, values);
+
+        if (transposed) {
+            m = cols;
+            n = rows;
+            u = right;
+            v = left;
+        }
+        else {
+            m = rows;
+            n = cols;
+            u = left;
+            v = right;
+        }
+        k = cols;
+        s = values;
+    }
+
+    /**
+     * Creates a decomposition from its parts, which are taken over.
+     */
+    private SingularValueDecomposition(double[] u, double[] s, double[] v, int m, int n) {
+        this.u = u;
+        this.s = s;
+        this.v = v;
+        this.m = m;
+        this.n = n;
+        this.k = s.length;
+    }
+
+    /**
+     * Decomposes the m x n matrix a, with m &gt;= n, storing U in the m x n
+     * array u, V in the n x n array v, and the singular values in s.
+     */
+    private static void decompose(Matrix a, double[] u, double[] v, double[] s) {
+        int rows = a.rows;
+        int n = a.cols;
+        QRDecomposition qr = new QRDecomposition(a);
+        double[] q = qr.getQ().elem;
+        TriangularMatrix r = qr.getR();
+
+        // The rotations orthogonalize the columns of R^T, which are the rows
+        // of R, so that R^T = X x S x Y^T. Then R = Y x S x X^T, and
+        // A = (Q x Y) x S x X^T.
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] w = ws.acquire(n * n);
+        double[] yt = ws.acquire(n * n);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                w[i * n + j] = r.get0(i, j);
+                yt[i * n + j] = i == j ? 1 : 0;
+            }
+        }
+        EigenKernel.jacobiSVD(w, yt, n, n);
+
+        // Sort by descending length, normalizing the rows of w
+        for (int j = 0; j < n; j++) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += w[j * n + i] * w[j * n + i];
+            }
+            s[j] = Math.sqrt(sum);
+        }
+        for (int j = 0; j < n - 1; j++) {
+            int max = j;
+            for (int i = j + 1; i < n; i++) {
+                if (s[i] > s[max]) {
+                    max = i;
+                }
+            }
+            if (max != j) {
+                double t = s[j];
+                s[j] = s[max];
+                s[max] = t;
+                EigenKernel.swapRows(w, n, j, max);
+                EigenKernel.swapRows(yt, n, j, max);
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            if (s[j] != 0) {
+                double f = 1 / s[j];
+                for (int i = 0; i < n; i++) {
+                    w[j * n + i] *= f;
+                }
+            }
+            else {
+                complete(w, n, j);
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                v[i * n + j] = w[j * n + i];
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            for (int l = 0; l < n; l++) {
+                double f = q[i * n + l];
+                if (f == 0) {
+                    continue;
+                }
+                for (int j = 0; j < n; j++) {
+                    u[i * n + j] += f * yt[j * n + l];
+                }
+            }
+        }
+        ws.release(w);
+        ws.release(yt);
+    }
+
+    /**
+     * Replaces row j of the n x n array w, belonging to a zero singular
+     * value, with a unit vector orthogonal to the rows before it.
+     */
+    private static void complete(double[] w, int n, int j) {
+        for (int e = 0; e < n; e++) {
+            int o = j * n;
+            for (int i = 0; i < n; i++) {
+                w[o + i] = i == e ? 1 : 0;
+            }
+            for (int pass = 0; pass < 2; pass++) {
+                for (int p = 0; p < j; p++) {
+                    double dot = 0;
+                    for (int i = 0; i < n; i++) {
+                        dot += w[p * n + i] * w[o + i];
+                    }
+                    for (int i = 0; i < n; i++) {
+                        w[o + i] -= dot * w[p * n + i];
+                    }
+                }
+            }
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += w[o + i] * w[o + i];
+            }
+            if (sum > 0.5) {
+                double f = 1 / Math.sqrt(sum);
+                for (int i = 0; i < n; i++) {
+                    w[o + i] *= f;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the k largest singular values of a matrix and their vectors with
+     * a randomized range finder, using {@link #DEFAULT_OVERSAMPLING} and
+     * {@link #DEFAULT_POWER_ITERATIONS}. The random samples are drawn from a
+     * fixed seed, so the result is the same every time.
+     * @param a
+     * @param k
+     * @return a decomposition holding the k largest singular values.
+     * @see #randomized(Matrix, int, int, int, Random)
+     */
+    public static SingularValueDecomposition randomized(Matrix a, int k) {
+        return randomized(a, k, DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS, new Random(k));
+    }
+
+    /**
+     * Finds the k largest singular values of a m x n matrix and their
+     * vectors with a randomized range finder (Halko, Martinsson and Tropp,
+     * Finding Structure with Randomness, 2011). The product of A with
+     * k + oversampling random vectors is orthogonalized into a basis Q which
+     * approximately spans the range of A, and the small matrix Q^T x A is
+     * decomposed exactly. Each power iteration multiplies the basis by
+     * A x A^T once more, which sharpens the approximation when the singular
+     * values decay slowly. The work is dominated by the products with A, each
+     * O(m x n x (k + oversampling)).
+     * @param a
+     * @param k
+     * @param oversampling
+     * @param powerIterations
+     * @param random
+     * @return a decomposition holding the k largest singular values.
+     */
+    public static SingularValueDecomposition randomized(Matrix a, int k, int oversampling,
+            int powerIterations, Random random) {
+        int m = a.rows;
+        int n = a.cols;
+        if (k <= 0 || k > Math.min(m, n)) {
+            throw new IllegalArgumentException("Number of singular values must be between 1 and the smallest dimension");
+        }
+        if (oversampling < 0 || powerIterations < 0) {
+            throw new IllegalArgumentException("Oversampling or power iterations can't be negative");
+        }
+
+        int l = Math.min(k + oversampling, Math.min(m, n));
+        Matrix omega = new Matrix(n, l);
+        for (int i = 0; i < n * l; i++) {
+            omega.elem[i] = random.nextGaussian();
+        }
+
+        Matrix q = Matrix.mul(a, omega).qr().getQ();
+        Matrix at = a.transposeView();
+        for (int i = 0; i < powerIterations; i++) {
+            Matrix z = Matrix.mul(at, q).qr().getQ();
+            q = Matrix.mul(a, z).qr().getQ();
+        }
+
+        // B = Q^T x A is l x n, and is decomposed through its transpose
+        Matrix bt = Matrix.mul(at, q);
+        SingularValueDecomposition small = new SingularValueDecomposition(bt, false);
+
+        double[] u = new double[m * k];
+        double[] v = new double[n * k];
+        double[] s = new double[k];
+        System.arraycopy(small.s, 0, s, 0, k);
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(small.u, i * l, v, i * k, k);
+        }
+        double[] qe = q.elem;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < l; j++) {
+                double f = qe[i * l + j];
+                for (int c = 0; c < k; c++) {
+                    u[i * k + c] += f * small.v[j * l + c];
+                }
+            }
+        }
+        return new SingularValueDecomposition(u, s, v, m, n);
+    }
+
+    /**
+     * Returns the number of rows in the decomposed matrix.
+     * @return
+     */
+    public int rows() {
+        return m;
+    }
+
+    /**
+     * Returns the number of columns in the decomposed matrix.
+     * @return
+     */
+    public int cols() {
+        return n;
+    }
+
+    /**
+     * Returns a copy of the singular values, in descending order.
+     * @return
+     */
+    public double[] getSingularValues() {
+        return s.clone();
+    }
+
+    /**
+     * Returns the m x k matrix of left singular vectors.
+     * @return
+     */
+    public Matrix getU() {
+        Matrix res = new Matrix(m, k);
+        System.arraycopy(u, 0, res.elem, 0, m * k);
+        return res;
+    }
+
+    /**
+     * Returns the k x k diagonal matrix of singular values.
+     * @return
+     */
+    public DiagonalMatrix getS() {
+        return new DiagonalMatrix(s.clone());
+    }
+
+    /**
+     * Returns the n x k matrix of right singular vectors.
+     * @return
+     */
+    public Matrix getV() {
+        Matrix res = new Matrix(n, k);
+        System.arraycopy(v, 0, res.elem, 0, n * k);
+        return res;
+    }
+
+    /**
+     * Returns the two-norm of the decomposed matrix, which is its largest
+     * singular value.
+     * @return
+     */
+    public double norm2() {
+        return s[0];
+    }
+
+    /**
+     * Returns the two-norm condition number of the decomposed matrix, the
+     * ratio of its largest and smallest singular values.
+     * @return
+     */
+    public double cond() {
+        return s[0] / s[k - 1];
+    }
+
+    /**
+     * Returns the numerical rank of the decomposed matrix, the number of
+     * singular values above max(m, n) x s1 x the unit roundoff.
+     * @return
+     */
+    public int rank() {
+        double tol = Math.max(m, n) * s[0] * Math.ulp(1.0);
+        int r = 0;
+        for (double x : s) {
+            if (x > tol) {
+                r++;
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SingularValueDecomposition[").append(m).append("x").append(n);
+        sb.append(", k=").append(k);
+        sb.append("]@").append(Integer.toHexString(hashCode()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,611 @@
+package libj.math;
+
+import java.util.Arrays;
+
+/**
+ * A sparse n x m-matrix stored in compressed sparse row (CSR) format. Only
+ * non-zero elements are stored, so memory use and the cost of multiplication
+ * scale with the number of non-zeros rather than with rows x cols.
+ * <br>
+ * Sparse matrices are immutable, and are created with a {@link Builder} or
+ * from a dense matrix with {@link #fromDense(libj.math.Matrix)}. The
+ * compressed sparse column (CSC) form of a matrix is the CSR form of its
+ * transpose, which {@link #transpose()} calculates in O(nnz).
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix
+ */
+public class SparseMatrix {
+
+    /**
+     * Number of rows in this matrix.
+     */
+    final int rows;
+
+    /**
+     * Number of columns in this matrix.
+     */
+    final int cols;
+
+    /**
+     * Index in colIdx and values of the first element in each row. Has
+     * rows + 1 entries, the last one being the number of non-zeros.
+     */
+    final int[] rowPtr;
+
+    /**
+     * Zero-based column of each stored element, increasing within each row.
+     */
+    final int[] colIdx;
+
+    /**
+     * Value of each stored element.
+     */
+    final double[] values;
+
+    SparseMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, double[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    /**
+     * Builds a sparse matrix from elements given in any order, in coordinate
+     * (COO) form. Elements added more than once in the same position are
+     * summed.
+     */
+    public static class Builder {
+
+        private final int rows;
+
+        private final int cols;
+
+        private int[] r;
+
+        private int[] c;
+
+        private double[] v;
+
+        private int size;
+
+        /**
+         * Creates a builder for a matrix with the given number of rows and
+         * columns.
+         * @param rows
+         * @param cols
+         */
+        public Builder(int rows, int cols) {
+            if (rows <= 0 || cols <= 0) {
+                throw new IllegalArgumentException("Rows or cols can't be zero or negative");
+            }
+
+            this.rows = rows;
+            this.cols = cols;
+            r = new int[16];
+            c = new int[16];
+            v = new double[16];
+        }
+
+        /**
+         * Adds a value to the element in the given row and column.
+         * @param row
+         * @param col
+         * @param value
+         * @return this builder.
+         */
+        public Builder add(int row, int col, double value) {
+            if (row <= 0 || row > rows || col <= 0 || col > cols) {
+                throw new IllegalArgumentException("Row or column is not within matrix");
+            }
+
+            if (value == 0) {
+                return this;
+            }
+
+            if (size == v.length) {
+                int cap = size * 2;
+                r = Arrays.copyOf(r, cap);
+                c = Arrays.copyOf(c, cap);
+                v = Arrays.copyOf(v, cap);
+            }
+
+            r[size] = row - 1;
+            c[size] = col - 1;
+            v[size] = value;
+            size++;
+            return this;
+        }
+
+        /**
+         * Creates the sparse matrix. The elements are sorted with two counting
+         * sorts, first by column and then by row, so building takes
+         * O(nnz + rows + cols).
+         * @return
+         */
+        public SparseMatrix build() {
+            int[] colPtr = new int[cols + 1];
+            for (int i = 0; i < size; i++) {
+                colPtr[c[i] + 1]++;
+            }
+            for (int i = 0; i < cols; i++) {
+                colPtr[i + 1] += colPtr[i];
+            }
+            int[] byCol = new int[size];
+            for (int i = 0; i < size; i++) {
+                byCol[colPtr[c[i]]++] = i;
+            }
+
+            int[] rowPtr = new int[rows + 1];
+            for (int i = 0; i < size; i++) {
+                rowPtr[r[i] + 1]++;
+            }
+            for (int i = 0; i < rows; i++) {
+                rowPtr[i + 1] += rowPtr[i];
+            }
+            int[] next = Arrays.copyOf(rowPtr, rows);
+            int[] colIdx = new int[size];
+            double[] values = new double[size];
+            for (int k = 0; k < size; k++) {
+                int i = byCol[k];
+                int pos = next[r[i]]++;
+                colIdx[pos] = c[i];
+                values[pos] = v[i];
+            }
+
+            // Sum duplicates and drop elements which cancelled out.
+            int nnz = 0;
+            int start = 0;
+            for (int row = 0; row < rows; row++) {
+                int end = rowPtr[row + 1];
+                rowPtr[row] = nnz;
+                for (int k = start; k < end; k++) {
+                    if (nnz > rowPtr[row] && colIdx[nnz - 1] == colIdx[k]) {
+                        values[nnz - 1] += values[k];
+                    }
+                    else {
+                        colIdx[nnz] = colIdx[k];
+                        values[nnz] = values[k];
+                        nnz++;
+                    }
+                }
+                int w = rowPtr[row];
+                for (int k = rowPtr[row]; k < nnz; k++) {
+                    if (values[k] != 0) {
+                        colIdx[w] = colIdx[k];
+                        values[w] = values[k];
+                        w++;
+                    }
+                }
+                nnz = w;
+                start = end;
+            }
+            rowPtr[rows] = nnz;
+
+            return new SparseMatrix(rows, cols, rowPtr,
+                    Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz));
+        }
+    }
+
+    /**
+     * Creates a sparse matrix holding the non-zero elements of a dense matrix.
+     * @param m
+     * @return
+     */
+    public static SparseMatrix fromDense(Matrix m) {
+        int nnz = 0;
+        for (int r = 0; r < m.rows; r++) {
+            for (int c = 0; c < m.cols; c++) {
+                if (m.get0(r, c) != 0) {
+                    nnz++;
+                }
+            }
+        }
+
+        int[] rowPtr = new int[m.rows + 1];
+        int[] colIdx = new int[nnz];
+        double[] values = new double[nnz];
+        int k = 0;
+        for (int r = 0; r < m.rows; r++) {
+            for (int c = 0; c < m.cols; c++) {
+                double e = m.get0(r, c);
+                if (e != 0) {
+                    colIdx[k] = c;
+                    values[k] = e;
+                    k++;
+                }
+            }
+            rowPtr[r + 1] = k;
+        }
+        return new SparseMatrix(m.rows, m.cols, rowPtr, colIdx, values);
+    }
+
+    /**
+     * Returns a dense matrix holding the same elements as this matrix.
+     * @return
+     */
+    public Matrix toDense() {
+        Matrix res = new Matrix(rows, cols);
+        for (int r = 0; r < rows; r++) {
+            for (int k = rowPtr[r]; k < rowPtr[r + 1]; k++) {
+                res.elem[r * cols + colIdx[k]] = values[k];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of rows in this matrix.
+     * @return
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns in this matrix.
+     * @return
+     */
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * Returns the number of stored non-zero elements in this matrix.
+     * @return
+     */
+    public int nonZeros() {
+        return rowPtr[rows];
+    }
+
+    /**
+     * Returns the value of the element in the given row and column. Takes
+     * O(log k), where k is the number of non-zeros in the row.
+     * @param row
+     * @param col
+     * @return
+     */
+    public double getElem(int row, int col) {
+        if (row <= 0 || row > rows || col <= 0 || col > cols) {
+            return 0;
+        }
+
+        int k = Arrays.binarySearch(colIdx, rowPtr[row - 1], rowPtr[row], col - 1);
+        return k >= 0 ? values[k] : 0;
+    }
+
+    /**
+     * Iterates through every non-zero element in this matrix, supplying row
+     * number, column number and value for each element.
+     * @param action
+     */
+    public void forEachNonZero(Matrix.EachElementAction action) {
+        for (int r = 0; r < rows; r++) {
+            for (int k = rowPtr[r]; k < rowPtr[r + 1]; k++) {
+                action.perform(r + 1, colIdx[k] + 1, values[k]);
+            }
+        }
+    }
+
+    /**
+     * Multiplies this matrix by a vector, storing the result in y.
+     * Multiplication order is: [y] = [this] x [x]
+     * @param x Vector of cols elements.
+     * @param y Vector of rows elements.
+     */
+    public void mul(double[] x, double[] y) {
+        if (x.length < cols || y.length < rows) {
+            throw new IllegalArgumentException("Incompatible vector lengths");
+        }
+
+        long work = Math.max(1, (long) nonZeros() / rows);
+        MatrixExecutor.getDefault().forRange(rows, work, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                double sum = 0;
+                for (int k = rowPtr[r]; k < rowPtr[r + 1]; k++) {
+                    sum += values[k] * x[colIdx[k]];
+                }
+                y[r] = sum;
+            }
+        });
+    }
+
+    /**
+     * Multiplies this matrix by a dense matrix and returns the resulting dense
+     * matrix. Multiplication order is: [this] x [other]
+     * @param other
+     * @return
+     */
+    public Matrix mul(Matrix other) {
+        if (cols != other.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        Matrix b = other.isContiguous() ? other : other.copy();
+        int p = b.cols;
+        Matrix res = new Matrix(rows, p);
+        long work = Math.max(1, (long) nonZeros() / rows) * p;
+        MatrixExecutor.getDefault().forRange(rows, work, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int ri = r * p;
+                for (int k = rowPtr[r]; k < rowPtr[r + 1]; k++) {
+                    double v = values[k];
+                    int bk = colIdx[k] * p;
+                    for (int j = 0; j < p; j++) {
+                        res.elem[ri + j] += v * b.elem[bk + j];
+                    }
+                }
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Multiplies a dense matrix by a sparse matrix and returns the resulting
+     * dense matrix. Multiplication order is: [first] x [second]
+     * @param first
+     * @param second
+     * @return
+     */
+    public static Matrix mul(Matrix first, SparseMatrix second) {
+        if (first.cols != second.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        Matrix a = first.isContiguous() ? first : first.copy();
+        int m = a.cols;
+        int q = second.cols;
+        Matrix res = new Matrix(a.rows, q);
+        long work = Math.max(1, second.nonZeros());
+        MatrixExecutor.getDefault().forRange(a.rows, work, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int ai = i * m;
+                int ri = i * q;
+                for (int k = 0; k < m; k++) {
+                    double d = a.elem[ai + k];
+                    if (d == 0) {
+                        continue;
+                    }
+                    for (int idx = second.rowPtr[k]; idx < second.rowPtr[k + 1]; idx++) {
+                        res.elem[ri + second.colIdx[idx]] += d * second.values[idx];
+                    }
+                }
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Multiplies this matrix by another sparse matrix and returns the
+     * resulting sparse matrix. Multiplication order is: [this] x [other] <br>
+     * Uses Gustavson's row-by-row algorithm, so the cost is proportional to
+     * the number of multiplications actually needed.
+     * @param other
+     * @return
+     */
+    public SparseMatrix mul(SparseMatrix other) {
+        if (cols != other.rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        int p = other.cols;
+        int[] resPtr = new int[rows + 1];
+        int[] resCol = new int[Math.max(16, nonZeros() + other.nonZeros())];
+        double[] resVal = new double[resCol.length];
+
+        double[] acc = new double[p];
+        int[] marker = new int[p];
+        Arrays.fill(marker, -1);
+
+        int nnz = 0;
+        for (int r = 0; r < rows; r++) {
+            int rowStart = nnz;
+            for (int k = rowPtr[r]; k < rowPtr[r + 1]; k++) {
+                double v = values[k];
+                int bk = colIdx[k];
+                for (int idx = other.rowPtr[bk]; idx < other.rowPtr[bk + 1]; idx++) {
+                    int c = other.colIdx[idx];
+                    if (marker[c] != r) {
+                        marker[c] = r;
+                        acc[c] = 0;
+                        if (nnz == resCol.length) {
+                            resCol = Arrays.copyOf(resCol, nnz * 2);
+                            resVal = Arrays.copyOf(resVal, nnz * 2);
+                        }
+                        resCol[nnz++] = c;
+                    }
+                    acc[c] += v * other.values[idx];
+                }
+            }
+
+            Arrays.sort(resCol, rowStart, nnz);
+            int w = rowStart;
+            for (int k = rowStart; k < nnz; k++) {
+                double e = acc[resCol[k]];
+                if (e != 0) {
+                    resCol[w] = resCol[k];
+                    resVal[w] = e;
+                    w++;
+                }
+            }
+            nnz = w;
+            resPtr[r + 1] = nnz;
+        }
+
+        return new SparseMatrix(rows, p, resPtr,
+                Arrays.copyOf(resCol, nnz), Arrays.copyOf(resVal, nnz));
+    }
+
+    /**
+     * Returns a transposed version of this matrix. This is also the CSC form
+     * of this matrix.
+     * @return
+     */
+    public SparseMatrix transpose() {
+        int nnz = nonZeros();
+        int[] tPtr = new int[cols + 1];
+        for (int k = 0; k < nnz; k++) {
+            tPtr[colIdx[k] + 1]++;
+        }
+        for (int c = 0; c < cols; c++) {
+            tPtr[c + 1] += tPtr[c];
+        }
+
+        int[] next = Arrays.copyOf(tPtr, cols);
+        int[] tCol = new int[nnz];
+        double[] tVal = new double[nnz];
+        for (int r = 0; r < rows; r++) {
+            for (int k = rowPtr[r]; k < rowPtr[r + 1]; k++) {
+                int pos = next[colIdx[k]]++;
+                tCol[pos] = r;
+                tVal[pos] = values[k];
+            }
+        }
+        return new SparseMatrix(cols, rows, tPtr, tCol, tVal);
+    }
+
+    /**
+     * Adds another sparse matrix to this matrix and returns the resulting
+     * sparse matrix.
+     * @param other
+     * @return
+     */
+    public SparseMatrix add(SparseMatrix other) {
+        return combine(other, 1);
+    }
+
+    /**
+     * Subtracts another sparse matrix from this matrix and returns the
+     * resulting sparse matrix. Subtraction order is: [this] - [other]
+     * @param other
+     * @return
+     */
+    public SparseMatrix sub(SparseMatrix other) {
+        return combine(other, -1);
+    }
+
+    /**
+     * Merges the sorted rows of this matrix and sign times the other matrix.
+     */
+    private SparseMatrix combine(SparseMatrix other, double sign) {
+        if (other.rows != rows || other.cols != cols) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        int cap = nonZeros() + other.nonZeros();
+        int[] resPtr = new int[rows + 1];
+        int[] resCol = new int[cap];
+        double[] resVal = new double[cap];
+        int nnz = 0;
+        for (int r = 0; r < rows; r++) {
+            int i = rowPtr[r];
+            int iEnd = rowPtr[r + 1];
+            int j = other.rowPtr[r];
+            int jEnd = other.rowPtr[r + 1];
+            while (i < iEnd || j < jEnd) {
+                int ci = i < iEnd ? colIdx[i] : Integer.MAX_VALUE;
+                int cj = j < jEnd ? other.colIdx[j] : Integer.MAX_VALUE;
+                double e;
+                int c;
+                if (ci < cj) {
+                    c = ci;
+                    e = values[i++];
+                }
+                else if (cj < ci) {
+                    c = cj;
+                    e = sign * other.values[j++];
+                }
+                else {
+                    c = ci;
+                    e = values[i++] + sign * other.values[j++];
+                }
+                if (e != 0) {
+                    resCol[nnz] = c;
+                    resVal[nnz] = e;
+                    nnz++;
+                }
+            }
+            resPtr[r + 1] = nnz;
+        }
+
+        return new SparseMatrix(rows, cols, resPtr,
+                Arrays.copyOf(resCol, nnz), Arrays.copyOf(resVal, nnz));
+    }
+
+    /**
+     * Returns this matrix multiplied by a scalar.
+     * @param c
+     * @return
+     */
+    public SparseMatrix mul(double c) {
+        double[] res = new double[values.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = values[i] * c;
+        }
+        return new SparseMatrix(rows, cols, rowPtr, colIdx, res);
+    }
+
+    /**
+     * Checks if this matrix is equal to another sparse matrix. They are equal
+     * if and only if their row and column count match, and they store exactly
+     * the same elements.
+     * @param other
+     * @return
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SparseMatrix)) {
+            return false;
+        }
+
+        if (this == other) {
+            return true;
+        }
+
+        SparseMatrix mat = (SparseMatrix) other;
+        if (mat.rows != rows || mat.cols != cols) {
+            return false;
+        }
+
+        if (!Arrays.equals(rowPtr, mat.rowPtr) || !Arrays.equals(colIdx, mat.colIdx)) {
+            return false;
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(mat.values[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Generates a hash code for this matrix object.
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 37 * hash + Arrays.hashCode(rowPtr);
+        hash = 37 * hash + Arrays.hashCode(colIdx);
+        hash = 37 * hash + Arrays.hashCode(values);
+        hash = 37 * hash + rows;
+        hash = 37 * hash + cols;
+        return hash;
+    }
+
+    /**
+     * Returns this matrix object as a string, including row- and column
+     * count, number of non-zeros and hash code.
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SparseMatrix[").append(rows).append("x").append(cols);
+        sb.append(", nnz=").append(nonZeros());
+        sb.append("]@").append(Integer.toHexString(hashCode()));
+        return sb.toString();
+    }
+}
@@ -1,5 +1,7 @@
 package libj.math;
 
+import java.util.Arrays;
+
 /**
  * A n x n square matrix holding real values. Extends Matrix with methods only
  * applicable to square matrices.
@@ -17,6 +19,16 @@ public class SqMatrix extends Matrix {
         super(dim, dim);
     }
     
+    /**
+     * Creates a square matrix around existing storage, without allocating
+     * any elements. Used by structured matrices, which pass null.
+     * @param dim
+     * @param elem 
+     */
+    SqMatrix(int dim, double[] elem) {
+        super(dim, dim, elem);
+    }
+    
     /**
      * Calculates the coefficient for the element in the given position.
      * @param r
@@ -24,7 +36,10 @@ public class SqMatrix extends Matrix {
      * @return 
      */
     public double cof(int r, int c) {
-        return ((c + r) % 2 == 0 ? 1 : -1) * ((SqMatrix) subMat(r, c)).det();
+        if (rows == 1) {
+            return 1;
+        }
+        return ((c + r) % 2 == 0 ? 1 : -1) * det(subMatView(r, c));
     }
     
     /**
@@ -32,48 +47,178 @@ public class SqMatrix extends Matrix {
      * @return 
      */
     public double det() {
-        if (rows == 1) {
-            return getElem(1, 1);
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        double res = det(this);
+        if (ev != null) {
+            boolean small = rows <= 2;
+            MatrixMetrics.end(ev, MatrixMetrics.Operation.DET, rows,
+                    small ? 3L * (rows - 1) : MatrixMetrics.luFlops(rows), small ? 0 : MatrixMetrics.luBytes(rows));
         }
-        
-        else if (rows == 2) {
-            return getElem(1, 1) * getElem(2, 2)
-                 - getElem(2, 1) * getElem(1, 2);
+        return res;
+    }
+    
+    /**
+     * Calculates the determinant of a square matrix, which may be a view.
+     * @param m
+     * @return 
+     */
+    static double det(Matrix m) {
+        if (m.rows == 1) {
+            return m.get0(0, 0);
         }
         
-        double det = 0;
-        for (int c = 1; c <= cols; c++) {
-            det += getElem(1, c) * cof(1, c);
+        else if (m.rows == 2) {
+            return m.get0(0, 0) * m.get0(1, 1)
+                 - m.get0(1, 0) * m.get0(0, 1);
         }
         
-        return det;
+        return new LUDecomposition(m).det();
     }
     
     /**
      * Generates an inverse matrix of this matrix.
-     * @return 
+     * @return the inverse, or null if this matrix is singular.
      */
     public Matrix inv() {
-        if (det() == 0) {
-            return null;
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        Matrix res = lu().inv();
+        if (ev != null) {
+            int n = rows;
+            long flops = MatrixMetrics.luFlops(n);
+            long bytes = MatrixMetrics.luBytes(n);
+            if (res != null) {
+                flops += MatrixMetrics.luSolveFlops(n, n);
+                bytes += 8L * n * n;
+            }
+            MatrixMetrics.end(ev, MatrixMetrics.Operation.INV, n, flops, bytes);
+        }
+        return res;
+    }
+    
+    /**
+     * Stores the inverse of this matrix in dest, which must have the same
+     * dimensions. Dest may be a view, or this matrix itself. Temporary
+     * storage is taken from the {@link MatrixWorkspace} of the calling
+     * thread, so no arrays are allocated once it is warm.
+     * @param dest
+     * @return false if this matrix is singular, in which case dest is left
+     * unchanged.
+     */
+    public boolean invInto(Matrix dest) {
+        if (dest.rows != rows || dest.cols != cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
         }
         
-        Matrix res = new Matrix(rows, cols);
-        double detInv = 1 / det();
-        
-        for (int r = 1; r <= rows; r++) {
-            for (int c = 1; c <= cols; c++) {
-                res.setElem(r, c, cof(r, c) * detInv);
+        int n = rows;
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        long flops = MatrixMetrics.luFlops(n);
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        try {
+            copyTo(lu);
+            double scale = LUDecomposition.maxAbs(lu, n * n);
+            LUDecomposition.factor(lu, n, piv);
+            if (LUDecomposition.isSingular(lu, n, scale)) {
+                return false;
+            }
+            flops += MatrixMetrics.luSolveFlops(n, n);
+            
+            double[] x = dest.isContiguous() ? dest.elem : ws.acquire(n * n);
+            Arrays.fill(x, 0, n * n, 0);
+            for (int i = 0; i < n; i++) {
+                x[i * n + piv[i]] = 1;
+            }
+            LUDecomposition.solveInPlace(lu, n, x, n);
+            if (x != dest.elem) {
+                dest.setAll(x);
+                ws.release(x);
             }
+            return true;
+        }
+        finally {
+            ws.release(lu);
+            ws.releaseInts(piv);
+            MatrixMetrics.end(ev, MatrixMetrics.Operation.INV, n, flops, 0);
+        }
+    }
+    
+    /**
+     * Solves [this] x [X] = [b] for X. Each column of b is a separate
+     * right-hand side. When solving for many right-hand sides one at a time,
+     * create the decomposition once with {@link #lu()} and reuse it instead.
+     * @param b
+     * @return X, or null if this matrix is singular.
+     */
+    public Matrix solve(Matrix b) {
+        MatrixOperationEvent ev = MatrixMetrics.begin();
+        Matrix res = lu().solve(b);
+        if (ev != null) {
+            int n = rows;
+            long flops = MatrixMetrics.luFlops(n);
+            long bytes = MatrixMetrics.luBytes(n);
+            if (res != null) {
+                flops += MatrixMetrics.luSolveFlops(n, b.cols);
+                bytes += 8L * n * b.cols;
+            }
+            MatrixMetrics.end(ev, MatrixMetrics.Operation.SOLVE, Math.max(n, b.cols), flops, bytes);
         }
         return res;
     }
     
+    /**
+     * Creates the LU decomposition of this matrix. The decomposition is a
+     * snapshot, and does not follow later changes to this matrix.
+     * @return 
+     */
+    public LUDecomposition lu() {
+        return new LUDecomposition(this);
+    }
+    
+    /**
+     * Creates the Cholesky decomposition of this matrix, which must be
+     * symmetric. Only the elements on and below the diagonal are read. The
+     * decomposition is a snapshot, and does not follow later changes to this
+     * matrix.
+     * @return 
+     * @see CholeskyDecomposition#isPositiveDefinite()
+     */
+    public CholeskyDecomposition cholesky() {
+        return new CholeskyDecomposition(this);
+    }
+    
+    /**
+     * Creates the eigenvalue decomposition of this matrix, using the faster
+     * and more accurate symmetric method if this matrix is exactly
+     * symmetric. The decomposition is a snapshot, and does not follow later
+     * changes to this matrix.
+     * @return 
+     * @see EigenDecomposition#lanczos(libj.math.LinearOperator, int)
+     */
+    public EigenDecomposition eig() {
+        return new EigenDecomposition(this);
+    }
+    
+    /**
+     * Creates an inverse of this matrix which can be kept current under
+     * changes to rows, columns and rank-1 updates in O(n^2) each. Like the
+     * decompositions, it works on a copy, and does not follow later changes
+     * to this matrix.
+     * @return the inverse, or null if this matrix is singular.
+     */
+    public UpdatableInverse updatableInverse() {
+        LUDecomposition lu = lu();
+        if (lu.isSingular()) {
+            return null;
+        }
+        return new UpdatableInverse(this, lu);
+    }
+    
     /**
      * Sets this matrix to the identity matrix of the same dimension.
      */
     public void loadIdentity() {
-        elem = new double[rows * rows];
+        Arrays.fill(elem, 0);
         for (int i = 0; i < rows * rows; i += rows + 1) {
             elem[i] = 1;
         }
@@ -0,0 +1,276 @@
+package libj.math;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Matrix multiplication with Winograd's variant of Strassen's algorithm. Each
+ * level of recursion splits the operands into 2 x 2 blocks and forms the
+ * product from 7 block products and 15 block additions, instead of the 8
+ * products of the classic algorithm, so d levels cut the multiply-adds to
+ * (7/8)^d of the classic count. Blocks whose smallest dimension is at most
+ * the cutoff are multiplied with the blocked kernel in {@link MatrixKernel}.
+ * Operands are padded with zeros so that every level splits evenly.
+ * <br>
+ * When given a pool, the 7 products of the top levels run as separate tasks,
+ * until there are at least as many tasks as the requested parallelism. The
+ * products below run serially within their task, which keeps the temporary
+ * storage at a few blocks per task. Every element is computed by the same
+ * operations in the same order either way, so the result does not depend on
+ * the pool.
+ * <br>
+ * The result is not the same as that of the classic algorithm, and the
+ * error is bounded in norm rather than element by element. For n x n
+ * matrices, the classic algorithm gives |C - C'| &lt;= n u |A| |B| for each
+ * element, where u is the unit roundoff, while this one gives
+ * ||C - C'|| &lt;= ((n/n0)^log2(18) (n0^2 + 6 n0) - 6n) u ||A|| ||B||,
+ * where n0 is the size at which recursion stops (Higham, Accuracy and
+ * Stability of Numerical Algorithms, ch. 23). Each level thus multiplies
+ * the bound by up to 4.5, and elements much smaller than the norm of the
+ * product may lose most of their relative accuracy. All indices used here
+ * are zero-based.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see MatrixExecutor#withStrassen(int)
+ */
+final class StrassenKernel {
+
+    private StrassenKernel() {
+    }
+
+    /**
+     * Returns the number of levels of recursion used for a product whose
+     * smallest dimension is min.
+     * @param min
+     * @param cutoff
+     * @return
+     */
+    static int depth(int min, int cutoff) {
+        int d = 0;
+        while (d < 30 && ceilDiv(min, 1 << d) > cutoff) {
+            d++;
+        }
+        return d;
+    }
+
+    /**
+     * Computes [dest] = [first] x [second]. Dest must not share elements with
+     * either operand. Operands which are not contiguous, or need padding, are
+     * copied to temporary storage from the {@link MatrixWorkspace} of the
+     * calling thread.
+     * @param first
+     * @param second
+     * @param dest
+     * @param cutoff
+     * @param pool The pool to run products on, or null to run serially.
+     * @param parallelism
+     */
+    static void mul(Matrix first, Matrix second, Matrix dest, int cutoff, ForkJoinPool pool,
+            int parallelism) {
+        int n = first.rows;
+        int m = first.cols;
+        int p = second.cols;
+        int d = depth(Math.min(n, Math.min(m, p)), cutoff);
+        int unit = 1 << d;
+        int pn = ceilDiv(n, unit) * unit;
+        int pm = ceilDiv(m, unit) * unit;
+        int pp = ceilDiv(p, unit) * unit;
+
+        int forks = 0;
+        if (pool != null) {
+            for (long tasks = 1; tasks < parallelism && forks < d; tasks *= 7) {
+                forks++;
+            }
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] a = padded(first, pn, pm, ws);
+        double[] b = padded(second, pm, pp, ws);
+        boolean direct = dest.isContiguous() && pn == n && pp == p;
+        double[] c = direct ? dest.elem : ws.acquire(pn * pp);
+
+        if (forks == 0) {
+            mul(a, 0, pm, b, 0, pp, c, 0, pp, pn, pm, pp, d, 0);
+        }
+        else {
+            int f = forks;
+            pool.invoke(ForkJoinTask.adapt(() ->
+                mul(a, 0, pm, b, 0, pp, c, 0, pp, pn, pm, pp, d, f)));
+        }
+
+        if (!direct) {
+            for (int r = 0; r < n; r++) {
+                dest.setRow(r, 0, p, c, r * pp);
+            }
+            ws.release(c);
+        }
+        if (a != first.elem) {
+            ws.release(a);
+        }
+        if (b != second.elem) {
+            ws.release(b);
+        }
+    }
+
+    /**
+     * Returns the elements of m as a rows x cols array, padded with zeros,
+     * which is m's own array if it is contiguous and needs no padding.
+     */
+    private static double[] padded(Matrix m, int rows, int cols, MatrixWorkspace ws) {
+        if (m.isContiguous() && m.rows == rows && m.cols == cols) {
+            return m.elem;
+        }
+        double[] res = ws.acquire(rows * cols);
+        if (m.rows != rows || m.cols != cols) {
+            Arrays.fill(res, 0);
+        }
+        for (int r = 0; r < m.rows; r++) {
+            m.getRow(r, 0, m.cols, res, r * cols);
+        }
+        return res;
+    }
+
+    /**
+     * Multiplies the n x m matrix in a by the m x p matrix in b, storing the
+     * n x p result in c, each given by an offset and a row length. N, m and
+     * p must be divisible by 2^depth. The 7 products of the top forks levels
+     * run as separate tasks, which requires running in a ForkJoinPool.
+     */
+    private static void mul(double[] a, int aOff, int lda, double[] b, int bOff, int ldb,
+            double[] c, int cOff, int ldc, int n, int m, int p, int depth, int forks) {
+        if (depth == 0) {
+            MatrixKernel.mulBlock(a, aOff, lda, b, bOff, ldb, c, cOff, ldc, n, m, p,
+                    MatrixKernel.blockSize(n, m, p));
+            return;
+        }
+
+        int h = n / 2;
+        int k = m / 2;
+        int q = p / 2;
+        int a11 = aOff, a12 = aOff + k, a21 = aOff + h * lda, a22 = a21 + k;
+        int b11 = bOff, b12 = bOff + q, b21 = bOff + k * ldb, b22 = b21 + q;
+        int c11 = cOff, c12 = cOff + q, c21 = cOff + h * ldc, c22 = c21 + q;
+        int sub = depth - 1;
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] s1 = ws.acquire(h * k);
+        double[] s2 = ws.acquire(h * k);
+        double[] s3 = ws.acquire(h * k);
+        double[] s4 = ws.acquire(h * k);
+        double[] t1 = ws.acquire(k * q);
+        double[] t2 = ws.acquire(k * q);
+        double[] t3 = ws.acquire(k * q);
+        double[] t4 = ws.acquire(k * q);
+
+        add(a, a21, lda, a, a22, lda, s1, 0, k, h, k);
+        sub(s1, 0, k, a, a11, lda, s2, 0, k, h, k);
+        sub(a, a11, lda, a, a21, lda, s3, 0, k, h, k);
+        sub(a, a12, lda, s2, 0, k, s4, 0, k, h, k);
+        sub(b, b12, ldb, b, b11, ldb, t1, 0, q, k, q);
+        sub(b, b22, ldb, t1, 0, q, t2, 0, q, k, q);
+        sub(b, b22, ldb, b, b12, ldb, t3, 0, q, k, q);
+        sub(t2, 0, q, b, b21, ldb, t4, 0, q, k, q);
+
+        if (forks > 0) {
+            int f = forks - 1;
+            double[] m1 = ws.acquire(h * q);
+            double[] m2 = ws.acquire(h * q);
+            double[] m3 = ws.acquire(h * q);
+            double[] m4 = ws.acquire(h * q);
+            double[] m5 = ws.acquire(h * q);
+            double[] m6 = ws.acquire(h * q);
+            double[] m7 = ws.acquire(h * q);
+            ForkJoinTask.invokeAll(
+                ForkJoinTask.adapt(() -> mul(a, a11, lda, b, b11, ldb, m1, 0, q, h, k, q, sub, f)),
+                ForkJoinTask.adapt(() -> mul(a, a12, lda, b, b21, ldb, m2, 0, q, h, k, q, sub, f)),
+                ForkJoinTask.adapt(() -> mul(s4, 0, k, b, b22, ldb, m3, 0, q, h, k, q, sub, f)),
+                ForkJoinTask.adapt(() -> mul(a, a22, lda, t4, 0, q, m4, 0, q, h, k, q, sub, f)),
+                ForkJoinTask.adapt(() -> mul(s1, 0, k, t1, 0, q, m5, 0, q, h, k, q, sub, f)),
+                ForkJoinTask.adapt(() -> mul(s2, 0, k, t2, 0, q, m6, 0, q, h, k, q, sub, f)),
+                ForkJoinTask.adapt(() -> mul(s3, 0, k, t3, 0, q, m7, 0, q, h, k, q, sub, f)));
+
+            add(m2, 0, q, m1, 0, q, c, c11, ldc, h, q);
+            add(m1, 0, q, m6, 0, q, m1, 0, q, h, q);
+            add(m1, 0, q, m7, 0, q, m7, 0, q, h, q);
+            add(m7, 0, q, m5, 0, q, c, c22, ldc, h, q);
+            add(m5, 0, q, m1, 0, q, m5, 0, q, h, q);
+            add(m5, 0, q, m3, 0, q, c, c12, ldc, h, q);
+            sub(m7, 0, q, m4, 0, q, c, c21, ldc, h, q);
+
+            ws.release(m1);
+            ws.release(m2);
+            ws.release(m3);
+            ws.release(m4);
+            ws.release(m5);
+            ws.release(m6);
+            ws.release(m7);
+        }
+        else {
+            // Runs the same operations as above, but keeps only two
+            // temporary products, using the blocks of c for the rest.
+            double[] x = ws.acquire(h * q);
+            double[] y = ws.acquire(h * q);
+            mul(a, a11, lda, b, b11, ldb, x, 0, q, h, k, q, sub, 0);
+            mul(a, a12, lda, b, b21, ldb, c, c11, ldc, h, k, q, sub, 0);
+            add(c, c11, ldc, x, 0, q, c, c11, ldc, h, q);
+            mul(s2, 0, k, t2, 0, q, y, 0, q, h, k, q, sub, 0);
+            add(x, 0, q, y, 0, q, x, 0, q, h, q);
+            mul(s3, 0, k, t3, 0, q, y, 0, q, h, k, q, sub, 0);
+            add(x, 0, q, y, 0, q, c, c21, ldc, h, q);
+            mul(s1, 0, k, t1, 0, q, c, c12, ldc, h, k, q, sub, 0);
+            add(c, c21, ldc, c, c12, ldc, c, c22, ldc, h, q);
+            add(c, c12, ldc, x, 0, q, c, c12, ldc, h, q);
+            mul(a, a22, lda, t4, 0, q, y, 0, q, h, k, q, sub, 0);
+            sub(c, c21, ldc, y, 0, q, c, c21, ldc, h, q);
+            mul(s4, 0, k, b, b22, ldb, y, 0, q, h, k, q, sub, 0);
+            add(c, c12, ldc, y, 0, q, c, c12, ldc, h, q);
+            ws.release(x);
+            ws.release(y);
+        }
+
+        ws.release(s1);
+        ws.release(s2);
+        ws.release(s3);
+        ws.release(s4);
+        ws.release(t1);
+        ws.release(t2);
+        ws.release(t3);
+        ws.release(t4);
+    }
+
+    /**
+     * Stores x + y in z, each a rows x cols block given by an offset and a
+     * row length. Z may be the same block as x or y.
+     */
+    private static void add(double[] x, int xOff, int ldx, double[] y, int yOff, int ldy,
+            double[] z, int zOff, int ldz, int rows, int cols) {
+        for (int r = 0; r < rows; r++) {
+            int xi = xOff + r * ldx;
+            int yi = yOff + r * ldy;
+            int zi = zOff + r * ldz;
+            for (int j = 0; j < cols; j++) {
+                z[zi + j] = x[xi + j] + y[yi + j];
+            }
+        }
+    }
+
+    /**
+     * Stores x - y in z, each a rows x cols block given by an offset and a
+     * row length. Z may be the same block as x or y.
+     */
+    private static void sub(double[] x, int xOff, int ldx, double[] y, int yOff, int ldy,
+            double[] z, int zOff, int ldz, int rows, int cols) {
+        for (int r = 0; r < rows; r++) {
+            int xi = xOff + r * ldx;
+            int yi = yOff + r * ldy;
+            int zi = zOff + r * ldz;
+            for (int j = 0; j < cols; j++) {
+                z[zi + j] = x[xi + j] - y[yi + j];
+            }
+        }
+    }
+
+    private static int ceilDiv(int x, int y) {
+        return (x + y - 1) / y;
+    }
+}
@@ -0,0 +1,329 @@
+package libj.math;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Base class for square matrices with a known zero structure, which store
+ * only the elements that structure allows to be non-zero. A structured matrix
+ * can be used anywhere a Matrix can, and multiplying it with another matrix
+ * through {@link Matrix#mul(libj.math.Matrix, libj.math.Matrix)} or
+ * {@link Matrix#mulInto(libj.math.Matrix, libj.math.Matrix, libj.math.Matrix)}
+ * skips the elements known to be zero.
+ * <br>
+ * Setting an element outside the structure to anything other than zero
+ * throws an IllegalArgumentException. In-place operations which would break
+ * the structure, such as multiplying a triangular matrix by a full one, throw
+ * the same way, after having changed some of the elements.
+ * <br>
+ * For most structures, each row r stores the elements in a contiguous range
+ * of columns, found at values[rowOffset(r) + c] for rowFrom(r) &lt;= c &lt;
+ * rowTo(r).
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see DiagonalMatrix
+ * @see TriangularMatrix
+ * @see SymmetricMatrix
+ * @see BandMatrix
+ */
+public abstract class StructuredMatrix extends SqMatrix {
+
+    /**
+     * The stored elements of this matrix.
+     */
+    final double[] values;
+
+    StructuredMatrix(int dim, int size) {
+        super(dim, null);
+        if (dim <= 0) {
+            throw new IllegalArgumentException("Dimension can't be zero or negative");
+        }
+        values = new double[size];
+    }
+
+    /**
+     * Returns the number of elements on and below the diagonal of a n x n
+     * matrix.
+     * @param dim
+     * @return
+     */
+    static int triangleSize(int dim) {
+        long size = (long) dim * (dim + 1) / 2;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Dimension is too large");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Returns the number of elements stored for this matrix, as opposed to
+     * the n x n elements of a full matrix.
+     * @return
+     */
+    public int storedElements() {
+        return values.length;
+    }
+
+    /**
+     * Returns the first zero-based column which may be non-zero in a row.
+     * @param r
+     * @return
+     */
+    abstract int rowFrom(int r);
+
+    /**
+     * Returns one past the last zero-based column which may be non-zero in a
+     * row.
+     * @param r
+     * @return
+     */
+    abstract int rowTo(int r);
+
+    /**
+     * Returns the index in values of element (r, 0), so that element (r, c)
+     * is values[rowOffset(r) + c] for columns within the row's range.
+     * @param r
+     * @return
+     */
+    abstract int rowOffset(int r);
+
+    /**
+     * Checks if another structured matrix has the same dimension and
+     * structure as this one, so that their stored elements line up.
+     * @param other
+     * @return
+     */
+    boolean sameStructure(StructuredMatrix other) {
+        return other.getClass() == getClass() && other.rows == rows;
+    }
+
+    @Override
+    double get0(int r, int c) {
+        if (c < rowFrom(r) || c >= rowTo(r)) {
+            return 0;
+        }
+        return values[rowOffset(r) + c];
+    }
+
+    @Override
+    void set0(int r, int c, double value) {
+        if (c < rowFrom(r) || c >= rowTo(r)) {
+            if (value != 0) {
+                throw new IllegalArgumentException("Element is outside the matrix structure");
+            }
+            return;
+        }
+        values[rowOffset(r) + c] = value;
+    }
+
+    @Override
+    boolean isContiguous() {
+        return false;
+    }
+
+    @Override
+    boolean isStrided() {
+        return false;
+    }
+
+    /**
+     * Returns the average number of multiply-adds per row when multiplying
+     * this matrix by a matrix with one column.
+     * @return
+     */
+    long workPerRow() {
+        return values.length / rows + 1;
+    }
+
+    /**
+     * Computes rows rowFrom (inclusive) to rowTo (exclusive) of the product
+     * [this] x [b], where b is an n x p matrix stored at
+     * b[bOff + k * bRs + j * bCs], and stores them row-major in res.
+     * @param b
+     * @param bOff
+     * @param bRs
+     * @param bCs
+     * @param p
+     * @param res
+     * @param rowFrom
+     * @param rowTo
+     */
+    void mulRows(double[] b, int bOff, int bRs, int bCs, int p, double[] res, int rowFrom, int rowTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            int ri = i * p;
+            Arrays.fill(res, ri, ri + p, 0);
+            int off = rowOffset(i);
+            for (int k = rowFrom(i); k < rowTo(i); k++) {
+                double sik = values[off + k];
+                int bk = bOff + k * bRs;
+                for (int j = 0; j < p; j++) {
+                    res[ri + j] += sik * b[bk + j * bCs];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes rows rowFrom (inclusive) to rowTo (exclusive) of the product
+     * [a] x [this], where a is an m x n matrix stored at
+     * a[aOff + i * aRs + k * aCs], and stores them row-major in res.
+     * @param a
+     * @param aOff
+     * @param aRs
+     * @param aCs
+     * @param res
+     * @param rowFrom
+     * @param rowTo
+     */
+    void mulRowsLeft(double[] a, int aOff, int aRs, int aCs, double[] res, int rowFrom, int rowTo) {
+        int n = rows;
+        for (int i = rowFrom; i < rowTo; i++) {
+            int ri = i * n;
+            int ai = aOff + i * aRs;
+            Arrays.fill(res, ri, ri + n, 0);
+            for (int k = 0; k < n; k++) {
+                double aik = a[ai + k * aCs];
+                int off = rowOffset(k);
+                for (int j = rowFrom(k); j < rowTo(k); j++) {
+                    res[ri + j] += aik * values[off + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies this matrix by a scalar. Only the stored elements are
+     * touched.
+     * @param c
+     */
+    @Override
+    public void mul(double c) {
+        MatrixExecutor.getDefault().scale(values, c);
+    }
+
+    /**
+     * Applies a function to every element in this matrix, in place. Only the
+     * stored elements are touched, so the function must map zero to zero.
+     * @param f
+     * @throws IllegalArgumentException if f does not map zero to zero, in
+     * which case no elements are changed.
+     */
+    @Override
+    public void mapInPlace(DoubleUnaryOperator f) {
+        if (f.applyAsDouble(0) != 0) {
+            throw new IllegalArgumentException("Element is outside the matrix structure");
+        }
+        MatrixExecutor.getDefault().forRange(rows, workPerRow(), (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int off = rowOffset(r);
+                MatrixKernel.map(values, f, off + rowFrom(r), off + rowTo(r));
+            }
+        });
+    }
+
+    /**
+     * Adds another matrix to this matrix. When the other matrix has the same
+     * structure, only the stored elements are added.
+     * @param other
+     */
+    @Override
+    public void add(Matrix other) {
+        if (other instanceof StructuredMatrix && sameStructure((StructuredMatrix) other)) {
+            MatrixExecutor.getDefault().add(values, ((StructuredMatrix) other).values);
+            return;
+        }
+        super.add(other);
+    }
+
+    /**
+     * Subtracts another matrix from this matrix. When the other matrix has
+     * the same structure, only the stored elements are subtracted.
+     * @param other
+     */
+    @Override
+    public void sub(Matrix other) {
+        if (other instanceof StructuredMatrix && sameStructure((StructuredMatrix) other)) {
+            MatrixExecutor.getDefault().sub(values, ((StructuredMatrix) other).values);
+            return;
+        }
+        super.sub(other);
+    }
+
+    /**
+     * Sets this matrix to the identity matrix of the same dimension.
+     */
+    @Override
+    public void loadIdentity() {
+        Arrays.fill(values, 0);
+        for (int i = 0; i < rows; i++) {
+            set0(i, i, 1);
+        }
+    }
+
+    /**
+     * Copies this matrix's elements into dest, which must have the same
+     * dimensions. When dest has the same structure, only the stored elements
+     * are copied.
+     * @param dest
+     */
+    @Override
+    public void copyInto(Matrix dest) {
+        if (dest instanceof StructuredMatrix && sameStructure((StructuredMatrix) dest)) {
+            System.arraycopy(values, 0, ((StructuredMatrix) dest).values, 0, values.length);
+            return;
+        }
+        super.copyInto(dest);
+    }
+
+    /**
+     * Returns a copy of this matrix with the same structure and storage.
+     * Like for any other matrix, {@link #copy()} returns a full copy.
+     * @return
+     */
+    public abstract StructuredMatrix structuredCopy();
+
+    /**
+     * Writes the n x n row-major elements in x into dest, which may be a
+     * view. Used to hand results computed in workspace arrays to
+     * destinations of any kind.
+     */
+    static void store(double[] x, Matrix dest) {
+        if (dest.isContiguous()) {
+            System.arraycopy(x, 0, dest.elem, 0, dest.rows * dest.cols);
+        }
+        else {
+            dest.setAll(x);
+        }
+    }
+
+    /**
+     * Checks that b has as many rows as this matrix has columns.
+     */
+    void checkRhs(Matrix b) {
+        if (b.rows != rows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+    }
+
+    /**
+     * Returns the name of this structure for {@link #toString()}.
+     * @return
+     */
+    abstract String describe();
+
+    /**
+     * Returns this matrix object as a string, including its structure,
+     * dimension and hash code.
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getClass().getSimpleName()).append("[").append(rows).append("x").append(cols);
+        String d = describe();
+        if (d != null) {
+            sb.append(", ").append(d);
+        }
+        sb.append("]@").append(Integer.toHexString(hashCode()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,530 @@
+package libj.math;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A n x n symmetric matrix, storing only the n(n+1)/2 elements on and below
+ * the diagonal, row by row, which is about half the memory of a full matrix.
+ * Setting element (r, c) also sets element (c, r).
+ * <br>
+ * Determinants, inverses and solutions use an L x D x L^T factorization with
+ * symmetric Bunch-Kaufman pivoting, where D has 1 x 1 and 2 x 2 blocks on
+ * its diagonal. This takes half the work of an LU decomposition and works
+ * for indefinite matrices as well as positive definite ones. Temporary
+ * storage is taken from the {@link MatrixWorkspace} of the calling thread.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see StructuredMatrix
+ */
+public class SymmetricMatrix extends StructuredMatrix {
+
+    /**
+     * Growth bound used when choosing pivots, (1 + sqrt(17)) / 8.
+     */
+    private static final double ALPHA = (1 + Math.sqrt(17)) / 8;
+
+    /**
+     * Creates a new symmetric matrix with the given dimension. All elements
+     * are set to zero.
+     * @param dim
+     */
+    public SymmetricMatrix(int dim) {
+        super(dim, triangleSize(dim));
+    }
+
+    /**
+     * Creates a symmetric matrix from the lower triangle of a square matrix,
+     * ignoring the elements above the diagonal.
+     * @param m
+     * @return
+     */
+    public static SymmetricMatrix fromMatrix(Matrix m) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        SymmetricMatrix res = new SymmetricMatrix(m.rows);
+        for (int r = 0; r < res.rows; r++) {
+            int off = res.rowOffset(r);
+            for (int c = 0; c <= r; c++) {
+                res.values[off + c] = m.get0(r, c);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    int rowFrom(int r) {
+        return 0;
+    }
+
+    @Override
+    int rowTo(int r) {
+        return r + 1;
+    }
+
+    @Override
+    int rowOffset(int r) {
+        return r * (r + 1) / 2;
+    }
+
+    @Override
+    double get0(int r, int c) {
+        return c <= r ? values[rowOffset(r) + c] : values[rowOffset(c) + r];
+    }
+
+    @Override
+    void set0(int r, int c, double value) {
+        if (c <= r) {
+            values[rowOffset(r) + c] = value;
+        }
+        else {
+            values[rowOffset(c) + r] = value;
+        }
+    }
+
+    /**
+     * Applies a function to every element in this matrix, in place. Each
+     * stored element is mapped once, for both of its positions.
+     * @param f
+     */
+    @Override
+    public void mapInPlace(DoubleUnaryOperator f) {
+        MatrixExecutor.getDefault().forRange(values.length, 1, (from, to) ->
+            MatrixKernel.map(values, f, from, to));
+    }
+
+    /**
+     * Replaces every element in this matrix with the value returned by the
+     * operator. The operator is only called for the elements on and below
+     * the diagonal, and the result for (r, c) is also used for (c, r), so
+     * the matrix stays symmetric.
+     * @param op
+     */
+    @Override
+    public void replaceAll(ElementOperator op) {
+        MatrixExecutor.getDefault().forRange(rows, rows / 2 + 1, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int off = rowOffset(r);
+                for (int c = 0; c <= r; c++) {
+                    values[off + c] = op.apply(r + 1, c + 1, values[off + c]);
+                }
+            }
+        });
+    }
+
+    @Override
+    long workPerRow() {
+        return rows;
+    }
+
+    /**
+     * Computes rows of [this] x [b], reading each stored element below the
+     * diagonal once for row i and once for row k.
+     */
+    @Override
+    void mulRows(double[] b, int bOff, int bRs, int bCs, int p, double[] res, int rowFrom, int rowTo) {
+        int n = rows;
+        for (int i = rowFrom; i < rowTo; i++) {
+            int ri = i * p;
+            Arrays.fill(res, ri, ri + p, 0);
+            int oi = rowOffset(i);
+            for (int k = 0; k < n; k++) {
+                double sik = k <= i ? values[oi + k] : values[rowOffset(k) + i];
+                int bk = bOff + k * bRs;
+                for (int j = 0; j < p; j++) {
+                    res[ri + j] += sik * b[bk + j * bCs];
+                }
+            }
+        }
+    }
+
+    @Override
+    void mulRowsLeft(double[] a, int aOff, int aRs, int aCs, double[] res, int rowFrom, int rowTo) {
+        int n = rows;
+        for (int i = rowFrom; i < rowTo; i++) {
+            int ri = i * n;
+            int ai = aOff + i * aRs;
+            Arrays.fill(res, ri, ri + n, 0);
+            for (int k = 0; k < n; k++) {
+                double aik = a[ai + k * aCs];
+                int ok = rowOffset(k);
+                for (int j = 0; j <= k; j++) {
+                    res[ri + j] += aik * values[ok + j];
+                }
+                for (int j = k + 1; j < n; j++) {
+                    res[ri + j] += aik * values[rowOffset(j) + k];
+                }
+            }
+        }
+    }
+
+    /**
+     * Unpacks the lower triangle of this matrix into the row-major n x n
+     * array a. The elements above the diagonal are not written.
+     */
+    private void unpackLower(double[] a) {
+        int n = rows;
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(values, rowOffset(r), a, r * n, r + 1);
+        }
+    }
+
+    /**
+     * Calculates the determinant of this matrix from the blocks of D.
+     * @return
+     */
+    @Override
+    public double det() {
+        int n = rows;
+        if (n == 1) {
+            return values[0];
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] a = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        unpackLower(a);
+        factor(a, n, piv);
+        double det = 1;
+        for (int k = 0; k < n; k++) {
+            if (piv[k] >= 0) {
+                det *= a[k * n + k];
+                continue;
+            }
+            double d21 = a[(k + 1) * n + k];
+            det *= a[k * n + k] * a[(k + 1) * n + k + 1] - d21 * d21;
+            k++;
+        }
+        ws.release(a);
+        ws.releaseInts(piv);
+        return det;
+    }
+
+    /**
+     * Generates the inverse of this matrix, which is also symmetric.
+     * @return the inverse, or null if this matrix is singular.
+     */
+    @Override
+    public SymmetricMatrix inv() {
+        SymmetricMatrix res = new SymmetricMatrix(rows);
+        return invInto(res) ? res : null;
+    }
+
+    /**
+     * Stores the inverse of this matrix in dest, which must have the same
+     * dimensions. Dest may be this matrix itself, another symmetric matrix
+     * or a full matrix.
+     * @param dest
+     * @return false if this matrix is singular, in which case dest is left
+     * unchanged.
+     */
+    @Override
+    public boolean invInto(Matrix dest) {
+        if (dest.rows != rows || dest.cols != cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+
+        int n = rows;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] a = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        try {
+            unpackLower(a);
+            if (!factor(a, n, piv)) {
+                return false;
+            }
+
+            double[] x = ws.acquire(n * n);
+            Arrays.fill(x, 0);
+            for (int i = 0; i < n * n; i += n + 1) {
+                x[i] = 1;
+            }
+            solveInPlace(a, n, piv, x, n);
+            if (dest instanceof SymmetricMatrix) {
+                SymmetricMatrix s = (SymmetricMatrix) dest;
+                for (int r = 0; r < n; r++) {
+                    System.arraycopy(x, r * n, s.values, s.rowOffset(r), r + 1);
+                }
+            }
+            else {
+                store(x, dest);
+            }
+            ws.release(x);
+            return true;
+        }
+        finally {
+            ws.release(a);
+            ws.releaseInts(piv);
+        }
+    }
+
+    /**
+     * Solves [this] x [X] = [b] for X. Each column of b is a separate
+     * right-hand side.
+     * @param b
+     * @return X, or null if this matrix is singular.
+     */
+    @Override
+    public Matrix solve(Matrix b) {
+        checkRhs(b);
+
+        int n = rows;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] a = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        try {
+            unpackLower(a);
+            if (!factor(a, n, piv)) {
+                return null;
+            }
+            Matrix res = new Matrix(n, b.cols);
+            b.copyTo(res.elem);
+            solveInPlace(a, n, piv, res.elem, b.cols);
+            return res;
+        }
+        finally {
+            ws.release(a);
+            ws.releaseInts(piv);
+        }
+    }
+
+    /**
+     * Factors the symmetric n x n matrix whose lower triangle is in a, so
+     * that P x A x P^T = L x D x L^T. L is left below the diagonal of a,
+     * with its unit diagonal not stored, and D on the diagonal, with the
+     * off-diagonal element of each 2 x 2 block just below it.
+     * <br>
+     * For a 1 x 1 block in column k, rows k and piv[k] were swapped. For a
+     * 2 x 2 block in columns k and k + 1, piv[k] = piv[k + 1] = -p - 1,
+     * where rows k + 1 and p were swapped. The columns of each block are
+     * copied to a workspace array first, so the update of the remaining
+     * matrix runs along its rows.
+     * @param a
+     * @param n
+     * @param piv
+     * @return false if the matrix is singular.
+     */
+    static boolean factor(double[] a, int n, int[] piv) {
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] work = ws.acquire(2 * n);
+        boolean singular = false;
+        int k = 0;
+        while (k < n) {
+            int step = 1;
+            int kp = k;
+            double absakk = Math.abs(a[k * n + k]);
+            int imax = k;
+            double colmax = 0;
+            for (int i = k + 1; i < n; i++) {
+                double v = Math.abs(a[i * n + k]);
+                if (v > colmax) {
+                    colmax = v;
+                    imax = i;
+                }
+            }
+
+            if (Math.max(absakk, colmax) == 0) {
+                singular = true;
+                piv[k] = k;
+                k++;
+                continue;
+            }
+
+            if (absakk < ALPHA * colmax) {
+                double rowmax = 0;
+                for (int j = k; j < imax; j++) {
+                    rowmax = Math.max(rowmax, Math.abs(a[imax * n + j]));
+                }
+                for (int j = imax + 1; j < n; j++) {
+                    rowmax = Math.max(rowmax, Math.abs(a[j * n + imax]));
+                }
+
+                if (absakk >= ALPHA * colmax * (colmax / rowmax)) {
+                    kp = k;
+                }
+                else if (Math.abs(a[imax * n + imax]) >= ALPHA * rowmax) {
+                    kp = imax;
+                }
+                else {
+                    kp = imax;
+                    step = 2;
+                }
+            }
+
+            int kk = k + step - 1;
+            if (kp != kk) {
+                for (int i = kp + 1; i < n; i++) {
+                    swap(a, i * n + kk, i * n + kp);
+                }
+                for (int j = kk + 1; j < kp; j++) {
+                    swap(a, j * n + kk, kp * n + j);
+                }
+                swap(a, kk * n + kk, kp * n + kp);
+                if (step == 2) {
+                    swap(a, (k + 1) * n + k, kp * n + k);
+                }
+            }
+
+            if (step == 1) {
+                double r1 = 1 / a[k * n + k];
+                for (int j = k + 1; j < n; j++) {
+                    work[j] = r1 * a[j * n + k];
+                }
+                for (int i = k + 1; i < n; i++) {
+                    int in = i * n;
+                    double aik = a[in + k];
+                    for (int j = k + 1; j <= i; j++) {
+                        a[in + j] -= work[j] * aik;
+                    }
+                }
+                for (int i = k + 1; i < n; i++) {
+                    a[i * n + k] *= r1;
+                }
+                piv[k] = kp;
+            }
+            else {
+                if (k < n - 2) {
+                    double d21 = a[(k + 1) * n + k];
+                    double d11 = a[(k + 1) * n + k + 1] / d21;
+                    double d22 = a[k * n + k] / d21;
+                    double t = 1 / (d11 * d22 - 1);
+                    d21 = t / d21;
+                    for (int j = k + 2; j < n; j++) {
+                        work[j] = d21 * (d11 * a[j * n + k] - a[j * n + k + 1]);
+                        work[n + j] = d21 * (d22 * a[j * n + k + 1] - a[j * n + k]);
+                    }
+                    for (int i = k + 2; i < n; i++) {
+                        int in = i * n;
+                        double aik = a[in + k];
+                        double aik1 = a[in + k + 1];
+                        for (int j = k + 2; j <= i; j++) {
+                            a[in + j] -= aik * work[j] + aik1 * work[n + j];
+                        }
+                    }
+                    for (int j = k + 2; j < n; j++) {
+                        a[j * n + k] = work[j];
+                        a[j * n + k + 1] = work[n + j];
+                    }
+                }
+                piv[k] = -kp - 1;
+                piv[k + 1] = -kp - 1;
+            }
+            k += step;
+        }
+        ws.release(work);
+        return !singular;
+    }
+
+    /**
+     * Solves A x X = B with the factors from {@link #factor(double[], int, int[])},
+     * replacing the n x m right-hand side x with the solution.
+     */
+    static void solveInPlace(double[] a, int n, int[] piv, double[] x, int m) {
+        int k = 0;
+        while (k < n) {
+            int km = k * m;
+            if (piv[k] >= 0) {
+                swapRows(x, k, piv[k], m);
+                for (int i = k + 1; i < n; i++) {
+                    double f = a[i * n + k];
+                    int im = i * m;
+                    for (int j = 0; j < m; j++) {
+                        x[im + j] -= f * x[km + j];
+                    }
+                }
+                double d = a[k * n + k];
+                for (int j = 0; j < m; j++) {
+                    x[km + j] /= d;
+                }
+                k++;
+                continue;
+            }
+
+            int k1m = km + m;
+            swapRows(x, k + 1, -piv[k] - 1, m);
+            for (int i = k + 2; i < n; i++) {
+                double f0 = a[i * n + k];
+                double f1 = a[i * n + k + 1];
+                int im = i * m;
+                for (int j = 0; j < m; j++) {
+                    x[im + j] -= f0 * x[km + j] + f1 * x[k1m + j];
+                }
+            }
+            double d21 = a[(k + 1) * n + k];
+            double d11 = a[k * n + k] / d21;
+            double d22 = a[(k + 1) * n + k + 1] / d21;
+            double denom = d11 * d22 - 1;
+            for (int j = 0; j < m; j++) {
+                double b1 = x[km + j] / d21;
+                double b2 = x[k1m + j] / d21;
+                x[km + j] = (d22 * b1 - b2) / denom;
+                x[k1m + j] = (d11 * b2 - b1) / denom;
+            }
+            k += 2;
+        }
+
+        k = n - 1;
+        while (k >= 0) {
+            int km = k * m;
+            for (int i = k + 1; i < n; i++) {
+                double f = a[i * n + k];
+                int im = i * m;
+                for (int j = 0; j < m; j++) {
+                    x[km + j] -= f * x[im + j];
+                }
+            }
+            if (piv[k] >= 0) {
+                swapRows(x, k, piv[k], m);
+                k--;
+                continue;
+            }
+
+            int k0m = km - m;
+            for (int i = k + 1; i < n; i++) {
+                double f = a[i * n + k - 1];
+                int im = i * m;
+                for (int j = 0; j < m; j++) {
+                    x[k0m + j] -= f * x[im + j];
+                }
+            }
+            swapRows(x, k, -piv[k] - 1, m);
+            k -= 2;
+        }
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private static void swapRows(double[] x, int r1, int r2, int m) {
+        if (r1 == r2) {
+            return;
+        }
+        for (int j = 0; j < m; j++) {
+            swap(x, r1 * m + j, r2 * m + j);
+        }
+    }
+
+    /**
+     * Returns a copy of this matrix, which is its own transpose.
+     * @return
+     */
+    @Override
+    public SymmetricMatrix transpose() {
+        return structuredCopy();
+    }
+
+    @Override
+    public SymmetricMatrix structuredCopy() {
+        SymmetricMatrix res = new SymmetricMatrix(rows);
+        System.arraycopy(values, 0, res.values, 0, values.length);
+        return res;
+    }
+
+    @Override
+    String describe() {
+        return null;
+    }
+}
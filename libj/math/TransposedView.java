@@ -0,0 +1,59 @@
+package libj.math;
+
+/**
+ * A transposed view of a matrix. Element (r, c) of the view is element (c, r)
+ * of the parent.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix#transposeView()
+ */
+public class TransposedView extends MatrixView {
+    
+    TransposedView(Matrix parent) {
+        super(parent, parent.cols, parent.rows);
+    }
+    
+    @Override
+    double get0(int r, int c) {
+        return parent.get0(c, r);
+    }
+    
+    @Override
+    void set0(int r, int c, double value) {
+        parent.set0(c, r, value);
+    }
+    
+    @Override
+    boolean isStrided() {
+        return parent.isStrided();
+    }
+    
+    @Override
+    double[] data() {
+        return parent.data();
+    }
+    
+    @Override
+    int offset() {
+        return parent.offset();
+    }
+    
+    @Override
+    int rowStride() {
+        return parent.colStride();
+    }
+    
+    @Override
+    int colStride() {
+        return parent.rowStride();
+    }
+    
+    /**
+     * Returns the parent of this view, since transposing twice gives back the
+     * original matrix.
+     * @return 
+     */
+    @Override
+    public Matrix transposeView() {
+        return parent;
+    }
+}
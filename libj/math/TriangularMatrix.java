@@ -0,0 +1,269 @@
+package libj.math;
+
+/**
+ * A n x n lower or upper triangular matrix, storing only the n(n+1)/2
+ * elements on and on one side of the diagonal, row by row. The determinant
+ * is found in O(n), systems are solved by substitution in O(n^2) per
+ * right-hand side, and the inverse, which is triangular as well, is
+ * calculated in place in O(n^3 / 6).
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see StructuredMatrix
+ */
+public class TriangularMatrix extends StructuredMatrix {
+
+    /**
+     * True if the non-zero elements are on and above the diagonal, false if
+     * they are on and below it.
+     */
+    private final boolean upper;
+
+    /**
+     * Creates a new triangular matrix with the given dimension. All elements
+     * are set to zero.
+     * @param dim
+     * @param upper True for an upper triangular matrix, false for a lower
+     * triangular one.
+     */
+    public TriangularMatrix(int dim, boolean upper) {
+        super(dim, triangleSize(dim));
+        this.upper = upper;
+    }
+
+    /**
+     * Creates a triangular matrix from the upper or lower triangle of a
+     * square matrix, ignoring all other elements.
+     * @param m
+     * @param upper
+     * @return
+     */
+    public static TriangularMatrix fromMatrix(Matrix m, boolean upper) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        TriangularMatrix res = new TriangularMatrix(m.rows, upper);
+        for (int r = 0; r < res.rows; r++) {
+            int off = res.rowOffset(r);
+            for (int c = res.rowFrom(r); c < res.rowTo(r); c++) {
+                res.values[off + c] = m.get0(r, c);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Checks if this is an upper triangular matrix.
+     * @return
+     */
+    public boolean isUpper() {
+        return upper;
+    }
+
+    @Override
+    int rowFrom(int r) {
+        return upper ? r : 0;
+    }
+
+    @Override
+    int rowTo(int r) {
+        return upper ? rows : r + 1;
+    }
+
+    @Override
+    int rowOffset(int r) {
+        return rowOffset(r, rows, upper);
+    }
+
+    private static int rowOffset(int r, int n, boolean upper) {
+        return upper ? r * n - r * (r + 1) / 2 : r * (r + 1) / 2;
+    }
+
+    @Override
+    boolean sameStructure(StructuredMatrix other) {
+        return super.sameStructure(other) && ((TriangularMatrix) other).upper == upper;
+    }
+
+    /**
+     * Calculates the determinant of this matrix, which is the product of the
+     * diagonal elements.
+     * @return
+     */
+    @Override
+    public double det() {
+        double det = 1;
+        for (int i = 0; i < rows; i++) {
+            det *= values[rowOffset(i) + i];
+        }
+        return det;
+    }
+
+    private boolean isSingular() {
+        for (int i = 0; i < rows; i++) {
+            if (values[rowOffset(i) + i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates the inverse of this matrix, which is triangular in the same
+     * direction.
+     * @return the inverse, or null if this matrix is singular.
+     */
+    @Override
+    public TriangularMatrix inv() {
+        if (isSingular()) {
+            return null;
+        }
+        TriangularMatrix res = structuredCopy();
+        invert(res.values, rows, upper);
+        return res;
+    }
+
+    /**
+     * Stores the inverse of this matrix in dest, which must have the same
+     * dimensions. When dest is this matrix or a triangular matrix in the
+     * same direction, the inverse is calculated directly in its storage.
+     * Otherwise temporary storage is taken from the {@link MatrixWorkspace}
+     * of the calling thread.
+     * @param dest
+     * @return false if this matrix is singular, in which case dest is left
+     * unchanged.
+     */
+    @Override
+    public boolean invInto(Matrix dest) {
+        if (dest.rows != rows || dest.cols != cols) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        if (isSingular()) {
+            return false;
+        }
+
+        if (dest instanceof StructuredMatrix && sameStructure((StructuredMatrix) dest)) {
+            double[] v = ((StructuredMatrix) dest).values;
+            System.arraycopy(values, 0, v, 0, values.length);
+            invert(v, rows, upper);
+            return true;
+        }
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] v = ws.acquire(values.length);
+        System.arraycopy(values, 0, v, 0, values.length);
+        invert(v, rows, upper);
+        for (int r = 0; r < rows; r++) {
+            int off = rowOffset(r);
+            for (int c = 0; c < cols; c++) {
+                dest.set0(r, c, c >= rowFrom(r) && c < rowTo(r) ? v[off + c] : 0);
+            }
+        }
+        ws.release(v);
+        return true;
+    }
+
+    /**
+     * Inverts the non-singular triangular matrix packed in v in place. Each
+     * row of the inverse only depends on rows already inverted and on
+     * elements of the same row not yet overwritten, so no extra storage is
+     * needed.
+     */
+    private static void invert(double[] v, int n, boolean upper) {
+        if (upper) {
+            for (int i = n - 1; i >= 0; i--) {
+                int oi = rowOffset(i, n, true);
+                double d = v[oi + i];
+                for (int j = n - 1; j > i; j--) {
+                    double sum = 0;
+                    for (int k = i + 1; k <= j; k++) {
+                        sum += v[oi + k] * v[rowOffset(k, n, true) + j];
+                    }
+                    v[oi + j] = -sum / d;
+                }
+                v[oi + i] = 1 / d;
+            }
+            return;
+        }
+
+        for (int i = 0; i < n; i++) {
+            int oi = rowOffset(i, n, false);
+            double d = v[oi + i];
+            for (int j = 0; j < i; j++) {
+                double sum = 0;
+                for (int k = j; k < i; k++) {
+                    sum += v[oi + k] * v[rowOffset(k, n, false) + j];
+                }
+                v[oi + j] = -sum / d;
+            }
+            v[oi + i] = 1 / d;
+        }
+    }
+
+    /**
+     * Solves [this] x [X] = [b] for X by forward substitution for a lower
+     * triangular matrix, or back substitution for an upper triangular one.
+     * Each column of b is a separate right-hand side.
+     * @param b
+     * @return X, or null if this matrix is singular.
+     */
+    @Override
+    public Matrix solve(Matrix b) {
+        checkRhs(b);
+        if (isSingular()) {
+            return null;
+        }
+
+        int n = rows;
+        int m = b.cols;
+        Matrix res = new Matrix(n, m);
+        double[] x = res.elem;
+        b.copyTo(x);
+        for (int s = 0; s < n; s++) {
+            int i = upper ? n - 1 - s : s;
+            int off = rowOffset(i);
+            int im = i * m;
+            for (int k = rowFrom(i); k < rowTo(i); k++) {
+                if (k == i) {
+                    continue;
+                }
+                double f = values[off + k];
+                int km = k * m;
+                for (int j = 0; j < m; j++) {
+                    x[im + j] -= f * x[km + j];
+                }
+            }
+            double d = values[off + i];
+            for (int j = 0; j < m; j++) {
+                x[im + j] /= d;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the transpose of this matrix, which is triangular in the other
+     * direction.
+     * @return
+     */
+    @Override
+    public TriangularMatrix transpose() {
+        TriangularMatrix res = new TriangularMatrix(rows, !upper);
+        for (int r = 0; r < rows; r++) {
+            int off = rowOffset(r);
+            for (int c = rowFrom(r); c < rowTo(r); c++) {
+                res.values[res.rowOffset(c) + r] = values[off + c];
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public TriangularMatrix structuredCopy() {
+        TriangularMatrix res = new TriangularMatrix(rows, upper);
+        System.arraycopy(values, 0, res.values, 0, values.length);
+        return res;
+    }
+
+    @Override
+    String describe() {
+        return upper ? "upper" : "lower";
+    }
+}
@@ -0,0 +1,632 @@
+package libj.math;
+
+import java.util.Arrays;
+
+/**
+ * The inverse and determinant of a square matrix, kept current while the
+ * matrix changes. Changing one element, row or column, or adding a rank-1
+ * update u x v^T, is a rank-1 change of the matrix, after which the
+ * Sherman-Morrison formula updates the inverse and the matrix determinant
+ * lemma updates the determinant, both in O(n^2) instead of the O(n^3) of a
+ * new decomposition. Rank-k updates U x V^T use the Woodbury identity, in
+ * O(n^2 k).
+ * <br>
+ * Every update adds some rounding error to the inverse, which then drifts
+ * away from the true inverse of the matrix. To bound the drift, the inverse
+ * is recalculated from the matrix with an LU decomposition after a fixed
+ * number of updates, and after any update where the formulas lose most of
+ * their accuracy to cancellation, which happens when the update brings the
+ * matrix close to singular. The number of updates between refactorizations
+ * defaults to the dimension, but at least 16, which keeps the amortized cost
+ * of refactorizing at O(n^2) per update.
+ * <br>
+ * Updates which would make the matrix singular are rejected, leaving the
+ * matrix, inverse and determinant unchanged. Rows and columns are numbered
+ * from one.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see SqMatrix#updatableInverse()
+ */
+public class UpdatableInverse {
+
+    /**
+     * Smallest default number of updates between refactorizations.
+     */
+    public static final int MIN_REFACTOR_INTERVAL = 16;
+
+    /**
+     * If the denominator of an update is smaller than this, relative to the
+     * terms it is the sum of, or larger than its reciprocal, the update
+     * refactorizes instead.
+     */
+    private static final double CANCELLATION = 1e-8;
+
+    /**
+     * Dimension of the matrix.
+     */
+    private final int n;
+
+    /**
+     * The current matrix, row-major.
+     */
+    private final double[] a;
+
+    /**
+     * The inverse of the current matrix, row-major.
+     */
+    private final double[] inv;
+
+    /**
+     * The determinant of the current matrix.
+     */
+    private double det;
+
+    /**
+     * Number of updates between refactorizations.
+     */
+    private final int interval;
+
+    /**
+     * Number of updates since the last refactorization.
+     */
+    private int updates;
+
+    /**
+     * Creates the inverse of the given square matrix, which may also be a
+     * view. The matrix itself is copied, so later changes to it are not
+     * followed.
+     * @param m
+     * @throws IllegalArgumentException if the matrix is singular.
+     */
+    public UpdatableInverse(Matrix m) {
+        this(m, Math.max(MIN_REFACTOR_INTERVAL, m.rows));
+    }
+
+    /**
+     * Creates the inverse of the given square matrix, which may also be a
+     * view, refactorizing after the given number of updates.
+     * @param m
+     * @param refactorInterval
+     * @throws IllegalArgumentException if the matrix is singular.
+     */
+    public UpdatableInverse(Matrix m, int refactorInterval) {
+        if (m.rows != m.cols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        if (refactorInterval <= 0) {
+            throw new IllegalArgumentException("Refactor interval can't be zero or negative");
+        }
+
+        n = m.rows;
+        interval = refactorInterval;
+        a = new double[n * n];
+        m.copyTo(a);
+        inv = new double[n * n];
+        if (!refactor()) {
+            throw new IllegalArgumentException("Matrix is singular");
+        }
+    }
+
+    /**
+     * Creates the inverse of a square matrix from its already calculated LU
+     * decomposition, which must not be singular.
+     * @param m
+     * @param lu
+     */
+    UpdatableInverse(Matrix m, LUDecomposition lu) {
+        n = m.rows;
+        interval = Math.max(MIN_REFACTOR_INTERVAL, n);
+        a = new double[n * n];
+        m.copyTo(a);
+        inv = lu.inv().elem;
+        det = lu.det();
+    }
+
+    /**
+     * Returns the dimension of the matrix.
+     * @return
+     */
+    public int dim() {
+        return n;
+    }
+
+    /**
+     * Returns the determinant of the current matrix.
+     * @return
+     */
+    public double det() {
+        return det;
+    }
+
+    /**
+     * Returns a copy of the current matrix.
+     * @return
+     */
+    public SqMatrix getMatrix() {
+        SqMatrix res = new SqMatrix(n);
+        System.arraycopy(a, 0, res.elem, 0, n * n);
+        return res;
+    }
+
+    /**
+     * Returns a copy of the inverse of the current matrix.
+     * @return
+     */
+    public SqMatrix inv() {
+        SqMatrix res = new SqMatrix(n);
+        System.arraycopy(inv, 0, res.elem, 0, n * n);
+        return res;
+    }
+
+    /**
+     * Stores the inverse of the current matrix in dest, which must have the
+     * same dimensions and may be a view.
+     * @param dest
+     */
+    public void invInto(Matrix dest) {
+        if (dest.rows != n || dest.cols != n) {
+            throw new IllegalArgumentException("Destination has wrong dimensions");
+        }
+        dest.setAll(inv);
+    }
+
+    /**
+     * Solves [A] x [x] = [b] for x, where A is the current matrix, by
+     * multiplying with the inverse in O(n^2).
+     * @param b
+     * @return x
+     */
+    public double[] solve(double[] b) {
+        checkLength(b);
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            int in = i * n;
+            for (int j = 0; j < n; j++) {
+                sum += inv[in + j] * b[j];
+            }
+            x[i] = sum;
+        }
+        return x;
+    }
+
+    /**
+     * Sets one element of the matrix.
+     * @param row
+     * @param col
+     * @param value
+     * @return false if the change would make the matrix singular, in which
+     * case nothing is changed.
+     */
+    public boolean setElem(int row, int col, double value) {
+        checkIndex(row);
+        checkIndex(col);
+        int r = row - 1;
+        int c = col - 1;
+        double delta = value - a[r * n + c];
+        if (delta == 0) {
+            return true;
+        }
+
+        // u = e_r, v = delta e_c
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] x = ws.acquire(n);
+        double[] y = ws.acquire(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                x[i] = inv[i * n + r];
+                y[i] = delta * inv[c * n + i];
+            }
+            double s = y[r];
+            if (isCancelling(s)) {
+                double[] backup = backup(ws);
+                a[r * n + c] = value;
+                return refactorOrRestore(backup, ws);
+            }
+            a[r * n + c] = value;
+            apply(x, y, s);
+            return true;
+        }
+        finally {
+            ws.release(x);
+            ws.release(y);
+        }
+    }
+
+    /**
+     * Replaces one row of the matrix.
+     * @param row
+     * @param values The new row, of length n.
+     * @return false if the change would make the matrix singular, in which
+     * case nothing is changed.
+     */
+    public boolean setRow(int row, double[] values) {
+        checkIndex(row);
+        checkLength(values);
+        int r = row - 1;
+
+        // u = e_r, v = values - old row
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] d = ws.acquire(n);
+        double[] x = ws.acquire(n);
+        double[] y = ws.acquire(n);
+        try {
+            for (int j = 0; j < n; j++) {
+                d[j] = values[j] - a[r * n + j];
+                x[j] = inv[j * n + r];
+            }
+            mulLeft(d, y);
+            double s = y[r];
+            if (isCancelling(s)) {
+                double[] backup = backup(ws);
+                System.arraycopy(values, 0, a, r * n, n);
+                return refactorOrRestore(backup, ws);
+            }
+            System.arraycopy(values, 0, a, r * n, n);
+            apply(x, y, s);
+            return true;
+        }
+        finally {
+            ws.release(d);
+            ws.release(x);
+            ws.release(y);
+        }
+    }
+
+    /**
+     * Replaces one column of the matrix.
+     * @param col
+     * @param values The new column, of length n.
+     * @return false if the change would make the matrix singular, in which
+     * case nothing is changed.
+     */
+    public boolean setCol(int col, double[] values) {
+        checkIndex(col);
+        checkLength(values);
+        int c = col - 1;
+
+        // u = values - old column, v = e_c
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] d = ws.acquire(n);
+        double[] x = ws.acquire(n);
+        double[] y = ws.acquire(n);
+        try {
+            for (int i = 0; i < n; i++) {
+                d[i] = values[i] - a[i * n + c];
+            }
+            System.arraycopy(inv, c * n, y, 0, n);
+            mulRight(d, x);
+            double s = x[c];
+            if (isCancelling(s)) {
+                double[] backup = backup(ws);
+                setColumn(c, values);
+                return refactorOrRestore(backup, ws);
+            }
+            setColumn(c, values);
+            apply(x, y, s);
+            return true;
+        }
+        finally {
+            ws.release(d);
+            ws.release(x);
+            ws.release(y);
+        }
+    }
+
+    /**
+     * Adds the outer product of two vectors to the matrix, so that
+     * [A] = [A] + [u] x [v]^T
+     * @param u
+     * @param v
+     * @return false if the update would make the matrix singular, in which
+     * case nothing is changed.
+     */
+    public boolean rankOneUpdate(double[] u, double[] v) {
+        checkLength(u);
+        checkLength(v);
+
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] x = ws.acquire(n);
+        double[] y = ws.acquire(n);
+        try {
+            mulRight(u, x);
+            mulLeft(v, y);
+            double s = 0;
+            for (int i = 0; i < n; i++) {
+                s += v[i] * x[i];
+            }
+            if (isCancelling(s)) {
+                double[] backup = backup(ws);
+                addOuter(u, v);
+                return refactorOrRestore(backup, ws);
+            }
+            addOuter(u, v);
+            apply(x, y, s);
+            return true;
+        }
+        finally {
+            ws.release(x);
+            ws.release(y);
+        }
+    }
+
+    /**
+     * Adds a rank-k update to the matrix, so that [A] = [A] + [u] x [v]^T,
+     * where u and v are n x k matrices and may be views. This is faster than
+     * k rank-1 updates when k is small compared to n.
+     * @param u
+     * @param v
+     * @return false if the update would make the matrix singular, in which
+     * case nothing is changed.
+     */
+    public boolean update(Matrix u, Matrix v) {
+        if (u.rows != n || v.rows != n || u.cols != v.cols) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions");
+        }
+
+        int k = u.cols;
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] uk = ws.acquire(n * k);
+        double[] vk = ws.acquire(n * k);
+        double[] x = ws.acquire(n * k);
+        double[] y = ws.acquire(k * n);
+        double[] s = ws.acquire(k * k);
+        int[] piv = ws.acquireInts(k);
+        try {
+            u.copyTo(uk);
+            v.copyTo(vk);
+
+            // X = inv x U, Y = V^T x inv, S = I + V^T x X
+            Arrays.fill(x, 0);
+            Arrays.fill(y, 0);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    double f = inv[i * n + j];
+                    for (int l = 0; l < k; l++) {
+                        x[i * k + l] += f * uk[j * k + l];
+                        y[l * n + j] += vk[i * k + l] * f;
+                    }
+                }
+            }
+            double max = 1;
+            for (int l = 0; l < k; l++) {
+                for (int m = 0; m < k; m++) {
+                    double sum = 0;
+                    for (int i = 0; i < n; i++) {
+                        sum += vk[i * k + l] * x[i * k + m];
+                    }
+                    max = Math.max(max, Math.abs(sum));
+                    s[l * k + m] = (l == m ? 1 : 0) + sum;
+                }
+            }
+
+            int sign = LUDecomposition.factor(s, k, piv);
+            double d = sign;
+            double minPivot = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < k * k; i += k + 1) {
+                d *= s[i];
+                minPivot = Math.min(minPivot, Math.abs(s[i]));
+            }
+            if (minPivot <= CANCELLATION * max || Math.abs(d) >= 1 / CANCELLATION) {
+                double[] backup = backup(ws);
+                addProduct(uk, vk, k);
+                return refactorOrRestore(backup, ws);
+            }
+
+            // inv = inv - X x S^-1 x Y, det = det x det(S)
+            double[] z = ws.acquire(k * n);
+            for (int l = 0; l < k; l++) {
+                System.arraycopy(y, piv[l] * n, z, l * n, n);
+            }
+            LUDecomposition.solveInPlace(s, k, z, n);
+            addProduct(uk, vk, k);
+            MatrixExecutor.getDefault().forRange(n, (long) n * k, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int in = i * n;
+                    for (int l = 0; l < k; l++) {
+                        double f = x[i * k + l];
+                        int ln = l * n;
+                        for (int j = 0; j < n; j++) {
+                            inv[in + j] -= f * z[ln + j];
+                        }
+                    }
+                }
+            });
+            ws.release(z);
+            det *= d;
+            updated(k);
+            return true;
+        }
+        finally {
+            ws.release(uk);
+            ws.release(vk);
+            ws.release(x);
+            ws.release(y);
+            ws.release(s);
+            ws.releaseInts(piv);
+        }
+    }
+
+    /**
+     * Recalculates the inverse and determinant from the current matrix with
+     * an LU decomposition, removing any drift from earlier updates. This
+     * happens automatically, but may be called after a series of updates to
+     * get the most accurate inverse.
+     * @return false if the matrix is singular, in which case the inverse and
+     * determinant are left unchanged.
+     */
+    public boolean refactor() {
+        MatrixWorkspace ws = MatrixWorkspace.current();
+        double[] lu = ws.acquire(n * n);
+        int[] piv = ws.acquireInts(n);
+        try {
+            System.arraycopy(a, 0, lu, 0, n * n);
+            double scale = LUDecomposition.maxAbs(lu, n * n);
+            int sign = LUDecomposition.factor(lu, n, piv);
+            if (LUDecomposition.isSingular(lu, n, scale)) {
+                return false;
+            }
+
+            double d = sign;
+            for (int i = 0; i < n * n; i += n + 1) {
+                d *= lu[i];
+            }
+            Arrays.fill(inv, 0);
+            for (int i = 0; i < n; i++) {
+                inv[i * n + piv[i]] = 1;
+            }
+            LUDecomposition.solveInPlace(lu, n, inv, n);
+            det = d;
+            updates = 0;
+            return true;
+        }
+        finally {
+            ws.release(lu);
+            ws.releaseInts(piv);
+        }
+    }
+
+    /**
+     * Applies the Sherman-Morrison update for the rank-1 change u x v^T,
+     * given x = inv x u, y = v^T x inv and s = v^T x inv x u.
+     */
+    private void apply(double[] x, double[] y, double s) {
+        double f = 1 / (1 + s);
+        MatrixExecutor.getDefault().forRange(n, n, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                double xi = x[i] * f;
+                if (xi == 0) {
+                    continue;
+                }
+                int in = i * n;
+                for (int j = 0; j < n; j++) {
+                    inv[in + j] -= xi * y[j];
+                }
+            }
+        });
+        det *= 1 + s;
+        updated(1);
+    }
+
+    private void updated(int rank) {
+        updates += rank;
+        if (updates >= interval) {
+            refactor();
+        }
+    }
+
+    /**
+     * Checks if the update formulas lose too much accuracy to cancellation
+     * for the rank-1 update with denominator 1 + s. This happens when 1 + s
+     * is much smaller than s, as the matrix approaches singular, and when it
+     * is very large, as the matrix leaves a nearly singular state and the
+     * large elements of the inverse mostly cancel.
+     */
+    private static boolean isCancelling(double s) {
+        double d = Math.abs(1 + s);
+        return d <= CANCELLATION * Math.max(1, Math.abs(s)) || d >= 1 / CANCELLATION;
+    }
+
+    /**
+     * Returns a copy of the current matrix, taken from the workspace.
+     */
+    private double[] backup(MatrixWorkspace ws) {
+        double[] res = ws.acquire(n * n);
+        System.arraycopy(a, 0, res, 0, n * n);
+        return res;
+    }
+
+    /**
+     * Refactorizes the already changed matrix, restoring it from backup if
+     * it became singular.
+     */
+    private boolean refactorOrRestore(double[] backup, MatrixWorkspace ws) {
+        boolean res = refactor();
+        if (!res) {
+            System.arraycopy(backup, 0, a, 0, n * n);
+        }
+        ws.release(backup);
+        return res;
+    }
+
+    /**
+     * Stores inv x u in x.
+     */
+    private void mulRight(double[] u, double[] x) {
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            int in = i * n;
+            for (int j = 0; j < n; j++) {
+                sum += inv[in + j] * u[j];
+            }
+            x[i] = sum;
+        }
+    }
+
+    /**
+     * Stores v^T x inv in y.
+     */
+    private void mulLeft(double[] v, double[] y) {
+        Arrays.fill(y, 0, n, 0);
+        for (int i = 0; i < n; i++) {
+            double f = v[i];
+            if (f == 0) {
+                continue;
+            }
+            int in = i * n;
+            for (int j = 0; j < n; j++) {
+                y[j] += f * inv[in + j];
+            }
+        }
+    }
+
+    private void addOuter(double[] u, double[] v) {
+        for (int i = 0; i < n; i++) {
+            double f = u[i];
+            int in = i * n;
+            for (int j = 0; j < n; j++) {
+                a[in + j] += f * v[j];
+            }
+        }
+    }
+
+    /**
+     * Adds u x v^T to the matrix, where u and v are row-major n x k.
+     */
+    private void addProduct(double[] u, double[] v, int k) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double sum = 0;
+                for (int l = 0; l < k; l++) {
+                    sum += u[i * k + l] * v[j * k + l];
+                }
+                a[i * n + j] += sum;
+            }
+        }
+    }
+
+    private void setColumn(int c, double[] values) {
+        for (int i = 0; i < n; i++) {
+            a[i * n + c] = values[i];
+        }
+    }
+
+    private void checkIndex(int i) {
+        if (i <= 0 || i > n) {
+            throw new IllegalArgumentException("Row or column is not within matrix");
+        }
+    }
+
+    private void checkLength(double[] v) {
+        if (v.length != n) {
+            throw new IllegalArgumentException("Vector has wrong length");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("UpdatableInverse[").append(n).append("x").append(n);
+        sb.append("]@").append(Integer.toHexString(hashCode()));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package libj.math;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels using the JDK Vector API. This class is only loaded when the
+ * jdk.incubator.vector module is available, see {@link MatrixBackend}. Every
+ * loop processes whole vectors first and handles the remaining tail with
+ * scalar code.
+ * <br>
+ * Element-wise operations give exactly the same results as the scalar
+ * kernels. Sums are accumulated per lane and combined at the end, so they may
+ * differ from the scalar result by rounding.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see MatrixKernel
+ */
+final class VectorKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private VectorKernel() {
+    }
+
+    /**
+     * Checks if the preferred vector shape holds more than one double, which
+     * is when using this class pays off.
+     * @return
+     */
+    static boolean isSupported() {
+        return SPECIES.length() > 1;
+    }
+
+    static void scale(double[] a, double c, int from, int to) {
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, i).mul(c).intoArray(a, i);
+        }
+        for (; i < to; i++) {
+            a[i] *= c;
+        }
+    }
+
+    static void add(double[] a, double[] b, int from, int to) {
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, i);
+            va.add(DoubleVector.fromArray(SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < to; i++) {
+            a[i] += b[i];
+        }
+    }
+
+    static void sub(double[] a, double[] b, int from, int to) {
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, i);
+            va.sub(DoubleVector.fromArray(SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < to; i++) {
+            a[i] -= b[i];
+        }
+    }
+
+    /**
+     * Computes res[resOff + j] += c * b[bOff + j] for j from 0 to len. The
+     * multiplication and addition are not fused, so each element is rounded
+     * exactly as in the scalar kernel.
+     */
+    static void axpy(double c, double[] b, int bOff, double[] res, int resOff, int len) {
+        int j = 0;
+        int upper = SPECIES.loopBound(len);
+        for (; j < upper; j += SPECIES.length()) {
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOff + j);
+            DoubleVector vr = DoubleVector.fromArray(SPECIES, res, resOff + j);
+            vr.add(vb.mul(c)).intoArray(res, resOff + j);
+        }
+        for (; j < len; j++) {
+            res[resOff + j] += c * b[bOff + j];
+        }
+    }
+
+    static double sum(double[] a, int from, int to) {
+        int i = from;
+        int upper = from + SPECIES.loopBound(to - from);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        for (; i < upper; i += SPECIES.length()) {
+            acc = acc.add(DoubleVector.fromArray(SPECIES, a, i));
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+
+    static void scale(float[] a, float c, int from, int to) {
+        int i = from;
+        int upper = from + FLOAT_SPECIES.loopBound(to - from);
+        for (; i < upper; i += FLOAT_SPECIES.length()) {
+            FloatVector.fromArray(FLOAT_SPECIES, a, i).mul(c).intoArray(a, i);
+        }
+        for (; i < to; i++) {
+            a[i] *= c;
+        }
+    }
+
+    static void add(float[] a, float[] b, int from, int to) {
+        int i = from;
+        int upper = from + FLOAT_SPECIES.loopBound(to - from);
+        for (; i < upper; i += FLOAT_SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+            va.add(FloatVector.fromArray(FLOAT_SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < to; i++) {
+            a[i] += b[i];
+        }
+    }
+
+    static void sub(float[] a, float[] b, int from, int to) {
+        int i = from;
+        int upper = from + FLOAT_SPECIES.loopBound(to - from);
+        for (; i < upper; i += FLOAT_SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, i);
+            va.sub(FloatVector.fromArray(FLOAT_SPECIES, b, i)).intoArray(a, i);
+        }
+        for (; i < to; i++) {
+            a[i] -= b[i];
+        }
+    }
+
+    /**
+     * Float version of {@link #axpy(double, double[], int, double[], int, int)}.
+     */
+    static void axpy(float c, float[] b, int bOff, float[] res, int resOff, int len) {
+        int j = 0;
+        int upper = FLOAT_SPECIES.loopBound(len);
+        for (; j < upper; j += FLOAT_SPECIES.length()) {
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOff + j);
+            FloatVector vr = FloatVector.fromArray(FLOAT_SPECIES, res, resOff + j);
+            vr.add(vb.mul(c)).intoArray(res, resOff + j);
+        }
+        for (; j < len; j++) {
+            res[resOff + j] += c * b[bOff + j];
+        }
+    }
+
+    static float sum(float[] a, int from, int to) {
+        int i = from;
+        int upper = from + FLOAT_SPECIES.loopBound(to - from);
+        FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+        for (; i < upper; i += FLOAT_SPECIES.length()) {
+            acc = acc.add(FloatVector.fromArray(FLOAT_SPECIES, a, i));
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            sum += a[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,537 @@
+package libj.math.transform.d2;
+
+import java.util.Arrays;
+import libj.math.Const;
+import libj.math.FloatMatrix;
+import libj.math.FloatSqMatrix;
+import libj.math.Matrix;
+import libj.math.MatrixExecutor;
+import libj.math.SqMatrix;
+
+/**
+ * A fixed-size 3 x 3 matrix for transformations in 2-dimensional space. The
+ * elements are stored in separate fields, so all operations are unrolled and
+ * none of them allocate.
+ * <br>
+ * Angles are given in degrees, as in RotationMatrix. Rotations, translations
+ * and scalings applied to a Matrix3 are multiplied on the right-hand side,
+ * that is, m.rotate(a) is the same as [m] = [m] x [RotationMatrix(a)].
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see RotationMatrix
+ */
+public class Matrix3 {
+
+    /**
+     * Approximate work per transformed point, in multiply-adds, used when
+     * deciding whether to split a batch.
+     */
+    private static final long WORK_PER_POINT = 4;
+
+    public double m11, m12, m13;
+    public double m21, m22, m23;
+    public double m31, m32, m33;
+
+    /**
+     * Creates a new identity matrix.
+     */
+    public Matrix3() {
+        loadIdentity();
+    }
+
+    /**
+     * Creates a copy of another Matrix3.
+     * @param other
+     */
+    public Matrix3(Matrix3 other) {
+        set(other);
+    }
+
+    /**
+     * Creates a Matrix3 holding the same elements as a general 3 x 3 matrix.
+     * @param other
+     */
+    public Matrix3(Matrix other) {
+        set(other);
+    }
+
+    /**
+     * Sets this matrix to the identity matrix.
+     * @return this matrix.
+     */
+    public Matrix3 loadIdentity() {
+        m11 = 1; m12 = 0; m13 = 0;
+        m21 = 0; m22 = 1; m23 = 0;
+        m31 = 0; m32 = 0; m33 = 1;
+        return this;
+    }
+
+    /**
+     * Copies all elements from another Matrix3.
+     * @param o
+     * @return this matrix.
+     */
+    public Matrix3 set(Matrix3 o) {
+        m11 = o.m11; m12 = o.m12; m13 = o.m13;
+        m21 = o.m21; m22 = o.m22; m23 = o.m23;
+        m31 = o.m31; m32 = o.m32; m33 = o.m33;
+        return this;
+    }
+
+    /**
+     * Copies all elements from a general 3 x 3 matrix.
+     * @param o
+     * @return this matrix.
+     */
+    public Matrix3 set(Matrix o) {
+        if (o.rows() != 3 || o.cols() != 3) {
+            throw new IllegalArgumentException("Matrix must be 3x3");
+        }
+
+        m11 = o.getElem(1, 1); m12 = o.getElem(1, 2); m13 = o.getElem(1, 3);
+        m21 = o.getElem(2, 1); m22 = o.getElem(2, 2); m23 = o.getElem(2, 3);
+        m31 = o.getElem(3, 1); m32 = o.getElem(3, 2); m33 = o.getElem(3, 3);
+        return this;
+    }
+
+    /**
+     * Copies all elements from a single-precision 3x3 matrix.
+     * @param o
+     * @return this matrix.
+     */
+    public Matrix3 set(FloatMatrix o) {
+        if (o.rows() != 3 || o.cols() != 3) {
+            throw new IllegalArgumentException("Matrix must be 3x3");
+        }
+
+        m11 = o.getElem(1, 1); m12 = o.getElem(1, 2); m13 = o.getElem(1, 3);
+        m21 = o.getElem(2, 1); m22 = o.getElem(2, 2); m23 = o.getElem(2, 3);
+        m31 = o.getElem(3, 1); m32 = o.getElem(3, 2); m33 = o.getElem(3, 3);
+        return this;
+    }
+
+    /**
+     * Returns the value of the element in the given row and column.
+     * @param row
+     * @param col
+     * @return
+     */
+    public double getElem(int row, int col) {
+        switch ((row - 1) * 3 + (col - 1)) {
+            case 0: return m11;
+            case 1: return m12;
+            case 2: return m13;
+            case 3: return m21;
+            case 4: return m22;
+            case 5: return m23;
+            case 6: return m31;
+            case 7: return m32;
+            case 8: return m33;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Writes the elements of this matrix, row-first, into an array.
+     * @param dest
+     * @param offset Index in dest to write the first element to.
+     */
+    public void toArray(double[] dest, int offset) {
+        dest[offset] = m11; dest[offset + 1] = m12; dest[offset + 2] = m13;
+        dest[offset + 3] = m21; dest[offset + 4] = m22; dest[offset + 5] = m23;
+        dest[offset + 6] = m31; dest[offset + 7] = m32; dest[offset + 8] = m33;
+    }
+
+    /**
+     * Returns a general 3 x 3 matrix holding the same elements as this matrix.
+     * @return
+     */
+    public SqMatrix toSqMatrix() {
+        SqMatrix res = new SqMatrix(3);
+        double[] elems = new double[9];
+        toArray(elems, 0);
+        res.setAll(elems);
+        return res;
+    }
+
+    /**
+     * Writes the elements of this matrix, row-first and rounded to float,
+     * into an array.
+     * @param dest
+     * @param offset Index in dest to write the first element to.
+     */
+    public void toArray(float[] dest, int offset) {
+        dest[offset] = (float) m11; dest[offset + 1] = (float) m12; dest[offset + 2] = (float) m13;
+        dest[offset + 3] = (float) m21; dest[offset + 4] = (float) m22; dest[offset + 5] = (float) m23;
+        dest[offset + 6] = (float) m31; dest[offset + 7] = (float) m32; dest[offset + 8] = (float) m33;
+    }
+
+    /**
+     * Returns a single-precision 3 x 3 matrix holding the elements of this
+     * matrix rounded to float.
+     * @return
+     */
+    public FloatSqMatrix toFloatSqMatrix() {
+        FloatSqMatrix res = new FloatSqMatrix(3);
+        float[] elems = new float[9];
+        toArray(elems, 0);
+        res.setAll(elems);
+        return res;
+    }
+
+    /**
+     * Multiplies this matrix by another matrix, storing the result in dest.
+     * Multiplication order is: [dest] = [this] x [other]. Dest may be the same
+     * object as this matrix or the other matrix.
+     * @param other
+     * @param dest
+     * @return dest.
+     */
+    public Matrix3 mulInto(Matrix3 other, Matrix3 dest) {
+        double r11 = m11 * other.m11 + m12 * other.m21 + m13 * other.m31;
+        double r12 = m11 * other.m12 + m12 * other.m22 + m13 * other.m32;
+        double r13 = m11 * other.m13 + m12 * other.m23 + m13 * other.m33;
+        double r21 = m21 * other.m11 + m22 * other.m21 + m23 * other.m31;
+        double r22 = m21 * other.m12 + m22 * other.m22 + m23 * other.m32;
+        double r23 = m21 * other.m13 + m22 * other.m23 + m23 * other.m33;
+        double r31 = m31 * other.m11 + m32 * other.m21 + m33 * other.m31;
+        double r32 = m31 * other.m12 + m32 * other.m22 + m33 * other.m32;
+        double r33 = m31 * other.m13 + m32 * other.m23 + m33 * other.m33;
+
+        dest.m11 = r11; dest.m12 = r12; dest.m13 = r13;
+        dest.m21 = r21; dest.m22 = r22; dest.m23 = r23;
+        dest.m31 = r31; dest.m32 = r32; dest.m33 = r33;
+        return dest;
+    }
+
+    /**
+     * Multiplies this matrix by another matrix, changing this matrix's
+     * elements.
+     * Multiplication order is: [this] = [this] x [other]
+     * @param other
+     * @return this matrix.
+     */
+    public Matrix3 mul(Matrix3 other) {
+        return mulInto(other, this);
+    }
+
+    /**
+     * Rotates this matrix around the origin.
+     * Same as [this] = [this] x [RotationMatrix(angle)]
+     * @param angle Angle in degrees.
+     * @return this matrix.
+     */
+    public Matrix3 rotate(double angle) {
+        double rad = angle * Const.degToRad;
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+
+        double t;
+        t = m11; m11 = t * c + m12 * s; m12 = m12 * c - t * s;
+        t = m21; m21 = t * c + m22 * s; m22 = m22 * c - t * s;
+        t = m31; m31 = t * c + m32 * s; m32 = m32 * c - t * s;
+        return this;
+    }
+
+    /**
+     * Translates this matrix.
+     * @param x
+     * @param y
+     * @return this matrix.
+     */
+    public Matrix3 translate(double x, double y) {
+        m13 += m11 * x + m12 * y;
+        m23 += m21 * x + m22 * y;
+        m33 += m31 * x + m32 * y;
+        return this;
+    }
+
+    /**
+     * Scales this matrix along each axis.
+     * Same as [this] = [this] x [diag(x, y, 1)]
+     * @param x
+     * @param y
+     * @return this matrix.
+     */
+    public Matrix3 scale(double x, double y) {
+        m11 *= x; m21 *= x; m31 *= x;
+        m12 *= y; m22 *= y; m32 *= y;
+        return this;
+    }
+
+    /**
+     * Transforms packed xy points in place. The array holds x and y for
+     * each point directly after each other.
+     * @param coords
+     */
+    public void transformPoints(double[] coords) {
+        transformPoints(coords, 0, 2, coords, 0, 2, coords.length / 2);
+    }
+
+    /**
+     * Transforms xy points, treating each as [x y 1], and writes the
+     * resulting x and y to dest. The bottom row of this matrix is assumed
+     * to be [0 0 1]. Src and dest may be the same array, as long as both use
+     * the same offset and stride.
+     * @param src
+     * @param srcOffset Index of the first point's x in src.
+     * @param srcStride Distance between consecutive points in src, at least 2.
+     * @param dest
+     * @param destOffset Index of the first point's x in dest.
+     * @param destStride Distance between consecutive points in dest, at least 2.
+     * @param count Number of points.
+     */
+    public void transformPoints(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count) {
+        transformPoints(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Transforms xy points like
+     * {@link #transformPoints(double[], int, int, double[], int, int, int)},
+     * splitting the work with the given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     */
+    public void transformPoints(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        checkRange(src.length, srcOffset, srcStride, count);
+        checkRange(dest.length, destOffset, destStride, count);
+        exec.forRange(count, WORK_PER_POINT, (from, to) ->
+            transform(src, srcOffset, srcStride, dest, destOffset, destStride, from, to, true));
+    }
+
+    /**
+     * Transforms packed xy direction vectors in place. Vectors are treated
+     * as [x y 0], so they are not affected by translation.
+     * @param coords
+     */
+    public void transformVectors(double[] coords) {
+        transformVectors(coords, 0, 2, coords, 0, 2, coords.length / 2);
+    }
+
+    /**
+     * Transforms xy direction vectors, treating each as [x y 0], and writes
+     * the resulting x and y to dest. Src and dest may be the same array, as
+     * long as both use the same offset and stride.
+     * @param src
+     * @param srcOffset Index of the first vector's x in src.
+     * @param srcStride Distance between consecutive vectors in src, at least 2.
+     * @param dest
+     * @param destOffset Index of the first vector's x in dest.
+     * @param destStride Distance between consecutive vectors in dest, at least 2.
+     * @param count Number of vectors.
+     */
+    public void transformVectors(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count) {
+        transformVectors(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Transforms xy direction vectors like
+     * {@link #transformVectors(double[], int, int, double[], int, int, int)},
+     * splitting the work with the given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     */
+    public void transformVectors(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        checkRange(src.length, srcOffset, srcStride, count);
+        checkRange(dest.length, destOffset, destStride, count);
+        exec.forRange(count, WORK_PER_POINT, (from, to) ->
+            transform(src, srcOffset, srcStride, dest, destOffset, destStride, from, to, false));
+    }
+
+    /**
+     * Transforms packed xy points in place.
+     * @param coords
+     * @see #transformPoints(double[])
+     */
+    public void transformPoints(float[] coords) {
+        transformPoints(coords, 0, 2, coords, 0, 2, coords.length / 2);
+    }
+
+    /**
+     * Transforms xy points stored as floats. The calculation is done in
+     * double precision.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @see #transformPoints(double[], int, int, double[], int, int, int)
+     */
+    public void transformPoints(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int count) {
+        transformPoints(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Transforms xy points stored as floats, splitting the work with the
+     * given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     * @see #transformPoints(double[], int, int, double[], int, int, int, libj.math.MatrixExecutor)
+     */
+    public void transformPoints(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        checkRange(src.length, srcOffset, srcStride, count);
+        checkRange(dest.length, destOffset, destStride, count);
+        exec.forRange(count, WORK_PER_POINT, (from, to) ->
+            transform(src, srcOffset, srcStride, dest, destOffset, destStride, from, to, true));
+    }
+
+    /**
+     * Transforms packed xy direction vectors in place.
+     * @param coords
+     * @see #transformVectors(double[])
+     */
+    public void transformVectors(float[] coords) {
+        transformVectors(coords, 0, 2, coords, 0, 2, coords.length / 2);
+    }
+
+    /**
+     * Transforms xy direction vectors stored as floats. The calculation is
+     * done in double precision.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @see #transformVectors(double[], int, int, double[], int, int, int)
+     */
+    public void transformVectors(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int count) {
+        transformVectors(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Transforms xy direction vectors stored as floats, splitting the work
+     * with the given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     * @see #transformVectors(double[], int, int, double[], int, int, int, libj.math.MatrixExecutor)
+     */
+    public void transformVectors(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        checkRange(src.length, srcOffset, srcStride, count);
+        checkRange(dest.length, destOffset, destStride, count);
+        exec.forRange(count, WORK_PER_POINT, (from, to) ->
+            transform(src, srcOffset, srcStride, dest, destOffset, destStride, from, to, false));
+    }
+
+    private void transform(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int from, int to, boolean point) {
+        double w = point ? 1 : 0;
+        double t1 = m13 * w, t2 = m23 * w;
+        int s = srcOffset + from * srcStride;
+        int d = destOffset + from * destStride;
+        for (int i = from; i < to; i++, s += srcStride, d += destStride) {
+            double x = src[s], y = src[s + 1];
+            dest[d] = m11 * x + m12 * y + t1;
+            dest[d + 1] = m21 * x + m22 * y + t2;
+        }
+    }
+
+    private void transform(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int from, int to, boolean point) {
+        double w = point ? 1 : 0;
+        double t1 = m13 * w, t2 = m23 * w;
+        int s = srcOffset + from * srcStride;
+        int d = destOffset + from * destStride;
+        for (int i = from; i < to; i++, s += srcStride, d += destStride) {
+            double x = src[s], y = src[s + 1];
+            dest[d] = (float) (m11 * x + m12 * y + t1);
+            dest[d + 1] = (float) (m21 * x + m22 * y + t2);
+        }
+    }
+
+    /**
+     * Checks that count xy pairs starting at offset and spaced stride
+     * apart fit in an array of the given length.
+     */
+    private static void checkRange(int length, int offset, int stride, int count) {
+        if (stride < 2) {
+            throw new IllegalArgumentException("Stride can't be less than 2");
+        }
+        if (offset < 0 || count < 0
+                || (count > 0 && offset + (long) (count - 1) * stride + 2 > length)) {
+            throw new IllegalArgumentException("Coordinates are not within array");
+        }
+    }
+
+    /**
+     * Checks if this matrix is equal to another Matrix3. They are equal if and
+     * only if each element matches exactly.
+     * @param other
+     * @return
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Matrix3)) {
+            return false;
+        }
+
+        if (this == other) {
+            return true;
+        }
+
+        Matrix3 o = (Matrix3) other;
+        return eq(m11, o.m11) && eq(m12, o.m12) && eq(m13, o.m13)
+            && eq(m21, o.m21) && eq(m22, o.m22) && eq(m23, o.m23)
+            && eq(m31, o.m31) && eq(m32, o.m32) && eq(m33, o.m33);
+    }
+
+    private static boolean eq(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    /**
+     * Generates a hash code for this matrix object.
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        double[] elems = new double[9];
+        toArray(elems, 0);
+        return Arrays.hashCode(elems);
+    }
+
+    /**
+     * Returns this matrix object as a string, including the hash code. <br>
+     * Note: Does not include element values. To pretty-print a Matrix3,
+     * convert it with toSqMatrix() first.
+     * @return
+     */
+    @Override
+    public String toString() {
+        return "Matrix3@" + Integer.toHexString(hashCode());
+    }
+}
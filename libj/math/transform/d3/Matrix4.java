@@ -0,0 +1,638 @@
+package libj.math.transform.d3;
+
+import java.util.Arrays;
+import libj.math.Const;
+import libj.math.FloatMatrix;
+import libj.math.FloatSqMatrix;
+import libj.math.Matrix;
+import libj.math.MatrixExecutor;
+import libj.math.SqMatrix;
+
+/**
+ * A fixed-size 4 x 4 matrix for transformations in 3-dimensional space. The
+ * elements are stored in separate fields, so all operations are unrolled and
+ * none of them allocate. Compared to composing RotationXMatrix and friends
+ * through Matrix.mul, this is intended for hot loops which compose many
+ * transforms.
+ * <br>
+ * Angles are given in degrees, as in the other transformation matrices.
+ * Rotations, translations and scalings applied to a Matrix4 are multiplied
+ * on the right-hand side, that is, m.rotateX(a) is the same as
+ * [m] = [m] x [RotationXMatrix(a)].
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see RotationXMatrix
+ * @see TranslationMatrix
+ */
+public class Matrix4 {
+
+    /**
+     * Approximate work per transformed point, in multiply-adds, used when
+     * deciding whether to split a batch.
+     */
+    private static final long WORK_PER_POINT = 9;
+
+    public double m11, m12, m13, m14;
+    public double m21, m22, m23, m24;
+    public double m31, m32, m33, m34;
+    public double m41, m42, m43, m44;
+
+    /**
+     * Creates a new identity matrix.
+     */
+    public Matrix4() {
+        loadIdentity();
+    }
+
+    /**
+     * Creates a copy of another Matrix4.
+     * @param other
+     */
+    public Matrix4(Matrix4 other) {
+        set(other);
+    }
+
+    /**
+     * Creates a Matrix4 holding the same elements as a general 4 x 4 matrix.
+     * @param other
+     */
+    public Matrix4(Matrix other) {
+        set(other);
+    }
+
+    /**
+     * Sets this matrix to the identity matrix.
+     * @return this matrix.
+     */
+    public Matrix4 loadIdentity() {
+        m11 = 1; m12 = 0; m13 = 0; m14 = 0;
+        m21 = 0; m22 = 1; m23 = 0; m24 = 0;
+        m31 = 0; m32 = 0; m33 = 1; m34 = 0;
+        m41 = 0; m42 = 0; m43 = 0; m44 = 1;
+        return this;
+    }
+
+    /**
+     * Copies all elements from another Matrix4.
+     * @param o
+     * @return this matrix.
+     */
+    public Matrix4 set(Matrix4 o) {
+        m11 = o.m11; m12 = o.m12; m13 = o.m13; m14 = o.m14;
+        m21 = o.m21; m22 = o.m22; m23 = o.m23; m24 = o.m24;
+        m31 = o.m31; m32 = o.m32; m33 = o.m33; m34 = o.m34;
+        m41 = o.m41; m42 = o.m42; m43 = o.m43; m44 = o.m44;
+        return this;
+    }
+
+    /**
+     * Copies all elements from a general 4 x 4 matrix.
+     * @param o
+     * @return this matrix.
+     */
+    public Matrix4 set(Matrix o) {
+        if (o.rows() != 4 || o.cols() != 4) {
+            throw new IllegalArgumentException("Matrix must be 4x4");
+        }
+
+        m11 = o.getElem(1, 1); m12 = o.getElem(1, 2); m13 = o.getElem(1, 3); m14 = o.getElem(1, 4);
+        m21 = o.getElem(2, 1); m22 = o.getElem(2, 2); m23 = o.getElem(2, 3); m24 = o.getElem(2, 4);
+        m31 = o.getElem(3, 1); m32 = o.getElem(3, 2); m33 = o.getElem(3, 3); m34 = o.getElem(3, 4);
+        m41 = o.getElem(4, 1); m42 = o.getElem(4, 2); m43 = o.getElem(4, 3); m44 = o.getElem(4, 4);
+        return this;
+    }
+
+    /**
+     * Copies all elements from a single-precision 4x4 matrix.
+     * @param o
+     * @return this matrix.
+     */
+    public Matrix4 set(FloatMatrix o) {
+        if (o.rows() != 4 || o.cols() != 4) {
+            throw new IllegalArgumentException("Matrix must be 4x4");
+        }
+
+        m11 = o.getElem(1, 1); m12 = o.getElem(1, 2); m13 = o.getElem(1, 3); m14 = o.getElem(1, 4);
+        m21 = o.getElem(2, 1); m22 = o.getElem(2, 2); m23 = o.getElem(2, 3); m24 = o.getElem(2, 4);
+        m31 = o.getElem(3, 1); m32 = o.getElem(3, 2); m33 = o.getElem(3, 3); m34 = o.getElem(3, 4);
+        m41 = o.getElem(4, 1); m42 = o.getElem(4, 2); m43 = o.getElem(4, 3); m44 = o.getElem(4, 4);
+        return this;
+    }
+
+    /**
+     * Returns the value of the element in the given row and column.
+     * @param row
+     * @param col
+     * @return
+     */
+    public double getElem(int row, int col) {
+        switch ((row - 1) * 4 + (col - 1)) {
+            case 0: return m11;
+            case 1: return m12;
+            case 2: return m13;
+            case 3: return m14;
+            case 4: return m21;
+            case 5: return m22;
+            case 6: return m23;
+            case 7: return m24;
+            case 8: return m31;
+            case 9: return m32;
+            case 10: return m33;
+            case 11: return m34;
+            case 12: return m41;
+            case 13: return m42;
+            case 14: return m43;
+            case 15: return m44;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Writes the elements of this matrix, row-first, into an array.
+     * @param dest
+     * @param offset Index in dest to write the first element to.
+     */
+    public void toArray(double[] dest, int offset) {
+        dest[offset] = m11; dest[offset + 1] = m12; dest[offset + 2] = m13; dest[offset + 3] = m14;
+        dest[offset + 4] = m21; dest[offset + 5] = m22; dest[offset + 6] = m23; dest[offset + 7] = m24;
+        dest[offset + 8] = m31; dest[offset + 9] = m32; dest[offset + 10] = m33; dest[offset + 11] = m34;
+        dest[offset + 12] = m41; dest[offset + 13] = m42; dest[offset + 14] = m43; dest[offset + 15] = m44;
+    }
+
+    /**
+     * Returns a general 4 x 4 matrix holding the same elements as this matrix.
+     * @return
+     */
+    public SqMatrix toSqMatrix() {
+        SqMatrix res = new SqMatrix(4);
+        double[] elems = new double[16];
+        toArray(elems, 0);
+        res.setAll(elems);
+        return res;
+    }
+
+    /**
+     * Writes the elements of this matrix, row-first and rounded to float,
+     * into an array.
+     * @param dest
+     * @param offset Index in dest to write the first element to.
+     */
+    public void toArray(float[] dest, int offset) {
+        dest[offset] = (float) m11; dest[offset + 1] = (float) m12; dest[offset + 2] = (float) m13; dest[offset + 3] = (float) m14;
+        dest[offset + 4] = (float) m21; dest[offset + 5] = (float) m22; dest[offset + 6] = (float) m23; dest[offset + 7] = (float) m24;
+        dest[offset + 8] = (float) m31; dest[offset + 9] = (float) m32; dest[offset + 10] = (float) m33; dest[offset + 11] = (float) m34;
+        dest[offset + 12] = (float) m41; dest[offset + 13] = (float) m42; dest[offset + 14] = (float) m43; dest[offset + 15] = (float) m44;
+    }
+
+    /**
+     * Returns a single-precision 4 x 4 matrix holding the elements of this
+     * matrix rounded to float.
+     * @return
+     */
+    public FloatSqMatrix toFloatSqMatrix() {
+        FloatSqMatrix res = new FloatSqMatrix(4);
+        float[] elems = new float[16];
+        toArray(elems, 0);
+        res.setAll(elems);
+        return res;
+    }
+
+    /**
+     * Multiplies this matrix by another matrix, storing the result in dest.
+     * Multiplication order is: [dest] = [this] x [other]. Dest may be the same
+     * object as this matrix or the other matrix.
+     * @param other
+     * @param dest
+     * @return dest.
+     */
+    public Matrix4 mulInto(Matrix4 other, Matrix4 dest) {
+        double r11 = m11 * other.m11 + m12 * other.m21 + m13 * other.m31 + m14 * other.m41;
+        double r12 = m11 * other.m12 + m12 * other.m22 + m13 * other.m32 + m14 * other.m42;
+        double r13 = m11 * other.m13 + m12 * other.m23 + m13 * other.m33 + m14 * other.m43;
+        double r14 = m11 * other.m14 + m12 * other.m24 + m13 * other.m34 + m14 * other.m44;
+        double r21 = m21 * other.m11 + m22 * other.m21 + m23 * other.m31 + m24 * other.m41;
+        double r22 = m21 * other.m12 + m22 * other.m22 + m23 * other.m32 + m24 * other.m42;
+        double r23 = m21 * other.m13 + m22 * other.m23 + m23 * other.m33 + m24 * other.m43;
+        double r24 = m21 * other.m14 + m22 * other.m24 + m23 * other.m34 + m24 * other.m44;
+        double r31 = m31 * other.m11 + m32 * other.m21 + m33 * other.m31 + m34 * other.m41;
+        double r32 = m31 * other.m12 + m32 * other.m22 + m33 * other.m32 + m34 * other.m42;
+        double r33 = m31 * other.m13 + m32 * other.m23 + m33 * other.m33 + m34 * other.m43;
+        double r34 = m31 * other.m14 + m32 * other.m24 + m33 * other.m34 + m34 * other.m44;
+        double r41 = m41 * other.m11 + m42 * other.m21 + m43 * other.m31 + m44 * other.m41;
+        double r42 = m41 * other.m12 + m42 * other.m22 + m43 * other.m32 + m44 * other.m42;
+        double r43 = m41 * other.m13 + m42 * other.m23 + m43 * other.m33 + m44 * other.m43;
+        double r44 = m41 * other.m14 + m42 * other.m24 + m43 * other.m34 + m44 * other.m44;
+
+        dest.m11 = r11; dest.m12 = r12; dest.m13 = r13; dest.m14 = r14;
+        dest.m21 = r21; dest.m22 = r22; dest.m23 = r23; dest.m24 = r24;
+        dest.m31 = r31; dest.m32 = r32; dest.m33 = r33; dest.m34 = r34;
+        dest.m41 = r41; dest.m42 = r42; dest.m43 = r43; dest.m44 = r44;
+        return dest;
+    }
+
+    /**
+     * Multiplies this matrix by another matrix, changing this matrix's
+     * elements.
+     * Multiplication order is: [this] = [this] x [other]
+     * @param other
+     * @return this matrix.
+     */
+    public Matrix4 mul(Matrix4 other) {
+        return mulInto(other, this);
+    }
+
+    /**
+     * Rotates this matrix around the x axis.
+     * Same as [this] = [this] x [RotationXMatrix(angle)]
+     * @param angle Angle in degrees.
+     * @return this matrix.
+     */
+    public Matrix4 rotateX(double angle) {
+        double rad = angle * Const.degToRad;
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+
+        double t;
+        t = m12; m12 = t * c + m13 * s; m13 = m13 * c - t * s;
+        t = m22; m22 = t * c + m23 * s; m23 = m23 * c - t * s;
+        t = m32; m32 = t * c + m33 * s; m33 = m33 * c - t * s;
+        t = m42; m42 = t * c + m43 * s; m43 = m43 * c - t * s;
+        return this;
+    }
+
+    /**
+     * Rotates this matrix around the y axis.
+     * Same as [this] = [this] x [RotationYMatrix(angle)]
+     * @param angle Angle in degrees.
+     * @return this matrix.
+     */
+    public Matrix4 rotateY(double angle) {
+        double rad = angle * Const.degToRad;
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+
+        double t;
+        t = m11; m11 = t * c - m13 * s; m13 = t * s + m13 * c;
+        t = m21; m21 = t * c - m23 * s; m23 = t * s + m23 * c;
+        t = m31; m31 = t * c - m33 * s; m33 = t * s + m33 * c;
+        t = m41; m41 = t * c - m43 * s; m43 = t * s + m43 * c;
+        return this;
+    }
+
+    /**
+     * Rotates this matrix around the z axis.
+     * Same as [this] = [this] x [RotationZMatrix(angle)]
+     * @param angle Angle in degrees.
+     * @return this matrix.
+     */
+    public Matrix4 rotateZ(double angle) {
+        double rad = angle * Const.degToRad;
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+
+        double t;
+        t = m11; m11 = t * c + m12 * s; m12 = m12 * c - t * s;
+        t = m21; m21 = t * c + m22 * s; m22 = m22 * c - t * s;
+        t = m31; m31 = t * c + m32 * s; m32 = m32 * c - t * s;
+        t = m41; m41 = t * c + m42 * s; m42 = m42 * c - t * s;
+        return this;
+    }
+
+    /**
+     * Rotates this matrix by the rotation of a quaternion.
+     * Same as [this] = [this] x [q.toMatrix4(new Matrix4())]
+     * @param q
+     * @return this matrix.
+     */
+    public Matrix4 rotate(Quaternion q) {
+        double s = 2 / (q.w * q.w + q.x * q.x + q.y * q.y + q.z * q.z);
+        double xs = q.x * s, ys = q.y * s, zs = q.z * s;
+        double wx = q.w * xs, wy = q.w * ys, wz = q.w * zs;
+        double xx = q.x * xs, xy = q.x * ys, xz = q.x * zs;
+        double yy = q.y * ys, yz = q.y * zs, zz = q.z * zs;
+        double r11 = 1 - (yy + zz), r12 = xy - wz, r13 = xz + wy;
+        double r21 = xy + wz, r22 = 1 - (xx + zz), r23 = yz - wx;
+        double r31 = xz - wy, r32 = yz + wx, r33 = 1 - (xx + yy);
+
+        double a, b, c;
+        a = m11; b = m12; c = m13;
+        m11 = a * r11 + b * r21 + c * r31; m12 = a * r12 + b * r22 + c * r32; m13 = a * r13 + b * r23 + c * r33;
+        a = m21; b = m22; c = m23;
+        m21 = a * r11 + b * r21 + c * r31; m22 = a * r12 + b * r22 + c * r32; m23 = a * r13 + b * r23 + c * r33;
+        a = m31; b = m32; c = m33;
+        m31 = a * r11 + b * r21 + c * r31; m32 = a * r12 + b * r22 + c * r32; m33 = a * r13 + b * r23 + c * r33;
+        a = m41; b = m42; c = m43;
+        m41 = a * r11 + b * r21 + c * r31; m42 = a * r12 + b * r22 + c * r32; m43 = a * r13 + b * r23 + c * r33;
+        return this;
+    }
+
+    /**
+     * Translates this matrix.
+     * Same as [this] = [this] x [TranslationMatrix(x, y, z)]
+     * @param x
+     * @param y
+     * @param z
+     * @return this matrix.
+     */
+    public Matrix4 translate(double x, double y, double z) {
+        m14 += m11 * x + m12 * y + m13 * z;
+        m24 += m21 * x + m22 * y + m23 * z;
+        m34 += m31 * x + m32 * y + m33 * z;
+        m44 += m41 * x + m42 * y + m43 * z;
+        return this;
+    }
+
+    /**
+     * Scales this matrix along each axis.
+     * Same as [this] = [this] x [diag(x, y, z, 1)]
+     * @param x
+     * @param y
+     * @param z
+     * @return this matrix.
+     */
+    public Matrix4 scale(double x, double y, double z) {
+        m11 *= x; m21 *= x; m31 *= x; m41 *= x;
+        m12 *= y; m22 *= y; m32 *= y; m42 *= y;
+        m13 *= z; m23 *= z; m33 *= z; m43 *= z;
+        return this;
+    }
+
+    /**
+     * Transforms packed xyz points in place. The array holds x, y and z for
+     * each point directly after each other.
+     * @param coords
+     */
+    public void transformPoints(double[] coords) {
+        transformPoints(coords, 0, 3, coords, 0, 3, coords.length / 3);
+    }
+
+    /**
+     * Transforms xyz points, treating each as [x y z 1], and writes the
+     * resulting x, y and z to dest. The bottom row of this matrix is assumed
+     * to be [0 0 0 1]. Src and dest may be the same array, as long as both
+     * use the same offset and stride.
+     * @param src
+     * @param srcOffset Index of the first point's x in src.
+     * @param srcStride Distance between consecutive points in src, at least 3.
+     * @param dest
+     * @param destOffset Index of the first point's x in dest.
+     * @param destStride Distance between consecutive points in dest, at least 3.
+     * @param count Number of points.
+     */
+    public void transformPoints(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count) {
+        transformPoints(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Transforms xyz points like
+     * {@link #transformPoints(double[], int, int, double[], int, int, int)},
+     * splitting the work with the given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     */
+    public void transformPoints(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        checkRange(src.length, srcOffset, srcStride, count);
+        checkRange(dest.length, destOffset, destStride, count);
+        exec.forRange(count, WORK_PER_POINT, (from, to) ->
+            transform(src, srcOffset, srcStride, dest, destOffset, destStride, from, to, true));
+    }
+
+    /**
+     * Transforms packed xyz direction vectors in place. Vectors are treated
+     * as [x y z 0], so they are not affected by translation.
+     * @param coords
+     */
+    public void transformVectors(double[] coords) {
+        transformVectors(coords, 0, 3, coords, 0, 3, coords.length / 3);
+    }
+
+    /**
+     * Transforms xyz direction vectors, treating each as [x y z 0], and writes
+     * the resulting x, y and z to dest. Src and dest may be the same array,
+     * as long as both use the same offset and stride.
+     * @param src
+     * @param srcOffset Index of the first vector's x in src.
+     * @param srcStride Distance between consecutive vectors in src, at least 3.
+     * @param dest
+     * @param destOffset Index of the first vector's x in dest.
+     * @param destStride Distance between consecutive vectors in dest, at least 3.
+     * @param count Number of vectors.
+     */
+    public void transformVectors(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count) {
+        transformVectors(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Transforms xyz direction vectors like
+     * {@link #transformVectors(double[], int, int, double[], int, int, int)},
+     * splitting the work with the given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     */
+    public void transformVectors(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        checkRange(src.length, srcOffset, srcStride, count);
+        checkRange(dest.length, destOffset, destStride, count);
+        exec.forRange(count, WORK_PER_POINT, (from, to) ->
+            transform(src, srcOffset, srcStride, dest, destOffset, destStride, from, to, false));
+    }
+
+    /**
+     * Transforms packed xyz points in place.
+     * @param coords
+     * @see #transformPoints(double[])
+     */
+    public void transformPoints(float[] coords) {
+        transformPoints(coords, 0, 3, coords, 0, 3, coords.length / 3);
+    }
+
+    /**
+     * Transforms xyz points stored as floats. The calculation is done in
+     * double precision.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @see #transformPoints(double[], int, int, double[], int, int, int)
+     */
+    public void transformPoints(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int count) {
+        transformPoints(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Transforms xyz points stored as floats, splitting the work with the
+     * given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     * @see #transformPoints(double[], int, int, double[], int, int, int, libj.math.MatrixExecutor)
+     */
+    public void transformPoints(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        checkRange(src.length, srcOffset, srcStride, count);
+        checkRange(dest.length, destOffset, destStride, count);
+        exec.forRange(count, WORK_PER_POINT, (from, to) ->
+            transform(src, srcOffset, srcStride, dest, destOffset, destStride, from, to, true));
+    }
+
+    /**
+     * Transforms packed xyz direction vectors in place.
+     * @param coords
+     * @see #transformVectors(double[])
+     */
+    public void transformVectors(float[] coords) {
+        transformVectors(coords, 0, 3, coords, 0, 3, coords.length / 3);
+    }
+
+    /**
+     * Transforms xyz direction vectors stored as floats. The calculation is
+     * done in double precision.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @see #transformVectors(double[], int, int, double[], int, int, int)
+     */
+    public void transformVectors(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int count) {
+        transformVectors(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Transforms xyz direction vectors stored as floats, splitting the work
+     * with the given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     * @see #transformVectors(double[], int, int, double[], int, int, int, libj.math.MatrixExecutor)
+     */
+    public void transformVectors(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        checkRange(src.length, srcOffset, srcStride, count);
+        checkRange(dest.length, destOffset, destStride, count);
+        exec.forRange(count, WORK_PER_POINT, (from, to) ->
+            transform(src, srcOffset, srcStride, dest, destOffset, destStride, from, to, false));
+    }
+
+    private void transform(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int from, int to, boolean point) {
+        double w = point ? 1 : 0;
+        double t1 = m14 * w, t2 = m24 * w, t3 = m34 * w;
+        int s = srcOffset + from * srcStride;
+        int d = destOffset + from * destStride;
+        for (int i = from; i < to; i++, s += srcStride, d += destStride) {
+            double x = src[s], y = src[s + 1], z = src[s + 2];
+            dest[d] = m11 * x + m12 * y + m13 * z + t1;
+            dest[d + 1] = m21 * x + m22 * y + m23 * z + t2;
+            dest[d + 2] = m31 * x + m32 * y + m33 * z + t3;
+        }
+    }
+
+    private void transform(float[] src, int srcOffset, int srcStride,
+            float[] dest, int destOffset, int destStride, int from, int to, boolean point) {
+        double w = point ? 1 : 0;
+        double t1 = m14 * w, t2 = m24 * w, t3 = m34 * w;
+        int s = srcOffset + from * srcStride;
+        int d = destOffset + from * destStride;
+        for (int i = from; i < to; i++, s += srcStride, d += destStride) {
+            double x = src[s], y = src[s + 1], z = src[s + 2];
+            dest[d] = (float) (m11 * x + m12 * y + m13 * z + t1);
+            dest[d + 1] = (float) (m21 * x + m22 * y + m23 * z + t2);
+            dest[d + 2] = (float) (m31 * x + m32 * y + m33 * z + t3);
+        }
+    }
+
+    /**
+     * Checks that count xyz triples starting at offset and spaced stride
+     * apart fit in an array of the given length.
+     */
+    static void checkRange(int length, int offset, int stride, int count) {
+        if (stride < 3) {
+            throw new IllegalArgumentException("Stride can't be less than 3");
+        }
+        if (offset < 0 || count < 0
+                || (count > 0 && offset + (long) (count - 1) * stride + 3 > length)) {
+            throw new IllegalArgumentException("Coordinates are not within array");
+        }
+    }
+
+    /**
+     * Checks if this matrix is equal to another Matrix4. They are equal if and
+     * only if each element matches exactly.
+     * @param other
+     * @return
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Matrix4)) {
+            return false;
+        }
+
+        if (this == other) {
+            return true;
+        }
+
+        Matrix4 o = (Matrix4) other;
+        return eq(m11, o.m11) && eq(m12, o.m12) && eq(m13, o.m13) && eq(m14, o.m14)
+            && eq(m21, o.m21) && eq(m22, o.m22) && eq(m23, o.m23) && eq(m24, o.m24)
+            && eq(m31, o.m31) && eq(m32, o.m32) && eq(m33, o.m33) && eq(m34, o.m34)
+            && eq(m41, o.m41) && eq(m42, o.m42) && eq(m43, o.m43) && eq(m44, o.m44);
+    }
+
+    private static boolean eq(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    /**
+     * Generates a hash code for this matrix object.
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        double[] elems = new double[16];
+        toArray(elems, 0);
+        return Arrays.hashCode(elems);
+    }
+
+    /**
+     * Returns this matrix object as a string, including the hash code. <br>
+     * Note: Does not include element values. To pretty-print a Matrix4,
+     * convert it with toSqMatrix() first.
+     * @return
+     */
+    @Override
+    public String toString() {
+        return "Matrix4@" + Integer.toHexString(hashCode());
+    }
+}
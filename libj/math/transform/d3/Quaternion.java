@@ -0,0 +1,511 @@
+package libj.math.transform.d3;
+
+import libj.math.Const;
+import libj.math.MatrixExecutor;
+
+/**
+ * A quaternion w + xi + yj + zk, used to represent rotations in
+ * 3-dimensional space. Compared to a rotation matrix, a quaternion takes 4
+ * numbers instead of 9 or 16, composes with 16 multiplications instead of 64,
+ * and can be interpolated smoothly with {@link #slerp(libj.math.transform.d3.Quaternion, double)}.
+ * Like {@link Matrix4}, the components are public fields, and no operation
+ * allocates, so quaternions can be reused in hot loops.
+ * <br>
+ * Angles are given in degrees, as in the transformation matrices, and every
+ * sine and cosine is computed only once. Rotations are composed the same way
+ * as Matrix4: q.mul(r) rotates by r first, then by q, and q.rotateX(a)
+ * corresponds to m.rotateX(a), so a quaternion and a matrix which are
+ * updated with the same calls describe the same rotation.
+ * <br>
+ * Methods rotating vectors or converting to matrices expect a unit
+ * quaternion, which all rotations built here are. Composing many rotations
+ * slowly lets rounding errors move the length away from one, which
+ * {@link #normalize()} corrects.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ * @see Matrix4#rotate(libj.math.transform.d3.Quaternion)
+ */
+public class Quaternion {
+
+    /**
+     * Approximate work per rotated vector, in multiply-adds, used when
+     * deciding whether to split a batch.
+     */
+    private static final long WORK_PER_VECTOR = 15;
+
+    /**
+     * Above this dot product, slerp falls back to normalized linear
+     * interpolation, since the angle is too small for its division by the
+     * sine of the angle to be accurate.
+     */
+    private static final double SLERP_THRESHOLD = 0.9995;
+
+    /**
+     * Below this cosine of the angle around y, getEuler treats the rotation
+     * as gimbal locked, since the elements giving the angle around z are
+     * then only rounding errors.
+     */
+    private static final double GIMBAL_TOLERANCE = 1e-12;
+
+    public double w, x, y, z;
+
+    /**
+     * Creates a new identity quaternion, which is no rotation.
+     */
+    public Quaternion() {
+        w = 1;
+    }
+
+    /**
+     * Creates a quaternion with the given components.
+     * @param w
+     * @param x
+     * @param y
+     * @param z
+     */
+    public Quaternion(double w, double x, double y, double z) {
+        set(w, x, y, z);
+    }
+
+    /**
+     * Creates a copy of another quaternion.
+     * @param other
+     */
+    public Quaternion(Quaternion other) {
+        set(other);
+    }
+
+    /**
+     * Sets this quaternion to the identity, which is no rotation.
+     * @return this quaternion.
+     */
+    public Quaternion loadIdentity() {
+        return set(1, 0, 0, 0);
+    }
+
+    /**
+     * Sets the components of this quaternion.
+     * @param w
+     * @param x
+     * @param y
+     * @param z
+     * @return this quaternion.
+     */
+    public Quaternion set(double w, double x, double y, double z) {
+        this.w = w;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Copies the components of another quaternion.
+     * @param o
+     * @return this quaternion.
+     */
+    public Quaternion set(Quaternion o) {
+        return set(o.w, o.x, o.y, o.z);
+    }
+
+    /**
+     * Sets this quaternion to the rotation in the upper left 3 x 3 part of a
+     * matrix, which must be a pure rotation, without scaling. The rest of the
+     * matrix is ignored.
+     * @param m
+     * @return this quaternion.
+     */
+    public Quaternion set(Matrix4 m) {
+        double trace = m.m11 + m.m22 + m.m33;
+        if (trace > 0) {
+            double s = 0.5 / Math.sqrt(trace + 1);
+            return set(0.25 / s, (m.m32 - m.m23) * s, (m.m13 - m.m31) * s, (m.m21 - m.m12) * s);
+        }
+        if (m.m11 > m.m22 && m.m11 > m.m33) {
+            double s = 2 * Math.sqrt(1 + m.m11 - m.m22 - m.m33);
+            return set((m.m32 - m.m23) / s, 0.25 * s, (m.m12 + m.m21) / s, (m.m13 + m.m31) / s);
+        }
+        if (m.m22 > m.m33) {
+            double s = 2 * Math.sqrt(1 + m.m22 - m.m11 - m.m33);
+            return set((m.m13 - m.m31) / s, (m.m12 + m.m21) / s, 0.25 * s, (m.m23 + m.m32) / s);
+        }
+        double s = 2 * Math.sqrt(1 + m.m33 - m.m11 - m.m22);
+        return set((m.m21 - m.m12) / s, (m.m13 + m.m31) / s, (m.m23 + m.m32) / s, 0.25 * s);
+    }
+
+    /**
+     * Sets this quaternion to a rotation around an axis, which does not need
+     * to have unit length.
+     * @param ax
+     * @param ay
+     * @param az
+     * @param angle Angle in degrees, counterclockwise when looking against
+     * the axis.
+     * @return this quaternion, or the identity if the axis has zero length.
+     */
+    public Quaternion setAxisAngle(double ax, double ay, double az, double angle) {
+        double len = Math.sqrt(ax * ax + ay * ay + az * az);
+        if (len == 0) {
+            return loadIdentity();
+        }
+        double half = angle * Const.degToRad / 2;
+        double s = Math.sin(half) / len;
+        return set(Math.cos(half), ax * s, ay * s, az * s);
+    }
+
+    /**
+     * Sets this quaternion to the rotation given by Euler angles, the same
+     * as new Matrix4().rotateX(ax).rotateY(ay).rotateZ(az).
+     * @param ax Angle around the x axis, in degrees.
+     * @param ay Angle around the y axis, in degrees.
+     * @param az Angle around the z axis, in degrees.
+     * @return this quaternion.
+     */
+    public Quaternion setEuler(double ax, double ay, double az) {
+        double hx = ax * Const.degToRad / 2;
+        double hy = ay * Const.degToRad / 2;
+        double hz = az * Const.degToRad / 2;
+        double cx = Math.cos(hx), sx = Math.sin(hx);
+        double cy = Math.cos(hy), sy = Math.sin(hy);
+        double cz = Math.cos(hz), sz = Math.sin(hz);
+        return set(cx * cy * cz - sx * sy * sz,
+                   sx * cy * cz + cx * sy * sz,
+                   cx * sy * cz - sx * cy * sz,
+                   cx * cy * sz + sx * sy * cz);
+    }
+
+    /**
+     * Writes the axis and angle of this rotation to dest, as x, y and z of a
+     * unit axis followed by the angle in degrees, between 0 and 360. The
+     * identity gives the x axis and an angle of zero.
+     * @param dest Array of at least 4 elements.
+     */
+    public void getAxisAngle(double[] dest) {
+        double len = Math.sqrt(x * x + y * y + z * z);
+        if (len == 0) {
+            dest[0] = 1;
+            dest[1] = 0;
+            dest[2] = 0;
+            dest[3] = 0;
+            return;
+        }
+        dest[0] = x / len;
+        dest[1] = y / len;
+        dest[2] = z / len;
+        dest[3] = 2 * Math.atan2(len, w) * Const.radToDeg;
+    }
+
+    /**
+     * Writes Euler angles for this rotation to dest, as the angles in
+     * degrees around the x, y and z axes which give this rotation with
+     * {@link #setEuler(double, double, double)}. The angle around y is
+     * between -90 and 90. When it is 90 or -90, up to rounding, only the
+     * sum or difference of the other two angles is determined, so the angle
+     * around z is set to zero.
+     * @param dest Array of at least 3 elements.
+     */
+    public void getEuler(double[] dest) {
+        double s = 2 / (w * w + x * x + y * y + z * z);
+        double r11 = 1 - s * (y * y + z * z);
+        double r12 = s * (x * y - w * z);
+        double r13 = s * (x * z + w * y);
+        double cy = Math.hypot(r11, r12);
+        double az = cy < GIMBAL_TOLERANCE ? 0 : Math.atan2(-r12, r11);
+
+        // The second column of R x Rz^T = Rx x Ry is [0 cos(ax) sin(ax)],
+        // which stays accurate near gimbal lock, where the elements in the
+        // last row and column of R are all small.
+        double sz = Math.sin(az);
+        double cz = Math.cos(az);
+        double r21 = s * (x * y + w * z);
+        double r22 = 1 - s * (x * x + z * z);
+        double r31 = s * (x * z - w * y);
+        double r32 = s * (y * z + w * x);
+        dest[0] = Math.atan2(r31 * sz + r32 * cz, r21 * sz + r22 * cz) * Const.radToDeg;
+        dest[1] = Math.atan2(r13, cy) * Const.radToDeg;
+        dest[2] = az * Const.radToDeg;
+    }
+
+    /**
+     * Stores the rotation of this quaternion in dest, with no translation.
+     * The quaternion does not need to have unit length.
+     * @param dest
+     * @return dest.
+     */
+    public Matrix4 toMatrix4(Matrix4 dest) {
+        dest.loadIdentity();
+        double s = 2 / (w * w + x * x + y * y + z * z);
+        double xs = x * s, ys = y * s, zs = z * s;
+        double wx = w * xs, wy = w * ys, wz = w * zs;
+        double xx = x * xs, xy = x * ys, xz = x * zs;
+        double yy = y * ys, yz = y * zs, zz = z * zs;
+        dest.m11 = 1 - (yy + zz); dest.m12 = xy - wz;       dest.m13 = xz + wy;
+        dest.m21 = xy + wz;       dest.m22 = 1 - (xx + zz); dest.m23 = yz - wx;
+        dest.m31 = xz - wy;       dest.m32 = yz + wx;       dest.m33 = 1 - (xx + yy);
+        return dest;
+    }
+
+    /**
+     * Multiplies this quaternion by another, storing the result in dest,
+     * which may be this or the other quaternion. Multiplication order is:
+     * dest = this x other, which rotates by other first.
+     * @param other
+     * @param dest
+     * @return dest.
+     */
+    public Quaternion mulInto(Quaternion other, Quaternion dest) {
+        double rw = w * other.w - x * other.x - y * other.y - z * other.z;
+        double rx = w * other.x + x * other.w + y * other.z - z * other.y;
+        double ry = w * other.y - x * other.z + y * other.w + z * other.x;
+        double rz = w * other.z + x * other.y - y * other.x + z * other.w;
+        return dest.set(rw, rx, ry, rz);
+    }
+
+    /**
+     * Multiplies this quaternion by another, changing this quaternion.
+     * Multiplication order is: this = this x other
+     * @param other
+     * @return this quaternion.
+     */
+    public Quaternion mul(Quaternion other) {
+        return mulInto(other, this);
+    }
+
+    /**
+     * Rotates this quaternion around the x axis.
+     * Same as this = this x new Quaternion().setAxisAngle(1, 0, 0, angle)
+     * @param angle Angle in degrees.
+     * @return this quaternion.
+     */
+    public Quaternion rotateX(double angle) {
+        double half = angle * Const.degToRad / 2;
+        double c = Math.cos(half);
+        double s = Math.sin(half);
+        return set(w * c - x * s, x * c + w * s, y * c + z * s, z * c - y * s);
+    }
+
+    /**
+     * Rotates this quaternion around the y axis.
+     * Same as this = this x new Quaternion().setAxisAngle(0, 1, 0, angle)
+     * @param angle Angle in degrees.
+     * @return this quaternion.
+     */
+    public Quaternion rotateY(double angle) {
+        double half = angle * Const.degToRad / 2;
+        double c = Math.cos(half);
+        double s = Math.sin(half);
+        return set(w * c - y * s, x * c - z * s, y * c + w * s, z * c + x * s);
+    }
+
+    /**
+     * Rotates this quaternion around the z axis.
+     * Same as this = this x new Quaternion().setAxisAngle(0, 0, 1, angle)
+     * @param angle Angle in degrees.
+     * @return this quaternion.
+     */
+    public Quaternion rotateZ(double angle) {
+        double half = angle * Const.degToRad / 2;
+        double c = Math.cos(half);
+        double s = Math.sin(half);
+        return set(w * c - z * s, x * c + y * s, y * c - x * s, z * c + w * s);
+    }
+
+    /**
+     * Returns the dot product of this quaternion and another.
+     * @param o
+     * @return
+     */
+    public double dot(Quaternion o) {
+        return w * o.w + x * o.x + y * o.y + z * o.z;
+    }
+
+    /**
+     * Returns the length of this quaternion, which is one for rotations.
+     * @return
+     */
+    public double length() {
+        return Math.sqrt(w * w + x * x + y * y + z * z);
+    }
+
+    /**
+     * Scales this quaternion to unit length.
+     * @return this quaternion, or the identity if it had zero length.
+     */
+    public Quaternion normalize() {
+        double len = length();
+        if (len == 0) {
+            return loadIdentity();
+        }
+        double s = 1 / len;
+        return set(w * s, x * s, y * s, z * s);
+    }
+
+    /**
+     * Sets this quaternion to its conjugate, which for a unit quaternion is
+     * the inverse rotation.
+     * @return this quaternion.
+     */
+    public Quaternion conjugate() {
+        return set(w, -x, -y, -z);
+    }
+
+    /**
+     * Sets this quaternion to its inverse.
+     * @return this quaternion.
+     * @throws IllegalArgumentException if this quaternion has zero length.
+     */
+    public Quaternion invert() {
+        double n = w * w + x * x + y * y + z * z;
+        if (n == 0) {
+            throw new IllegalArgumentException("Quaternion has zero length");
+        }
+        double s = 1 / n;
+        return set(w * s, -x * s, -y * s, -z * s);
+    }
+
+    /**
+     * Interpolates spherically between this rotation, at t = 0, and another,
+     * at t = 1, storing the result in dest, which may be this or the other
+     * quaternion. The interpolation follows the shortest path at constant
+     * angular speed. Both quaternions must have unit length.
+     * @param to
+     * @param t
+     * @param dest
+     * @return dest.
+     */
+    public Quaternion slerpInto(Quaternion to, double t, Quaternion dest) {
+        double dot = dot(to);
+        double sign = 1;
+        if (dot < 0) {
+            dot = -dot;
+            sign = -1;
+        }
+
+        double a;
+        double b;
+        if (dot > SLERP_THRESHOLD) {
+            a = 1 - t;
+            b = t * sign;
+            dest.set(w * a + to.w * b, x * a + to.x * b, y * a + to.y * b, z * a + to.z * b);
+            return dest.normalize();
+        }
+
+        double theta = Math.acos(dot);
+        double invSin = 1 / Math.sqrt(1 - dot * dot);
+        a = Math.sin((1 - t) * theta) * invSin;
+        b = Math.sin(t * theta) * invSin * sign;
+        return dest.set(w * a + to.w * b, x * a + to.x * b, y * a + to.y * b, z * a + to.z * b);
+    }
+
+    /**
+     * Interpolates spherically between this rotation and another, changing
+     * this quaternion.
+     * @param to
+     * @param t
+     * @return this quaternion.
+     * @see #slerpInto(libj.math.transform.d3.Quaternion, double, libj.math.transform.d3.Quaternion)
+     */
+    public Quaternion slerp(Quaternion to, double t) {
+        return slerpInto(to, t, this);
+    }
+
+    /**
+     * Rotates packed xyz vectors in place. The array holds x, y and z for
+     * each vector directly after each other.
+     * @param coords
+     */
+    public void rotateVectors(double[] coords) {
+        rotateVectors(coords, 0, 3, coords, 0, 3, coords.length / 3);
+    }
+
+    /**
+     * Rotates xyz vectors and writes the resulting x, y and z to dest. Src
+     * and dest may be the same array, as long as both use the same offset
+     * and stride. This quaternion must have unit length.
+     * @param src
+     * @param srcOffset Index of the first vector's x in src.
+     * @param srcStride Distance between consecutive vectors in src, at least 3.
+     * @param dest
+     * @param destOffset Index of the first vector's x in dest.
+     * @param destStride Distance between consecutive vectors in dest, at least 3.
+     * @param count Number of vectors.
+     */
+    public void rotateVectors(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count) {
+        rotateVectors(src, srcOffset, srcStride, dest, destOffset, destStride, count, MatrixExecutor.serial());
+    }
+
+    /**
+     * Rotates xyz vectors like
+     * {@link #rotateVectors(double[], int, int, double[], int, int, int)},
+     * splitting the work with the given executor.
+     * @param src
+     * @param srcOffset
+     * @param srcStride
+     * @param dest
+     * @param destOffset
+     * @param destStride
+     * @param count
+     * @param exec
+     */
+    public void rotateVectors(double[] src, int srcOffset, int srcStride,
+            double[] dest, int destOffset, int destStride, int count, MatrixExecutor exec) {
+        Matrix4.checkRange(src.length, srcOffset, srcStride, count);
+        Matrix4.checkRange(dest.length, destOffset, destStride, count);
+        double qw = w, qx = x, qy = y, qz = z;
+        exec.forRange(count, WORK_PER_VECTOR, (from, to) -> {
+            // v' = v + w t + q x t, where t = 2 q x v
+            for (int i = from; i < to; i++) {
+                int s = srcOffset + i * srcStride;
+                int d = destOffset + i * destStride;
+                double vx = src[s], vy = src[s + 1], vz = src[s + 2];
+                double tx = 2 * (qy * vz - qz * vy);
+                double ty = 2 * (qz * vx - qx * vz);
+                double tz = 2 * (qx * vy - qy * vx);
+                dest[d] = vx + qw * tx + qy * tz - qz * ty;
+                dest[d + 1] = vy + qw * ty + qz * tx - qx * tz;
+                dest[d + 2] = vz + qw * tz + qx * ty - qy * tx;
+            }
+        });
+    }
+
+    /**
+     * Checks if this quaternion is equal to another quaternion. They are
+     * equal if and only if each component matches exactly. Note that q and
+     * -q describe the same rotation, but are not equal.
+     * @param other
+     * @return
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Quaternion)) {
+            return false;
+        }
+
+        Quaternion o = (Quaternion) other;
+        return Double.doubleToLongBits(w) == Double.doubleToLongBits(o.w)
+            && Double.doubleToLongBits(x) == Double.doubleToLongBits(o.x)
+            && Double.doubleToLongBits(y) == Double.doubleToLongBits(o.y)
+            && Double.doubleToLongBits(z) == Double.doubleToLongBits(o.z);
+    }
+
+    /**
+     * Generates a hash code for this quaternion.
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        int h = Double.hashCode(w);
+        h = 31 * h + Double.hashCode(x);
+        h = 31 * h + Double.hashCode(y);
+        return 31 * h + Double.hashCode(z);
+    }
+
+    /**
+     * Returns the components of this quaternion as a string.
+     * @return
+     */
+    @Override
+    public String toString() {
+        return "Quaternion[" + w + ", " + x + ", " + y + ", " + z + "]";
+    }
+}
@@ -13,10 +13,13 @@ public class RotationXMatrix extends SqMatrix {
         super(4);
         loadIdentity();
         
-        setElem(2, 2, Math.cos(angle * Const.degToRad));
-        setElem(2, 3, -Math.sin(angle * Const.degToRad));
-        setElem(3, 2, Math.sin(angle * Const.degToRad));
-        setElem(3, 3, Math.cos(angle * Const.degToRad));
+        double rad = angle * Const.degToRad;
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+        setElem(2, 2, c);
+        setElem(2, 3, -s);
+        setElem(3, 2, s);
+        setElem(3, 3, c);
     }
     
 }
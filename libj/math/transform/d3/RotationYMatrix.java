@@ -13,10 +13,13 @@ public class RotationYMatrix extends SqMatrix {
         super(4);
         loadIdentity();
         
-        setElem(1, 1, Math.cos(angle * Const.degToRad));
-        setElem(1, 3, Math.sin(angle * Const.degToRad));
-        setElem(3, 1, -Math.sin(angle * Const.degToRad));
-        setElem(3, 3, Math.cos(angle * Const.degToRad));
+        double rad = angle * Const.degToRad;
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+        setElem(1, 1, c);
+        setElem(1, 3, s);
+        setElem(3, 1, -s);
+        setElem(3, 3, c);
     }
     
 }
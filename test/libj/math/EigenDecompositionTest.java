@@ -0,0 +1,74 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static libj.math.TestMatrices.randomSpd;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that A x V = V x D for the symmetric, general and Lanczos
+ * eigensolvers.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class EigenDecompositionTest {
+
+    @Test
+    void symmetricDecompositionIsOrthogonalAndSorted() {
+        Random rnd = new Random(1);
+        for (int n : new int[] {1, 2, 5, 40}) {
+            SqMatrix a = randomSpd(n, rnd);
+            EigenDecomposition eig = a.eig();
+            assertTrue(eig.isSymmetric());
+
+            Matrix v = eig.getV();
+            assertClose(Matrix.mul(a, v), Matrix.mul(v, eig.getD()), 1e-11 * n);
+            assertClose(SqMatrix.identity(n), Matrix.mul(v.transposeView(), v), 1e-12 * n);
+
+            double[] d = eig.getRealEigenvalues();
+            double[] sorted = d.clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(sorted, d);
+        }
+    }
+
+    @Test
+    void generalDecompositionFindsComplexPairs() {
+        Random rnd = new Random(2);
+        for (int n : new int[] {2, 7, 30}) {
+            SqMatrix a = (SqMatrix) random(n, n, rnd);
+            EigenDecomposition eig = a.eig();
+            assertFalse(eig.isSymmetric());
+            Matrix v = eig.getV();
+            assertClose(Matrix.mul(a, v), Matrix.mul(v, eig.getD()), 1e-10 * n);
+        }
+
+        SqMatrix rotation = new SqMatrix(2);
+        rotation.setAll(new double[] {0, -1, 1, 0});
+        EigenDecomposition eig = rotation.eig();
+        assertArrayEquals(new double[] {0, 0}, eig.getRealEigenvalues(), 1e-15);
+        double[] im = eig.getImagEigenvalues();
+        assertEquals(1, Math.abs(im[0]), 1e-15);
+        assertEquals(-im[0], im[1], 1e-15);
+    }
+
+    @Test
+    void lanczosFindsLargestEigenvalues() {
+        Random rnd = new Random(3);
+        int n = 120;
+        int k = 5;
+        SqMatrix a = randomSpd(n, rnd);
+        double[] all = a.eig().getRealEigenvalues();
+        EigenDecomposition top = EigenDecomposition.lanczos(LinearOperator.of(a), k);
+
+        assertArrayEquals(Arrays.copyOfRange(all, n - k, n), top.getRealEigenvalues(), 1e-9 * all[n - 1]);
+        Matrix v = top.getV();
+        assertClose(Matrix.mul(a, v), Matrix.mul(v, top.getD()), 1e-8 * all[n - 1]);
+    }
+}
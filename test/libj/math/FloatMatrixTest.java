@@ -0,0 +1,110 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static libj.math.TestMatrices.randomDominant;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares single-precision matrices with double-precision ones holding the
+ * same elements, with tolerances at the float unit roundoff.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class FloatMatrixTest {
+
+    private static final double EPS = Math.ulp(1f);
+
+    /**
+     * Returns a double matrix whose elements are exactly representable as
+     * floats, so both precisions start from the same values.
+     */
+    private static Matrix randomFloats(int rows, int cols, Random rnd) {
+        Matrix m = random(rows, cols, rnd);
+        for (int i = 0; i < rows * cols; i++) {
+            m.elem[i] = (float) m.elem[i];
+        }
+        return m;
+    }
+
+    private static FloatSqMatrix toFloat(SqMatrix m) {
+        FloatSqMatrix f = new FloatSqMatrix(m.rows());
+        f.setAll(FloatMatrix.fromMatrix(m).getElements());
+        return f;
+    }
+
+    @Test
+    void opsMatchDouble() {
+        Random rnd = new Random(1);
+        Matrix a = randomFloats(40, 30, rnd);
+        Matrix b = randomFloats(30, 25, rnd);
+        Matrix c = randomFloats(40, 30, rnd);
+        FloatMatrix fa = FloatMatrix.fromMatrix(a);
+        FloatMatrix fb = FloatMatrix.fromMatrix(b);
+        FloatMatrix fc = FloatMatrix.fromMatrix(c);
+        assertEquals(a, fa.toMatrix());
+
+        assertClose(Matrix.mul(a, b), FloatMatrix.mul(fa, fb).toMatrix(), 30 * EPS);
+        FloatMatrix dest = new FloatMatrix(40, 25);
+        FloatMatrix.mulInto(fa, fb, dest);
+        assertClose(Matrix.mul(a, b), dest.toMatrix(), 30 * EPS);
+        assertEquals(a.transpose(), fa.transpose().toMatrix());
+        assertEquals(a.subMat(4, 7), fa.subMat(4, 7).toMatrix());
+
+        a.add(c);
+        a.mul(0.5);
+        fa.add(fc);
+        fa.mul(0.5f);
+        assertClose(a, fa.toMatrix(), EPS);
+        assertEquals(a.sumRow(3), fa.sumRow(3), 30 * EPS);
+        assertEquals(a.sumCol(5), fa.sumCol(5), 40 * EPS);
+    }
+
+    @Test
+    void inPlaceMatchesAllocating() {
+        Random rnd = new Random(2);
+        FloatMatrix a = FloatMatrix.fromMatrix(random(9, 7, rnd));
+        FloatMatrix square = FloatMatrix.fromMatrix(random(7, 7, rnd));
+        FloatMatrix wide = FloatMatrix.fromMatrix(random(7, 4, rnd));
+
+        FloatMatrix expected = FloatMatrix.mul(a, square);
+        FloatMatrix m = a.copy();
+        m.mul(square);
+        assertArrayEquals(expected.getElements(), m.getElements());
+
+        expected = FloatMatrix.mul(a, wide);
+        m = a.copy();
+        float[] old = m.elem;
+        m.mul(wide);
+        assertArrayEquals(expected.getElements(), m.getElements());
+        assertNotSame(old, MatrixWorkspace.current().acquireFloats(old.length));
+    }
+
+    @Test
+    void solveAndInverseMatchDouble() {
+        Random rnd = new Random(3);
+        for (int n : new int[] {1, 2, 3, 10, 40}) {
+            SqMatrix a = randomDominant(n, rnd);
+            FloatSqMatrix fa = toFloat(a);
+            a = fa.toSqMatrix();
+            Matrix b = randomFloats(n, 2, rnd);
+
+            assertEquals(a.det(), fa.det(), Math.abs(a.det()) * 1e-12);
+            assertClose(a.inv(), fa.inv().toMatrix(), n * EPS);
+            assertClose(a.solve(b), fa.solve(FloatMatrix.fromMatrix(b)).toMatrix(), n * EPS);
+        }
+
+        FloatSqMatrix singular = new FloatSqMatrix(3);
+        singular.setAll(new float[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertNull(singular.inv());
+        assertNull(singular.solve(new FloatMatrix(3, 1)));
+        assertFalse(singular.invInto(new FloatSqMatrix(3)));
+        assertEquals(0, singular.det());
+    }
+}
@@ -0,0 +1,113 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static libj.math.TestMatrices.randomDominant;
+import static libj.math.TestMatrices.randomSpd;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the iterative solvers converge to the direct solution, with
+ * and without preconditioners, on dense and sparse matrices.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class IterativeSolverTest {
+
+    private static final IterativeSolver[] SOLVERS = {
+        IterativeSolver.cg(), IterativeSolver.bicgstab(), IterativeSolver.gmres()
+    };
+
+    private static Matrix column(double[] v) {
+        Matrix m = new Matrix(v.length, 1);
+        m.setAll(v);
+        return m;
+    }
+
+    /**
+     * Returns the n x n matrix of the one-dimensional Poisson equation,
+     * tridiagonal with 2 on the diagonal and -1 beside it.
+     */
+    private static SparseMatrix poisson(int n) {
+        SparseMatrix.Builder b = new SparseMatrix.Builder(n, n);
+        for (int i = 1; i <= n; i++) {
+            b.add(i, i, 2);
+            if (i > 1) {
+                b.add(i, i - 1, -1);
+                b.add(i - 1, i, -1);
+            }
+        }
+        return b.build();
+    }
+
+    @Test
+    void denseSolvesMatchDirectSolve() {
+        Random rnd = new Random(1);
+        int n = 60;
+        SqMatrix spd = randomSpd(n, rnd);
+        SqMatrix general = randomDominant(n, rnd);
+        double[] b = random(n, 1, rnd).getElements();
+
+        for (IterativeSolver solver : SOLVERS) {
+            SqMatrix a = solver.getMethod() == IterativeSolver.Method.CG ? spd : general;
+            for (Preconditioner p : new Preconditioner[] {null, Preconditioner.jacobi(a), Preconditioner.ilu(a)}) {
+                double[] x = new double[n];
+                IterativeSolver.Result res = solver.withTolerance(1e-12)
+                        .withPreconditioner(p).solve(a, b, x);
+                assertTrue(res.isConverged(), solver.getMethod() + ": " + res);
+                assertClose(a.solve(column(b)), column(x), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void sparseSolvesMatchDenseSolve() {
+        int n = 200;
+        SparseMatrix a = poisson(n);
+        double[] b = new double[n];
+        b[0] = 1;
+        b[n / 2] = -2;
+        SqMatrix dense = new SqMatrix(n);
+        a.toDense().copyInto(dense);
+        Matrix expected = dense.solve(column(b));
+
+        for (IterativeSolver solver : SOLVERS) {
+            double[] x = new double[n];
+            IterativeSolver.Result res = solver.withTolerance(1e-12).withMaxIterations(10 * n)
+                    .withPreconditioner(Preconditioner.ilu(a)).solve(a, b, x);
+            assertTrue(res.isConverged(), solver.getMethod() + ": " + res);
+            assertClose(expected, column(x), 1e-8);
+        }
+    }
+
+    @Test
+    void stopsAtIterationLimitAndListener() {
+        int n = 100;
+        SparseMatrix a = poisson(n);
+        double[] b = new double[n];
+        b[n - 1] = 1;
+
+        double[] x = new double[n];
+        IterativeSolver.Result res = IterativeSolver.cg().withMaxIterations(3).solve(a, b, x);
+        assertFalse(res.isConverged());
+        assertEquals(3, res.iterations());
+
+        int[] calls = {0};
+        double[] y = new double[n];
+        res = IterativeSolver.gmres().withListener((it, r) -> ++calls[0] < 5).solve(a, b, y);
+        assertFalse(res.isConverged());
+        assertEquals(5, calls[0]);
+        assertEquals(5, res.iterations());
+
+        // A zero right-hand side is solved without iterating.
+        double[] z = new double[n];
+        res = IterativeSolver.bicgstab().solve(a, new double[n], z);
+        assertTrue(res.isConverged());
+        assertArrayEquals(new double[n], z);
+    }
+}
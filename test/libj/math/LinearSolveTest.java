@@ -0,0 +1,129 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static libj.math.TestMatrices.randomDominant;
+import static libj.math.TestMatrices.randomSpd;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips through the solvers: each solution is multiplied back and
+ * compared with the right-hand side.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class LinearSolveTest {
+
+    private static final int[] SIZES = {1, 2, 3, 7, 33, 100};
+
+    @Test
+    void luSolveReproducesRightHandSide() {
+        Random rnd = new Random(1);
+        for (int n : SIZES) {
+            SqMatrix a = randomDominant(n, rnd);
+            Matrix b = random(n, 3, rnd);
+            Matrix x = a.solve(b);
+            assertNotNull(x);
+            assertClose(b, Matrix.mul(a, x), 1e-12 * n);
+        }
+    }
+
+    @Test
+    void inverseTimesMatrixIsIdentity() {
+        Random rnd = new Random(2);
+        for (int n : SIZES) {
+            SqMatrix a = randomDominant(n, rnd);
+            Matrix inv = a.inv();
+            assertClose(SqMatrix.identity(n), Matrix.mul(a, inv), 1e-12 * n);
+
+            SqMatrix dest = new SqMatrix(n);
+            assertTrue(a.invInto(dest));
+            assertClose(inv, dest, 1e-12);
+        }
+    }
+
+    @Test
+    void determinantMatchesTriangularDiagonal() {
+        Random rnd = new Random(3);
+        for (int n : SIZES) {
+            SqMatrix a = randomDominant(n, rnd);
+            double det = 1;
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    a.elem[i * n + j] = 0;
+                }
+                det *= a.elem[i * n + i];
+            }
+            assertEquals(det, a.det(), Math.abs(det) * 1e-12);
+            assertEquals(det, a.lu().det(), Math.abs(det) * 1e-12);
+        }
+        SqMatrix m = new SqMatrix(3);
+        m.setAll(new double[] {2, 0, 1, 1, 3, 2, 1, 1, 2});
+        assertEquals(6, m.det(), 1e-14);
+    }
+
+    @Test
+    void singularMatrixHasNoInverse() {
+        // The second matrix is singular in exact arithmetic, but its last
+        // pivot comes out as a rounding error rather than as zero.
+        double[][] singular = {
+            {1, 2, 3, 2, 4, 6, 1, 0, 1},
+            {1, 2, 3, 4, 5, 6, 7, 8, 9}
+        };
+        for (double[] elems : singular) {
+            SqMatrix a = new SqMatrix(3);
+            a.setAll(elems);
+            assertNull(a.inv());
+            assertNull(a.solve(new Matrix(3, 1)));
+            assertFalse(a.invInto(new SqMatrix(3)));
+            assertTrue(a.lu().isSingular());
+            assertEquals(0, a.det());
+        }
+    }
+
+    @Test
+    void choleskySolveReproducesRightHandSide() {
+        Random rnd = new Random(4);
+        for (int n : SIZES) {
+            SqMatrix a = randomSpd(n, rnd);
+            CholeskyDecomposition chol = a.cholesky();
+            assertTrue(chol.isPositiveDefinite());
+            Matrix b = random(n, 2, rnd);
+            assertClose(b, Matrix.mul(a, chol.solve(b)), 1e-11 * n);
+
+            TriangularMatrix l = chol.getL();
+            assertClose(a, Matrix.mul(l, l.transpose()), 1e-11 * n);
+            assertEquals(a.det(), chol.det(), Math.abs(a.det()) * 1e-10);
+        }
+        SqMatrix indefinite = new SqMatrix(2);
+        indefinite.setAll(new double[] {1, 2, 2, 1});
+        assertFalse(indefinite.cholesky().isPositiveDefinite());
+    }
+
+    @Test
+    void qrSolvesSquareAndLeastSquaresSystems() {
+        Random rnd = new Random(5);
+        for (int n : SIZES) {
+            SqMatrix a = randomDominant(n, rnd);
+            Matrix b = random(n, 2, rnd);
+            assertClose(b, Matrix.mul(a, a.qr().solve(b)), 1e-12 * n);
+
+            Matrix tall = random(2 * n + 3, n, rnd);
+            QRDecomposition qr = tall.qr();
+            assertClose(tall, Matrix.mul(qr.getQ(), qr.getR()), 1e-12 * n);
+
+            // The residual of a least squares solution is orthogonal to the
+            // columns of the matrix.
+            Matrix c = random(tall.rows(), 1, rnd);
+            Matrix r = c.copy();
+            r.sub(Matrix.mul(tall, qr.solve(c)));
+            assertClose(new Matrix(n, 1), Matrix.mul(tall.transposeView(), r), 1e-12 * n);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.randomDominant;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks each operation on a batch against the same operation on every
+ * matrix on its own.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class MatrixBatchTest {
+
+    private static final int SIZE = 37;
+
+    private static MatrixBatch randomBatch(int dim, Random rnd) {
+        MatrixBatch batch = new MatrixBatch(dim, SIZE);
+        for (int i = 1; i <= SIZE; i++) {
+            batch.set(i, randomDominant(dim, rnd));
+        }
+        return batch;
+    }
+
+    @Test
+    void operationsMatchSqMatrix() {
+        Random rnd = new Random(1);
+        for (int dim = 1; dim <= 6; dim++) {
+            MatrixBatch a = randomBatch(dim, rnd);
+            MatrixBatch b = randomBatch(dim, rnd);
+            double[] det = a.det();
+            MatrixBatch inv = a.inv();
+            MatrixBatch prod = MatrixBatch.mul(a, b);
+            MatrixBatch trans = a.transpose();
+
+            for (int i = 1; i <= SIZE; i++) {
+                SqMatrix m = a.get(i);
+                assertEquals(m.det(), det[i - 1], Math.abs(det[i - 1]) * 1e-12);
+                assertClose(m.inv(), inv.get(i), 1e-12);
+                assertClose(Matrix.mul(m, b.get(i)), prod.get(i), 1e-12);
+                assertClose(m.transpose(), trans.get(i), 0);
+            }
+        }
+    }
+
+    @Test
+    void singularMatricesInvertToNaN() {
+        for (int dim = 3; dim <= 6; dim++) {
+            MatrixBatch batch = new MatrixBatch(dim, 3);
+            batch.loadIdentity();
+            batch.setElem(2, 1, 1, 0);
+            // Each row is the previous one plus a constant. Above 4 x 4 the
+            // LU pivots leave this singular only up to rounding.
+            for (int r = 1; r <= dim; r++) {
+                for (int c = 1; c <= dim; c++) {
+                    batch.setElem(3, r, c, (r - 1) * dim + c);
+                }
+            }
+            MatrixBatch inv = batch.inv();
+            assertClose(SqMatrix.identity(dim), inv.get(1), 0);
+            assertTrue(Double.isNaN(inv.getElem(2, 2, 2)));
+            assertTrue(Double.isNaN(inv.getElem(3, 1, 1)));
+            assertEquals(0, batch.det()[2]);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares lazily evaluated expressions with the same operations done
+ * eagerly, including when the destination is one of the operands.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class MatrixExprTest {
+
+    @Test
+    void evaluationMatchesEagerOps() {
+        Random rnd = new Random(1);
+        Matrix a = random(20, 30, rnd);
+        Matrix b = random(30, 15, rnd);
+        Matrix c = random(20, 10, rnd);
+        Matrix d = random(10, 15, rnd);
+        Matrix e = random(20, 15, rnd);
+
+        // a x b + 2 (c x d) - e + e^T^T
+        Matrix expected = Matrix.mul(a, b);
+        Matrix cd = Matrix.mul(c, d);
+        cd.mul(2);
+        expected.add(cd);
+        expected.sub(e);
+        expected.add(e.transpose().transpose());
+        Matrix lazy = MatrixExpr.of(a).mul(b)
+                .add(MatrixExpr.of(c).mul(d).mul(2))
+                .sub(e)
+                .add(MatrixExpr.of(e).transpose().transpose())
+                .eval();
+        assertClose(expected, lazy, 1e-12);
+
+        // 0.5 (a x b)^T x c x d, where the chain may be reordered.
+        Matrix chain = Matrix.mul(Matrix.mul(Matrix.mul(a, b).transpose(), c), d);
+        chain.mul(0.5);
+        lazy = MatrixExpr.of(a).mul(b).transpose().mul(0.5)
+                .mul(MatrixExpr.of(c).mul(d))
+                .eval();
+        assertClose(chain, lazy, 1e-11);
+    }
+
+    @Test
+    void intoMayOverwriteAnOperand() {
+        Random rnd = new Random(2);
+        Matrix a = random(12, 12, rnd);
+        Matrix b = random(12, 12, rnd);
+        Matrix c = random(12, 12, rnd);
+
+        // a = a x b + c
+        Matrix expected = Matrix.mul(a, b);
+        expected.add(c);
+        Matrix dest = a.copy();
+        MatrixExpr.of(dest).mul(b).add(c).into(dest);
+        assertClose(expected, dest, 1e-13);
+
+        // a = 3 a - a^T, where the transpose reads the destination's elements.
+        expected = a.copy();
+        expected.mul(3);
+        expected.sub(a.transpose());
+        dest = a.copy();
+        MatrixExpr.of(dest).mul(3).sub(MatrixExpr.of(dest).transpose()).into(dest);
+        assertClose(expected, dest, 1e-14);
+
+        // a = a^T + a, where the destination is read through a view.
+        expected = a.transpose();
+        expected.add(a);
+        dest = a.copy();
+        MatrixExpr.of(dest.transposeView()).add(dest).into(dest);
+        assertClose(expected, dest, 1e-14);
+
+        // A view of a as the destination of a x a.
+        expected = Matrix.mul(a, a);
+        Matrix big = new Matrix(20, 20);
+        Matrix view = big.blockView(3, 5, 12, 12);
+        a.copyInto(view);
+        MatrixExpr.of(view).mul(view).into(view);
+        assertClose(expected, view, 1e-13);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> MatrixExpr.of(a).mul(b).into(new Matrix(12, 11)));
+        assertThrows(IllegalArgumentException.class, () -> MatrixExpr.of(a).add(new Matrix(11, 12)));
+    }
+}
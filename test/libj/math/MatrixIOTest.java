@@ -0,0 +1,144 @@
+package libj.math;
+
+import static libj.math.TestMatrices.random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Writes matrices and reads them back, and checks that damaged files are
+ * rejected.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class MatrixIOTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void heapMatrixRoundTrips() throws IOException {
+        Random rnd = new Random(1);
+        Path file = dir.resolve("m.ljmx");
+        Matrix m = random(37, 21, rnd);
+        MatrixIO.write(m, file);
+        assertEquals(MatrixIO.HEADER_SIZE + 37 * 21 * Double.BYTES, Files.size(file));
+        assertEquals(m, MatrixIO.read(file));
+        assertEquals(m, MatrixIO.readOffHeap(file));
+        assertTrue(MatrixIO.verify(file));
+
+        // Views are written with their own elements.
+        MatrixIO.write(m.transposeView(), file, false);
+        assertEquals(m.transpose(), MatrixIO.read(file));
+        assertTrue(MatrixIO.verify(file));
+    }
+
+    @Test
+    void floatMatrixRoundTrips() throws IOException {
+        Random rnd = new Random(2);
+        Path file = dir.resolve("f.ljmx");
+        FloatMatrix m = FloatMatrix.fromMatrix(random(15, 40, rnd));
+        MatrixIO.write(m, file);
+        assertArrayEquals(m.getElements(), MatrixIO.readFloat(file).getElements());
+        assertTrue(MatrixIO.verify(file));
+        assertThrows(IOException.class, () -> MatrixIO.read(file));
+    }
+
+    @Test
+    void offHeapMatrixRoundTrips() throws IOException {
+        Random rnd = new Random(3);
+        Path file = dir.resolve("o.ljmx");
+        Matrix m = random(64, 50, rnd);
+        OffHeapMatrix off = OffHeapMatrix.allocate(64, 50);
+        m.copyInto(off);
+        MatrixIO.write(off, file);
+        assertEquals(m, MatrixIO.read(file));
+        assertEquals(m, MatrixIO.readOffHeap(file));
+        assertTrue(MatrixIO.verify(file));
+    }
+
+    @Test
+    void streamingWriterAndReaderMatchWholeMatrix() throws IOException {
+        Random rnd = new Random(4);
+        Path file = dir.resolve("s.ljmx");
+        Matrix m = random(30, 8, rnd);
+        try (MatrixIO.Writer w = new MatrixIO.Writer(file, 30, 8, true)) {
+            w.writeRows(m, 1, 12);
+            w.writeRows(m, 13, 18);
+            assertEquals(0, w.remaining());
+        }
+        assertEquals(m, MatrixIO.read(file));
+
+        Matrix back = new Matrix(30, 8);
+        try (MatrixIO.Reader r = new MatrixIO.Reader(file)) {
+            assertEquals(MatrixIO.ElementType.DOUBLE, r.elementType());
+            assertTrue(r.hasChecksum());
+            while (r.remaining() > 0) {
+                r.readRows(back, 31 - r.remaining(), 7);
+            }
+        }
+        assertEquals(m, back);
+    }
+
+    @Test
+    void verifyRejectsFlippedByteAndTruncatedFile() throws IOException {
+        Random rnd = new Random(5);
+        Path file = dir.resolve("d.ljmx");
+        MatrixIO.write(random(20, 20, rnd), file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        bytes[MatrixIO.HEADER_SIZE + 1234] ^= 0x10;
+        Files.write(file, bytes);
+        assertFalse(MatrixIO.verify(file));
+        assertThrows(MatrixIO.ChecksumException.class, () -> MatrixIO.read(file));
+
+        bytes[MatrixIO.HEADER_SIZE + 1234] ^= 0x10;
+        Files.write(file, bytes);
+        assertTrue(MatrixIO.verify(file));
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(bytes.length - Double.BYTES);
+        }
+        assertThrows(EOFException.class, () -> MatrixIO.verify(file));
+        assertThrows(EOFException.class, () -> MatrixIO.read(file));
+        assertThrows(EOFException.class, () -> MatrixIO.map(file));
+
+        Files.write(file, new byte[MatrixIO.HEADER_SIZE - 1]);
+        assertThrows(EOFException.class, () -> MatrixIO.verify(file));
+    }
+
+    @Test
+    void mappedMatrixWritesThroughToFile() throws IOException {
+        Random rnd = new Random(6);
+        Path file = dir.resolve("p.ljmx");
+        Matrix m = random(25, 16, rnd);
+        MatrixIO.write(m, file, false);
+
+        OffHeapMatrix mapped = MatrixIO.map(file);
+        assertTrue(mapped.isMapped());
+        assertEquals(m, mapped);
+        mapped.setElem(3, 4, 42);
+        mapped.force();
+
+        m.setElem(3, 4, 42);
+        assertEquals(m, MatrixIO.read(file));
+
+        ByteBuffer header = ByteBuffer.allocate(MatrixIO.HEADER_SIZE);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ch.read(header);
+        }
+        assertEquals(MatrixIO.MAGIC, header.getInt(0));
+    }
+}
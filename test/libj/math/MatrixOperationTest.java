@@ -0,0 +1,73 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static libj.math.TestMatrices.randomDominant;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks Gaussian and Gauss-Jordan elimination on matrices of known rank.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class MatrixOperationTest {
+
+    @Test
+    void eliminationFindsRankAndReducedForm() {
+        Matrix m = new Matrix(3, 4);
+        m.setAll(new double[] {1, 2, 3, 4, 2, 4, 6, 8, 1, 0, 1, 0});
+        MatrixOperation op = new MatrixOperation(m);
+        assertEquals(2, op.rank());
+
+        Matrix expected = new Matrix(3, 4);
+        expected.setAll(new double[] {1, 0, 1, 0, 0, 1, 1, 2, 0, 0, 0, 0});
+        assertClose(expected, op.gaussJordan(), 1e-14);
+
+        // Singular only up to rounding.
+        SqMatrix s = new SqMatrix(3);
+        s.setAll(new double[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertEquals(2, new MatrixOperation(s).rank());
+    }
+
+    @Test
+    void gaussJordanOfAugmentedMatrixGivesInverse() {
+        Random rnd = new Random(1);
+        int n = 20;
+        SqMatrix a = randomDominant(n, rnd);
+        Matrix aug = new Matrix(n, 2 * n);
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                aug.set0(r, c, a.get0(r, c));
+            }
+            aug.set0(r, n + r, 1);
+        }
+        assertEquals(n, new MatrixOperation(aug).gaussJordanInPlace());
+
+        Matrix inv = new Matrix(n, n);
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                assertEquals(r == c ? 1 : 0, aug.get0(r, c), 1e-12);
+                inv.set0(r, c, aug.get0(r, n + c));
+            }
+        }
+        assertClose(a.inv(), inv, 1e-12);
+    }
+
+    @Test
+    void echelonFormIsUpperTriangularAndKeepsInput() {
+        Random rnd = new Random(2);
+        Matrix m = random(8, 11, rnd);
+        Matrix before = m.copy();
+        Matrix echelon = new MatrixOperation(m).gauss();
+        assertEquals(before, m);
+        for (int r = 1; r < 8; r++) {
+            for (int c = 0; c < r; c++) {
+                assertEquals(0, echelon.get0(r, c), 1e-14);
+            }
+        }
+        assertEquals(8, new MatrixOperation(m).gaussInPlace());
+        assertClose(echelon, m, 1e-14);
+    }
+}
@@ -0,0 +1,70 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.naiveMul;
+import static libj.math.TestMatrices.random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that views read and write through to their parent, and that they
+ * behave like the copies made by transpose() and subMat().
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class MatrixViewTest {
+
+    @Test
+    void viewsMatchCopies() {
+        Random rnd = new Random(1);
+        Matrix a = random(6, 9, rnd);
+        assertEquals(a.transpose(), a.transposeView());
+        assertEquals(a.subMat(2, 5), a.subMatView(2, 5));
+        assertSame(a, a.transposeView().transposeView());
+
+        Matrix block = a.blockView(2, 3, 4, 5);
+        for (int r = 1; r <= 4; r++) {
+            for (int c = 1; c <= 5; c++) {
+                assertEquals(a.getElem(r + 1, c + 2), block.getElem(r, c));
+            }
+        }
+    }
+
+    @Test
+    void viewsWriteThrough() {
+        Random rnd = new Random(2);
+        Matrix a = random(5, 7, rnd);
+        a.transposeView().setElem(6, 2, 10);
+        assertEquals(10, a.getElem(2, 6));
+
+        a.subMatView(1, 1).setElem(1, 1, 11);
+        assertEquals(11, a.getElem(2, 2));
+
+        Matrix before = a.copy();
+        a.blockView(3, 4, 2, 3).mul(2);
+        for (int r = 1; r <= 5; r++) {
+            for (int c = 1; c <= 7; c++) {
+                boolean inside = r >= 3 && r <= 4 && c >= 4 && c <= 6;
+                assertEquals((inside ? 2 : 1) * before.getElem(r, c), a.getElem(r, c));
+            }
+        }
+    }
+
+    @Test
+    void viewsMultiplyLikeTheirCopies() {
+        Random rnd = new Random(3);
+        Matrix a = random(40, 30, rnd);
+        Matrix b = random(40, 25, rnd);
+        Matrix at = a.transposeView();
+        assertClose(naiveMul(at.copy(), b), Matrix.mul(at, b), 1e-12);
+
+        Matrix block = b.blockView(3, 2, 30, 20);
+        assertClose(naiveMul(a, block.copy()), Matrix.mul(a, block), 1e-12);
+
+        Matrix dest = new Matrix(40, 40);
+        Matrix.mulInto(a, at, dest.transposeView());
+        assertClose(naiveMul(a, at.copy()), dest, 1e-12);
+    }
+}
@@ -0,0 +1,79 @@
+package libj.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks reuse of pooled arrays and the limits on what a workspace keeps.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class MatrixWorkspaceTest {
+
+    private final MatrixWorkspace ws = MatrixWorkspace.current();
+
+    @BeforeEach
+    @AfterEach
+    void clear() {
+        ws.clear();
+        ws.resetCounters();
+    }
+
+    @Test
+    void releasedArraysAreReused() {
+        double[] d = ws.acquire(100);
+        float[] f = ws.acquireFloats(100);
+        int[] i = ws.acquireInts(100);
+        assertEquals(3, ws.misses());
+        ws.release(d);
+        ws.releaseFloats(f);
+        ws.releaseInts(i);
+        assertEquals(100 * (Double.BYTES + Float.BYTES + Integer.BYTES), ws.pooledBytes());
+
+        assertSame(d, ws.acquire(100));
+        assertSame(f, ws.acquireFloats(100));
+        assertSame(i, ws.acquireInts(100));
+        assertEquals(3, ws.hits());
+        assertEquals(0, ws.pooledBytes());
+        assertNotSame(d, ws.acquire(101));
+    }
+
+    @Test
+    void poolKeepsAtMostMaxPerSize() {
+        double[][] arrays = new double[MatrixWorkspace.MAX_PER_SIZE + 1][];
+        for (int k = 0; k < arrays.length; k++) {
+            arrays[k] = new double[10];
+            ws.release(arrays[k]);
+        }
+        assertEquals(MatrixWorkspace.MAX_PER_SIZE * 10L * Double.BYTES, ws.pooledBytes());
+        for (int k = 0; k < MatrixWorkspace.MAX_PER_SIZE; k++) {
+            ws.acquire(10);
+        }
+        assertEquals(MatrixWorkspace.MAX_PER_SIZE, ws.hits());
+        ws.acquire(10);
+        assertEquals(1, ws.misses());
+    }
+
+    @Test
+    void poolKeepsAtMostMaxPooledBytes() {
+        int half = (int) (MatrixWorkspace.MAX_POOLED_BYTES / 2 / Double.BYTES);
+        double[] a = new double[half];
+        double[] b = new double[half + 1];
+        ws.release(a);
+        ws.release(b);
+        assertEquals((long) half * Double.BYTES, ws.pooledBytes());
+        assertNotSame(b, ws.acquire(half + 1));
+
+        ws.release(new double[(int) (MatrixWorkspace.MAX_POOLED_BYTES / Double.BYTES) + 1]);
+        assertEquals((long) half * Double.BYTES, ws.pooledBytes());
+
+        // Taking an array out makes room again.
+        assertSame(a, ws.acquire(half));
+        ws.release(b);
+        assertEquals((long) (half + 1) * Double.BYTES, ws.pooledBytes());
+    }
+}
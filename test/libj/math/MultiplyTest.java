@@ -0,0 +1,156 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.naiveMul;
+import static libj.math.TestMatrices.random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks every multiplication path against a plain triple loop, and the
+ * in-place product against the allocating one.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class MultiplyTest {
+
+    private MatrixExecutor saved;
+
+    @BeforeEach
+    void saveExecutor() {
+        saved = MatrixExecutor.getDefault();
+    }
+
+    @AfterEach
+    void restoreExecutor() {
+        MatrixExecutor.setDefault(saved);
+    }
+
+    @Test
+    void blockedKernelMatchesNaive() {
+        Random rnd = new Random(1);
+        int[][] shapes = {{1, 1, 1}, {3, 5, 2}, {17, 33, 9}, {64, 64, 64}, {130, 70, 101}};
+        for (int[] s : shapes) {
+            Matrix a = random(s[0], s[1], rnd);
+            Matrix b = random(s[1], s[2], rnd);
+            Matrix expected = naiveMul(a, b);
+            assertClose(expected, Matrix.mul(a, b), 1e-12);
+
+            Matrix dest = new Matrix(s[0], s[2]);
+            Matrix.mulInto(a, b, dest);
+            assertClose(expected, dest, 1e-12);
+        }
+    }
+
+    @Test
+    void parallelMatchesSerialExactly() {
+        Random rnd = new Random(3);
+        Matrix a = random(150, 120, rnd);
+        Matrix b = random(120, 90, rnd);
+        Matrix c = random(150, 120, rnd);
+        Matrix product = Matrix.mul(a, b);
+        Matrix transposed = a.transpose();
+        Matrix combined = a.copy();
+        combined.add(c);
+        combined.mul(0.5);
+        combined.sub(c);
+
+        MatrixExecutor.setDefault(MatrixExecutor.parallel(4).withThreshold(1));
+        assertEquals(product, Matrix.mul(a, b));
+        assertEquals(transposed, a.transpose());
+        Matrix m = a.copy();
+        m.add(c);
+        m.mul(0.5);
+        m.sub(c);
+        assertEquals(combined, m);
+    }
+
+    @Test
+    void inPlaceMatchesAllocating() {
+        Random rnd = new Random(5);
+        MatrixExecutor[] executors = {
+            MatrixExecutor.serial(),
+            MatrixExecutor.parallel(4).withThreshold(1)
+        };
+        for (MatrixExecutor exec : executors) {
+            MatrixExecutor.setDefault(exec);
+            Matrix a = random(70, 70, rnd);
+            Matrix square = random(70, 70, rnd);
+            Matrix wide = random(70, 45, rnd);
+
+            Matrix expected = Matrix.mul(a, square);
+            Matrix m = a.copy();
+            m.mul(square);
+            assertEquals(expected, m);
+
+            expected = Matrix.mul(a, wide);
+            m = a.copy();
+            m.mul(wide);
+            assertEquals(expected, m);
+
+            expected = Matrix.mul(a, a);
+            m = a.copy();
+            m.mul(m);
+            assertEquals(expected, m);
+        }
+    }
+
+    @Test
+    void inPlaceKeepsRetiredArrayOutOfWorkspace() {
+        Random rnd = new Random(6);
+        Matrix a = random(3, 4, rnd);
+        double[] old = a.elem;
+        a.mul(random(4, 2, rnd));
+        assertNotSame(old, MatrixWorkspace.current().acquire(old.length));
+
+        Matrix s = random(20, 20, rnd);
+        double[] own = s.elem;
+        s.mul(random(20, 20, rnd));
+        assertSame(own, s.elem);
+    }
+
+    @Test
+    void strassenMatchesClassic() {
+        Random rnd = new Random(4);
+        int[][] shapes = {{100, 100, 100}, {129, 75, 200}, {256, 256, 256}};
+        for (int[] s : shapes) {
+            Matrix a = random(s[0], s[1], rnd);
+            Matrix b = random(s[1], s[2], rnd);
+            Matrix classic = Matrix.mul(a, b);
+
+            MatrixExecutor.setDefault(MatrixExecutor.serial().withStrassen(32));
+            Matrix strassen = Matrix.mul(a, b);
+            assertClose(classic, strassen, 1e-11);
+
+            MatrixExecutor.setDefault(MatrixExecutor.parallel(4).withStrassen(32));
+            assertEquals(strassen, Matrix.mul(a, b));
+            MatrixExecutor.setDefault(saved);
+        }
+    }
+
+    @Test
+    void inPlaceUsesStrassenAboveCutoff() {
+        Random rnd = new Random(9);
+        MatrixExecutor exec = MatrixExecutor.serial().withStrassen(32);
+        MatrixExecutor.setDefault(exec);
+        Matrix a = random(70, 70, rnd);
+        Matrix b = random(70, 70, rnd);
+        assertTrue(exec.usesStrassen(a, b));
+
+        Matrix expected = Matrix.mul(a, b);
+        Matrix m = a.copy();
+        m.mul(b);
+        assertEquals(expected, m);
+
+        expected = Matrix.mul(a, a);
+        m = a.copy();
+        m.mul(m);
+        assertEquals(expected, m);
+    }
+}
@@ -0,0 +1,99 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that off-heap matrices behave like heap matrices with the same
+ * elements, including when mapped from a file.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class OffHeapMatrixTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void elementWiseOpsMatchHeap() {
+        Random rnd = new Random(1);
+        Matrix a = random(30, 20, rnd);
+        Matrix b = random(30, 20, rnd);
+        OffHeapMatrix off = OffHeapMatrix.allocate(30, 20);
+        assertFalse(off.isMapped());
+        assertEquals(600, off.size());
+        assertEquals(0, off.get(599));
+        a.copyInto(off);
+        assertEquals(a, off);
+
+        a.add(b);
+        a.mul(0.25);
+        off.add(b);
+        off.mul(0.25);
+        assertEquals(a, off);
+        assertArrayEquals(a.sumRows(), off.sumRows(), 1e-14);
+        assertEquals(a.sumCol(3), off.sumCol(3), 1e-14);
+
+        off.set(21, 5);
+        assertEquals(5, off.getElem(2, 2));
+    }
+
+    @Test
+    void streamingProductsMatchHeap() {
+        Random rnd = new Random(2);
+        Matrix a = random(50, 40, rnd);
+        Matrix b = random(40, 30, rnd);
+        OffHeapMatrix offA = OffHeapMatrix.allocate(50, 40);
+        a.copyInto(offA);
+        Matrix expected = Matrix.mul(a, b);
+
+        OffHeapMatrix dest = OffHeapMatrix.allocate(50, 30);
+        OffHeapMatrix.mul(offA, b, dest);
+        assertClose(expected, dest, 1e-12);
+        assertClose(expected, Matrix.mul(offA, b), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> OffHeapMatrix.mul(offA, b, offA));
+    }
+
+    @Test
+    void inPlaceProductStreams() {
+        Random rnd = new Random(3);
+        int n = 90;
+        Matrix a = random(n, n, rnd);
+        Matrix b = random(n, n, rnd);
+        OffHeapMatrix off = OffHeapMatrix.allocate(n, n);
+        a.copyInto(off);
+
+        off.mul(b);
+        Matrix expected = Matrix.mul(a, b);
+        assertClose(expected, off, 1e-12);
+
+        off.mul(off);
+        assertClose(Matrix.mul(expected, expected), off, 1e-10);
+
+        assertThrows(UnsupportedOperationException.class, () -> off.mul(random(n, 3, rnd)));
+    }
+
+    @Test
+    void mappedChangesReachTheFile() throws IOException {
+        Random rnd = new Random(4);
+        Path file = dir.resolve("m.bin");
+        Matrix a = random(12, 9, rnd);
+        OffHeapMatrix mapped = OffHeapMatrix.map(file, 12, 9);
+        assertTrue(mapped.isMapped());
+        assertEquals(new Matrix(12, 9), mapped);
+        a.copyInto(mapped);
+        mapped.force();
+
+        assertEquals(a, OffHeapMatrix.map(file, 12, 9));
+    }
+}
@@ -0,0 +1,67 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that U x S x V^T reproduces the decomposed matrix, with
+ * orthonormal U and V.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class SingularValueDecompositionTest {
+
+    private static Matrix reconstruct(SingularValueDecomposition svd) {
+        return Matrix.mul(Matrix.mul(svd.getU(), svd.getS()), svd.getV().transposeView());
+    }
+
+    @Test
+    void thinDecompositionReproducesMatrix() {
+        Random rnd = new Random(1);
+        int[][] shapes = {{1, 1}, {6, 6}, {40, 15}, {15, 40}, {33, 33}};
+        for (int[] s : shapes) {
+            Matrix a = random(s[0], s[1], rnd);
+            SingularValueDecomposition svd = a.svd();
+            int k = Math.min(s[0], s[1]);
+            assertClose(a, reconstruct(svd), 1e-12 * k);
+
+            Matrix u = svd.getU();
+            Matrix v = svd.getV();
+            assertClose(SqMatrix.identity(k), Matrix.mul(u.transposeView(), u), 1e-12 * k);
+            assertClose(SqMatrix.identity(k), Matrix.mul(v.transposeView(), v), 1e-12 * k);
+
+            double[] sv = svd.getSingularValues();
+            for (int i = 1; i < k; i++) {
+                assertTrue(sv[i] <= sv[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    void rankOfLowRankMatrix() {
+        Random rnd = new Random(2);
+        Matrix a = Matrix.mul(random(30, 4, rnd), random(4, 20, rnd));
+        SingularValueDecomposition svd = a.svd();
+        assertEquals(4, svd.rank());
+        assertClose(a, reconstruct(svd), 1e-12);
+        assertEquals(0, new Matrix(5, 3).svd().rank());
+    }
+
+    @Test
+    void randomizedMatchesFullOnLowRankMatrix() {
+        Random rnd = new Random(3);
+        Matrix a = Matrix.mul(random(80, 6, rnd), random(6, 60, rnd));
+        SingularValueDecomposition full = a.svd();
+        SingularValueDecomposition top = SingularValueDecomposition.randomized(a, 6);
+
+        double[] expected = new double[6];
+        System.arraycopy(full.getSingularValues(), 0, expected, 0, 6);
+        assertArrayEquals(expected, top.getSingularValues(), 1e-10 * expected[0]);
+        assertClose(a, reconstruct(top), 1e-10 * expected[0]);
+    }
+}
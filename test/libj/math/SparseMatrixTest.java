@@ -0,0 +1,97 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.naiveMul;
+import static libj.math.TestMatrices.random;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the builder and the sparse products against dense matrices.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class SparseMatrixTest {
+
+    /**
+     * Returns a dense matrix where about the given fraction of the elements
+     * are non-zero.
+     */
+    private static Matrix randomSparse(int rows, int cols, double density, Random rnd) {
+        Matrix m = new Matrix(rows, cols);
+        for (int i = 0; i < rows * cols; i++) {
+            if (rnd.nextDouble() < density) {
+                m.elem[i] = 2 * rnd.nextDouble() - 1;
+            }
+        }
+        return m;
+    }
+
+    @Test
+    void builderSumsDuplicatesInAnyOrder() {
+        SparseMatrix s = new SparseMatrix.Builder(3, 4)
+                .add(3, 1, 5)
+                .add(1, 4, 2)
+                .add(1, 2, 1)
+                .add(1, 4, 0.5)
+                .add(2, 3, 7)
+                .add(2, 3, -7)
+                .add(1, 1, 0)
+                .build();
+        Matrix expected = new Matrix(3, 4);
+        expected.setAll(new double[] {0, 1, 0, 2.5, 0, 0, 0, 0, 5, 0, 0, 0});
+        assertEquals(expected, s.toDense());
+        assertEquals(3, s.nonZeros());
+        assertEquals(2.5, s.getElem(1, 4));
+        assertEquals(0, s.getElem(2, 3));
+        assertEquals(s, SparseMatrix.fromDense(expected));
+
+        assertThrows(IllegalArgumentException.class, () -> new SparseMatrix.Builder(2, 2).add(3, 1, 1));
+    }
+
+    @Test
+    void productsMatchDense() {
+        Random rnd = new Random(1);
+        Matrix a = randomSparse(40, 30, 0.1, rnd);
+        Matrix b = randomSparse(30, 50, 0.1, rnd);
+        Matrix dense = random(30, 7, rnd);
+        SparseMatrix sa = SparseMatrix.fromDense(a);
+        SparseMatrix sb = SparseMatrix.fromDense(b);
+
+        assertClose(naiveMul(a, b), sa.mul(sb).toDense(), 1e-14);
+        assertClose(naiveMul(a, dense), sa.mul(dense), 1e-14);
+        assertClose(naiveMul(dense.transposeView(), b), SparseMatrix.mul(dense.transpose(), sb), 1e-14);
+
+        Matrix xm = random(30, 1, rnd);
+        double[] y = new double[40];
+        sa.mul(xm.getElements(), y);
+        Matrix ym = new Matrix(40, 1);
+        ym.setAll(y);
+        assertClose(naiveMul(a, xm), ym, 1e-14);
+    }
+
+    @Test
+    void elementWiseOpsMatchDense() {
+        Random rnd = new Random(2);
+        Matrix a = randomSparse(25, 35, 0.2, rnd);
+        Matrix b = randomSparse(25, 35, 0.2, rnd);
+        SparseMatrix sa = SparseMatrix.fromDense(a);
+        SparseMatrix sb = SparseMatrix.fromDense(b);
+
+        assertEquals(a.transpose(), sa.transpose().toDense());
+        Matrix sum = a.copy();
+        sum.add(b);
+        assertEquals(sum, sa.add(sb).toDense());
+        Matrix diff = a.copy();
+        diff.sub(b);
+        assertEquals(diff, sa.sub(sb).toDense());
+        Matrix scaled = a.copy();
+        scaled.mul(3);
+        assertEquals(scaled, sa.mul(3).toDense());
+
+        // Cancelled elements are not stored.
+        assertEquals(0, sa.sub(sa).nonZeros());
+    }
+}
@@ -0,0 +1,95 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.dense;
+import static libj.math.TestMatrices.random;
+import static libj.math.TestMatrices.randomDominant;
+import static libj.math.TestMatrices.randomSpd;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the structured solves, inverses and products with the same
+ * operations on dense copies.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class StructuredMatrixTest {
+
+    private static final int[] SIZES = {1, 2, 3, 7, 33, 100};
+
+    @Test
+    void solvesMatchDense() {
+        Random rnd = new Random(1);
+        for (int n : SIZES) {
+            Matrix b = random(n, 2, rnd);
+            SqMatrix dense = randomDominant(n, rnd);
+
+            BandMatrix band = BandMatrix.fromMatrix(dense, Math.min(1, n - 1), Math.min(2, n - 1));
+            SqMatrix bandDense = dense(band);
+            assertClose(bandDense.solve(b), band.solve(b), 1e-12);
+            assertClose(bandDense.inv(), band.inv(), 1e-12);
+            assertEquals(bandDense.det(), band.det(), Math.abs(band.det()) * 1e-12);
+
+            SymmetricMatrix sym = SymmetricMatrix.fromMatrix(randomSpd(n, rnd));
+            SqMatrix symDense = dense(sym);
+            assertClose(symDense.solve(b), sym.solve(b), 1e-12);
+            assertClose(symDense.inv(), sym.inv(), 1e-12);
+            assertEquals(symDense.det(), sym.det(), Math.abs(sym.det()) * 1e-12);
+
+            TriangularMatrix upper = TriangularMatrix.fromMatrix(dense, true);
+            SqMatrix upperDense = dense(upper);
+            assertClose(upperDense.solve(b), upper.solve(b), 1e-12);
+            assertClose(upperDense.inv(), upper.inv(), 1e-12);
+            assertEquals(upperDense.det(), upper.det(), Math.abs(upper.det()) * 1e-12);
+
+            DiagonalMatrix diag = DiagonalMatrix.fromMatrix(dense);
+            SqMatrix diagDense = dense(diag);
+            assertClose(diagDense.solve(b), diag.solve(b), 1e-12);
+            assertClose(diagDense.inv(), diag.inv(), 1e-12);
+        }
+    }
+
+    @Test
+    void productsMatchDense() {
+        Random rnd = new Random(2);
+        int n = 40;
+        SqMatrix dense = randomDominant(n, rnd);
+        Matrix other = random(n, 25, rnd);
+        StructuredMatrix[] structured = {
+            BandMatrix.fromMatrix(dense, 3, 5),
+            SymmetricMatrix.fromMatrix(dense),
+            TriangularMatrix.fromMatrix(dense, false),
+            DiagonalMatrix.fromMatrix(dense)
+        };
+        for (StructuredMatrix s : structured) {
+            SqMatrix d = dense(s);
+            assertClose(Matrix.mul(d, other), Matrix.mul(s, other), 1e-13);
+            assertClose(Matrix.mul(other.transposeView(), d), Matrix.mul(other.transposeView(), s), 1e-13);
+            assertEquals(d, s.copy());
+            assertEquals(s, s.structuredCopy());
+        }
+    }
+
+    @Test
+    void elementsOutsideStructureStayZero() {
+        TriangularMatrix lower = new TriangularMatrix(4, false);
+        lower.setElem(3, 2, 5);
+        lower.setElem(1, 3, 0);
+        assertThrows(IllegalArgumentException.class, () -> lower.setElem(1, 3, 1));
+
+        BandMatrix band = new BandMatrix(5, 1, 0);
+        band.setElem(2, 1, 1);
+        assertThrows(IllegalArgumentException.class, () -> band.setElem(3, 1, 1));
+
+        SymmetricMatrix sym = new SymmetricMatrix(3);
+        sym.setElem(1, 3, 7);
+        assertEquals(7, sym.getElem(3, 1));
+
+        DiagonalMatrix diag = new DiagonalMatrix(new double[] {1, 2, 3});
+        assertThrows(IllegalArgumentException.class, () -> diag.setElem(1, 2, 1));
+        assertEquals(6, diag.det());
+    }
+}
@@ -0,0 +1,99 @@
+package libj.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+/**
+ * Random matrices and comparisons shared by the tests.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+final class TestMatrices {
+
+    private TestMatrices() {
+    }
+
+    /**
+     * Returns a matrix with elements uniform in [-1, 1).
+     */
+    static Matrix random(int rows, int cols, Random rnd) {
+        Matrix m = rows == cols ? new SqMatrix(rows) : new Matrix(rows, cols);
+        for (int i = 0; i < rows * cols; i++) {
+            m.elem[i] = 2 * rnd.nextDouble() - 1;
+        }
+        return m;
+    }
+
+    /**
+     * Returns a random square matrix made well-conditioned by adding n to
+     * its diagonal.
+     */
+    static SqMatrix randomDominant(int n, Random rnd) {
+        SqMatrix m = (SqMatrix) random(n, n, rnd);
+        for (int i = 0; i < n; i++) {
+            m.elem[i * n + i] += n;
+        }
+        return m;
+    }
+
+    /**
+     * Returns a random symmetric positive definite matrix.
+     */
+    static SqMatrix randomSpd(int n, Random rnd) {
+        Matrix g = random(n, n, rnd);
+        SqMatrix m = new SqMatrix(n);
+        Matrix.mulInto(g, g.transposeView(), m);
+        for (int i = 0; i < n; i++) {
+            m.elem[i * n + i] += n;
+        }
+        return m;
+    }
+
+    /**
+     * Returns a dense copy of a square matrix, which may be structured.
+     */
+    static SqMatrix dense(Matrix m) {
+        SqMatrix res = new SqMatrix(m.rows());
+        m.copyInto(res);
+        return res;
+    }
+
+    /**
+     * Returns the largest absolute difference between two matrices of the
+     * same dimensions.
+     */
+    static double maxDiff(Matrix a, Matrix b) {
+        assertEquals(a.rows(), b.rows(), "rows");
+        assertEquals(a.cols(), b.cols(), "cols");
+        double max = 0;
+        for (int r = 0; r < a.rows(); r++) {
+            for (int c = 0; c < a.cols(); c++) {
+                max = Math.max(max, Math.abs(a.get0(r, c) - b.get0(r, c)));
+            }
+        }
+        return max;
+    }
+
+    static void assertClose(Matrix expected, Matrix actual, double tol) {
+        double d = maxDiff(expected, actual);
+        assertTrue(d <= tol, "Largest difference " + d + " is above " + tol);
+    }
+
+    /**
+     * Multiplies with a plain triple loop, as a reference for the kernels.
+     */
+    static Matrix naiveMul(Matrix a, Matrix b) {
+        Matrix res = new Matrix(a.rows(), b.cols());
+        for (int i = 0; i < a.rows(); i++) {
+            for (int j = 0; j < b.cols(); j++) {
+                double sum = 0;
+                for (int k = 0; k < a.cols(); k++) {
+                    sum += a.get0(i, k) * b.get0(k, j);
+                }
+                res.set0(i, j, sum);
+            }
+        }
+        return res;
+    }
+}
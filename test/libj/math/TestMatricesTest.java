@@ -0,0 +1,56 @@
+package libj.math;
+
+import static libj.math.TestMatrices.naiveMul;
+import static libj.math.TestMatrices.random;
+import static libj.math.TestMatrices.randomDominant;
+import static libj.math.TestMatrices.randomSpd;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the shared fixtures, since every other test compares against them.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class TestMatricesTest {
+
+    @Test
+    void naiveMulMatchesHandComputedProduct() {
+        Matrix a = new Matrix(2, 3);
+        a.setAll(new double[] {1, 2, 3, 4, 5, 6});
+        Matrix b = new Matrix(3, 2);
+        b.setAll(new double[] {7, 8, 9, 10, 11, 12});
+        Matrix expected = new Matrix(2, 2);
+        expected.setAll(new double[] {58, 64, 139, 154});
+        assertEquals(expected, naiveMul(a, b));
+    }
+
+    @Test
+    void randomMatricesHaveTheRequestedShape() {
+        Random rnd = new Random(1);
+        Matrix m = random(4, 7, rnd);
+        assertEquals(4, m.rows());
+        assertEquals(7, m.cols());
+        for (double e : m.getElements()) {
+            assertTrue(e >= -1 && e < 1);
+        }
+        assertInstanceOf(SqMatrix.class, random(5, 5, rnd));
+
+        int n = 6;
+        SqMatrix d = randomDominant(n, rnd);
+        SqMatrix s = randomSpd(n, rnd);
+        for (int i = 0; i < n; i++) {
+            double off = 0;
+            for (int j = 0; j < n; j++) {
+                assertEquals(s.elem[i * n + j], s.elem[j * n + i]);
+                if (j != i) {
+                    off += Math.abs(d.elem[i * n + j]);
+                }
+            }
+            assertTrue(Math.abs(d.elem[i * n + i]) > off);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package libj.math;
+
+import static libj.math.TestMatrices.assertClose;
+import static libj.math.TestMatrices.random;
+import static libj.math.TestMatrices.randomDominant;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares an UpdatableInverse after each kind of update with a fresh
+ * inverse of the updated matrix.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class UpdatableInverseTest {
+
+    private static void assertMatchesFresh(UpdatableInverse ui) {
+        SqMatrix m = ui.getMatrix();
+        double tol = 1e-10 * ui.dim();
+        assertClose(m.inv(), ui.inv(), tol);
+        assertEquals(m.det(), ui.det(), Math.abs(m.det()) * tol);
+    }
+
+    @Test
+    void updatesMatchFreshInverse() {
+        Random rnd = new Random(1);
+        int n = 25;
+        UpdatableInverse ui = randomDominant(n, rnd).updatableInverse();
+        assertNotNull(ui);
+
+        for (int step = 0; step < 40; step++) {
+            switch (step % 5) {
+                case 0 -> assertTrue(ui.setElem(1 + rnd.nextInt(n), 1 + rnd.nextInt(n), n + rnd.nextDouble()));
+                case 1 -> {
+                    double[] row = random(1, n, rnd).getElements();
+                    row[step % n] += n;
+                    assertTrue(ui.setRow(1 + step % n, row));
+                }
+                case 2 -> {
+                    double[] col = random(n, 1, rnd).getElements();
+                    col[step % n] += n;
+                    assertTrue(ui.setCol(1 + step % n, col));
+                }
+                case 3 -> assertTrue(ui.rankOneUpdate(random(n, 1, rnd).getElements(), random(n, 1, rnd).getElements()));
+                default -> assertTrue(ui.update(random(n, 2, rnd), random(n, 2, rnd)));
+            }
+            assertMatchesFresh(ui);
+        }
+    }
+
+    @Test
+    void solveMatchesMatrixSolve() {
+        Random rnd = new Random(2);
+        SqMatrix a = randomDominant(12, rnd);
+        UpdatableInverse ui = new UpdatableInverse(a);
+        Matrix b = random(12, 1, rnd);
+        Matrix x = new Matrix(12, 1);
+        x.setAll(ui.solve(b.getElements()));
+        assertClose(a.solve(b), x, 1e-12);
+    }
+
+    @Test
+    void singularUpdateIsRejected() {
+        SqMatrix a = SqMatrix.identity(3);
+        UpdatableInverse ui = new UpdatableInverse(a);
+        assertFalse(ui.setRow(2, new double[] {1, 0, 0}));
+        assertClose(a, ui.getMatrix(), 0);
+        assertMatchesFresh(ui);
+
+        SqMatrix singular = new SqMatrix(2);
+        assertNull(singular.updatableInverse());
+    }
+
+    @Test
+    void updateSingularUpToRoundingIsRejected() {
+        SqMatrix a = new SqMatrix(3);
+        a.setAll(new double[] {1, 2, 3, 4, 5, 6, 7, 8, 10});
+        UpdatableInverse ui = new UpdatableInverse(a);
+        SqMatrix inv = ui.inv();
+        double det = ui.det();
+
+        // Both leave the last row equal to the sum or the continuation of
+        // the others, but the pivots only show it up to rounding.
+        assertFalse(ui.setElem(3, 3, 9));
+        assertFalse(ui.setRow(3, new double[] {5, 7, 9}));
+        assertFalse(ui.setCol(3, new double[] {3, 6, 9}));
+        assertFalse(ui.rankOneUpdate(new double[] {0, 0, 1}, new double[] {0, 0, -1}));
+
+        assertClose(a, ui.getMatrix(), 0);
+        assertClose(inv, ui.inv(), 0);
+        assertEquals(det, ui.det());
+        assertMatchesFresh(ui);
+    }
+}
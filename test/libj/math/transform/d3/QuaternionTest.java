@@ -0,0 +1,104 @@
+package libj.math.transform.d3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trips between quaternions, Matrix4 rotations, Euler angles and axis
+ * angles.
+ * @author Magnus C. Hyll <magnus@hyll.no>
+ */
+class QuaternionTest {
+
+    private static void assertClose(Matrix4 expected, Matrix4 actual, double tol) {
+        for (int r = 1; r <= 4; r++) {
+            for (int c = 1; c <= 4; c++) {
+                assertEquals(expected.getElem(r, c), actual.getElem(r, c), tol, "element " + r + "," + c);
+            }
+        }
+    }
+
+    private static Matrix4 euler(double ax, double ay, double az) {
+        return new Matrix4().loadIdentity().rotateX(ax).rotateY(ay).rotateZ(az);
+    }
+
+    private static Quaternion random(Random rnd) {
+        return new Quaternion(rnd.nextGaussian(), rnd.nextGaussian(), rnd.nextGaussian(), rnd.nextGaussian()).normalize();
+    }
+
+    @Test
+    void matrixRoundTrip() {
+        Random rnd = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            Quaternion q = random(rnd);
+            Matrix4 m = q.toMatrix4(new Matrix4());
+            Quaternion back = new Quaternion().set(m);
+            // q and -q are the same rotation
+            assertEquals(1, Math.abs(q.dot(back)), 1e-12);
+            assertClose(m, back.toMatrix4(new Matrix4()), 1e-12);
+        }
+    }
+
+    @Test
+    void eulerMatchesMatrixRotations() {
+        Random rnd = new Random(2);
+        for (int i = 0; i < 1000; i++) {
+            double ax = rnd.nextDouble() * 360 - 180;
+            double ay = rnd.nextDouble() * 180 - 90;
+            double az = rnd.nextDouble() * 360 - 180;
+            Quaternion q = new Quaternion().setEuler(ax, ay, az);
+            assertClose(euler(ax, ay, az), q.toMatrix4(new Matrix4()), 1e-12);
+
+            double[] e = new double[3];
+            q.getEuler(e);
+            assertClose(euler(ax, ay, az), euler(e[0], e[1], e[2]), 1e-12);
+        }
+    }
+
+    @Test
+    void eulerRoundTripAtGimbalLock() {
+        double[][] angles = {{30, 90, 0}, {30, -90, 0}, {10, 90, 40}, {-170, -90, 25}, {30, 89.9999999, 10}};
+        for (double[] a : angles) {
+            Quaternion q = new Quaternion().setEuler(a[0], a[1], a[2]);
+            double[] e = new double[3];
+            q.getEuler(e);
+            assertTrue(Math.abs(e[1]) <= 90);
+            assertClose(q.toMatrix4(new Matrix4()), euler(e[0], e[1], e[2]), 1e-13);
+        }
+        double[] e = new double[3];
+        new Quaternion().setEuler(30, 90, 0).getEuler(e);
+        assertArrayEquals(new double[] {30, 90, 0}, e, 1e-9);
+    }
+
+    @Test
+    void rotateVectorsMatchesMatrix() {
+        Random rnd = new Random(3);
+        Quaternion q = random(rnd);
+        double[] v = new double[3 * 50];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = rnd.nextDouble();
+        }
+        double[] expected = v.clone();
+        q.toMatrix4(new Matrix4()).transformVectors(expected);
+        q.rotateVectors(v);
+        assertArrayEquals(expected, v, 1e-12);
+    }
+
+    @Test
+    void axisAngleAndSlerp() {
+        Quaternion q = new Quaternion().setAxisAngle(0, 0, 2, 120);
+        double[] aa = new double[4];
+        q.getAxisAngle(aa);
+        assertArrayEquals(new double[] {0, 0, 1, 120}, aa, 1e-12);
+
+        Quaternion from = new Quaternion();
+        Quaternion half = from.slerp(q, 0.5);
+        Quaternion expected = new Quaternion().setAxisAngle(0, 0, 1, 60);
+        assertEquals(1, Math.abs(half.dot(expected)), 1e-12);
+        assertEquals(1, Math.abs(from.slerp(q, 1).dot(q)), 1e-12);
+    }
+}